@@ -1,22 +1,34 @@
 package com.hydro17.spaceagencydatahub.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hydro17.spaceagencydatahub.exceptions.*;
-import com.hydro17.spaceagencydatahub.models.IProductAndOrderCount;
+import com.hydro17.spaceagencydatahub.models.ApproximateMostOrderedDTO;
+import com.hydro17.spaceagencydatahub.models.DensityCellDTO;
 import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.NearestProductDTO;
 import com.hydro17.spaceagencydatahub.models.Product;
 import com.hydro17.spaceagencydatahub.models.ProductDTO;
+import com.hydro17.spaceagencydatahub.models.ProductPage;
 import com.hydro17.spaceagencydatahub.services.MissionService;
-import com.hydro17.spaceagencydatahub.services.OrderItemService;
 import com.hydro17.spaceagencydatahub.services.ProductOrderService;
 import com.hydro17.spaceagencydatahub.services.ProductService;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import com.hydro17.spaceagencydatahub.utils.DensityGrid;
 import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import com.hydro17.spaceagencydatahub.utils.NdjsonWriter;
+import com.hydro17.spaceagencydatahub.utils.ProductCursor;
+import com.hydro17.spaceagencydatahub.utils.RankingWindow;
+import com.hydro17.spaceagencydatahub.utils.SpatialRelation;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collector;
@@ -26,43 +38,48 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/products")
 public class ProductController {
 
+    private static final int MAX_NEAREST_PRODUCTS = 1000;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private ProductService productService;
-    private OrderItemService orderItemService;
     private ProductOrderService productOrderService;
     private MissionService missionService;
     private ConversionService conversionService;
+    private ObjectMapper objectMapper;
 
-    public ProductController(ProductService productService, OrderItemService orderItemService,
-                             ProductOrderService productOrderService, MissionService missionService,
-                             ConversionService conversionService) {
+    public ProductController(ProductService productService, ProductOrderService productOrderService,
+                             MissionService missionService, ConversionService conversionService,
+                             ObjectMapper objectMapper) {
         this.productService = productService;
-        this.orderItemService = orderItemService;
         this.productOrderService = productOrderService;
         this.missionService = missionService;
         this.conversionService = conversionService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
     public List<ProductDTO> getAllProducts() {
-        List<Product> products = productService.getAllProducts();
+        return productService.getAllProducts();
+    }
 
-//        TODO remove after testing @MockBean conversionService
-//        Long aa = conversionService.convert("10", Long.class);
-//        products.get(0).setId(aa);
+//  Requested with Accept: application/x-ndjson, every product is written as soon as it is read from the database
+    @GetMapping(produces = NdjsonWriter.MEDIA_TYPE)
+    public void streamAllProducts(HttpServletResponse response) throws IOException {
+        response.setContentType(NdjsonWriter.MEDIA_TYPE);
 
-        return products.stream()
-                .map(product -> conversionService.convert(product, ProductDTO.class))
-                .collect(Collectors.toList());
+        try (NdjsonWriter writer = new NdjsonWriter(objectMapper, response.getOutputStream())) {
+            productService.forEachProduct(writer::write);
+        }
     }
 
     @GetMapping("/{id}")
     public ProductDTO getProductById(@PathVariable long id) {
 
-        Product product = productService.getProductById(id).orElseThrow(
+        return productService.getProductDTOById(id).orElseThrow(
                 () -> new ProductNotFoundException("There is no product with id: " + id)
         );
-
-        return conversionService.convert(product, ProductDTO.class) ;
     }
 
     @GetMapping("/find")
@@ -72,40 +89,193 @@ public class ProductController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterDate,
             @RequestParam(required = false) Double latitude,
             @RequestParam(required = false) Double longitude,
-            @RequestParam(required = false, value = "imageryType") String imageryTypeAsString
+            @RequestParam(required = false, value = "imageryType") String imageryTypeAsString,
+            @RequestParam(required = false) Double minLatitude,
+            @RequestParam(required = false) Double minLongitude,
+            @RequestParam(required = false) Double maxLatitude,
+            @RequestParam(required = false) Double maxLongitude,
+            @RequestParam(required = false, value = "areaRelation") String areaRelationAsString,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            HttpServletResponse response
     ) {
-        ImageryType imageryType = null;
+        ImageryType imageryType = getImageryType(imageryTypeAsString);
 
-        if (imageryTypeAsString != null) {
-            try {
-                imageryType = ImageryType.valueOf(imageryTypeAsString.toUpperCase());
-            } catch (IllegalArgumentException ex) {
-                throw new ProductBadFindProductParameterException("Imagery type " + imageryTypeAsString + " does not exist");
-            }
+        BoundingBox area = getArea(minLatitude, minLongitude, maxLatitude, maxLongitude);
+        SpatialRelation areaRelation = getAreaRelation(areaRelationAsString);
+
+//      Without limit and cursor all matching products are returned at once, otherwise one page of them
+//      with the cursor of the next page in the X-Next-Cursor header.
+//      The URL of products that are not ordered is null.
+        if (limit == null && cursor == null) {
+            return productService.getFilteredProducts(missionName, beforeDate, afterDate, latitude,
+                    longitude, area, areaRelation, imageryType);
         }
 
-        List<Product> products = productService.getFilteredProducts(missionName, beforeDate, afterDate, latitude,
-                longitude, imageryType);
-        List<Product> listOfProductsWithUrlNullForUnordered = productService.removeUrlOfUnorderedProducts(products);
+        ProductPage page = productService.getFilteredProductsPage(missionName, beforeDate, afterDate, latitude,
+                longitude, area, areaRelation, imageryType, getPageSize(limit), getCursor(cursor));
 
-        return listOfProductsWithUrlNullForUnordered.stream()
-                .map(product -> conversionService.convert(product, ProductDTO.class))
-                .collect(Collectors.toList());
+        if (page.getNextCursor() != null) {
+            response.setHeader(NEXT_CURSOR_HEADER, page.getNextCursor().encode());
+        }
+
+        return page.getProducts();
     }
 
-//    getProductsGroupedByProductIdOrderedByOrderCountDesc
-    @GetMapping("/most-ordered")
-    public List<ProductDTO> getMostOrderedProductsDesc() {
-        List<IProductAndOrderCount> productAndProductOrderCounts =
-                orderItemService.getAllProductAndOrderCountGroupedByProductIdOrderedByOrderCountDesc();
+//  Requested with Accept: application/x-ndjson, all matching products are written one per line as soon as
+//  they are read from the database, so limit and cursor are not needed
+    @GetMapping(value = "/find", produces = NdjsonWriter.MEDIA_TYPE)
+    public void streamFoundProducts(
+            @RequestParam(required = false) String missionName,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterDate,
+            @RequestParam(required = false) Double latitude,
+            @RequestParam(required = false) Double longitude,
+            @RequestParam(required = false, value = "imageryType") String imageryTypeAsString,
+            @RequestParam(required = false) Double minLatitude,
+            @RequestParam(required = false) Double minLongitude,
+            @RequestParam(required = false) Double maxLatitude,
+            @RequestParam(required = false) Double maxLongitude,
+            @RequestParam(required = false, value = "areaRelation") String areaRelationAsString,
+            HttpServletResponse response
+    ) throws IOException {
+        ImageryType imageryType = getImageryType(imageryTypeAsString);
+        BoundingBox area = getArea(minLatitude, minLongitude, maxLatitude, maxLongitude);
+        SpatialRelation areaRelation = getAreaRelation(areaRelationAsString);
+
+        response.setContentType(NdjsonWriter.MEDIA_TYPE);
+
+        try (NdjsonWriter writer = new NdjsonWriter(objectMapper, response.getOutputStream())) {
+            productService.forEachFilteredProduct(missionName, beforeDate, afterDate, latitude, longitude, area,
+                    areaRelation, imageryType, writer::write);
+        }
+    }
+
+    @GetMapping("/nearest")
+    public List<NearestProductDTO> getNearestProducts(
+            @RequestParam double latitude,
+            @RequestParam double longitude,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(required = false) String missionName,
+            @RequestParam(required = false, value = "imageryType") String imageryTypeAsString
+    ) {
+        if (k < 1 || k > MAX_NEAREST_PRODUCTS) {
+            throw new ProductBadFindProductParameterException("Parameter k has to be between 1 and " + MAX_NEAREST_PRODUCTS);
+        }
 
-        List<Product> products = orderItemService.convertAllProductAndOrderCountToProduct(productAndProductOrderCounts);
+        ImageryType imageryType = getImageryType(imageryTypeAsString);
+
+        List<ProductDTO> products = productService.getNearestProducts(latitude, longitude, k, missionName, imageryType);
 
         return products.stream()
-                .map(product -> conversionService.convert(product, ProductDTO.class))
+                .map(product -> new NearestProductDTO(product,
+                        product.getFootprint().toBoundingBox().distanceTo(latitude, longitude)))
                 .collect(Collectors.toList());
     }
 
+//  Product counts per cell of a grid with 2^level x 2^level cells over the whole globe,
+//  only non empty cells intersecting the area are returned
+    @GetMapping("/density")
+    public List<DensityCellDTO> getProductDensity(
+            @RequestParam double minLatitude,
+            @RequestParam double minLongitude,
+            @RequestParam double maxLatitude,
+            @RequestParam double maxLongitude,
+            @RequestParam(defaultValue = "4") int level,
+            @RequestParam(required = false, value = "imageryType") String imageryTypeAsString,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate
+    ) {
+        if (level < 0 || level > DensityGrid.BASE_LEVEL) {
+            throw new ProductBadFindProductParameterException("Parameter level has to be between 0 and "
+                    + DensityGrid.BASE_LEVEL);
+        }
+
+        ImageryType imageryType = getImageryType(imageryTypeAsString);
+        BoundingBox area = getArea(minLatitude, minLongitude, maxLatitude, maxLongitude);
+
+        return productService.getDensity(area, level, imageryType, fromDate, toDate);
+    }
+
+//  Without limit all ordered products are returned, otherwise one page of them from the in-memory leaderboard.
+//  With window (1h, 24h or 7d) only the orders placed within it are counted and one page is always returned.
+//  With missionName and/or imageryType only the products of the matching missions are ranked, one page is always returned.
+//  In the approximate mode (spaceagencydatahub.most-ordered.approximate) the pages are ranked by the heavy hitters,
+//  the first capacity products only, and missionName and imageryType are rejected with 400.
+    @GetMapping("/most-ordered")
+    public List<ProductDTO> getMostOrderedProductsDesc(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false, value = "window") String windowAsString,
+            @RequestParam(required = false) String missionName,
+            @RequestParam(required = false, value = "imageryType") String imageryTypeAsString
+    ) {
+        if (offset < 0) {
+            throw new ProductBadFindProductParameterException("Parameter offset can't be negative");
+        }
+
+        if (missionName != null || imageryTypeAsString != null) {
+            if (productService.isMostOrderedApproximate()) {
+                throw new ProductBadFindProductParameterException(
+                        "Parameters missionName and imageryType need the exact most ordered products");
+            }
+
+            if (windowAsString != null) {
+                throw new ProductBadFindProductParameterException(
+                        "Parameter window can't be combined with missionName or imageryType");
+            }
+
+            return productService.getMostOrderedProductsDesc(missionName, getImageryType(imageryTypeAsString),
+                    offset, getPageSize(limit));
+        }
+
+        if (windowAsString != null) {
+            return productService.getMostOrderedProductsDesc(getRankingWindow(windowAsString), offset,
+                    getPageSize(limit));
+        }
+
+        if (limit == null && offset == 0) return productService.getMostOrderedProductsDesc();
+
+        int pageSize = getPageSize(limit);
+
+        if (productService.isMostOrderedApproximate()) {
+            int capacity = productService.getApproximateMostOrderedCapacity();
+
+            if ((long) offset + pageSize > capacity) {
+                throw new ProductBadFindProductParameterException(
+                        "Parameters offset and limit have to add up to at most " + capacity);
+            }
+        }
+
+        return productService.getMostOrderedProductsDesc(offset, pageSize);
+    }
+
+//  Estimated most ordered products with the error bounds of the estimates, for order volumes too high
+//  for the exact rankings, only in the approximate mode
+    @GetMapping("/most-ordered/approximate")
+    public ApproximateMostOrderedDTO getApproximateMostOrderedProductsDesc(
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        if (!productService.isMostOrderedApproximate()) {
+            throw new ProductBadFindProductParameterException(
+                    "Approximate most ordered products need spaceagencydatahub.most-ordered.approximate=true");
+        }
+
+        int capacity = productService.getApproximateMostOrderedCapacity();
+
+        if (limit < 1 || limit > capacity) {
+            throw new ProductBadFindProductParameterException("Parameter limit has to be between 1 and " + capacity);
+        }
+
+        return productService.getApproximateMostOrderedProductsDesc(limit);
+    }
+
+//  Recomputes the order counts from the order items, returns the number of products whose count was wrong
+    @PostMapping("/order-counts/repair")
+    public int repairOrderCounts() {
+        return productService.repairOrderCounts();
+    }
+
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping
     public ProductDTO addProduct(@Valid @RequestBody ProductDTO productDTO, BindingResult bindingResult) {
@@ -148,4 +318,76 @@ public class ProductController {
 
         productService.deleteProductById(id);
     }
+
+    private int getPageSize(Integer limit) {
+        if (limit == null) return DEFAULT_PAGE_SIZE;
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ProductBadFindProductParameterException("Parameter limit has to be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        return limit;
+    }
+
+    private ProductCursor getCursor(String cursor) {
+        if (cursor == null) return null;
+
+        try {
+            return ProductCursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            throw new ProductBadFindProductParameterException("Cursor " + cursor + " is not valid");
+        }
+    }
+
+    private RankingWindow getRankingWindow(String windowAsString) {
+        try {
+            return RankingWindow.ofParameter(windowAsString);
+        } catch (IllegalArgumentException ex) {
+            throw new ProductBadFindProductParameterException("Window " + windowAsString
+                    + " does not exist, it has to be 1h, 24h or 7d");
+        }
+    }
+
+    private SpatialRelation getAreaRelation(String areaRelationAsString) {
+        if (areaRelationAsString == null) return SpatialRelation.INTERSECTS;
+
+        try {
+            return SpatialRelation.valueOf(areaRelationAsString.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ProductBadFindProductParameterException("Area relation " + areaRelationAsString
+                    + " does not exist");
+        }
+    }
+
+    private ImageryType getImageryType(String imageryTypeAsString) {
+        if (imageryTypeAsString == null) return null;
+
+        try {
+            return ImageryType.valueOf(imageryTypeAsString.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ProductBadFindProductParameterException("Imagery type " + imageryTypeAsString + " does not exist");
+        }
+    }
+
+//  Area search needs all four area coordinates, a partial area is rejected with 400
+    private BoundingBox getArea(Double minLatitude, Double minLongitude, Double maxLatitude, Double maxLongitude) {
+
+        if (minLatitude == null && minLongitude == null && maxLatitude == null && maxLongitude == null) {
+            return null;
+        }
+
+        if (minLatitude == null || minLongitude == null || maxLatitude == null || maxLongitude == null) {
+            throw new ProductBadFindProductParameterException(
+                    "Area search requires minLatitude, minLongitude, maxLatitude and maxLongitude");
+        }
+
+        BoundingBox area = new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+
+        if (!area.isValid()) {
+            throw new ProductBadFindProductParameterException("Area minimum coordinates can't be greater than " +
+                    "maximum coordinates");
+        }
+
+        return area;
+    }
 }
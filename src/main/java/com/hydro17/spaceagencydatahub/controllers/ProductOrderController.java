@@ -1,40 +1,184 @@
 package com.hydro17.spaceagencydatahub.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.exceptions.ProductOrderBadHistoryParameterException;
+import com.hydro17.spaceagencydatahub.exceptions.ProductOrderBadIdempotencyKeyException;
 import com.hydro17.spaceagencydatahub.exceptions.ProductOrderNoOrderItemsException;
 import com.hydro17.spaceagencydatahub.models.*;
+import com.hydro17.spaceagencydatahub.services.OrderIdempotencyService;
+import com.hydro17.spaceagencydatahub.services.ProductOrderIngestionService;
 import com.hydro17.spaceagencydatahub.services.ProductOrderService;
+import com.hydro17.spaceagencydatahub.utils.CsvWriter;
+import com.hydro17.spaceagencydatahub.utils.NdjsonWriter;
+import com.hydro17.spaceagencydatahub.utils.ProductOrderCursor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.Principal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/orders")
 public class ProductOrderController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final String GZIP_MEDIA_TYPE = "application/gzip";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
     private ProductOrderService productOrderService;
+    private ProductOrderIngestionService productOrderIngestionService;
+    private OrderIdempotencyService orderIdempotencyService;
+    private ObjectMapper objectMapper;
 
-    public ProductOrderController(ProductOrderService productOrderService) {
+    public ProductOrderController(ProductOrderService productOrderService,
+                                  ProductOrderIngestionService productOrderIngestionService,
+                                  OrderIdempotencyService orderIdempotencyService,
+                                  ObjectMapper objectMapper) {
         this.productOrderService = productOrderService;
+        this.productOrderIngestionService = productOrderIngestionService;
+        this.orderIdempotencyService = orderIdempotencyService;
+        this.objectMapper = objectMapper;
     }
 
+//  One page of the orders placed from (inclusive) to (exclusive), newest first, the cursor of the next page
+//  is in the X-Next-Cursor header
     @GetMapping("/history")
-    public List<ProductOrder> getAllProductOrdersOrderedByPlacedOnDesc() {
-        List<ProductOrder> productOrders = productOrderService.getAllProductOrdersOrderedByPlacedOnDesc();
-        return productOrders;
+    public List<ProductOrderHistoryDTO> getProductOrderHistory(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            HttpServletResponse response
+    ) {
+        validateDateRange(from, to);
+
+        ProductOrderHistoryPage page = productOrderService.getProductOrderHistoryPage(from, to, getPageSize(limit),
+                getCursor(cursor));
+
+        if (page.getNextCursor() != null) {
+            response.setHeader(NEXT_CURSOR_HEADER, page.getNextCursor().encode());
+        }
+
+        return page.getProductOrders();
     }
 
-    @ResponseStatus(HttpStatus.CREATED)
+//  All orders placed from (inclusive) to (exclusive) as a file, written while they are read from the database.
+//  CSV has a line per order item (order id, placed on, product id, price), NDJSON a line per order with its items.
+//  With gzip=true the file is compressed.
+    @GetMapping("/export")
+    public void exportProductOrders(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response
+    ) throws IOException {
+        validateDateRange(from, to);
+
+        if (!format.equals("csv") && !format.equals("ndjson")) {
+            throw new ProductOrderBadHistoryParameterException("Format " + format + " does not exist, it has to be csv or ndjson");
+        }
+
+        String fileName = "orders." + format + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? GZIP_MEDIA_TYPE : format.equals("csv") ? CsvWriter.MEDIA_TYPE : NdjsonWriter.MEDIA_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+
+        OutputStream outputStream = gzip ? new GZIPOutputStream(response.getOutputStream(), GZIP_BUFFER_SIZE)
+                : response.getOutputStream();
+
+        if (format.equals("csv")) {
+            try (CsvWriter writer = new CsvWriter(outputStream)) {
+                writer.write("order_id", "placed_on", "product_id", "price");
+
+                productOrderService.forEachExportedProductOrder(from, to, productOrder ->
+                        productOrder.getItems().forEach(item -> writer.write(productOrder.getId(),
+                                productOrder.getPlacedOn(), item.getProductId(), item.getPrice())));
+            }
+        } else {
+            try (NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream)) {
+                productOrderService.forEachExportedProductOrder(from, to, writer::write);
+            }
+        }
+    }
+
+//  With asynchronous order ingestion the validated order is queued and 202 with its id is returned at once,
+//  429 when too many orders are queued.
+//  An order sent again with the same Idempotency-Key header is not placed again, the first response is returned.
     @PostMapping
-    public ProductOrder addOrder(@RequestBody ProductOrderDTO productOrderDTO) {
+    public ResponseEntity<?> addOrder(@RequestBody ProductOrderDTO productOrderDTO,
+                                      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                      Principal principal) {
 
         if (productOrderDTO == null || productOrderDTO.getProductIds().size() == 0) {
             throw new ProductOrderNoOrderItemsException("Order is empty. Order has to contain at least one product.");
         }
 
+        if (idempotencyKey == null) return placeOrder(productOrderDTO);
+
+        if (idempotencyKey.trim().isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new ProductOrderBadIdempotencyKeyException(
+                    "Idempotency-Key has to have from 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+
+        return orderIdempotencyService.placeOrderOnce(principal.getName(), idempotencyKey,
+                productOrderDTO.getProductIds(), () -> placeOrder(productOrderDTO));
+    }
+
+    private ResponseEntity<?> placeOrder(ProductOrderDTO productOrderDTO) {
+
         ProductOrder productOrder = productOrderService.convertProductOrderDTOToProductOrder(productOrderDTO);
 
+        if (productOrderIngestionService.isEnabled()) {
+            return new ResponseEntity<>(productOrderIngestionService.enqueue(productOrder), HttpStatus.ACCEPTED);
+        }
+
         ProductOrder productOrderWithSetId = productOrderService.saveProductOrder(productOrder);
-        return productOrderWithSetId;
+        return new ResponseEntity<>(productOrderWithSetId, HttpStatus.CREATED);
+    }
+
+//  Whether an order accepted by the asynchronous order ingestion is still queued, placed or failed.
+//  A failed order is reported for spaceagencydatahub.order-ingestion.failed-status-ttl-minutes (a day by default)
+//  unless failed-status-capacity newer failures push it out, then it is 404 like an unknown order.
+    @GetMapping("/{id}/status")
+    public OrderIngestionStatusDTO getOrderStatus(@PathVariable long id) {
+        return productOrderIngestionService.getStatus(id);
+    }
+
+    private void validateDateRange(LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new ProductOrderBadHistoryParameterException("Parameter from has to be before to");
+        }
+    }
+
+    private int getPageSize(Integer limit) {
+        if (limit == null) return DEFAULT_PAGE_SIZE;
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ProductOrderBadHistoryParameterException("Parameter limit has to be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        return limit;
+    }
+
+    private ProductOrderCursor getCursor(String cursor) {
+        if (cursor == null) return null;
+
+        try {
+            return ProductOrderCursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            throw new ProductOrderBadHistoryParameterException("Cursor " + cursor + " is not valid");
+        }
     }
 }
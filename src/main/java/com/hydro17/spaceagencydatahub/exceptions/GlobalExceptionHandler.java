@@ -12,7 +12,8 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 public class GlobalExceptionHandler {
 
     @ResponseStatus(HttpStatus.NOT_FOUND)
-    @ExceptionHandler({MissionNotFoundException.class, ProductNotFoundException.class})
+    @ExceptionHandler({MissionNotFoundException.class, ProductNotFoundException.class,
+            ProductOrderNotFoundException.class})
     public ErrorResponse handleNotFoundException(RuntimeException ex) {
 
         ErrorResponse errorResponse = new ErrorResponse();
@@ -39,7 +40,8 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler({MissionNameNotUniqueException.class, MissionProductExistsException.class,
             ProductOrderNoOrderItemsException.class, ProductIsOrderedException.class,
-            ProductBadAcquisitionDateException.class, ProductBadFindProductParameterException.class})
+            ProductBadAcquisitionDateException.class, ProductBadFindProductParameterException.class,
+            ProductOrderBadIdempotencyKeyException.class, ProductOrderBadHistoryParameterException.class})
     public ResponseEntity<ErrorResponse> handleBadRequestException(RuntimeException ex) {
 
         ErrorResponse error = new ErrorResponse();
@@ -49,6 +51,26 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler
+    public ResponseEntity<ErrorResponse> handleUnprocessableEntityException(ProductOrderIdempotencyKeyReusedException ex) {
+
+        ErrorResponse error = new ErrorResponse();
+        error.setStatus(HttpStatus.UNPROCESSABLE_ENTITY.value());
+        error.setMessage(ex.getMessage());
+
+        return new ResponseEntity<>(error, HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<ErrorResponse> handleTooManyRequestsException(ProductOrderQueueFullException ex) {
+
+        ErrorResponse error = new ErrorResponse();
+        error.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        error.setMessage(ex.getMessage());
+
+        return new ResponseEntity<>(error, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
     @ExceptionHandler
     public ResponseEntity<ErrorResponse> handleExceptions(HttpMessageNotReadableException ex) {
 
@@ -0,0 +1,8 @@
+package com.hydro17.spaceagencydatahub.exceptions;
+
+public class ProductOrderBadHistoryParameterException extends RuntimeException {
+
+    public ProductOrderBadHistoryParameterException(String message) {
+        super(message);
+    }
+}
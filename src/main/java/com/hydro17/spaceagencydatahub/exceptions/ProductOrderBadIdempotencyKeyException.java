@@ -0,0 +1,8 @@
+package com.hydro17.spaceagencydatahub.exceptions;
+
+public class ProductOrderBadIdempotencyKeyException extends RuntimeException {
+
+    public ProductOrderBadIdempotencyKeyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.hydro17.spaceagencydatahub.exceptions;
+
+public class ProductOrderIdempotencyKeyReusedException extends RuntimeException {
+
+    public ProductOrderIdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.hydro17.spaceagencydatahub.exceptions;
+
+public class ProductOrderNotFoundException extends RuntimeException {
+
+    public ProductOrderNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.hydro17.spaceagencydatahub.exceptions;
+
+public class ProductOrderQueueFullException extends RuntimeException {
+
+    public ProductOrderQueueFullException(String message) {
+        super(message);
+    }
+}
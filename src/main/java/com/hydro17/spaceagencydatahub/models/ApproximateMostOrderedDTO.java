@@ -0,0 +1,24 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+//  Most ordered products estimated by a Count-Min Sketch. With probability 1 - delta every estimated
+//  order count exceeds the true one by at most maxOverestimate = epsilon * totalOrderItems.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApproximateMostOrderedDTO {
+
+    private double epsilon;
+    private double delta;
+    private long totalOrderItems;
+    private long maxOverestimate;
+
+    private List<EstimatedProductDTO> products;
+}
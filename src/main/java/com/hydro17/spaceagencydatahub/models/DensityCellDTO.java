@@ -0,0 +1,26 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class DensityCellDTO {
+
+    private double minLatitude;
+    private double minLongitude;
+    private double maxLatitude;
+    private double maxLongitude;
+    private long count;
+
+    public DensityCellDTO(BoundingBox cell, long count) {
+        this.minLatitude = cell.getMinLatitude();
+        this.minLongitude = cell.getMinLongitude();
+        this.maxLatitude = cell.getMaxLatitude();
+        this.maxLongitude = cell.getMaxLongitude();
+        this.count = count;
+    }
+}
@@ -0,0 +1,18 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstimatedProductDTO {
+
+    private ProductDTO product;
+
+    //  Never below the true order count, see ApproximateMostOrderedDTO for how much above it can be
+    private long estimatedOrderCount;
+}
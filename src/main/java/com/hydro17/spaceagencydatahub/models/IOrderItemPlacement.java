@@ -0,0 +1,11 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import java.time.LocalDateTime;
+
+public interface IOrderItemPlacement {
+    Long getOrderItemId();
+
+    Long getProductId();
+
+    LocalDateTime getPlacedOn();
+}
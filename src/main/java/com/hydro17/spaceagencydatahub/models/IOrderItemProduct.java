@@ -0,0 +1,7 @@
+package com.hydro17.spaceagencydatahub.models;
+
+public interface IOrderItemProduct {
+    Long getProductOrderId();
+
+    Long getProductId();
+}
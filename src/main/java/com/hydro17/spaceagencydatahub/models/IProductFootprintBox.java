@@ -0,0 +1,19 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import java.time.LocalDateTime;
+
+public interface IProductFootprintBox {
+    Long getProductId();
+
+    Long getMissionId();
+
+    LocalDateTime getAcquisitionDate();
+
+    Double getStartCoordinateLatitude();
+
+    Double getStartCoordinateLongitude();
+
+    Double getEndCoordinateLatitude();
+
+    Double getEndCoordinateLongitude();
+}
@@ -0,0 +1,9 @@
+package com.hydro17.spaceagencydatahub.models;
+
+public interface IProductOrderCount {
+    Long getProductId();
+
+    Long getOrderCount();
+
+    Long getMissionId();
+}
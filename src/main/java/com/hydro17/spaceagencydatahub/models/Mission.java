@@ -13,11 +13,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_mission_imagery_type", columnList = "imageryType"))
 @Getter
 @Setter
 public class Mission {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "mission_seq")
+    @SequenceGenerator(name = "mission_seq", sequenceName = "mission_seq", allocationSize = 50)
     private long id;
 
     //TODO check the 'unique' constraint
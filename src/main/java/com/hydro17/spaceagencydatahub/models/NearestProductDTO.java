@@ -0,0 +1,18 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearestProductDTO {
+
+    private ProductDTO product;
+
+    //  Planar distance in degrees from the searched point to the product footprint, 0 when the footprint contains it
+    private double distance;
+}
@@ -0,0 +1,44 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+//  Response of an order placed with an Idempotency-Key, replayed when the order is sent again with the same key
+@Entity
+@Table(indexes = @Index(name = "idx_order_idempotency_key_created_on", columnList = "createdOn"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class OrderIdempotencyKey {
+
+    //  User name and the Idempotency-Key header, keys of different users don't clash
+    @Id
+    private String idempotencyKey;
+
+    //  Hash of the ordered product ids, a key sent again with other products is rejected
+    @NotNull
+    private String requestHash;
+
+    private int responseStatus;
+
+    @NotNull
+    @Lob
+    private String responseBody;
+
+    @NotNull
+    private LocalDateTime createdOn;
+
+    public OrderIdempotencyKey(String idempotencyKey, String requestHash, int responseStatus, String responseBody,
+                               LocalDateTime createdOn) {
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+        this.responseStatus = responseStatus;
+        this.responseBody = responseBody;
+        this.createdOn = createdOn;
+    }
+}
@@ -0,0 +1,20 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import com.hydro17.spaceagencydatahub.utils.OrderIngestionState;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderIngestionStatusDTO {
+
+    private long orderId;
+    private OrderIngestionState state;
+
+    //  Why the order was not placed, only when it failed
+    private String message;
+}
@@ -7,15 +7,25 @@ import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 
 @Entity
+@EntityListeners({OrderedProductIndexListener.class, ProductLeaderboardListener.class,
+        ProductWindowRankingListener.class, ProductHeavyHittersListener.class})
+@Table(indexes = {
+        @Index(name = "idx_order_item_product", columnList = "product_id"),
+        @Index(name = "idx_order_item_product_order", columnList = "product_order_id")
+})
 @Getter
 @Setter
 public class OrderItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_seq")
+    @SequenceGenerator(name = "order_item_seq", sequenceName = "order_item_seq", allocationSize = 50)
     private long id;
 
-    @OneToOne
+    //  Lazy, so that an order item read with its order doesn't load the product, the id of the proxy is taken
+    //  from order_item.product_id
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id")
     private Product product;
 
     @ManyToOne
@@ -0,0 +1,20 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderItemExportDTO {
+
+    private long productId;
+
+    //  Current price of the product, prices are not recorded when an order is placed
+    private BigDecimal price;
+}
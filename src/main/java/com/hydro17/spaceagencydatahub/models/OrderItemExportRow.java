@@ -0,0 +1,18 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+//  Order item of the order export, with the fields of its order
+@Getter
+@AllArgsConstructor
+public class OrderItemExportRow {
+
+    private long productOrderId;
+    private LocalDateTime placedOn;
+    private long productId;
+    private BigDecimal price;
+}
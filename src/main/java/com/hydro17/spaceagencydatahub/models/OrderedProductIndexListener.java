@@ -0,0 +1,38 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import com.hydro17.spaceagencydatahub.services.OrderedProductIndexService;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+
+//  Adds the product of a saved order item to the ordered products once the order is committed,
+//  so a rolled back order never makes its products look ordered.
+//  Orders are never deleted through the API, so removals are not tracked.
+public class OrderedProductIndexListener {
+
+    private final OrderedProductIndexService orderedProductIndexService;
+
+    public OrderedProductIndexListener(OrderedProductIndexService orderedProductIndexService) {
+        this.orderedProductIndexService = orderedProductIndexService;
+    }
+
+    @PostPersist
+    public void orderItemSaved(OrderItem orderItem) {
+        if (orderItem.getProduct() == null) return;
+
+        long productId = orderItem.getProduct().getId();
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            orderedProductIndexService.add(productId);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                orderedProductIndexService.add(productId);
+            }
+        });
+    }
+}
@@ -1,5 +1,7 @@
 package com.hydro17.spaceagencydatahub.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.hydro17.spaceagencydatahub.utils.ImageryType;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -9,18 +11,28 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
+//  Indexes are created by the Flyway migrations, they are listed here to keep them next to the mapping
+@Table(indexes = {
+        @Index(name = "idx_product_cell_key", columnList = "cell_key"),
+        @Index(name = "idx_product_mission_acquisition_date", columnList = "mission_id, acquisitionDate"),
+        @Index(name = "idx_product_acquisition_date_id", columnList = "acquisitionDate, id"),
+        @Index(name = "idx_product_imagery_type_acquisition_date_id", columnList = "imageryType, acquisitionDate, id"),
+        @Index(name = "idx_product_order_count_id", columnList = "orderCount DESC, id")
+})
+@EntityListeners({ProductSpatialIndexListener.class, ProductDensityGridListener.class})
 @Getter
 @Setter
 public class Product {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     private long id;
 
     @NotNull
     private LocalDateTime acquisitionDate;
 
     @NotNull
-    @OneToOne(cascade = CascadeType.ALL)
+    @Embedded
     private ProductFootprint footprint;
 
     @NotNull
@@ -34,4 +46,20 @@ public class Product {
     @NotNull
     @JoinColumn(name="mission_id")
     private Mission mission;
+
+    //  imagery type of the mission, copied when the product is saved and by MissionService.updateMission,
+    //  so /find pages filtered by it are read in order from idx_product_imagery_type_acquisition_date_id
+    @JsonIgnore
+    @Column(nullable = false)
+    private ImageryType imageryType;
+
+    //  number of order items of the product, see ProductOrderService.saveProductOrder and ProductService.repairOrderCounts
+    @Column(nullable = false)
+    private long orderCount;
+
+    @PrePersist
+    @PreUpdate
+    void copyImageryTypeOfMission() {
+        if (mission != null) imageryType = mission.getImageryType();
+    }
 }
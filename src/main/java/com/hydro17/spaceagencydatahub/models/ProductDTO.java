@@ -2,6 +2,7 @@ package com.hydro17.spaceagencydatahub.models;
 
 import lombok.Data;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import javax.validation.constraints.NotNull;
@@ -11,6 +12,7 @@ import java.time.LocalDateTime;
 
 @Getter
 @Setter
+@NoArgsConstructor
 public class ProductDTO {
 
     private long id;
@@ -30,4 +32,18 @@ public class ProductDTO {
     @NotNull
     @Size(max=1024)
     private String url;
+
+    //  Used by the JPQL constructor expressions, so products read for display are never loaded as entities
+    public ProductDTO(long id, String missionName, LocalDateTime acquisitionDate,
+                      double startCoordinateLatitude, double startCoordinateLongitude,
+                      double endCoordinateLatitude, double endCoordinateLongitude,
+                      BigDecimal price, String url) {
+        this.id = id;
+        this.missionName = missionName;
+        this.acquisitionDate = acquisitionDate;
+        this.footprint = new ProductFootprint(startCoordinateLatitude, startCoordinateLongitude,
+                endCoordinateLatitude, endCoordinateLongitude);
+        this.price = price;
+        this.url = url;
+    }
 }
@@ -0,0 +1,60 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import com.hydro17.spaceagencydatahub.services.ProductDensityGridService;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import java.time.LocalDateTime;
+
+//  Keeps the pre-aggregated density grid in sync with product inserts and deletes once they are committed,
+//  so a rolled back transaction never changes the counts.
+//  Products are never updated through the API, so updates are not tracked.
+public class ProductDensityGridListener {
+
+    private final ProductDensityGridService productDensityGridService;
+
+    public ProductDensityGridListener(ProductDensityGridService productDensityGridService) {
+        this.productDensityGridService = productDensityGridService;
+    }
+
+    @PostPersist
+    public void productSaved(Product product) {
+        if (product.getFootprint() == null || product.getMission() == null) return;
+
+        long productId = product.getId();
+        BoundingBox footprintBox = product.getFootprint().toBoundingBox();
+        long missionId = product.getMission().getId();
+        LocalDateTime acquisitionDate = product.getAcquisitionDate();
+
+        afterCommit(() -> productDensityGridService.add(productId, footprintBox, missionId, acquisitionDate));
+    }
+
+    @PostRemove
+    public void productRemoved(Product product) {
+        if (product.getFootprint() == null || product.getMission() == null) return;
+
+        long productId = product.getId();
+        BoundingBox footprintBox = product.getFootprint().toBoundingBox();
+        long missionId = product.getMission().getId();
+        LocalDateTime acquisitionDate = product.getAcquisitionDate();
+
+        afterCommit(() -> productDensityGridService.remove(productId, footprintBox, missionId, acquisitionDate));
+    }
+
+    private void afterCommit(Runnable gridUpdate) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            gridUpdate.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                gridUpdate.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import com.hydro17.spaceagencydatahub.utils.ProductCursor;
+import com.hydro17.spaceagencydatahub.utils.SpatialRelation;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+//  Product search filters, a null field means no filtering by it
+@Getter
+@Setter
+public class ProductFilter {
+
+    private String missionName;
+    private ImageryType imageryType;
+    private LocalDateTime beforeDate;
+    private LocalDateTime afterDate;
+
+    //  used only if both are given
+    private Double latitude;
+    private Double longitude;
+
+    private BoundingBox area;
+    private SpatialRelation areaRelation = SpatialRelation.INTERSECTS;
+
+    private Collection<Long> productIds;
+
+    //  when both are given, products are sorted by the distance of their footprint to this point, nearest first
+    private Double nearestLatitude;
+    private Double nearestLongitude;
+
+    //  when limit is given, products are sorted by (acquisitionDate, id) unless they are sorted by distance,
+    //  and only products after the cursor are returned
+    private Integer limit;
+    private ProductCursor after;
+}
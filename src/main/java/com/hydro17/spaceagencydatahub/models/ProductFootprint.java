@@ -1,22 +1,23 @@
 package com.hydro17.spaceagencydatahub.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import com.hydro17.spaceagencydatahub.utils.SpatialCellKey;
 import lombok.*;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 
-@Entity
+//  Stored in the product row, so spatial predicates need no join and a product insert is a single statement
+@Embeddable
+@Access(AccessType.FIELD)
 @Getter
 @Setter
 @EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
 public class ProductFootprint {
 
-    @JsonIgnore
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private long id;
-
     @NotNull
     private double startCoordinateLatitude;
 
@@ -28,4 +29,21 @@ public class ProductFootprint {
 
     @NotNull
     private double endCoordinateLongitude;
+
+    //  Z-order key of the smallest cell enclosing the footprint, always derived from the coordinates
+    @JsonIgnore
+    @Access(AccessType.PROPERTY)
+    @Column(name = "cell_key", nullable = false)
+    public long getCellKey() {
+        return SpatialCellKey.ofBox(startCoordinateLatitude, startCoordinateLongitude,
+                endCoordinateLatitude, endCoordinateLongitude);
+    }
+
+    protected void setCellKey(long cellKey) {
+    }
+
+    public BoundingBox toBoundingBox() {
+        return new BoundingBox(startCoordinateLatitude, startCoordinateLongitude,
+                endCoordinateLatitude, endCoordinateLongitude);
+    }
 }
@@ -0,0 +1,37 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import com.hydro17.spaceagencydatahub.services.ProductHeavyHittersService;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+
+//  Counts the product of a saved order item in the heavy hitters once the order is committed.
+//  A Count-Min Sketch can't take counts back, so deleted order items are counted until the next load.
+public class ProductHeavyHittersListener {
+
+    private final ProductHeavyHittersService productHeavyHittersService;
+
+    public ProductHeavyHittersListener(ProductHeavyHittersService productHeavyHittersService) {
+        this.productHeavyHittersService = productHeavyHittersService;
+    }
+
+    @PostPersist
+    public void orderItemSaved(OrderItem orderItem) {
+        if (orderItem.getProduct() == null) return;
+
+        long productId = orderItem.getProduct().getId();
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            productHeavyHittersService.add(productId, 1);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                productHeavyHittersService.add(productId, 1);
+            }
+        });
+    }
+}
@@ -0,0 +1,50 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import com.hydro17.spaceagencydatahub.services.ProductLeaderboardService;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+
+//  Moves the product of a saved order item one order up in the leaderboard once the order is committed,
+//  the same increment that ProductOrderService makes to product.order_count in the order transaction,
+//  and one order down when the order item is deleted. Products keep their mission, so its id is taken
+//  from the product of the order item.
+public class ProductLeaderboardListener {
+
+    private final ProductLeaderboardService productLeaderboardService;
+
+    public ProductLeaderboardListener(ProductLeaderboardService productLeaderboardService) {
+        this.productLeaderboardService = productLeaderboardService;
+    }
+
+    @PostPersist
+    public void orderItemSaved(OrderItem orderItem) {
+        incrementAfterCommit(orderItem, 1);
+    }
+
+    @PostRemove
+    public void orderItemRemoved(OrderItem orderItem) {
+        incrementAfterCommit(orderItem, -1);
+    }
+
+    private void incrementAfterCommit(OrderItem orderItem, long increment) {
+        if (orderItem.getProduct() == null) return;
+
+        long productId = orderItem.getProduct().getId();
+        long missionId = orderItem.getProduct().getMission().getId();
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            productLeaderboardService.increment(productId, missionId, increment);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                productLeaderboardService.increment(productId, missionId, increment);
+            }
+        });
+    }
+}
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -13,13 +15,26 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 @Entity
+@Table(indexes = @Index(name = "idx_product_order_placed_on_id", columnList = "placedOn DESC, id DESC"))
 @Getter
 @Setter
 public class ProductOrder {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "product_order_seq")
+    @GenericGenerator(name = "product_order_seq",
+            strategy = "com.hydro17.spaceagencydatahub.models.ProductOrderIdGenerator",
+            parameters = {
+                    @Parameter(name = "sequence_name", value = "product_order_seq"),
+                    @Parameter(name = "increment_size", value = "50"),
+                    @Parameter(name = "optimizer", value = "pooled-lo")
+            })
     private long id;
 
+    //  Id taken by the order when it is saved, set when the id was reserved before, see ProductOrderIdGenerator
+    @JsonIgnore
+    @Transient
+    private Long reservedId;
+
     @NotNull
     private LocalDateTime placedOn;
 
@@ -27,6 +42,7 @@ public class ProductOrder {
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "productOrder")
     private List<OrderItem> orderItems = new ArrayList<>();
 
+    //  Read from the product proxies of the order items, which are not initialized by getId
     public List<Long> getProductIds() {
         return orderItems.stream()
                 .map(orderItem -> orderItem.getProduct().getId())
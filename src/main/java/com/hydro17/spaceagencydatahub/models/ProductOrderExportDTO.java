@@ -0,0 +1,25 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+//  Order of the order export with its products and their prices
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductOrderExportDTO {
+
+    private long id;
+    private LocalDateTime placedOn;
+    private List<OrderItemExportDTO> items = new ArrayList<>();
+
+    public ProductOrderExportDTO(long id, LocalDateTime placedOn) {
+        this.id = id;
+        this.placedOn = placedOn;
+    }
+}
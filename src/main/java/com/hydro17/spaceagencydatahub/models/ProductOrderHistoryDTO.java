@@ -0,0 +1,23 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+//  Order of the order history, serialized as ProductOrder is
+@Getter
+@Setter
+public class ProductOrderHistoryDTO {
+
+    private long id;
+    private LocalDateTime placedOn;
+    private List<Long> productIds = new ArrayList<>();
+
+    public ProductOrderHistoryDTO(long id, LocalDateTime placedOn) {
+        this.id = id;
+        this.placedOn = placedOn;
+    }
+}
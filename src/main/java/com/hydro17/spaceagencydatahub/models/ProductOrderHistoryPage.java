@@ -0,0 +1,16 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import com.hydro17.spaceagencydatahub.utils.ProductOrderCursor;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+//  One page of the order history, nextCursor is null on the last page
+@Getter
+@AllArgsConstructor
+public class ProductOrderHistoryPage {
+
+    private List<ProductOrderHistoryDTO> productOrders;
+    private ProductOrderCursor nextCursor;
+}
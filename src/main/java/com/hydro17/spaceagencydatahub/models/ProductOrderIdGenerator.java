@@ -0,0 +1,18 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.io.Serializable;
+
+//  Ids of product orders from product_order_seq, an order queued by ProductOrderIngestionService keeps the id
+//  reserved for it from the same sequence when it was accepted
+public class ProductOrderIdGenerator extends SequenceStyleGenerator {
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        Long reservedId = ((ProductOrder) object).getReservedId();
+
+        return reservedId != null ? reservedId : super.generate(session, object);
+    }
+}
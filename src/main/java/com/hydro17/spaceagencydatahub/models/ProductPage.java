@@ -0,0 +1,16 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import com.hydro17.spaceagencydatahub.utils.ProductCursor;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+//  One page of the product search, nextCursor is null on the last page
+@Getter
+@AllArgsConstructor
+public class ProductPage {
+
+    private List<ProductDTO> products;
+    private ProductCursor nextCursor;
+}
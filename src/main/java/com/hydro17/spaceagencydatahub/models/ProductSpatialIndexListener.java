@@ -0,0 +1,56 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import com.hydro17.spaceagencydatahub.services.ProductSpatialIndexService;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+//  Keeps the in-memory spatial index in sync with every product write, including writes made directly
+//  through ProductRepository. The index is changed once the write is committed, so a rolled back
+//  transaction never adds a product that wasn't saved or removes one that wasn't deleted.
+//  Hibernate creates this listener through the Spring bean container.
+public class ProductSpatialIndexListener {
+
+    private final ProductSpatialIndexService productSpatialIndexService;
+
+    public ProductSpatialIndexListener(ProductSpatialIndexService productSpatialIndexService) {
+        this.productSpatialIndexService = productSpatialIndexService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void productSaved(Product product) {
+        if (product.getFootprint() == null) return;
+
+        long productId = product.getId();
+        Long missionId = product.getMission() == null ? null : product.getMission().getId();
+        BoundingBox box = product.getFootprint().toBoundingBox();
+
+        afterCommit(() -> productSpatialIndexService.put(productId, missionId, box));
+    }
+
+    @PostRemove
+    public void productRemoved(Product product) {
+        long productId = product.getId();
+
+        afterCommit(() -> productSpatialIndexService.remove(productId));
+    }
+
+    private void afterCommit(Runnable indexUpdate) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            indexUpdate.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                indexUpdate.run();
+            }
+        });
+    }
+}
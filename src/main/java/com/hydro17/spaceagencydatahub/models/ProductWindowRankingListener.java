@@ -0,0 +1,51 @@
+package com.hydro17.spaceagencydatahub.models;
+
+import com.hydro17.spaceagencydatahub.services.ProductWindowRankingService;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import java.time.LocalDateTime;
+
+//  Counts a saved order item in the time windows of its order once the order is committed,
+//  and uncounts it when the order item is deleted
+public class ProductWindowRankingListener {
+
+    private final ProductWindowRankingService productWindowRankingService;
+
+    public ProductWindowRankingListener(ProductWindowRankingService productWindowRankingService) {
+        this.productWindowRankingService = productWindowRankingService;
+    }
+
+    @PostPersist
+    public void orderItemSaved(OrderItem orderItem) {
+        addAfterCommit(orderItem, 1);
+    }
+
+    @PostRemove
+    public void orderItemRemoved(OrderItem orderItem) {
+        addAfterCommit(orderItem, -1);
+    }
+
+    private void addAfterCommit(OrderItem orderItem, long increment) {
+        if (orderItem.getProduct() == null || orderItem.getProductOrder() == null
+                || orderItem.getProductOrder().getPlacedOn() == null) return;
+
+        long orderItemId = orderItem.getId();
+        long productId = orderItem.getProduct().getId();
+        LocalDateTime placedOn = orderItem.getProductOrder().getPlacedOn();
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            productWindowRankingService.add(orderItemId, productId, placedOn, increment);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                productWindowRankingService.add(orderItemId, productId, placedOn, increment);
+            }
+        });
+    }
+}
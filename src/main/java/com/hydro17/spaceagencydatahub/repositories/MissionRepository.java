@@ -1,8 +1,11 @@
 package com.hydro17.spaceagencydatahub.repositories;
 
 import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.utils.ImageryType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -14,4 +17,9 @@ public interface MissionRepository extends JpaRepository<Mission, Long> {
 
     @Query("SELECT m FROM Mission m WHERE m.name = :name AND m.id <> :id")
     Optional<Mission> findByNameAndNotEqualId(String name, Long id);
+
+//  Copies the imagery type of the mission to its products, see Product.imageryType
+    @Modifying
+    @Query("UPDATE Product p SET p.imageryType = :imageryType WHERE p.mission.id = :missionId")
+    int updateImageryTypeOfProducts(@Param("missionId") long missionId, @Param("imageryType") ImageryType imageryType);
 }
@@ -0,0 +1,34 @@
+package com.hydro17.spaceagencydatahub.repositories;
+
+import com.hydro17.spaceagencydatahub.models.OrderIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface OrderIdempotencyKeyRepository extends JpaRepository<OrderIdempotencyKey, String> {
+
+    //  A plain insert, unlike save() it fails on a key stored in the meantime instead of overwriting it
+    @Modifying
+    @Query(value = "INSERT INTO order_idempotency_key (idempotency_key, request_hash, response_status, response_body, " +
+            "created_on) VALUES (:#{#key.idempotencyKey}, :#{#key.requestHash}, :#{#key.responseStatus}, " +
+            ":#{#key.responseBody}, :#{#key.createdOn})", nativeQuery = true)
+    void insert(@Param("key") OrderIdempotencyKey key);
+
+    @Modifying
+    @Query("DELETE FROM OrderIdempotencyKey k WHERE k.idempotencyKey = :key AND k.createdOn < :createdBefore")
+    int deleteExpired(@Param("key") String key, @Param("createdBefore") LocalDateTime createdBefore);
+
+    //  Deletes the stored response unless it was replaced by one created after createdUntil
+    @Modifying
+    @Query("DELETE FROM OrderIdempotencyKey k WHERE k.idempotencyKey = :key AND k.createdOn <= :createdUntil")
+    int deleteCreatedUntil(@Param("key") String key, @Param("createdUntil") LocalDateTime createdUntil);
+
+    @Modifying
+    @Query("DELETE FROM OrderIdempotencyKey k WHERE k.createdOn < :createdBefore")
+    int deleteCreatedBefore(@Param("createdBefore") LocalDateTime createdBefore);
+}
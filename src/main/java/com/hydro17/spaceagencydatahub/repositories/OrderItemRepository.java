@@ -1,17 +1,31 @@
 package com.hydro17.spaceagencydatahub.repositories;
 
-import com.hydro17.spaceagencydatahub.models.IProductAndOrderCount;
+import com.hydro17.spaceagencydatahub.models.IOrderItemPlacement;
+import com.hydro17.spaceagencydatahub.models.IOrderItemProduct;
 import com.hydro17.spaceagencydatahub.models.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
 
-    @Query("SELECT p as product, COUNT(oi) as orderCount FROM OrderItem oi JOIN oi.product p " +
-            "GROUP BY p.id ORDER BY orderCount DESC")
-    List<IProductAndOrderCount> findAllProductAndOrderCountGroupedByProductIdOrderedByOrderCountDesc();
+    @Query("SELECT DISTINCT oi.product.id FROM OrderItem oi")
+    List<Long> findAllOrderedProductIds();
+
+//  The orders are found by idx_product_order_placed_on_id
+    @Query("SELECT oi.id AS orderItemId, oi.product.id AS productId, po.placedOn AS placedOn " +
+            "FROM OrderItem oi JOIN oi.productOrder po WHERE po.placedOn >= :placedOn")
+    List<IOrderItemPlacement> findAllOrderItemPlacementsSince(@Param("placedOn") LocalDateTime placedOn);
+
+//  Product ids of the orders in the order they were added, the order items are found by idx_order_item_product_order
+    @Query("SELECT oi.productOrder.id AS productOrderId, oi.product.id AS productId FROM OrderItem oi " +
+            "WHERE oi.productOrder.id IN :productOrderIds ORDER BY oi.id")
+    List<IOrderItemProduct> findAllOrderItemProductsByProductOrderIdIn(
+            @Param("productOrderIds") Collection<Long> productOrderIds);
 }
@@ -6,14 +6,13 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
-
 @Repository
-public interface ProductOrderRepository extends JpaRepository<ProductOrder, Long> {
+public interface ProductOrderRepository extends JpaRepository<ProductOrder, Long>, ProductOrderRepositoryCustom {
 
-    @Query("SELECT DISTINCT po FROM ProductOrder po LEFT JOIN FETCH po.orderItems ORDER BY po.placedOn DESC")
-    List<ProductOrder> findAllOrdersOrderedByPlacedOnDesc();
+    @Query("SELECT CASE WHEN COUNT(oi) > 0 THEN true ELSE false END FROM OrderItem oi WHERE oi.product.id = :id")
+    boolean existsOrderContainingProductWithGivenId(@Param("id") long id);
 
-    @Query("SELECT po FROM ProductOrder po JOIN po.orderItems oi JOIN oi.product p WHERE p.id = :id")
-    List<ProductOrder> findAllProductOrdersContainingProductWithGivenId(@Param("id") long id);
+    //  First of the 50 ids the sequence value stands for, as the pooled-lo optimizer of ProductOrderIdGenerator reads it
+    @Query(value = "SELECT NEXT VALUE FOR product_order_seq", nativeQuery = true)
+    long reserveProductOrderIdBlock();
 }
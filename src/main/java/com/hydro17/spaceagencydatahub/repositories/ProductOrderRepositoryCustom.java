@@ -0,0 +1,22 @@
+package com.hydro17.spaceagencydatahub.repositories;
+
+import com.hydro17.spaceagencydatahub.models.OrderItemExportRow;
+import com.hydro17.spaceagencydatahub.models.ProductOrderHistoryDTO;
+import com.hydro17.spaceagencydatahub.utils.ProductOrderCursor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface ProductOrderRepositoryCustom {
+
+//  Orders placed from (inclusive) to (exclusive) sorted by (placedOn, id) newest first, only those after the cursor
+//  and at most limit of them, without their product ids. Null from, to or after are not applied.
+    List<ProductOrderHistoryDTO> findHistoryPage(LocalDateTime from, LocalDateTime to, ProductOrderCursor after,
+                                                 int limit);
+
+//  Order items of the orders placed from (inclusive) to (exclusive), sorted by order id, read one by one from
+//  a forward-only cursor of a stateless session, so neither the entities nor the rows are kept.
+//  Null from or to are not applied. The stream has to be closed, it closes the session.
+    Stream<OrderItemExportRow> streamAllOrderItemsForExport(LocalDateTime from, LocalDateTime to);
+}
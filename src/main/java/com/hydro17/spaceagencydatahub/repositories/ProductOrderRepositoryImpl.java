@@ -0,0 +1,92 @@
+package com.hydro17.spaceagencydatahub.repositories;
+
+import com.hydro17.spaceagencydatahub.models.OrderItemExportRow;
+import com.hydro17.spaceagencydatahub.models.ProductOrderHistoryDTO;
+import com.hydro17.spaceagencydatahub.utils.ProductOrderCursor;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.Query;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class ProductOrderRepositoryImpl implements ProductOrderRepositoryCustom {
+
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+//  The rows are read from idx_product_order_placed_on_id in its order, starting at the cursor or at to
+    @Override
+    public List<ProductOrderHistoryDTO> findHistoryPage(LocalDateTime from, LocalDateTime to, ProductOrderCursor after,
+                                                        int limit) {
+        List<String> conditions = new ArrayList<>();
+
+        if (from != null) conditions.add("po.placedOn >= :from");
+        if (to != null) conditions.add("po.placedOn < :to");
+
+//      the first condition limits the index range, the second one skips the orders of the cursor time up to its id
+        if (after != null) {
+            conditions.add("po.placedOn <= :cursorPlacedOn");
+            conditions.add("(po.placedOn < :cursorPlacedOn OR po.id < :cursorProductOrderId)");
+        }
+
+        String jpql = "SELECT new com.hydro17.spaceagencydatahub.models.ProductOrderHistoryDTO(po.id, po.placedOn) " +
+                "FROM ProductOrder po" +
+                (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions)) +
+                " ORDER BY po.placedOn DESC, po.id DESC";
+
+        TypedQuery<ProductOrderHistoryDTO> query = entityManager.createQuery(jpql, ProductOrderHistoryDTO.class)
+                .setMaxResults(limit);
+
+        if (from != null) query.setParameter("from", from);
+        if (to != null) query.setParameter("to", to);
+
+        if (after != null) {
+            query.setParameter("cursorPlacedOn", after.getPlacedOn());
+            query.setParameter("cursorProductOrderId", after.getProductOrderId());
+        }
+
+        return query.getResultList();
+    }
+
+    @Override
+    public Stream<OrderItemExportRow> streamAllOrderItemsForExport(LocalDateTime from, LocalDateTime to) {
+        List<String> conditions = new ArrayList<>();
+
+        if (from != null) conditions.add("po.placedOn >= :from");
+        if (to != null) conditions.add("po.placedOn < :to");
+
+        String hql = "SELECT new com.hydro17.spaceagencydatahub.models.OrderItemExportRow(po.id, po.placedOn, p.id, p.price) " +
+                "FROM OrderItem oi JOIN oi.productOrder po JOIN oi.product p" +
+                (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions)) +
+                " ORDER BY po.id, oi.id";
+
+        StatelessSession session = entityManagerFactory.unwrap(SessionFactory.class).openStatelessSession();
+
+        try {
+            Query<OrderItemExportRow> query = session.createQuery(hql, OrderItemExportRow.class)
+                    .setFetchSize(STREAM_FETCH_SIZE);
+
+            if (from != null) query.setParameter("from", from);
+            if (to != null) query.setParameter("to", to);
+
+//          Hibernate reads the stream through forward-only ScrollableResults
+            return query.stream().onClose(session::close);
+        } catch (RuntimeException ex) {
+            session.close();
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.hydro17.spaceagencydatahub.repositories;
+
+import com.hydro17.spaceagencydatahub.models.ProductFilter;
+import com.hydro17.spaceagencydatahub.utils.SpatialCellKey;
+import com.hydro17.spaceagencydatahub.utils.SpatialRelation;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//  JPQL of the product search, one parameterised template per filter shape.
+//  The shape is the set of given filters plus what changes the structure of the query (the order of the dates,
+//  the area relation, an empty list of enclosing cell keys), so there are only a few dozen templates. A template
+//  is built once and the same JPQL string is reused with new bind values, so Hibernate translates it to SQL only
+//  once as well (its query plan cache is keyed by the JPQL string).
+//  Template lookups are counted in the product.query.templates metric, tagged with result hit or miss.
+//  Products are selected straight into ProductDTO together with the mission name, in a single SQL statement
+//  and without managed entities.
+@Component
+public class ProductQueryTemplates implements MeterBinder {
+
+    public static final String PRODUCT_DTO_SELECT = "SELECT new com.hydro17.spaceagencydatahub.models.ProductDTO(" +
+            "p.id, m.name, p.acquisitionDate, " +
+            "p.footprint.startCoordinateLatitude, p.footprint.startCoordinateLongitude, " +
+            "p.footprint.endCoordinateLatitude, p.footprint.endCoordinateLongitude, " +
+            "p.price, p.url)";
+
+    static final int MISSION_NAME = 1;
+    static final int IMAGERY_TYPE = 1 << 1;
+    static final int BEFORE_DATE = 1 << 2;
+    static final int AFTER_DATE = 1 << 3;
+    static final int DATES_BETWEEN = 1 << 4;
+    static final int POINT = 1 << 5;
+    static final int AREA = 1 << 6;
+    static final int AREA_WITHIN = 1 << 7;
+    static final int AREA_ENCLOSING_KEYS = 1 << 8;
+    static final int PRODUCT_IDS = 1 << 9;
+    static final int SORTED = 1 << 10;
+    static final int AFTER_CURSOR = 1 << 11;
+    static final int NEAREST = 1 << 12;
+
+    //  Squared distances of the footprint to the point along each axis, 0 when the footprint spans the coordinate
+    private static final String LATITUDE_DISTANCE_SQUARED = "CASE " +
+            "WHEN p.footprint.startCoordinateLatitude > :nearestLatitude THEN " +
+            "((p.footprint.startCoordinateLatitude - :nearestLatitude) * " +
+            "(p.footprint.startCoordinateLatitude - :nearestLatitude)) " +
+            "WHEN p.footprint.endCoordinateLatitude < :nearestLatitude THEN " +
+            "((p.footprint.endCoordinateLatitude - :nearestLatitude) * " +
+            "(p.footprint.endCoordinateLatitude - :nearestLatitude)) " +
+            "ELSE 0 END";
+    private static final String LONGITUDE_DISTANCE_SQUARED = "CASE " +
+            "WHEN p.footprint.startCoordinateLongitude > :nearestLongitude THEN " +
+            "((p.footprint.startCoordinateLongitude - :nearestLongitude) * " +
+            "(p.footprint.startCoordinateLongitude - :nearestLongitude)) " +
+            "WHEN p.footprint.endCoordinateLongitude < :nearestLongitude THEN " +
+            "((p.footprint.endCoordinateLongitude - :nearestLongitude) * " +
+            "(p.footprint.endCoordinateLongitude - :nearestLongitude)) " +
+            "ELSE 0 END";
+
+    private final Map<Integer, String> templatesByShape = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public String getTemplate(int shape) {
+        String template = templatesByShape.get(shape);
+
+        if (template != null) {
+            hits.incrementAndGet();
+            return template;
+        }
+
+        misses.incrementAndGet();
+
+        return templatesByShape.computeIfAbsent(shape, ProductQueryTemplates::buildTemplate);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return templatesByShape.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("product.query.templates", this, ProductQueryTemplates::getHits)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("product.query.templates", this, ProductQueryTemplates::getMisses)
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    static int shapeOf(ProductFilter filter) {
+        int shape = 0;
+
+        if (filter.getMissionName() != null) shape |= MISSION_NAME;
+        if (filter.getImageryType() != null) shape |= IMAGERY_TYPE;
+        if (filter.getBeforeDate() != null) shape |= BEFORE_DATE;
+        if (filter.getAfterDate() != null) shape |= AFTER_DATE;
+
+        if (filter.getBeforeDate() != null && filter.getAfterDate() != null
+                && filter.getBeforeDate().compareTo(filter.getAfterDate()) > 0) {
+            shape |= DATES_BETWEEN;
+        }
+
+        if (filter.getLatitude() != null && filter.getLongitude() != null) shape |= POINT;
+
+        if (filter.getArea() != null) {
+            shape |= AREA;
+
+            if (filter.getAreaRelation() == SpatialRelation.WITHIN) shape |= AREA_WITHIN;
+
+            if (!SpatialCellKey.ofArea(filter.getArea(), filter.getAreaRelation()).getExactKeys().isEmpty()) {
+                shape |= AREA_ENCLOSING_KEYS;
+            }
+        }
+
+        if (filter.getProductIds() != null) shape |= PRODUCT_IDS;
+
+        if (filter.getNearestLatitude() != null && filter.getNearestLongitude() != null) {
+            shape |= NEAREST;
+        } else if (filter.getLimit() != null) {
+            shape |= SORTED;
+        }
+
+        if (filter.getAfter() != null) shape |= AFTER_CURSOR;
+
+        return shape;
+    }
+
+    static void bindParameters(Query query, ProductFilter filter, int shape) {
+        if (has(shape, MISSION_NAME)) query.setParameter("missionName", filter.getMissionName());
+        if (has(shape, IMAGERY_TYPE)) query.setParameter("imageryType", filter.getImageryType());
+        if (has(shape, BEFORE_DATE)) query.setParameter("beforeDate", filter.getBeforeDate());
+        if (has(shape, AFTER_DATE)) query.setParameter("afterDate", filter.getAfterDate());
+
+        if (has(shape, POINT)) {
+            query.setParameter("pointCellKeys", SpatialCellKey.ofPointAncestors(filter.getLatitude(), filter.getLongitude()));
+            query.setParameter("latitude", filter.getLatitude());
+            query.setParameter("longitude", filter.getLongitude());
+        }
+
+        if (has(shape, AREA)) {
+            SpatialCellKey.KeyRanges keyRanges = SpatialCellKey.ofArea(filter.getArea(), filter.getAreaRelation());
+
+            query.setParameter("areaRangeStart", keyRanges.getRangeStart());
+            query.setParameter("areaRangeEnd", keyRanges.getRangeEnd());
+            if (has(shape, AREA_ENCLOSING_KEYS)) query.setParameter("areaEnclosingKeys", keyRanges.getExactKeys());
+            query.setParameter("minLatitude", filter.getArea().getMinLatitude());
+            query.setParameter("minLongitude", filter.getArea().getMinLongitude());
+            query.setParameter("maxLatitude", filter.getArea().getMaxLatitude());
+            query.setParameter("maxLongitude", filter.getArea().getMaxLongitude());
+        }
+
+        if (has(shape, PRODUCT_IDS)) query.setParameter("productIds", filter.getProductIds());
+
+        if (has(shape, NEAREST)) {
+            query.setParameter("nearestLatitude", filter.getNearestLatitude());
+            query.setParameter("nearestLongitude", filter.getNearestLongitude());
+        }
+
+        if (has(shape, AFTER_CURSOR)) {
+            query.setParameter("cursorAcquisitionDate", filter.getAfter().getAcquisitionDate());
+            query.setParameter("cursorProductId", filter.getAfter().getProductId());
+        }
+    }
+
+    private static String buildTemplate(int shape) {
+        StringBuilder jpql = new StringBuilder(PRODUCT_DTO_SELECT).append(" FROM Product p JOIN p.mission m");
+        List<String> conditions = new ArrayList<>();
+
+        if (has(shape, MISSION_NAME)) conditions.add("m.name = :missionName");
+        if (has(shape, IMAGERY_TYPE)) conditions.add("p.imageryType = :imageryType");
+
+//      if both dates are given then:
+//          - if beforeDate is less than or equal to afterDate then
+//            we get products before beforeDate and after afterDate
+//          - if beforeDate is greater than afterDate then
+//            we get products between these dates
+        if (has(shape, BEFORE_DATE) && has(shape, AFTER_DATE)) {
+            conditions.add(has(shape, DATES_BETWEEN)
+                    ? "p.acquisitionDate < :beforeDate AND p.acquisitionDate > :afterDate"
+                    : "(p.acquisitionDate < :beforeDate OR p.acquisitionDate > :afterDate)");
+        } else if (has(shape, BEFORE_DATE)) {
+            conditions.add("p.acquisitionDate < :beforeDate");
+        } else if (has(shape, AFTER_DATE)) {
+            conditions.add("p.acquisitionDate > :afterDate");
+        }
+
+//      The cell key predicates let the database use the index on product.cell_key,
+//      the coordinate predicates then recheck the candidates exactly
+        if (has(shape, POINT)) {
+            conditions.add("p.footprint.cellKey IN :pointCellKeys");
+            conditions.add("p.footprint.startCoordinateLatitude <= :latitude");
+            conditions.add("p.footprint.endCoordinateLatitude >= :latitude");
+            conditions.add("p.footprint.startCoordinateLongitude <= :longitude");
+            conditions.add("p.footprint.endCoordinateLongitude >= :longitude");
+        }
+
+        if (has(shape, AREA)) {
+            conditions.add(has(shape, AREA_ENCLOSING_KEYS)
+                    ? "(p.footprint.cellKey BETWEEN :areaRangeStart AND :areaRangeEnd OR p.footprint.cellKey IN :areaEnclosingKeys)"
+                    : "p.footprint.cellKey BETWEEN :areaRangeStart AND :areaRangeEnd");
+
+            if (has(shape, AREA_WITHIN)) {
+                conditions.add("p.footprint.startCoordinateLatitude >= :minLatitude");
+                conditions.add("p.footprint.endCoordinateLatitude <= :maxLatitude");
+                conditions.add("p.footprint.startCoordinateLongitude >= :minLongitude");
+                conditions.add("p.footprint.endCoordinateLongitude <= :maxLongitude");
+            } else {
+                conditions.add("p.footprint.startCoordinateLatitude <= :maxLatitude");
+                conditions.add("p.footprint.endCoordinateLatitude >= :minLatitude");
+                conditions.add("p.footprint.startCoordinateLongitude <= :maxLongitude");
+                conditions.add("p.footprint.endCoordinateLongitude >= :minLongitude");
+            }
+
+            conditions.add("p.footprint.startCoordinateLatitude <= p.footprint.endCoordinateLatitude");
+            conditions.add("p.footprint.startCoordinateLongitude <= p.footprint.endCoordinateLongitude");
+        }
+
+        if (has(shape, PRODUCT_IDS)) conditions.add("p.id IN :productIds");
+
+//      Keyset pagination: the next page starts right after the last (acquisitionDate, id) of the previous one,
+//      so the rows of the previous pages are never read again, unlike with OFFSET. The redundant >= condition
+//      is the one the database can use as an index range on acquisition_date.
+        if (has(shape, AFTER_CURSOR)) {
+            conditions.add("p.acquisitionDate >= :cursorAcquisitionDate");
+            conditions.add("(p.acquisitionDate > :cursorAcquisitionDate " +
+                    "OR (p.acquisitionDate = :cursorAcquisitionDate AND p.id > :cursorProductId))");
+        }
+
+        if (!conditions.isEmpty()) jpql.append(" WHERE ").append(String.join(" AND ", conditions));
+
+//      With the imagery type fixed, sorting by it first doesn't change the order, but it makes the order of
+//      idx_product_imagery_type_acquisition_date_id, so H2 reads the page from it without sorting
+        if (has(shape, SORTED)) {
+            jpql.append(has(shape, IMAGERY_TYPE)
+                    ? " ORDER BY p.imageryType, p.acquisitionDate, p.id"
+                    : " ORDER BY p.acquisitionDate, p.id");
+        }
+
+//      The squared distance orders the products as the distance does, the database keeps only the limit nearest
+        if (has(shape, NEAREST)) {
+            jpql.append(" ORDER BY ").append(LATITUDE_DISTANCE_SQUARED).append(" + ").append(LONGITUDE_DISTANCE_SQUARED)
+                    .append(", p.id");
+        }
+
+        return jpql.toString();
+    }
+
+    private static boolean has(int shape, int filter) {
+        return (shape & filter) != 0;
+    }
+}
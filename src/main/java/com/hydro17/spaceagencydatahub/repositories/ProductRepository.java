@@ -1,12 +1,54 @@
 package com.hydro17.spaceagencydatahub.repositories;
 
+import com.hydro17.spaceagencydatahub.models.IProductFootprintBox;
+import com.hydro17.spaceagencydatahub.models.IProductOrderCount;
 import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductDTO;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
+
+    @Query(ProductQueryTemplates.PRODUCT_DTO_SELECT + " FROM Product p JOIN p.mission m")
+    List<ProductDTO> findAllProductDTOs();
+
+    @Query(ProductQueryTemplates.PRODUCT_DTO_SELECT + " FROM Product p JOIN p.mission m WHERE p.id = :id")
+    Optional<ProductDTO> findProductDTOById(@Param("id") long id);
+
+    //  The missions are fetched in the same query, the order item listeners read them
+    @Query("SELECT p FROM Product p JOIN FETCH p.mission WHERE p.id IN :ids")
+    List<Product> findAllWithMissionByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p.id AS productId, p.mission.id AS missionId, p.acquisitionDate AS acquisitionDate, " +
+            "p.footprint.startCoordinateLatitude AS startCoordinateLatitude, " +
+            "p.footprint.startCoordinateLongitude AS startCoordinateLongitude, " +
+            "p.footprint.endCoordinateLatitude AS endCoordinateLatitude, " +
+            "p.footprint.endCoordinateLongitude AS endCoordinateLongitude FROM Product p")
+    List<IProductFootprintBox> findAllProductFootprintBoxes();
+
+//  Reads idx_product_order_count_id in its order, no order item is scanned
+    @Query(ProductQueryTemplates.PRODUCT_DTO_SELECT + " FROM Product p JOIN p.mission m " +
+            "WHERE p.orderCount > 0 ORDER BY p.orderCount DESC, p.id")
+    List<ProductDTO> findAllProductDTOsOrderedByOrderCountDesc();
+
+    @Query("SELECT p.id AS productId, p.orderCount AS orderCount, p.mission.id AS missionId FROM Product p " +
+            "WHERE p.orderCount > 0")
+    List<IProductOrderCount> findAllProductOrderCounts();
+
+    @Modifying
+    @Query("UPDATE Product p SET p.orderCount = p.orderCount + :increment WHERE p.id IN :ids")
+    int incrementOrderCounts(@Param("ids") Collection<Long> ids, @Param("increment") long increment);
+
+//  Products whose order count differs from the number of their order items, orderCount is the difference
+    @Query("SELECT p.id AS productId, COUNT(oi) - p.orderCount AS orderCount, p.mission.id AS missionId " +
+            "FROM Product p LEFT JOIN OrderItem oi ON oi.product = p " +
+            "GROUP BY p.id, p.orderCount, p.mission.id HAVING COUNT(oi) <> p.orderCount")
+    List<IProductOrderCount> findAllOrderCountErrors();
 }
@@ -0,0 +1,16 @@
+package com.hydro17.spaceagencydatahub.repositories;
+
+import com.hydro17.spaceagencydatahub.models.ProductDTO;
+import com.hydro17.spaceagencydatahub.models.ProductFilter;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface ProductRepositoryCustom {
+
+    List<ProductDTO> findAllByFilter(ProductFilter filter);
+
+//  Matching products read one by one from a forward-only cursor, so memory does not grow with the number
+//  of rows. It has to be consumed in a transaction and closed.
+    Stream<ProductDTO> streamAllByFilter(ProductFilter filter);
+}
@@ -0,0 +1,51 @@
+package com.hydro17.spaceagencydatahub.repositories;
+
+import com.hydro17.spaceagencydatahub.models.ProductDTO;
+import com.hydro17.spaceagencydatahub.models.ProductFilter;
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ProductQueryTemplates productQueryTemplates;
+
+    public ProductRepositoryImpl(ProductQueryTemplates productQueryTemplates) {
+        this.productQueryTemplates = productQueryTemplates;
+    }
+
+    @Override
+    public List<ProductDTO> findAllByFilter(ProductFilter filter) {
+        return createQuery(filter).getResultList();
+    }
+
+    @Override
+    public Stream<ProductDTO> streamAllByFilter(ProductFilter filter) {
+        TypedQuery<ProductDTO> query = createQuery(filter)
+                .setHint(QueryHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true);
+
+//      Hibernate reads the stream through forward-only ScrollableResults
+        return query.getResultStream();
+    }
+
+    private TypedQuery<ProductDTO> createQuery(ProductFilter filter) {
+        int shape = ProductQueryTemplates.shapeOf(filter);
+
+        TypedQuery<ProductDTO> query = entityManager.createQuery(productQueryTemplates.getTemplate(shape), ProductDTO.class);
+        ProductQueryTemplates.bindParameters(query, filter, shape);
+
+        if (filter.getLimit() != null) query.setMaxResults(filter.getLimit());
+
+        return query;
+    }
+}
@@ -24,8 +24,11 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
         http.authorizeRequests()
                 .antMatchers("/api/missions/**").hasRole("CONTENT_MANAGER")
                 .antMatchers("/api/products/find").hasRole("CUSTOMER")
+                .antMatchers("/api/products/nearest").hasRole("CUSTOMER")
+                .antMatchers("/api/products/density").hasRole("CUSTOMER")
                 .antMatchers("/api/products/**").hasRole("CONTENT_MANAGER")
                 .antMatchers("/api/orders/**").hasRole("CUSTOMER")
+                .antMatchers("/actuator/**").hasRole("CONTENT_MANAGER")
                 .antMatchers("/h2-console/**").permitAll()
                 .and().httpBasic();
 
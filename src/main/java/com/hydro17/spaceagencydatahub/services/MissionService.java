@@ -49,6 +49,10 @@ public class MissionService {
 //      Controller already checked that the mission with the given id exists so we can use get on this optional
         Mission mission = missionRepository.findById(missionChanged.getId()).get();
 
+        if (mission.getImageryType() != missionChanged.getImageryType()) {
+            missionRepository.updateImageryTypeOfProducts(mission.getId(), missionChanged.getImageryType());
+        }
+
         mission.setName(missionChanged.getName());
         mission.setImageryType(missionChanged.getImageryType());
         mission.setStartDate(missionChanged.getStartDate());
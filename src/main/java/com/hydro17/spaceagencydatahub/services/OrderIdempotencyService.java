@@ -0,0 +1,284 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.exceptions.ProductOrderIdempotencyKeyReusedException;
+import com.hydro17.spaceagencydatahub.exceptions.ProductOrderNotFoundException;
+import com.hydro17.spaceagencydatahub.models.OrderIdempotencyKey;
+import com.hydro17.spaceagencydatahub.models.OrderIngestionStatusDTO;
+import com.hydro17.spaceagencydatahub.repositories.OrderIdempotencyKeyRepository;
+import com.hydro17.spaceagencydatahub.utils.OrderIngestionState;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+//  Orders placed with an Idempotency-Key header are placed once per key, a retry gets the stored response.
+//  The responses are kept in the order_idempotency_key table for ttl-minutes, so they survive a restart,
+//  and the cache-size most recently used ones in memory, so a retry is usually answered without the database.
+//  The order and its response are saved in one transaction. Duplicates arriving while the first request is
+//  running wait for its response, duplicates arriving at another instance fail on the primary key and replay
+//  the response stored by the first one.
+//  An order queued by the asynchronous order ingestion is stored as its 202 response, which only records the order
+//  id, the order is queued once its response is committed, so a response that can't be stored leaves no order. A retry gets the current ingestion status of the order instead, and when the order failed the key is released
+//  and the retry places the order again. An order queued by another instance is unknown here, its stored response
+//  is replayed as it is.
+//  The number of cached responses is exposed in the product.order.idempotency.cache.size metric.
+@Service
+public class OrderIdempotencyService implements MeterBinder {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final OrderIdempotencyKeyRepository orderIdempotencyKeyRepository;
+    private final ProductOrderIngestionService productOrderIngestionService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlMinutes;
+
+    //  Least recently used first, guarded by itself
+    private final Map<String, OrderIdempotencyKey> cache;
+
+    //  Keys whose order is being placed, completed with the stored response
+    private final Map<String, CompletableFuture<OrderIdempotencyKey>> inFlight = new ConcurrentHashMap<>();
+
+    public OrderIdempotencyService(OrderIdempotencyKeyRepository orderIdempotencyKeyRepository,
+                                   ProductOrderIngestionService productOrderIngestionService,
+                                   ObjectMapper objectMapper,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${spaceagencydatahub.idempotency.cache-size:10000}") int cacheSize,
+                                   @Value("${spaceagencydatahub.idempotency.ttl-minutes:1440}") long ttlMinutes) {
+        this.orderIdempotencyKeyRepository = orderIdempotencyKeyRepository;
+        this.productOrderIngestionService = productOrderIngestionService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlMinutes = ttlMinutes;
+        this.cache = new LinkedHashMap<String, OrderIdempotencyKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OrderIdempotencyKey> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+//  Places the order with placeOrder unless the user already did it with the key, then it returns the stored
+//  response with the Idempotent-Replayed header. Failed orders, also queued ones that failed to be saved, are not
+//  replayed, they can be sent again.
+//  Throws ProductOrderIdempotencyKeyReusedException when the key was used for other products.
+    public ResponseEntity<?> placeOrderOnce(String userName, String idempotencyKey, List<Long> productIds,
+                                            Supplier<ResponseEntity<?>> placeOrder) {
+        String key = userName + ":" + idempotencyKey;
+        String requestHash = hash(productIds);
+
+        OrderIdempotencyKey stored = findStored(key);
+        if (stored != null && !isOrderFailed(stored)) return replay(stored, requestHash);
+
+        CompletableFuture<OrderIdempotencyKey> placing = new CompletableFuture<>();
+        CompletableFuture<OrderIdempotencyKey> placedByOther = inFlight.putIfAbsent(key, placing);
+        if (placedByOther != null) return replay(await(placedByOther), requestHash);
+
+        try {
+//          the first request may have finished between findStored and putIfAbsent
+            stored = findStored(key);
+            boolean replayed = stored != null && !isOrderFailed(stored);
+
+            if (!replayed) {
+                try {
+                    stored = placeAndStore(key, requestHash, placeOrder, stored);
+                } catch (DataIntegrityViolationException e) {
+                    stored = orderIdempotencyKeyRepository.findById(key).orElseThrow(() -> e);
+                    replayed = true;
+                }
+            }
+
+            placing.complete(stored);
+            cache(stored);
+
+            return replayed ? replay(stored, requestHash) : toResponse(stored);
+        } catch (RuntimeException e) {
+            placing.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, placing);
+        }
+    }
+
+//  Deletes the stored responses older than ttl-minutes, every hour by default
+    @Scheduled(cron = "${spaceagencydatahub.idempotency.purge-cron:0 0 * * * *}")
+    @Transactional
+    public int purgeExpired() {
+        LocalDateTime createdBefore = LocalDateTime.now().minusMinutes(ttlMinutes);
+
+        synchronized (cache) {
+            cache.values().removeIf(stored -> stored.getCreatedOn().isBefore(createdBefore));
+        }
+
+        return orderIdempotencyKeyRepository.deleteCreatedBefore(createdBefore);
+    }
+
+//  Forgets the cached responses as a restart does, the stored ones are still replayed
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("product.order.idempotency.cache.size", this, OrderIdempotencyService::getCacheSize)
+                .register(registry);
+    }
+
+    //  failed is the stored response of a failed order, it is deleted with the key it holds
+    private OrderIdempotencyKey placeAndStore(String key, String requestHash, Supplier<ResponseEntity<?>> placeOrder,
+                                              OrderIdempotencyKey failed) {
+        return transactionTemplate.execute(status -> {
+            orderIdempotencyKeyRepository.deleteExpired(key, LocalDateTime.now().minusMinutes(ttlMinutes));
+
+            if (failed != null) orderIdempotencyKeyRepository.deleteCreatedUntil(key, failed.getCreatedOn());
+
+            ResponseEntity<?> response = placeOrder.get();
+
+            OrderIdempotencyKey stored = new OrderIdempotencyKey(key, requestHash, response.getStatusCodeValue(),
+                    toJson(response.getBody()), LocalDateTime.now());
+            orderIdempotencyKeyRepository.insert(stored);
+
+            return stored;
+        });
+    }
+
+    //  Cached or stored response of the key, null when there is none or it expired
+    private OrderIdempotencyKey findStored(String key) {
+        OrderIdempotencyKey stored;
+
+        synchronized (cache) {
+            stored = cache.get(key);
+        }
+
+        if (stored == null) {
+            stored = orderIdempotencyKeyRepository.findById(key).orElse(null);
+            if (stored != null) cache(stored);
+        }
+
+        if (stored == null || isExpired(stored)) return null;
+
+        return stored;
+    }
+
+    private void cache(OrderIdempotencyKey stored) {
+        synchronized (cache) {
+            cache.put(stored.getIdempotencyKey(), stored);
+        }
+    }
+
+    //  An expired response may be in the table until the next purge, it is deleted when the key is used again
+    private boolean isExpired(OrderIdempotencyKey stored) {
+        return stored.getCreatedOn().isBefore(LocalDateTime.now().minusMinutes(ttlMinutes));
+    }
+
+    private boolean isOrderFailed(OrderIdempotencyKey stored) {
+        OrderIngestionStatusDTO ingestionStatus = getIngestionStatus(stored);
+
+        return ingestionStatus != null && ingestionStatus.getState() == OrderIngestionState.FAILED;
+    }
+
+    //  Current status of the order of a stored 202 response, null for other responses and for orders queued by
+    //  another instance
+    private OrderIngestionStatusDTO getIngestionStatus(OrderIdempotencyKey stored) {
+        if (stored.getResponseStatus() != HttpStatus.ACCEPTED.value()) return null;
+
+        try {
+            long orderId = objectMapper.readValue(stored.getResponseBody(), OrderIngestionStatusDTO.class).getOrderId();
+            return productOrderIngestionService.getStatus(orderId);
+        } catch (ProductOrderNotFoundException e) {
+            return null;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored order response can't be read", e);
+        }
+    }
+
+    private ResponseEntity<?> replay(OrderIdempotencyKey stored, String requestHash) {
+        if (!stored.getRequestHash().equals(requestHash)) {
+            throw new ProductOrderIdempotencyKeyReusedException(
+                    "Idempotency-Key was already used for an order with other products");
+        }
+
+        OrderIngestionStatusDTO ingestionStatus = getIngestionStatus(stored);
+
+        return ResponseEntity.status(stored.getResponseStatus())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .body(ingestionStatus == null ? stored.getResponseBody() : toJson(ingestionStatus));
+    }
+
+    private ResponseEntity<?> toResponse(OrderIdempotencyKey stored) {
+        return ResponseEntity.status(stored.getResponseStatus())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(stored.getResponseBody());
+    }
+
+    //  Response of the request placing the order, its exception when it failed
+    private OrderIdempotencyKey await(CompletableFuture<OrderIdempotencyKey> placing) {
+        try {
+            return placing.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Order response can't be stored", e);
+        }
+    }
+
+    //  SHA-256 of the product ids in ascending order
+    private String hash(List<Long> productIds) {
+        List<Long> sortedProductIds = new ArrayList<>(productIds);
+        sortedProductIds.sort(null);
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(sortedProductIds.toString().getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest) {
+                hash.append(String.format("%02x", b));
+            }
+
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,31 +1,40 @@
 package com.hydro17.spaceagencydatahub.services;
 
-import com.hydro17.spaceagencydatahub.models.IProductAndOrderCount;
-import com.hydro17.spaceagencydatahub.models.Product;
 import com.hydro17.spaceagencydatahub.repositories.OrderItemRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-
 @Service
-public class OrderItemService {
+public class OrderItemService implements SmartInitializingSingleton {
 
     private OrderItemRepository orderItemRepository;
+    private OrderedProductIndexService orderedProductIndexService;
+    private ProductWindowRankingService productWindowRankingService;
 
-    public OrderItemService(OrderItemRepository orderItemRepository) {
+    public OrderItemService(OrderItemRepository orderItemRepository,
+                            OrderedProductIndexService orderedProductIndexService,
+                            ProductWindowRankingService productWindowRankingService) {
         this.orderItemRepository = orderItemRepository;
+        this.orderedProductIndexService = orderedProductIndexService;
+        this.productWindowRankingService = productWindowRankingService;
     }
 
-    public List<IProductAndOrderCount> getAllProductAndOrderCountGroupedByProductIdOrderedByOrderCountDesc() {
-        return orderItemRepository.findAllProductAndOrderCountGroupedByProductIdOrderedByOrderCountDesc();
+//  The ordered products are loaded before the web server is started, until then every product would look
+//  unordered, so an ordered product could be deleted and its URL would be hidden from the customers who ordered it.
+//  So are the window rankings, which would be empty.
+    @Override
+    public void afterSingletonsInstantiated() {
+        loadOrderedProductIndex();
+        loadProductWindowRankings();
     }
 
-    public List<Product> convertAllProductAndOrderCountToProduct(List<IProductAndOrderCount> productAndOrderCounts) {
-        List<Product> products = new ArrayList<>();
-
-        productAndOrderCounts.forEach(productAndOrderCount -> products.add(productAndOrderCount.getProduct()));
+    public void loadOrderedProductIndex() {
+        orderedProductIndexService.load(orderItemRepository.findAllOrderedProductIds());
+    }
 
-        return products;
+    public void loadProductWindowRankings() {
+        productWindowRankingService.startLoading();
+        productWindowRankingService.load(orderItemRepository.findAllOrderItemPlacementsSince(
+                productWindowRankingService.getOldestRankedPlacedOn()));
     }
 }
@@ -0,0 +1,77 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.utils.ProductIdBitmap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//  Ids of products that are in at least one order, so whether a product is ordered is a bit test
+//  instead of a query. It is bulk loaded at startup by OrderItemService and kept up to date by
+//  OrderedProductIndexListener. Its cardinality and estimated size are exposed in the
+//  product.ordered.bitmap.cardinality and product.ordered.bitmap.size metrics.
+@Service
+public class OrderedProductIndexService implements MeterBinder {
+
+    private final ProductIdBitmap orderedProductIds = new ProductIdBitmap();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //  Ids are only added, so products ordered while the ids are read from the database are not lost
+    public void load(List<Long> productIds) {
+        lock.writeLock().lock();
+        try {
+            productIds.forEach(orderedProductIds::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(long productId) {
+        lock.writeLock().lock();
+        try {
+            orderedProductIds.add(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isOrdered(long productId) {
+        lock.readLock().lock();
+        try {
+            return orderedProductIds.contains(productId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getCardinality() {
+        lock.readLock().lock();
+        try {
+            return orderedProductIds.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getSizeInBytes() {
+        lock.readLock().lock();
+        try {
+            return orderedProductIds.getSizeInBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("product.ordered.bitmap.cardinality", this, OrderedProductIndexService::getCardinality)
+                .register(registry);
+        Gauge.builder("product.ordered.bitmap.size", this, OrderedProductIndexService::getSizeInBytes)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
@@ -0,0 +1,133 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.models.DensityCellDTO;
+import com.hydro17.spaceagencydatahub.models.IProductFootprintBox;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import com.hydro17.spaceagencydatahub.utils.DensityGrid;
+import com.hydro17.spaceagencydatahub.utils.SpatialCellKey;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//  Product counts per grid cell, counted by the center of the product footprint.
+//  It is bulk loaded by ProductService before the web server is started and kept up to date by
+//  ProductDensityGridListener. The products added or removed while a load reads the footprints are recorded,
+//  the load counts them as they are now whether the footprints it read have them or not.
+@Service
+public class ProductDensityGridService {
+
+    private final DensityGrid densityGrid = new DensityGrid();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //  Products added or removed since startLoading, a removed product has no cell, null when not loading
+    private Map<Long, ProductCell> productsWrittenWhileLoading;
+
+    //  Called before the footprints passed to load are read
+    public void startLoading() {
+        lock.writeLock().lock();
+        try {
+            productsWrittenWhileLoading = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void load(List<IProductFootprintBox> footprintBoxes) {
+        lock.writeLock().lock();
+        try {
+            Map<Long, ProductCell> writtenProducts = productsWrittenWhileLoading == null
+                    ? new HashMap<>() : productsWrittenWhileLoading;
+            productsWrittenWhileLoading = null;
+            densityGrid.clear();
+
+            footprintBoxes.forEach(footprintBox -> {
+                if (writtenProducts.containsKey(footprintBox.getProductId())) return;
+
+                densityGrid.add(
+                        (footprintBox.getStartCoordinateLatitude() + footprintBox.getEndCoordinateLatitude()) / 2,
+                        (footprintBox.getStartCoordinateLongitude() + footprintBox.getEndCoordinateLongitude()) / 2,
+                        footprintBox.getMissionId(), footprintBox.getAcquisitionDate().toLocalDate().toEpochDay(), 1);
+            });
+
+            writtenProducts.values().forEach(productCell -> {
+                if (productCell != null) {
+                    densityGrid.add(productCell.latitude, productCell.longitude, productCell.missionId,
+                            productCell.epochDay, 1);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(long productId, BoundingBox footprintBox, long missionId, LocalDateTime acquisitionDate) {
+        update(productId, footprintBox, missionId, acquisitionDate, 1);
+    }
+
+    public void remove(long productId, BoundingBox footprintBox, long missionId, LocalDateTime acquisitionDate) {
+        update(productId, footprintBox, missionId, acquisitionDate, -1);
+    }
+
+    //  Counts of products in the cells of a grid with 2^level cells per side, only non empty cells are returned.
+    //  missionIds equal to null means all missions, the dates are inclusive and may be null.
+    public List<DensityCellDTO> getDensity(BoundingBox area, int level, Set<Long> missionIds,
+                                           LocalDate fromDate, LocalDate toDate) {
+        Map<Integer, Long> countsByCell;
+
+        lock.readLock().lock();
+        try {
+            countsByCell = densityGrid.count(area, level, missionIds,
+                    fromDate == null ? null : fromDate.toEpochDay(),
+                    toDate == null ? null : toDate.toEpochDay());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<DensityCellDTO> cells = new ArrayList<>();
+
+        countsByCell.forEach((cell, count) -> cells.add(new DensityCellDTO(
+                SpatialCellKey.cellBounds(DensityGrid.cellX(cell, level), DensityGrid.cellY(cell, level), level), count)));
+
+        return cells;
+    }
+
+    private void update(long productId, BoundingBox footprintBox, long missionId, LocalDateTime acquisitionDate,
+                        long delta) {
+        long epochDay = acquisitionDate.toLocalDate().toEpochDay();
+
+        lock.writeLock().lock();
+        try {
+            densityGrid.add(footprintBox.centerLatitude(), footprintBox.centerLongitude(), missionId, epochDay, delta);
+
+            if (productsWrittenWhileLoading != null) {
+                productsWrittenWhileLoading.put(productId, delta > 0 ? new ProductCell(
+                        footprintBox.centerLatitude(), footprintBox.centerLongitude(), missionId, epochDay) : null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static class ProductCell {
+
+        private final double latitude;
+        private final double longitude;
+        private final long missionId;
+        private final long epochDay;
+
+        ProductCell(double latitude, double longitude, long missionId, long epochDay) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.missionId = missionId;
+            this.epochDay = epochDay;
+        }
+    }
+}
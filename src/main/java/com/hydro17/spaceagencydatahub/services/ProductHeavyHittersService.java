@@ -0,0 +1,101 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.models.IProductOrderCount;
+import com.hydro17.spaceagencydatahub.utils.CountMinSketch;
+import com.hydro17.spaceagencydatahub.utils.HeavyHitters;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//  Approximate most ordered products in memory fixed by the spaceagencydatahub.heavy-hitters properties,
+//  independent of the number of products and order items.
+//  It is enabled by spaceagencydatahub.most-ordered.approximate, instead of ProductLeaderboardService, and then
+//  loaded from product.order_count at startup by ProductService and fed by ProductHeavyHittersListener.
+@Service
+public class ProductHeavyHittersService {
+
+    private final boolean enabled;
+    //  null when disabled, so the sketch takes no memory next to the exact leaderboard, it is only read when enabled
+    private final HeavyHitters heavyHitters;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ProductHeavyHittersService(@Value("${spaceagencydatahub.most-ordered.approximate:false}") boolean enabled,
+                                      @Value("${spaceagencydatahub.heavy-hitters.epsilon:0.0001}") double epsilon,
+                                      @Value("${spaceagencydatahub.heavy-hitters.delta:0.001}") double delta,
+                                      @Value("${spaceagencydatahub.heavy-hitters.capacity:1000}") int capacity) {
+        this.enabled = enabled;
+        this.heavyHitters = enabled ? new HeavyHitters(new CountMinSketch(epsilon, delta), capacity) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void load(List<IProductOrderCount> productOrderCounts) {
+        if (!enabled) return;
+
+        lock.writeLock().lock();
+        try {
+            heavyHitters.clear();
+
+            productOrderCounts.forEach(productOrderCount ->
+                    heavyHitters.add(productOrderCount.getProductId(), productOrderCount.getOrderCount()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(long productId, long count) {
+        if (!enabled) return;
+
+        lock.writeLock().lock();
+        try {
+            heavyHitters.add(productId, count);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //  [product id, estimated order count] of at most limit products, the highest estimate first
+    public List<long[]> getTop(int limit) {
+        lock.readLock().lock();
+        try {
+            return heavyHitters.getTop(limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return heavyHitters.getCapacity();
+    }
+
+    public double getEpsilon() {
+        return heavyHitters.getSketch().getEpsilon();
+    }
+
+    public double getDelta() {
+        return heavyHitters.getSketch().getDelta();
+    }
+
+    public long getTotalCount() {
+        lock.readLock().lock();
+        try {
+            return heavyHitters.getSketch().getTotalCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getMaxOverestimate() {
+        lock.readLock().lock();
+        try {
+            return heavyHitters.getSketch().getMaxOverestimate();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.models.IProductOrderCount;
+import com.hydro17.spaceagencydatahub.utils.RankedSkipList;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+//  Ordered products ranked by their order count, so a page of the most ordered products costs
+//  O(log n + limit) whatever the size of the order history.
+//  The order counts are also pre-aggregated per mission, one ranking per mission holds its products, so the
+//  products of a mission or of the missions of an imagery type are ranked without joining the order items
+//  to the products and missions. The imagery type is resolved to missions at query time, as a mission's
+//  imagery type can change.
+//  It is loaded from product.order_count by ProductService at startup and kept up to date by
+//  ProductLeaderboardListener, the order count repair corrects it by the increments it makes to product.order_count.
+//  It stays empty when spaceagencydatahub.most-ordered.approximate replaces it by ProductHeavyHittersService.
+@Service
+public class ProductLeaderboardService {
+
+    private final boolean enabled;
+
+    private final RankedSkipList ranking = new RankedSkipList();
+    private final Map<Long, Long> orderCountsByProductId = new HashMap<>();
+    private final Map<Long, RankedSkipList> rankingsByMissionId = new HashMap<>();
+    private final Map<Long, Long> missionIdsByProductId = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ProductLeaderboardService(@Value("${spaceagencydatahub.most-ordered.approximate:false}") boolean approximate) {
+        this.enabled = !approximate;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void load(List<IProductOrderCount> productOrderCounts) {
+        if (!enabled) return;
+
+        lock.writeLock().lock();
+        try {
+            ranking.clear();
+            orderCountsByProductId.clear();
+            rankingsByMissionId.clear();
+            missionIdsByProductId.clear();
+
+            productOrderCounts.forEach(productOrderCount -> {
+                ranking.insert(productOrderCount.getProductId(), productOrderCount.getOrderCount());
+                orderCountsByProductId.put(productOrderCount.getProductId(), productOrderCount.getOrderCount());
+                missionRanking(productOrderCount.getMissionId())
+                        .insert(productOrderCount.getProductId(), productOrderCount.getOrderCount());
+                missionIdsByProductId.put(productOrderCount.getProductId(), productOrderCount.getMissionId());
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //  A negative increment moves the product down, a product without orders leaves the leaderboard
+    public void increment(long productId, long missionId, long increment) {
+        if (!enabled) return;
+
+        lock.writeLock().lock();
+        try {
+            Long orderCount = orderCountsByProductId.get(productId);
+            long newOrderCount = (orderCount == null ? 0 : orderCount) + increment;
+
+            if (orderCount != null) {
+                ranking.remove(productId, orderCount);
+                removeFromMissionRanking(productId, orderCount);
+            }
+
+            if (newOrderCount <= 0) {
+                orderCountsByProductId.remove(productId);
+                return;
+            }
+
+            ranking.insert(productId, newOrderCount);
+            orderCountsByProductId.put(productId, newOrderCount);
+            missionRanking(missionId).insert(productId, newOrderCount);
+            missionIdsByProductId.put(productId, missionId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //  Ids of the most ordered products from the rank offset, at most limit of them
+    public List<Long> getProductIds(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return ranking.range(offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //  Ids of the most ordered products of the missions from the rank offset, at most limit of them.
+    //  The rankings of several missions are merged from their first offset + limit products.
+    public List<Long> getProductIds(Set<Long> missionIds, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            if (missionIds.size() == 1) {
+                RankedSkipList missionRanking = rankingsByMissionId.get(missionIds.iterator().next());
+                return missionRanking == null ? new ArrayList<>() : missionRanking.range(offset, limit);
+            }
+
+            int candidatesPerMission = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+
+            return missionIds.stream()
+                    .map(rankingsByMissionId::get)
+                    .filter(Objects::nonNull)
+                    .flatMap(missionRanking -> missionRanking.range(0, candidatesPerMission).stream())
+                    .sorted(Comparator.comparingLong((Long productId) -> -orderCountsByProductId.get(productId))
+                            .thenComparingLong(productId -> productId))
+                    .skip(offset)
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ranking.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RankedSkipList missionRanking(long missionId) {
+        return rankingsByMissionId.computeIfAbsent(missionId, id -> new RankedSkipList());
+    }
+
+    private void removeFromMissionRanking(long productId, long orderCount) {
+        Long missionId = missionIdsByProductId.remove(productId);
+        if (missionId == null) return;
+
+        RankedSkipList missionRanking = rankingsByMissionId.get(missionId);
+        missionRanking.remove(productId, orderCount);
+
+        if (missionRanking.size() == 0) rankingsByMissionId.remove(missionId);
+    }
+}
@@ -0,0 +1,323 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.exceptions.ProductOrderNotFoundException;
+import com.hydro17.spaceagencydatahub.exceptions.ProductOrderQueueFullException;
+import com.hydro17.spaceagencydatahub.models.OrderIngestionStatusDTO;
+import com.hydro17.spaceagencydatahub.models.ProductOrder;
+import com.hydro17.spaceagencydatahub.utils.OrderIngestionState;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+//  Optional asynchronous order placement. An accepted order gets its id at once and waits in a bounded
+//  lock-free queue, a single writer thread saves the queued orders in groups, one transaction per group.
+//  A group is closed when it has max-group-size orders or when its first order has waited latency-budget-ms.
+//  If a group can't be saved, its orders are saved one by one, so one bad order fails alone.
+//  A failed order is reported as failed for failed-status-ttl-minutes, while it is one of the failed-status-capacity
+//  most recent failures, then it is unknown as an order that was never accepted.
+//  The queue length is exposed in the product.order.ingestion.queue.size metric, the number of kept failed orders
+//  in product.order.ingestion.failed.size.
+@Service
+public class ProductOrderIngestionService implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductOrderIngestionService.class);
+
+    private final ProductOrderService productOrderService;
+    private final boolean enabled;
+    private final int queueCapacity;
+    private final int maxGroupSize;
+    private final long latencyBudgetNanos;
+    private final long failedStatusTtlMinutes;
+
+    private final Queue<QueuedOrder> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    //  Queued orders, at most queue-capacity of them, a placed order is looked up in the database
+    private final Map<Long, OrderIngestionStatusDTO> statusesByOrderId = new ConcurrentHashMap<>();
+
+    //  Failed orders, the oldest failure first, guarded by itself
+    private final Map<Long, FailedOrder> failedOrdersByOrderId;
+
+    private long nextReservedId;
+    private long reservedIdsLeft;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public ProductOrderIngestionService(ProductOrderService productOrderService,
+                                        @Value("${spaceagencydatahub.order-ingestion.async:false}") boolean enabled,
+                                        @Value("${spaceagencydatahub.order-ingestion.queue-capacity:10000}") int queueCapacity,
+                                        @Value("${spaceagencydatahub.order-ingestion.max-group-size:200}") int maxGroupSize,
+                                        @Value("${spaceagencydatahub.order-ingestion.latency-budget-ms:20}") long latencyBudgetMs,
+                                        @Value("${spaceagencydatahub.order-ingestion.failed-status-capacity:10000}") int failedStatusCapacity,
+                                        @Value("${spaceagencydatahub.order-ingestion.failed-status-ttl-minutes:1440}") long failedStatusTtlMinutes) {
+        this.productOrderService = productOrderService;
+        this.enabled = enabled;
+        this.queueCapacity = queueCapacity;
+        this.maxGroupSize = maxGroupSize;
+        this.latencyBudgetNanos = TimeUnit.MILLISECONDS.toNanos(latencyBudgetMs);
+        this.failedStatusTtlMinutes = failedStatusTtlMinutes;
+        this.failedOrdersByOrderId = new LinkedHashMap<Long, FailedOrder>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, FailedOrder> eldest) {
+                return size() > failedStatusCapacity;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void startWriter() {
+        if (!enabled) return;
+
+        running = true;
+        writer = new Thread(this::writeQueuedOrders, "order-ingestion-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    //  The orders still queued are saved before the application stops
+    @PreDestroy
+    public void stopWriter() throws InterruptedException {
+        if (writer == null) return;
+
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //  Gives the order its id and queues it, throws ProductOrderQueueFullException when the queue is full.
+    //  Called in a transaction, the order takes its place in the queue at once but is queued only after the commit,
+    //  after a rollback the place is given back and the order is forgotten.
+    public OrderIngestionStatusDTO enqueue(ProductOrder productOrder) {
+        if (queueSize.incrementAndGet() > queueCapacity) {
+            queueSize.decrementAndGet();
+            throw new ProductOrderQueueFullException("Too many orders are waiting to be placed, try again later");
+        }
+
+        long orderId = reserveId();
+        productOrder.setReservedId(orderId);
+
+        OrderIngestionStatusDTO status = new OrderIngestionStatusDTO(orderId, OrderIngestionState.QUEUED, null);
+        statusesByOrderId.put(orderId, status);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(productOrder);
+            return status;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int completionStatus) {
+                if (completionStatus == STATUS_COMMITTED) {
+                    add(productOrder);
+                    return;
+                }
+
+                statusesByOrderId.remove(orderId);
+                queueSize.decrementAndGet();
+            }
+        });
+
+        return status;
+    }
+
+    public OrderIngestionStatusDTO getStatus(long orderId) {
+        OrderIngestionStatusDTO status = statusesByOrderId.get(orderId);
+        if (status != null) return status;
+
+        synchronized (failedOrdersByOrderId) {
+            purgeExpiredFailedOrders();
+
+            FailedOrder failedOrder = failedOrdersByOrderId.get(orderId);
+            if (failedOrder != null) return failedOrder.status;
+        }
+
+        if (productOrderService.existsProductOrderById(orderId)) {
+            return new OrderIngestionStatusDTO(orderId, OrderIngestionState.PLACED, null);
+        }
+
+        throw new ProductOrderNotFoundException("There is no order with id: " + orderId);
+    }
+
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    public int getFailedStatusCount() {
+        synchronized (failedOrdersByOrderId) {
+            return failedOrdersByOrderId.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("product.order.ingestion.queue.size", this, ProductOrderIngestionService::getQueueSize)
+                .register(registry);
+        Gauge.builder("product.order.ingestion.failed.size", this, ProductOrderIngestionService::getFailedStatusCount)
+                .register(registry);
+    }
+
+    private void add(ProductOrder productOrder) {
+        queue.add(new QueuedOrder(productOrder, System.nanoTime()));
+        LockSupport.unpark(writer);
+    }
+
+    private synchronized long reserveId() {
+        if (reservedIdsLeft == 0) {
+            nextReservedId = productOrderService.reserveProductOrderIdBlock();
+            reservedIdsLeft = ProductOrderService.PRODUCT_ORDER_ID_BLOCK_SIZE;
+        }
+
+        reservedIdsLeft--;
+        return nextReservedId++;
+    }
+
+    //  Whatever a group throws, the writer goes on with the next one, the orders of the group left queued are failed
+    private void writeQueuedOrders() {
+        while (running || !queue.isEmpty()) {
+            List<ProductOrder> group = new ArrayList<>();
+
+            try {
+                group = takeGroup();
+
+                if (!group.isEmpty()) save(group);
+            } catch (Throwable e) {
+                logger.error("Writing a group of {} queued orders failed", group.size(), e);
+
+                for (ProductOrder productOrder : group) {
+                    if (statusesByOrderId.containsKey(productOrder.getReservedId())) fail(productOrder.getReservedId());
+                }
+            }
+        }
+    }
+
+    //  Waits for the first order, then for more orders until the group is full or the latency budget is spent
+    private List<ProductOrder> takeGroup() {
+        List<ProductOrder> group = new ArrayList<>();
+
+        QueuedOrder first = queue.poll();
+        if (first == null) {
+            if (running) LockSupport.park(this);
+            return group;
+        }
+
+        group.add(first.productOrder);
+        long deadline = first.enqueuedAt + latencyBudgetNanos;
+
+        while (group.size() < maxGroupSize) {
+            QueuedOrder next = queue.poll();
+
+            if (next != null) {
+                group.add(next.productOrder);
+                continue;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !running) break;
+
+            LockSupport.parkNanos(this, remaining);
+        }
+
+        queueSize.addAndGet(-group.size());
+        return group;
+    }
+
+    private void save(List<ProductOrder> group) {
+        try {
+            productOrderService.saveProductOrders(group);
+            group.forEach(productOrder -> statusesByOrderId.remove(productOrder.getReservedId()));
+            return;
+        } catch (RuntimeException groupNotSaved) {
+//          the orders are saved one by one below
+            logger.warn("A group of {} queued orders could not be saved, saving them one by one", group.size(),
+                    groupNotSaved);
+        }
+
+        group.forEach(productOrder -> {
+            resetIds(productOrder);
+
+            try {
+                productOrderService.saveProductOrder(productOrder);
+                statusesByOrderId.remove(productOrder.getReservedId());
+            } catch (RuntimeException e) {
+                logger.error("Queued order {} could not be saved", productOrder.getReservedId(), e);
+                fail(productOrder.getReservedId());
+            }
+        });
+    }
+
+    //  The failed status is recorded before the queued one is removed, so the order is never unknown meanwhile
+    private void fail(long orderId) {
+        synchronized (failedOrdersByOrderId) {
+            purgeExpiredFailedOrders();
+
+            failedOrdersByOrderId.put(orderId, new FailedOrder(new OrderIngestionStatusDTO(orderId,
+                    OrderIngestionState.FAILED, "The order could not be saved"), LocalDateTime.now()));
+        }
+
+        statusesByOrderId.remove(orderId);
+    }
+
+    //  The failures are kept in the order they happened, so the expired ones are the first ones
+    private void purgeExpiredFailedOrders() {
+        LocalDateTime failedBefore = LocalDateTime.now().minusMinutes(failedStatusTtlMinutes);
+        Iterator<FailedOrder> failedOrders = failedOrdersByOrderId.values().iterator();
+
+        while (failedOrders.hasNext() && failedOrders.next().failedOn.isBefore(failedBefore)) {
+            failedOrders.remove();
+        }
+    }
+
+    //  Ids given in a rolled back transaction, the order takes its reserved id again, the items new ones
+    private void resetIds(ProductOrder productOrder) {
+        productOrder.setId(0);
+        productOrder.getOrderItems().forEach(orderItem -> orderItem.setId(0));
+    }
+
+    private static class FailedOrder {
+
+        private final OrderIngestionStatusDTO status;
+        private final LocalDateTime failedOn;
+
+        FailedOrder(OrderIngestionStatusDTO status, LocalDateTime failedOn) {
+            this.status = status;
+            this.failedOn = failedOn;
+        }
+    }
+
+    private static class QueuedOrder {
+
+        private final ProductOrder productOrder;
+        private final long enqueuedAt;
+
+        QueuedOrder(ProductOrder productOrder, long enqueuedAt) {
+            this.productOrder = productOrder;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
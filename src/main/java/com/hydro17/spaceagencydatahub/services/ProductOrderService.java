@@ -1,24 +1,48 @@
 package com.hydro17.spaceagencydatahub.services;
 
 import com.hydro17.spaceagencydatahub.exceptions.ProductNotFoundException;
+import com.hydro17.spaceagencydatahub.models.OrderItemExportDTO;
+import com.hydro17.spaceagencydatahub.models.OrderItemExportRow;
 import com.hydro17.spaceagencydatahub.models.Product;
 import com.hydro17.spaceagencydatahub.models.ProductOrder;
 import com.hydro17.spaceagencydatahub.models.ProductOrderDTO;
+import com.hydro17.spaceagencydatahub.models.ProductOrderExportDTO;
+import com.hydro17.spaceagencydatahub.models.ProductOrderHistoryDTO;
+import com.hydro17.spaceagencydatahub.models.ProductOrderHistoryPage;
+import com.hydro17.spaceagencydatahub.repositories.OrderItemRepository;
 import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.utils.ProductOrderCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.transaction.Transactional;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ProductOrderService {
 
+    //  increment_size of product_order_seq in the mapping of ProductOrder
+    public static final int PRODUCT_ORDER_ID_BLOCK_SIZE = 50;
+
     private ProductOrderRepository productOrderRepository;
+    private OrderItemRepository orderItemRepository;
+    private OrderedProductIndexService orderedProductIndexService;
     private ProductService productService;
 
-    public ProductOrderService(ProductOrderRepository productOrderRepository) {
+    public ProductOrderService(ProductOrderRepository productOrderRepository,
+                               OrderItemRepository orderItemRepository,
+                               OrderedProductIndexService orderedProductIndexService) {
         this.productOrderRepository = productOrderRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.orderedProductIndexService = orderedProductIndexService;
     }
 
     //  To avoid circular dependency
@@ -27,30 +51,124 @@ public class ProductOrderService {
         this.productService = productService;
     }
 
-    public List<ProductOrder> getAllProductOrdersOrderedByPlacedOnDesc() {
-        return productOrderRepository.findAllOrdersOrderedByPlacedOnDesc();
+//  Orders placed from (inclusive) to (exclusive), newest first, at most limit of them and only those after
+//  the cursor if it is given. The product ids of the page are read in one more query.
+    public ProductOrderHistoryPage getProductOrderHistoryPage(LocalDateTime from, LocalDateTime to, int limit,
+                                                              ProductOrderCursor after) {
+
+//      one order more than requested tells whether there is a next page
+        List<ProductOrderHistoryDTO> productOrders = productOrderRepository.findHistoryPage(from, to, after, limit + 1);
+
+        ProductOrderCursor nextCursor = null;
+
+        if (productOrders.size() > limit) {
+            productOrders = new ArrayList<>(productOrders.subList(0, limit));
+            ProductOrderHistoryDTO lastProductOrder = productOrders.get(limit - 1);
+            nextCursor = new ProductOrderCursor(lastProductOrder.getPlacedOn(), lastProductOrder.getId());
+        }
+
+        addProductIds(productOrders);
+
+        return new ProductOrderHistoryPage(productOrders, nextCursor);
+    }
+
+//  Passes every order placed from (inclusive) to (exclusive) with its products and their prices to the action,
+//  in the order of ids, while the order items are read from the database. Only the order being read is kept.
+    public void forEachExportedProductOrder(LocalDateTime from, LocalDateTime to,
+                                            Consumer<ProductOrderExportDTO> action) {
+
+        try (Stream<OrderItemExportRow> orderItems = productOrderRepository.streamAllOrderItemsForExport(from, to)) {
+            Iterator<OrderItemExportRow> iterator = orderItems.iterator();
+            ProductOrderExportDTO productOrder = null;
+
+            while (iterator.hasNext()) {
+                OrderItemExportRow orderItem = iterator.next();
+
+//              the order items of an order are read one after another
+                if (productOrder == null || productOrder.getId() != orderItem.getProductOrderId()) {
+                    if (productOrder != null) action.accept(productOrder);
+                    productOrder = new ProductOrderExportDTO(orderItem.getProductOrderId(), orderItem.getPlacedOn());
+                }
+
+                productOrder.getItems().add(new OrderItemExportDTO(orderItem.getProductId(), orderItem.getPrice()));
+            }
+
+            if (productOrder != null) action.accept(productOrder);
+        }
     }
 
+//  The order counts of the products are incremented in the same transaction as the order is saved
+    @Transactional
     public ProductOrder saveProductOrder(ProductOrder productOrder) {
         ProductOrder productOrderWithSetId = productOrderRepository.save(productOrder);
+        productService.incrementOrderCounts(productOrderWithSetId.getProductIds());
         return productOrderWithSetId;
     }
 
+//  A group of orders saved in one transaction, the order counts of all their products are incremented together
+    @Transactional
+    public List<ProductOrder> saveProductOrders(List<ProductOrder> productOrders) {
+        List<ProductOrder> productOrdersWithSetIds = productOrderRepository.saveAll(productOrders);
+
+        productService.incrementOrderCounts(productOrdersWithSetIds.stream()
+                .flatMap(productOrder -> productOrder.getProductIds().stream())
+                .collect(Collectors.toList()));
+
+        return productOrdersWithSetIds;
+    }
+
+//  Ids from reserveProductOrderIdBlock() to reserveProductOrderIdBlock() + PRODUCT_ORDER_ID_BLOCK_SIZE - 1
+//  are never given to another order
+    public long reserveProductOrderIdBlock() {
+        return productOrderRepository.reserveProductOrderIdBlock();
+    }
+
+    public boolean existsProductOrderById(long id) {
+        return productOrderRepository.existsById(id);
+    }
+
+//  Answered from the in-memory index of ordered products, without a query
     public boolean isOrderedProductById(long id) {
-        return productOrderRepository.findAllProductOrdersContainingProductWithGivenId(id).size() > 0;
+        return orderedProductIndexService.isOrdered(id);
     }
 
+//  All products are read in one query, all ids without a product are reported together
     public ProductOrder convertProductOrderDTOToProductOrder(ProductOrderDTO productOrderDTO) {
+        List<Long> productIds = productOrderDTO.getProductIds();
+
+        Map<Long, Product> productsById = productService.getProductsByIds(new HashSet<>(productIds)).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+
+        List<Long> missingProductIds = productIds.stream()
+                .filter(productId -> !productsById.containsKey(productId))
+                .distinct()
+                .collect(Collectors.toList());
+
+        if (missingProductIds.size() == 1) {
+            throw new ProductNotFoundException("There is no product with id: " + missingProductIds.get(0));
+        }
+
+        if (!missingProductIds.isEmpty()) {
+            throw new ProductNotFoundException("There are no products with ids: " + missingProductIds.stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(", ")));
+        }
+
         ProductOrder productOrder = new ProductOrder();
         productOrder.setPlacedOn(LocalDateTime.now());
 
-        productOrderDTO.getProductIds().forEach(productId -> {
-            Product product = productService.getProductById(productId).orElseThrow(
-                    ()-> new ProductNotFoundException("There is no product with id: " + productId)
-            );
-
-            productOrder.addProduct(product);
-        });
+        productIds.forEach(productId -> productOrder.addProduct(productsById.get(productId)));
         return productOrder;
     }
+
+    private void addProductIds(List<ProductOrderHistoryDTO> productOrders) {
+        if (productOrders.isEmpty()) return;
+
+        Map<Long, ProductOrderHistoryDTO> productOrdersById = productOrders.stream()
+                .collect(Collectors.toMap(ProductOrderHistoryDTO::getId, productOrder -> productOrder));
+
+        orderItemRepository.findAllOrderItemProductsByProductOrderIdIn(productOrdersById.keySet())
+                .forEach(orderItem -> productOrdersById.get(orderItem.getProductOrderId()).getProductIds()
+                        .add(orderItem.getProductId()));
+    }
 }
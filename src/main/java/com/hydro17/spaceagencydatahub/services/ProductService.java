@@ -1,45 +1,454 @@
 package com.hydro17.spaceagencydatahub.services;
 
+import com.hydro17.spaceagencydatahub.models.ApproximateMostOrderedDTO;
+import com.hydro17.spaceagencydatahub.models.DensityCellDTO;
+import com.hydro17.spaceagencydatahub.models.EstimatedProductDTO;
+import com.hydro17.spaceagencydatahub.models.IProductFootprintBox;
+import com.hydro17.spaceagencydatahub.models.IProductOrderCount;
+import com.hydro17.spaceagencydatahub.models.Mission;
 import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductDTO;
+import com.hydro17.spaceagencydatahub.models.ProductFilter;
+import com.hydro17.spaceagencydatahub.models.ProductPage;
 import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
-import com.hydro17.spaceagencydatahub.repositories.ProductSpecifications;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
 import com.hydro17.spaceagencydatahub.utils.ImageryType;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.hydro17.spaceagencydatahub.utils.ProductCursor;
+import com.hydro17.spaceagencydatahub.utils.RankingWindow;
+import com.hydro17.spaceagencydatahub.utils.SpatialRelation;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.transaction.Transactional;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
-public class ProductService {
+public class ProductService implements SmartInitializingSingleton {
+
+    private static final double INITIAL_NEAREST_SEARCH_RADIUS = 1;
+    private static final double MAX_NEAREST_SEARCH_RADIUS = 1024;
 
     private ProductRepository productRepository;
     private MissionService missionService;
-    private ProductOrderService productOrderService;
+    private ProductSpatialIndexService productSpatialIndexService;
+    private ProductDensityGridService productDensityGridService;
+    private OrderedProductIndexService orderedProductIndexService;
+    private ProductLeaderboardService productLeaderboardService;
+    private ProductWindowRankingService productWindowRankingService;
+    private ProductHeavyHittersService productHeavyHittersService;
+    private OrderItemService orderItemService;
 
-    public ProductService(ProductRepository productRepository, MissionService missionService) {
+    public ProductService(ProductRepository productRepository, MissionService missionService,
+                          ProductSpatialIndexService productSpatialIndexService,
+                          ProductDensityGridService productDensityGridService,
+                          OrderedProductIndexService orderedProductIndexService,
+                          ProductLeaderboardService productLeaderboardService,
+                          ProductWindowRankingService productWindowRankingService,
+                          ProductHeavyHittersService productHeavyHittersService,
+                          OrderItemService orderItemService) {
         this.productRepository = productRepository;
         this.missionService = missionService;
+        this.productSpatialIndexService = productSpatialIndexService;
+        this.productDensityGridService = productDensityGridService;
+        this.orderedProductIndexService = orderedProductIndexService;
+        this.productLeaderboardService = productLeaderboardService;
+        this.productWindowRankingService = productWindowRankingService;
+        this.productHeavyHittersService = productHeavyHittersService;
+        this.orderItemService = orderItemService;
     }
 
-    //  To avoid circular dependency
-    @Autowired
-    public void setProductOrderService(ProductOrderService productOrderService) {
-        this.productOrderService = productOrderService;
+    public List<ProductDTO> getAllProducts() {
+        return productRepository.findAllProductDTOs();
     }
 
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+//  Passes every product to the action while they are read from the database, without collecting them
+    @Transactional
+    public void forEachProduct(Consumer<ProductDTO> action) {
+        try (Stream<ProductDTO> products = productRepository.streamAllByFilter(new ProductFilter())) {
+            products.forEach(action);
+        }
     }
 
     public Optional<Product> getProductById(long id) {
         return productRepository.findById(id);
     }
 
-    public List<Product> getFilteredProducts(String missionNme, LocalDateTime beforeDate, LocalDateTime afterDate,
-                                             Double latitude, Double longitude, ImageryType imageryType) {
-        return productRepository.findAll(ProductSpecifications.getSpecifications(missionNme, beforeDate, afterDate, latitude, longitude, imageryType));
+//  Products with the ids in one query, ids without a product are skipped
+    public List<Product> getProductsByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) return new ArrayList<>();
+
+        return productRepository.findAllWithMissionByIdIn(ids);
+    }
+
+    public Optional<ProductDTO> getProductDTOById(long id) {
+        return productRepository.findProductDTOById(id);
+    }
+
+    public List<ProductDTO> getFilteredProducts(String missionNme, LocalDateTime beforeDate, LocalDateTime afterDate,
+                                                Double latitude, Double longitude, ImageryType imageryType) {
+        return getFilteredProducts(missionNme, beforeDate, afterDate, latitude, longitude, null, null, imageryType);
+    }
+
+    public List<ProductDTO> getFilteredProducts(String missionNme, LocalDateTime beforeDate, LocalDateTime afterDate,
+                                                Double latitude, Double longitude, BoundingBox area,
+                                                SpatialRelation areaRelation, ImageryType imageryType) {
+
+        ProductFilter filter = createFilter(missionNme, beforeDate, afterDate, imageryType);
+
+        return findFilteredProducts(filter, latitude, longitude, area, areaRelation);
+    }
+
+//  Products sorted by (acquisitionDate, id), at most limit of them and only those after the cursor if it is given
+    public ProductPage getFilteredProductsPage(String missionNme, LocalDateTime beforeDate, LocalDateTime afterDate,
+                                               Double latitude, Double longitude, BoundingBox area,
+                                               SpatialRelation areaRelation, ImageryType imageryType,
+                                               int limit, ProductCursor after) {
+
+        ProductFilter filter = createFilter(missionNme, beforeDate, afterDate, imageryType);
+        filter.setLimit(limit + 1);
+        filter.setAfter(after);
+
+//      one product more than requested tells whether there is a next page
+        List<ProductDTO> products = findFilteredProducts(filter, latitude, longitude, area, areaRelation);
+
+        if (products.size() <= limit) return new ProductPage(products, null);
+
+        List<ProductDTO> page = new ArrayList<>(products.subList(0, limit));
+        ProductDTO lastProduct = page.get(limit - 1);
+
+        return new ProductPage(page, new ProductCursor(lastProduct.getAcquisitionDate(), lastProduct.getId()));
+    }
+
+//  Passes every matching product to the action while they are read from the database, without collecting them
+    @Transactional
+    public void forEachFilteredProduct(String missionNme, LocalDateTime beforeDate, LocalDateTime afterDate,
+                                       Double latitude, Double longitude, BoundingBox area,
+                                       SpatialRelation areaRelation, ImageryType imageryType,
+                                       Consumer<ProductDTO> action) {
+
+        ProductFilter filter = createFilter(missionNme, beforeDate, afterDate, imageryType);
+
+        if (!applySpatialFilters(filter, latitude, longitude, area, areaRelation)) return;
+
+        try (Stream<ProductDTO> products = productRepository.streamAllByFilter(filter)) {
+            products.map(this::removeUrlIfUnordered).forEach(action);
+        }
+    }
+
+    private ProductFilter createFilter(String missionNme, LocalDateTime beforeDate, LocalDateTime afterDate,
+                                       ImageryType imageryType) {
+        ProductFilter filter = new ProductFilter();
+        filter.setMissionName(missionNme);
+        filter.setBeforeDate(beforeDate);
+        filter.setAfterDate(afterDate);
+        filter.setImageryType(imageryType);
+
+        return filter;
+    }
+
+    private List<ProductDTO> findFilteredProducts(ProductFilter filter, Double latitude, Double longitude,
+                                                  BoundingBox area, SpatialRelation areaRelation) {
+
+        if (!applySpatialFilters(filter, latitude, longitude, area, areaRelation)) return new ArrayList<>();
+
+        return removeUrlOfUnorderedProducts(productRepository.findAllByFilter(filter));
+    }
+
+//  Adds the point and area filters, or the ids of the candidates found in the spatial index if it is enabled.
+//  Returns false when the spatial index already tells that no product matches.
+    private boolean applySpatialFilters(ProductFilter filter, Double latitude, Double longitude,
+                                        BoundingBox area, SpatialRelation areaRelation) {
+
+        if (!productSpatialIndexService.isEnabled()) {
+            filter.setLatitude(latitude);
+            filter.setLongitude(longitude);
+            filter.setArea(area);
+            if (areaRelation != null) filter.setAreaRelation(areaRelation);
+
+            return true;
+        }
+
+        Collection<Long> candidateIds = findCandidateIdsInSpatialIndex(filter, latitude, longitude, area, areaRelation);
+
+        if (candidateIds != null && candidateIds.isEmpty()) return false;
+
+        filter.setProductIds(candidateIds);
+
+        return true;
+    }
+
+//  The spatial index gives the ids of products whose footprint contains the point and/or matches the area,
+//  the remaining filters are applied by the database only to these candidates. A point or an area matching
+//  more than max-candidates products is added to the filter instead, the database finds them through
+//  the footprint cell key, so the IN list and the ids kept on the heap never grow past max-candidates.
+//  Returns null when no spatial filter is left to the spatial index.
+    private Collection<Long> findCandidateIdsInSpatialIndex(ProductFilter filter, Double latitude, Double longitude,
+                                                           BoundingBox area, SpatialRelation areaRelation) {
+        Set<Long> candidateIds = null;
+
+        if (latitude != null && longitude != null) {
+            List<Long> idsContainingPoint = productSpatialIndexService.findProductIdsContaining(latitude, longitude);
+
+            if (idsContainingPoint == null) {
+                filter.setLatitude(latitude);
+                filter.setLongitude(longitude);
+            } else {
+                candidateIds = new HashSet<>(idsContainingPoint);
+            }
+        }
+
+        if (area != null) {
+            SpatialRelation relation = areaRelation == null ? SpatialRelation.INTERSECTS : areaRelation;
+            List<Long> idsInArea = productSpatialIndexService.findProductIdsInArea(area, relation);
+
+            if (idsInArea == null) {
+                filter.setArea(area);
+                filter.setAreaRelation(relation);
+            } else if (candidateIds == null) {
+                candidateIds = new HashSet<>(idsInArea);
+            } else {
+                candidateIds.retainAll(idsInArea);
+            }
+        }
+
+        return candidateIds;
+    }
+
+    public List<ProductDTO> getNearestProducts(double latitude, double longitude, int k, String missionName,
+                                               ImageryType imageryType) {
+
+        if (!productSpatialIndexService.isEnabled()) {
+            return getNearestProductsWithoutSpatialIndex(latitude, longitude, k, missionName, imageryType);
+        }
+
+        Set<Long> missionIds = getMissionIds(missionName, imageryType);
+
+        List<Long> nearestIds = productSpatialIndexService.findNearestProductIds(latitude, longitude, k, missionIds);
+
+        if (nearestIds.isEmpty()) return new ArrayList<>();
+
+        return removeUrlOfUnorderedProducts(findProductsInOrderOfIds(nearestIds));
+    }
+
+//  Products deleted in the meantime are skipped
+    private List<ProductDTO> findProductsInOrderOfIds(List<Long> productIds) {
+        ProductFilter filter = new ProductFilter();
+        filter.setProductIds(productIds);
+
+        Map<Long, ProductDTO> productsById = productRepository.findAllByFilter(filter).stream()
+                .collect(Collectors.toMap(ProductDTO::getId, product -> product));
+
+        return productIds.stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+//  Without the in-memory index the search square around the point grows until the k products nearest to the point
+//  in it are not farther than the half of the square side, so no closer product can be outside of it.
+//  The database sorts the products of the square by distance and returns only the k nearest.
+//  A round that finds no more products than the previous one, and fewer than k, means the products around the point
+//  are sparse, then the square grows at once to its largest size instead of step by step.
+    private List<ProductDTO> getNearestProductsWithoutSpatialIndex(double latitude, double longitude, int k,
+                                                                   String missionName, ImageryType imageryType) {
+        ProductFilter filter = new ProductFilter();
+        filter.setMissionName(missionName);
+        filter.setImageryType(imageryType);
+        filter.setNearestLatitude(latitude);
+        filter.setNearestLongitude(longitude);
+        filter.setLimit(k);
+        double radius = INITIAL_NEAREST_SEARCH_RADIUS;
+        int previousFound = -1;
+
+        while (true) {
+            filter.setArea(new BoundingBox(latitude - radius, longitude - radius,
+                    latitude + radius, longitude + radius));
+            List<ProductDTO> nearest = productRepository.findAllByFilter(filter);
+
+            boolean kNearestInRadius = nearest.size() == k && nearest.get(k - 1).getFootprint().toBoundingBox()
+                    .distanceTo(latitude, longitude) <= radius;
+
+            if (kNearestInRadius || radius >= MAX_NEAREST_SEARCH_RADIUS) {
+                return removeUrlOfUnorderedProducts(nearest);
+            }
+
+            radius = nearest.size() < k && nearest.size() == previousFound
+                    ? MAX_NEAREST_SEARCH_RADIUS
+                    : Math.min(radius * 4, MAX_NEAREST_SEARCH_RADIUS);
+            previousFound = nearest.size();
+        }
+    }
+
+    public List<ProductDTO> getMostOrderedProductsDesc() {
+        return productRepository.findAllProductDTOsOrderedByOrderCountDesc();
+    }
+
+//  One page of the most ordered products, ranked by the in-memory leaderboard or, in the approximate mode,
+//  by the estimates of the heavy hitters, only the products of the page are read from the database
+    public List<ProductDTO> getMostOrderedProductsDesc(int offset, int limit) {
+        List<Long> productIds = isMostOrderedApproximate()
+                ? productHeavyHittersService.getTop(offset + limit).stream()
+                        .skip(offset)
+                        .map(entry -> entry[0])
+                        .collect(Collectors.toList())
+                : productLeaderboardService.getProductIds(offset, limit);
+
+        if (productIds.isEmpty()) return new ArrayList<>();
+
+        return findProductsInOrderOfIds(productIds);
+    }
+
+//  One page of the most ordered products of the mission and/or the imagery type, ranked by the order counts
+//  the leaderboard keeps per mission
+    public List<ProductDTO> getMostOrderedProductsDesc(String missionName, ImageryType imageryType,
+                                                       int offset, int limit) {
+        Set<Long> missionIds = getMissionIds(missionName, imageryType);
+
+        if (missionIds.isEmpty()) return new ArrayList<>();
+
+        List<Long> productIds = productLeaderboardService.getProductIds(missionIds, offset, limit);
+
+        if (productIds.isEmpty()) return new ArrayList<>();
+
+        return findProductsInOrderOfIds(productIds);
+    }
+
+//  One page of the products most ordered within the time window ending now
+    public List<ProductDTO> getMostOrderedProductsDesc(RankingWindow window, int offset, int limit) {
+        List<Long> productIds = productWindowRankingService.getProductIds(window, offset, limit);
+
+        if (productIds.isEmpty()) return new ArrayList<>();
+
+        return findProductsInOrderOfIds(productIds);
+    }
+
+//  Estimated most ordered products with the error bounds of the estimates, the order items are not read
+    public ApproximateMostOrderedDTO getApproximateMostOrderedProductsDesc(int limit) {
+        List<long[]> top = productHeavyHittersService.getTop(limit);
+        List<EstimatedProductDTO> products = new ArrayList<>();
+
+        if (!top.isEmpty()) {
+            Map<Long, Long> estimatesByProductId = top.stream()
+                    .collect(Collectors.toMap(entry -> entry[0], entry -> entry[1]));
+
+            findProductsInOrderOfIds(top.stream().map(entry -> entry[0]).collect(Collectors.toList()))
+                    .forEach(product -> products.add(
+                            new EstimatedProductDTO(product, estimatesByProductId.get(product.getId()))));
+        }
+
+        return new ApproximateMostOrderedDTO(productHeavyHittersService.getEpsilon(),
+                productHeavyHittersService.getDelta(), productHeavyHittersService.getTotalCount(),
+                productHeavyHittersService.getMaxOverestimate(), products);
+    }
+
+//  Whether the most ordered products are ranked by the heavy hitters instead of the exact leaderboard
+    public boolean isMostOrderedApproximate() {
+        return productHeavyHittersService.isEnabled();
+    }
+
+    public int getApproximateMostOrderedCapacity() {
+        return productHeavyHittersService.getCapacity();
+    }
+
+//  A product that is n times in the order is incremented by n, products with the same increment share one update
+    public void incrementOrderCounts(List<Long> productIds) {
+        Map<Long, Long> incrementsByProductId = productIds.stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+        incrementsByProductId.keySet().stream()
+                .collect(Collectors.groupingBy(incrementsByProductId::get))
+                .forEach((increment, ids) -> productRepository.incrementOrderCounts(ids, increment));
+    }
+
+//  Repair job recomputing the order counts from order_item, e.g. after order items were changed outside of the API.
+//  A wrong count is corrected by its error, like an order increments it, and the leaderboard with its per-mission
+//  rankings gets the same increment once it is committed, so the orders placed meanwhile are counted once.
+//  The heavy hitters are reloaded from the repaired counts, the window rankings from the order items.
+//  The ordered products are not, ids are only added to them, so a product whose order items were all deleted
+//  outside of the API is seen as ordered until the next restart.
+//  It runs on the spaceagencydatahub.order-count-repair.cron schedule, by default it is run only on request.
+//  Returns the number of repaired products.
+    @Scheduled(cron = "${spaceagencydatahub.order-count-repair.cron:-}")
+    @Transactional
+    public int repairOrderCounts() {
+        List<IProductOrderCount> orderCountErrors = productRepository.findAllOrderCountErrors();
+
+        orderCountErrors.stream()
+                .collect(Collectors.groupingBy(IProductOrderCount::getOrderCount,
+                        Collectors.mapping(IProductOrderCount::getProductId, Collectors.toList())))
+                .forEach((error, ids) -> productRepository.incrementOrderCounts(ids, error));
+
+        afterCommit(() -> orderCountErrors.forEach(orderCountError -> productLeaderboardService.increment(
+                orderCountError.getProductId(), orderCountError.getMissionId(), orderCountError.getOrderCount())));
+
+        if (productHeavyHittersService.isEnabled()) {
+            productHeavyHittersService.load(productRepository.findAllProductOrderCounts());
+        }
+
+        orderItemService.loadProductWindowRankings();
+
+        return orderCountErrors.size();
+    }
+
+    public List<DensityCellDTO> getDensity(BoundingBox area, int level, ImageryType imageryType,
+                                           LocalDate fromDate, LocalDate toDate) {
+        return productDensityGridService.getDensity(area, level, getMissionIds(null, imageryType), fromDate, toDate);
+    }
+
+//  Ids of missions matching the filters, null when there is no filter
+    private Set<Long> getMissionIds(String missionName, ImageryType imageryType) {
+        if (missionName == null && imageryType == null) return null;
+
+        return missionService.getAllMissions().stream()
+                .filter(mission -> missionName == null || mission.getName().equals(missionName))
+                .filter(mission -> imageryType == null || mission.getImageryType() == imageryType)
+                .map(Mission::getId)
+                .collect(Collectors.toSet());
+    }
+
+//  The spatial indexes are loaded before the web server is started, until then every spatial filter would find nothing
+//  and every density would be empty. So are the rankings, an order placed while they were loaded could be counted
+//  twice or not at all.
+    @Override
+    public void afterSingletonsInstantiated() {
+        loadSpatialIndexes();
+        loadProductRankings();
+    }
+
+    public void loadSpatialIndexes() {
+        productDensityGridService.startLoading();
+        productSpatialIndexService.startLoading();
+
+        List<IProductFootprintBox> footprintBoxes = productRepository.findAllProductFootprintBoxes();
+
+        productDensityGridService.load(footprintBoxes);
+
+        if (productSpatialIndexService.isEnabled()) {
+            productSpatialIndexService.load(footprintBoxes);
+        }
+    }
+
+    public void loadProductRankings() {
+        List<IProductOrderCount> productOrderCounts = productRepository.findAllProductOrderCounts();
+
+        productLeaderboardService.load(productOrderCounts);
+        productHeavyHittersService.load(productOrderCounts);
     }
 
     public Product saveProduct(Product product) {
@@ -56,14 +465,33 @@ public class ProductService {
         return false;
     }
 
-    public List<Product> removeUrlOfUnorderedProducts(List<Product> products) {
+//  Whether a product is ordered is a bit test in the in-memory index, not a query per product
+    public List<ProductDTO> removeUrlOfUnorderedProducts(List<ProductDTO> products) {
 
-            products.forEach(product -> {
-                if (productOrderService.isOrderedProductById(product.getId()) == false) {
-                    product.setUrl(null);
-                }
-            });
+        products.forEach(this::removeUrlIfUnordered);
 
         return products;
     }
+
+    public ProductDTO removeUrlIfUnordered(ProductDTO product) {
+        if (!orderedProductIndexService.isOrdered(product.getId())) {
+            product.setUrl(null);
+        }
+
+        return product;
+    }
+
+    private void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
 }
@@ -0,0 +1,203 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.models.IProductFootprintBox;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import com.hydro17.spaceagencydatahub.utils.RTree;
+import com.hydro17.spaceagencydatahub.utils.SpatialRelation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+//  In-memory R-tree over the bounding boxes of all product footprints.
+//  It is bulk loaded by ProductService before the web server is started and kept up to date by
+//  ProductSpatialIndexListener. The products written while a load reads the footprints are recorded and replace
+//  their footprints read by the load, which may be older.
+//  When disabled, spatial filters are answered by the database through the footprint cell key.
+//  The ids it finds are sent to the database as an IN list, so a search finding more than max-candidates
+//  products returns null and the spatial filter is left to the database as well.
+@Service
+public class ProductSpatialIndexService {
+
+    private final boolean enabled;
+    private final int maxCandidates;
+    private final RTree<Long> rTree = new RTree<>();
+    private final Map<Long, BoundingBox> boxesByProductId = new HashMap<>();
+    private final Map<Long, Long> missionIdsByProductId = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //  Products written since startLoading, a removed product has no box, null when not loading
+    private Map<Long, ProductBox> productsWrittenWhileLoading;
+
+    public ProductSpatialIndexService(@Value("${spaceagencydatahub.spatial-index.enabled:true}") boolean enabled,
+                                      @Value("${spaceagencydatahub.spatial-index.max-candidates:1000}") int maxCandidates) {
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //  Called before the footprints passed to load are read
+    public void startLoading() {
+        if (!enabled) return;
+
+        lock.writeLock().lock();
+        try {
+            productsWrittenWhileLoading = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void load(List<IProductFootprintBox> footprintBoxes) {
+        if (!enabled) return;
+
+        lock.writeLock().lock();
+        try {
+            List<RTree.Entry<Long>> entries = new ArrayList<>();
+            Map<Long, Long> missionIds = new HashMap<>();
+            Map<Long, ProductBox> writtenProducts = productsWrittenWhileLoading == null
+                    ? new HashMap<>() : productsWrittenWhileLoading;
+
+            footprintBoxes.forEach(footprintBox -> {
+                if (writtenProducts.containsKey(footprintBox.getProductId())) return;
+
+                BoundingBox box = new BoundingBox(
+                        footprintBox.getStartCoordinateLatitude(), footprintBox.getStartCoordinateLongitude(),
+                        footprintBox.getEndCoordinateLatitude(), footprintBox.getEndCoordinateLongitude());
+
+                if (box.isValid()) {
+                    entries.add(RTree.entry(box, footprintBox.getProductId()));
+                    missionIds.put(footprintBox.getProductId(), footprintBox.getMissionId());
+                }
+            });
+
+            writtenProducts.forEach((productId, productBox) -> {
+                if (productBox != null) {
+                    entries.add(RTree.entry(productBox.box, productId));
+                    missionIds.put(productId, productBox.missionId);
+                }
+            });
+
+            productsWrittenWhileLoading = null;
+            boxesByProductId.clear();
+            entries.forEach(entry -> boxesByProductId.put(entry.getValue(), entry.getBox()));
+            missionIdsByProductId.clear();
+            missionIdsByProductId.putAll(missionIds);
+            rTree.load(entries);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(long productId, Long missionId, BoundingBox box) {
+        if (!enabled) return;
+
+        lock.writeLock().lock();
+        try {
+            removeWithoutLock(productId);
+
+            if (box.isValid()) {
+                rTree.insert(box, productId);
+                boxesByProductId.put(productId, box);
+                missionIdsByProductId.put(productId, missionId);
+            }
+
+            if (productsWrittenWhileLoading != null) {
+                productsWrittenWhileLoading.put(productId, box.isValid() ? new ProductBox(missionId, box) : null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long productId) {
+        lock.writeLock().lock();
+        try {
+            removeWithoutLock(productId);
+
+            if (productsWrittenWhileLoading != null) productsWrittenWhileLoading.put(productId, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //  null when more than max-candidates products contain the point
+    public List<Long> findProductIdsContaining(double latitude, double longitude) {
+        lock.readLock().lock();
+        try {
+            return withinMaxCandidates(rTree.searchContaining(latitude, longitude, maxCandidates + 1));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //  null when more than max-candidates products match the area
+    public List<Long> findProductIdsInArea(BoundingBox area, SpatialRelation relation) {
+        lock.readLock().lock();
+        try {
+            return withinMaxCandidates(relation == SpatialRelation.WITHIN
+                    ? rTree.searchWithin(area, maxCandidates + 1)
+                    : rTree.searchIntersecting(area, maxCandidates + 1));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //  Ids of the k products nearest to the point, closest first.
+    //  If missionIds is not null, only products of these missions are taken into account.
+    public List<Long> findNearestProductIds(double latitude, double longitude, int k, Set<Long> missionIds) {
+        lock.readLock().lock();
+        try {
+            return rTree.nearest(latitude, longitude, k,
+                    productId -> missionIds == null || missionIds.contains(missionIdsByProductId.get(productId)))
+                    .stream()
+                    .map(RTree.Entry::getValue)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rTree.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Long> withinMaxCandidates(List<Long> productIds) {
+        return productIds.size() > maxCandidates ? null : productIds;
+    }
+
+    private void removeWithoutLock(long productId) {
+        BoundingBox box = boxesByProductId.remove(productId);
+        missionIdsByProductId.remove(productId);
+
+        if (box != null) {
+            rTree.remove(box, productId);
+        }
+    }
+
+    private static class ProductBox {
+
+        private final Long missionId;
+        private final BoundingBox box;
+
+        ProductBox(Long missionId, BoundingBox box) {
+            this.missionId = missionId;
+            this.box = box;
+        }
+    }
+}
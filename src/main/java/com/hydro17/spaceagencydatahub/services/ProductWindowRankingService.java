@@ -0,0 +1,118 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.models.IOrderItemPlacement;
+import com.hydro17.spaceagencydatahub.utils.RankingWindow;
+import com.hydro17.spaceagencydatahub.utils.WindowedRanking;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+//  Most ordered products of the last hour, day and week, counted by the time the orders were placed.
+//  Orders placed in the future are in no window.
+//  It is loaded by OrderItemService with the order items of the longest window, before the web server is started and
+//  when the order counts are repaired, and kept up to date by ProductWindowRankingListener. The order items saved or
+//  deleted while a load reads the order items are recorded, the load counts them as they are now whether the order
+//  items it read have them or not.
+//  Reading a ranking expires its old buckets, so reads and writes share one lock.
+@Service
+public class ProductWindowRankingService {
+
+    private final Map<RankingWindow, WindowedRanking> rankings = new EnumMap<>(RankingWindow.class);
+    private final Lock lock = new ReentrantLock();
+
+    //  Order items saved or deleted since startLoading, a deleted one has no placement, null when not loading
+    private Map<Long, Placement> orderItemsWrittenWhileLoading;
+
+    public ProductWindowRankingService() {
+        for (RankingWindow window : RankingWindow.values()) {
+            rankings.put(window, new WindowedRanking(window.getBucketCount(), window.getBucketDuration().toMillis()));
+        }
+    }
+
+    //  Called before the order items passed to load are read
+    public void startLoading() {
+        lock.lock();
+        try {
+            orderItemsWrittenWhileLoading = new HashMap<>();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void load(List<IOrderItemPlacement> orderItemPlacements) {
+        lock.lock();
+        try {
+            Map<Long, Placement> writtenOrderItems = orderItemsWrittenWhileLoading == null
+                    ? new HashMap<>() : orderItemsWrittenWhileLoading;
+            orderItemsWrittenWhileLoading = null;
+            rankings.values().forEach(WindowedRanking::clear);
+
+            orderItemPlacements.forEach(orderItemPlacement -> {
+                if (writtenOrderItems.containsKey(orderItemPlacement.getOrderItemId())) return;
+
+                addToRankings(orderItemPlacement.getProductId(), orderItemPlacement.getPlacedOn(), 1);
+            });
+
+            writtenOrderItems.values().forEach(placement -> {
+                if (placement != null) addToRankings(placement.productId, placement.placedOn, 1);
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //  A saved order item is added with the increment 1, a deleted one with -1
+    public void add(long orderItemId, long productId, LocalDateTime placedOn, long increment) {
+        lock.lock();
+        try {
+            addToRankings(productId, placedOn, increment);
+
+            if (orderItemsWrittenWhileLoading != null) {
+                orderItemsWrittenWhileLoading.put(orderItemId,
+                        increment > 0 ? new Placement(productId, placedOn) : null);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //  Ids of the most ordered products in the window ending now, from the rank offset, at most limit of them
+    public List<Long> getProductIds(RankingWindow window, int offset, int limit) {
+        lock.lock();
+        try {
+            return rankings.get(window).range(System.currentTimeMillis(), offset, limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //  Start of the longest window, older orders are in no ranking
+    public LocalDateTime getOldestRankedPlacedOn() {
+        return LocalDateTime.now().minus(RankingWindow.LAST_WEEK.getDuration());
+    }
+
+    private void addToRankings(long productId, LocalDateTime placedOn, long increment) {
+        long time = placedOn.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long now = System.currentTimeMillis();
+
+        rankings.values().forEach(ranking -> ranking.add(productId, time, increment, now));
+    }
+
+    private static class Placement {
+
+        private final long productId;
+        private final LocalDateTime placedOn;
+
+        Placement(long productId, LocalDateTime placedOn) {
+            this.productId = productId;
+            this.placedOn = placedOn;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+//  Immutable latitude/longitude rectangle. Latitude is treated as the x axis and longitude as the y axis.
+@Getter
+@EqualsAndHashCode
+@ToString
+public final class BoundingBox {
+
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    public BoundingBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    public static BoundingBox ofPoint(double latitude, double longitude) {
+        return new BoundingBox(latitude, longitude, latitude, longitude);
+    }
+
+    //  A box with a start coordinate greater than its end coordinate can't contain any point
+    public boolean isValid() {
+        return minLatitude <= maxLatitude && minLongitude <= maxLongitude;
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        return minLatitude <= latitude && latitude <= maxLatitude
+                && minLongitude <= longitude && longitude <= maxLongitude;
+    }
+
+    public boolean contains(BoundingBox other) {
+        return minLatitude <= other.minLatitude && other.maxLatitude <= maxLatitude
+                && minLongitude <= other.minLongitude && other.maxLongitude <= maxLongitude;
+    }
+
+    public boolean intersects(BoundingBox other) {
+        return minLatitude <= other.maxLatitude && other.minLatitude <= maxLatitude
+                && minLongitude <= other.maxLongitude && other.minLongitude <= maxLongitude;
+    }
+
+    public BoundingBox union(BoundingBox other) {
+        return new BoundingBox(
+                Math.min(minLatitude, other.minLatitude),
+                Math.min(minLongitude, other.minLongitude),
+                Math.max(maxLatitude, other.maxLatitude),
+                Math.max(maxLongitude, other.maxLongitude));
+    }
+
+    public double area() {
+        return (maxLatitude - minLatitude) * (maxLongitude - minLongitude);
+    }
+
+    public double enlargement(BoundingBox other) {
+        return union(other).area() - area();
+    }
+
+    //  Planar distance in degrees from the point to the nearest point of the box, 0 when the box contains the point
+    public double distanceTo(double latitude, double longitude) {
+        double latitudeDistance = Math.max(Math.max(minLatitude - latitude, latitude - maxLatitude), 0);
+        double longitudeDistance = Math.max(Math.max(minLongitude - longitude, longitude - maxLongitude), 0);
+
+        return Math.sqrt(latitudeDistance * latitudeDistance + longitudeDistance * longitudeDistance);
+    }
+
+    public double centerLatitude() {
+        return (minLatitude + maxLatitude) / 2;
+    }
+
+    public double centerLongitude() {
+        return (minLongitude + maxLongitude) / 2;
+    }
+}
@@ -0,0 +1,106 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+//  Approximate counts of ids in memory fixed by the error bounds, whatever the number of distinct ids.
+//  An estimate is never below the true count and, with probability 1 - delta, exceeds it by at most
+//  epsilon times the total of all counts. It has depth = ceil(ln(1 / delta)) rows of
+//  width = ceil(e / epsilon) counters, an id adds to one counter per row and its estimate is the
+//  smallest of them. Only non negative increments keep the bounds. It is not thread safe.
+public class CountMinSketch {
+
+    //  Mersenne prime 2^31 - 1 of the pairwise independent hash functions ((a * id + b) mod p) mod width,
+    //  a * id + b does not overflow for a, b and id mod p below it
+    private static final long PRIME = Integer.MAX_VALUE;
+
+    private final double epsilon;
+    private final double delta;
+    private final int width;
+    private final long[][] counters;
+    private final long[] hashA;
+    private final long[] hashB;
+    private long totalCount;
+
+    public CountMinSketch(double epsilon, double delta) {
+        this(epsilon, delta, new Random());
+    }
+
+    CountMinSketch(double epsilon, double delta, Random random) {
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("Epsilon and delta have to be between 0 and 1");
+        }
+
+        this.epsilon = epsilon;
+        this.delta = delta;
+        this.width = (int) Math.ceil(Math.E / epsilon);
+
+        int depth = (int) Math.ceil(Math.log(1 / delta));
+        this.counters = new long[depth][width];
+        this.hashA = new long[depth];
+        this.hashB = new long[depth];
+
+        for (int row = 0; row < depth; row++) {
+            hashA[row] = 1 + Math.floorMod(random.nextLong(), PRIME - 1);
+            hashB[row] = Math.floorMod(random.nextLong(), PRIME);
+        }
+    }
+
+    //  Returns the new estimate of the id
+    public long add(long id, long count) {
+        long estimate = Long.MAX_VALUE;
+
+        for (int row = 0; row < counters.length; row++) {
+            int column = column(row, id);
+            counters[row][column] += count;
+            estimate = Math.min(estimate, counters[row][column]);
+        }
+
+        totalCount += count;
+
+        return estimate;
+    }
+
+    public long estimate(long id) {
+        long estimate = Long.MAX_VALUE;
+
+        for (int row = 0; row < counters.length; row++) {
+            estimate = Math.min(estimate, counters[row][column(row, id)]);
+        }
+
+        return estimate;
+    }
+
+    public void clear() {
+        for (long[] row : counters) {
+            Arrays.fill(row, 0);
+        }
+
+        totalCount = 0;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public double getDelta() {
+        return delta;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    //  Largest overestimate that holds with probability 1 - delta
+    public long getMaxOverestimate() {
+        return (long) Math.ceil(epsilon * totalCount);
+    }
+
+    public long getSizeInBytes() {
+        return 8L * counters.length * width;
+    }
+
+    private int column(int row, long id) {
+        return (int) (((hashA[row] * Math.floorMod(id, PRIME) + hashB[row]) % PRIME) % width);
+    }
+}
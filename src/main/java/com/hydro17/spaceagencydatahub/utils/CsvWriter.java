@@ -0,0 +1,51 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+//  Writes comma separated values, one record per line, as RFC 4180 describes them. Only a small buffer is kept,
+//  every record goes straight to the output stream.
+public class CsvWriter implements Closeable {
+
+    public static final String MEDIA_TYPE = "text/csv";
+
+    private final Writer writer;
+
+    public CsvWriter(OutputStream outputStream) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    //  Null values are written as empty fields. Throws UncheckedIOException, so it can be called from a lambda.
+    public void write(Object... values) {
+        try {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) writer.write(',');
+                if (values[i] != null) writer.write(escape(values[i].toString()));
+            }
+
+            writer.write("\r\n");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    //  A field containing a comma, a quote or a line break is quoted, its quotes are doubled
+    private static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,115 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+//  Pre-aggregated product counts on a fixed grid of 2^BASE_LEVEL x 2^BASE_LEVEL cells.
+//  Each populated cell keeps a histogram per mission and per day, so counts for a coarser grid,
+//  a set of missions and a day range are summed from the histograms without touching single products.
+//  The class is not thread safe, callers have to synchronize access.
+public class DensityGrid {
+
+    public static final int BASE_LEVEL = 8;
+
+    //  cell index -> mission id -> epoch day -> product count
+    private final Map<Integer, Map<Long, TreeMap<Long, Long>>> histogramsByCell = new HashMap<>();
+
+    public void clear() {
+        histogramsByCell.clear();
+    }
+
+    public void add(double latitude, double longitude, long missionId, long epochDay, long delta) {
+        int cell = cellIndex(SpatialCellKey.latitudeToGrid(latitude, BASE_LEVEL),
+                SpatialCellKey.longitudeToGrid(longitude, BASE_LEVEL));
+
+        Map<Long, TreeMap<Long, Long>> histogramsByMission = histogramsByCell.computeIfAbsent(cell, key -> new HashMap<>());
+        TreeMap<Long, Long> histogram = histogramsByMission.computeIfAbsent(missionId, key -> new TreeMap<>());
+
+        long count = histogram.getOrDefault(epochDay, 0L) + delta;
+
+        if (count > 0) {
+            histogram.put(epochDay, count);
+            return;
+        }
+
+        histogram.remove(epochDay);
+        if (histogram.isEmpty()) histogramsByMission.remove(missionId);
+        if (histogramsByMission.isEmpty()) histogramsByCell.remove(cell);
+    }
+
+    //  Counts per cell of the grid on the given level (at most BASE_LEVEL) for cells intersecting the area.
+    //  Keys of the result are cell indexes on that level. missionIds equal to null means all missions,
+    //  fromEpochDay and toEpochDay are inclusive and may be null.
+    public Map<Integer, Long> count(BoundingBox area, int level, Set<Long> missionIds, Long fromEpochDay, Long toEpochDay) {
+        int x0 = SpatialCellKey.latitudeToGrid(area.getMinLatitude(), BASE_LEVEL);
+        int y0 = SpatialCellKey.longitudeToGrid(area.getMinLongitude(), BASE_LEVEL);
+        int x1 = SpatialCellKey.latitudeToGrid(area.getMaxLatitude(), BASE_LEVEL);
+        int y1 = SpatialCellKey.longitudeToGrid(area.getMaxLongitude(), BASE_LEVEL);
+        int shift = BASE_LEVEL - level;
+
+        Map<Integer, Long> result = new HashMap<>();
+
+        if (fromEpochDay != null && toEpochDay != null && fromEpochDay > toEpochDay) return result;
+
+        long cellsInArea = (long) (x1 - x0 + 1) * (y1 - y0 + 1);
+
+        if (cellsInArea <= histogramsByCell.size()) {
+            for (int x = x0; x <= x1; x++) {
+                for (int y = y0; y <= y1; y++) {
+                    addCount(result, x, y, shift, histogramsByCell.get(cellIndex(x, y)), missionIds, fromEpochDay, toEpochDay);
+                }
+            }
+        } else {
+            histogramsByCell.forEach((cell, histogramsByMission) -> {
+                int x = cell >>> BASE_LEVEL;
+                int y = cell & ((1 << BASE_LEVEL) - 1);
+
+                if (x0 <= x && x <= x1 && y0 <= y && y <= y1) {
+                    addCount(result, x, y, shift, histogramsByMission, missionIds, fromEpochDay, toEpochDay);
+                }
+            });
+        }
+
+        return result;
+    }
+
+    public static int cellIndex(int x, int y) {
+        return (x << BASE_LEVEL) | y;
+    }
+
+    public static int cellX(int cellIndex, int level) {
+        return cellIndex >>> level;
+    }
+
+    public static int cellY(int cellIndex, int level) {
+        return cellIndex & ((1 << level) - 1);
+    }
+
+    private static void addCount(Map<Integer, Long> result, int x, int y, int shift,
+                                 Map<Long, TreeMap<Long, Long>> histogramsByMission, Set<Long> missionIds,
+                                 Long fromEpochDay, Long toEpochDay) {
+        if (histogramsByMission == null) return;
+
+        long count = 0;
+
+        for (Map.Entry<Long, TreeMap<Long, Long>> entry : histogramsByMission.entrySet()) {
+            if (missionIds != null && !missionIds.contains(entry.getKey())) continue;
+
+            NavigableMap<Long, Long> days = entry.getValue();
+
+            if (fromEpochDay != null) days = days.tailMap(fromEpochDay, true);
+            if (toEpochDay != null) days = days.headMap(toEpochDay, true);
+
+            for (long dayCount : days.values()) {
+                count += dayCount;
+            }
+        }
+
+        if (count > 0) {
+            result.merge(((x >>> shift) << (BASE_LEVEL - shift)) | (y >>> shift), count, Long::sum);
+        }
+    }
+}
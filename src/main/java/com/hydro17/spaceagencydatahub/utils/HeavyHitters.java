@@ -0,0 +1,84 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+//  Approximate top ids by count: a CountMinSketch estimates every count and a bounded set keeps the capacity
+//  ids with the highest estimates seen so far, so memory depends on the error bounds and the capacity only.
+//  An id leaves the set when another one overtakes it, a low ranked id can therefore be missing if its
+//  count grew while it was out of the set. It is not thread safe.
+public class HeavyHitters {
+
+    private static final Comparator<long[]> BY_ESTIMATE_THEN_ID_DESC = Comparator
+            .comparingLong((long[] entry) -> entry[1])
+            .thenComparing((long[] entry) -> -entry[0]);
+
+    private final CountMinSketch sketch;
+    private final int capacity;
+
+    //  [id, estimate] entries, the first one is the weakest and is evicted first
+    private final TreeSet<long[]> top = new TreeSet<>(BY_ESTIMATE_THEN_ID_DESC);
+    private final Map<Long, long[]> topById = new HashMap<>();
+
+    public HeavyHitters(CountMinSketch sketch, int capacity) {
+        this.sketch = sketch;
+        this.capacity = capacity;
+    }
+
+    public void add(long id, long count) {
+        long estimate = sketch.add(id, count);
+        long[] entry = topById.get(id);
+
+        if (entry != null) {
+            top.remove(entry);
+            entry[1] = estimate;
+            top.add(entry);
+            return;
+        }
+
+        if (top.size() == capacity) {
+            long[] weakest = top.first();
+
+            if (BY_ESTIMATE_THEN_ID_DESC.compare(new long[]{id, estimate}, weakest) <= 0) return;
+
+            top.pollFirst();
+            topById.remove(weakest[0]);
+        }
+
+        entry = new long[]{id, estimate};
+        top.add(entry);
+        topById.put(id, entry);
+    }
+
+    //  [id, estimate] of at most limit ids with the highest estimates, the highest first
+    public List<long[]> getTop(int limit) {
+        List<long[]> entries = new ArrayList<>();
+        Iterator<long[]> descending = top.descendingIterator();
+
+        while (descending.hasNext() && entries.size() < limit) {
+            long[] entry = descending.next();
+            entries.add(new long[]{entry[0], entry[1]});
+        }
+
+        return entries;
+    }
+
+    public void clear() {
+        sketch.clear();
+        top.clear();
+        topById.clear();
+    }
+
+    public CountMinSketch getSketch() {
+        return sketch;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,38 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+//  Writes values as newline delimited JSON, one value per line. Only the buffer of the generator is kept,
+//  every value goes straight to the output stream.
+public class NdjsonWriter implements Closeable {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private final JsonGenerator generator;
+
+    public NdjsonWriter(ObjectMapper objectMapper, OutputStream outputStream) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(outputStream);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    //  Throws UncheckedIOException, so it can be called from a lambda
+    public void write(Object value) {
+        try {
+            generator.writeObject(value);
+            generator.writeRaw('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
@@ -0,0 +1,5 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+public enum OrderIngestionState {
+    QUEUED, PLACED, FAILED
+}
@@ -0,0 +1,203 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+//  Compressed set of ids in the style of Roaring bitmaps. Ids are split by their high bits into chunks
+//  of 65536 ids, a chunk keeps its low 16 bits in a sorted array while it holds at most 4096 ids
+//  and in a plain bitmap of 8 KB when it holds more, so both sparse and dense chunks stay small.
+//  It is not thread safe.
+public class ProductIdBitmap {
+
+    static final int CHUNK_BITS = 16;
+    static final int MAX_ARRAY_CONTAINER_SIZE = 4096;
+
+    //  rough per chunk overhead of the map entry and the container object
+    private static final long CHUNK_OVERHEAD_BYTES = 64;
+
+    private final Map<Long, Container> containers = new HashMap<>();
+    private long cardinality;
+
+    public boolean contains(long id) {
+        Container container = containers.get(id >>> CHUNK_BITS);
+        return container != null && container.contains(low(id));
+    }
+
+    //  Returns false if the id was already in the bitmap
+    public boolean add(long id) {
+        long key = id >>> CHUNK_BITS;
+        Container container = containers.get(key);
+
+        if (container == null) container = new ArrayContainer();
+        else if (container.contains(low(id))) return false;
+
+        containers.put(key, container.add(low(id)));
+        cardinality++;
+
+        return true;
+    }
+
+    //  Returns false if the id was not in the bitmap
+    public boolean remove(long id) {
+        long key = id >>> CHUNK_BITS;
+        Container container = containers.get(key);
+
+        if (container == null || !container.contains(low(id))) return false;
+
+        container = container.remove(low(id));
+
+        if (container.getCardinality() == 0) containers.remove(key);
+        else containers.put(key, container);
+
+        cardinality--;
+
+        return true;
+    }
+
+    public void clear() {
+        containers.clear();
+        cardinality = 0;
+    }
+
+    public long getCardinality() {
+        return cardinality;
+    }
+
+    //  Estimated memory used by the containers
+    public long getSizeInBytes() {
+        return containers.values().stream()
+                .mapToLong(container -> container.getSizeInBytes() + CHUNK_OVERHEAD_BYTES)
+                .sum();
+    }
+
+    private static char low(long id) {
+        return (char) id;
+    }
+
+    private abstract static class Container {
+
+        abstract boolean contains(char low);
+
+        //  The low bits are not in the container yet, returns the container holding them afterwards
+        abstract Container add(char low);
+
+        //  The low bits are in the container, returns the container holding the rest afterwards
+        abstract Container remove(char low);
+
+        abstract int getCardinality();
+
+        abstract long getSizeInBytes();
+    }
+
+    private static class ArrayContainer extends Container {
+
+        private char[] values = new char[4];
+        private int size;
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, size, low) >= 0;
+        }
+
+        @Override
+        Container add(char low) {
+            if (size == MAX_ARRAY_CONTAINER_SIZE) {
+                return new BitmapContainer(this).add(low);
+            }
+
+            int index = -Arrays.binarySearch(values, 0, size, low) - 1;
+
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(values.length * 2, MAX_ARRAY_CONTAINER_SIZE));
+            }
+
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = low;
+            size++;
+
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int index = Arrays.binarySearch(values, 0, size, low);
+
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+
+            return this;
+        }
+
+        @Override
+        int getCardinality() {
+            return size;
+        }
+
+        @Override
+        long getSizeInBytes() {
+            return 2L * values.length;
+        }
+    }
+
+    private static class BitmapContainer extends Container {
+
+        private final long[] words = new long[(1 << CHUNK_BITS) / Long.SIZE];
+        private int cardinality;
+
+        BitmapContainer(ArrayContainer arrayContainer) {
+            for (int i = 0; i < arrayContainer.size; i++) {
+                char low = arrayContainer.values[i];
+                words[low >>> 6] |= 1L << low;
+            }
+
+            cardinality = arrayContainer.size;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(char low) {
+            words[low >>> 6] |= 1L << low;
+            cardinality++;
+
+            return this;
+        }
+
+        //  Goes back to a sorted array when the chunk becomes sparse again
+        @Override
+        Container remove(char low) {
+            words[low >>> 6] &= ~(1L << low);
+            cardinality--;
+
+            if (cardinality > MAX_ARRAY_CONTAINER_SIZE) return this;
+
+            ArrayContainer arrayContainer = new ArrayContainer();
+            arrayContainer.values = new char[MAX_ARRAY_CONTAINER_SIZE];
+
+            for (int word = 0; word < words.length; word++) {
+                long bits = words[word];
+
+                while (bits != 0) {
+                    arrayContainer.values[arrayContainer.size++] = (char) (word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+
+            return arrayContainer;
+        }
+
+        @Override
+        int getCardinality() {
+            return cardinality;
+        }
+
+        @Override
+        long getSizeInBytes() {
+            return 8L * words.length;
+        }
+    }
+}
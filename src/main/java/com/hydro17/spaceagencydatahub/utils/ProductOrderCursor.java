@@ -0,0 +1,52 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+//  Position in the order history sorted by (placedOn, id) newest first, the next page starts after it.
+//  Clients get it as an opaque URL safe string.
+@Getter
+@EqualsAndHashCode
+@ToString
+public final class ProductOrderCursor {
+
+    private final LocalDateTime placedOn;
+    private final long productOrderId;
+
+    public ProductOrderCursor(LocalDateTime placedOn, long productOrderId) {
+        this.placedOn = placedOn;
+        this.productOrderId = productOrderId;
+    }
+
+    public String encode() {
+        String position = placedOn.toEpochSecond(ZoneOffset.UTC) + ":" + placedOn.getNano() + ":" + productOrderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //  Throws IllegalArgumentException if the cursor wasn't created by encode()
+    public static ProductOrderCursor decode(String cursor) {
+        String[] position;
+
+        try {
+            position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Cursor is not valid Base64", ex);
+        }
+
+        if (position.length != 3) throw new IllegalArgumentException("Cursor has to contain 3 parts");
+
+        try {
+            return new ProductOrderCursor(
+                    LocalDateTime.ofEpochSecond(Long.parseLong(position[0]), Integer.parseInt(position[1]), ZoneOffset.UTC),
+                    Long.parseLong(position[2]));
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Cursor contains an invalid position", ex);
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+//  R-tree (Guttman, quadratic split) over bounding boxes with STR bulk loading.
+//  The class is not thread safe, callers have to synchronize access.
+public class RTree<T> {
+
+    private static final int MAX_ENTRIES = 16;
+    private static final int MIN_ENTRIES = 6;
+
+    private Node<T> root = new Node<>(true);
+    private int size;
+
+    public static final class Entry<T> {
+        private final BoundingBox box;
+        private final T value;
+
+        Entry(BoundingBox box, T value) {
+            this.box = box;
+            this.value = value;
+        }
+
+        public BoundingBox getBox() {
+            return box;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+
+    private static final class Node<T> {
+        private final boolean leaf;
+        private final List<Node<T>> children = new ArrayList<>();
+        private final List<Entry<T>> entries = new ArrayList<>();
+        private Node<T> parent;
+        private BoundingBox box;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        int count() {
+            return leaf ? entries.size() : children.size();
+        }
+
+        void addChild(Node<T> child) {
+            child.parent = this;
+            children.add(child);
+        }
+
+        void recalculateBox() {
+            BoundingBox result = null;
+
+            if (leaf) {
+                for (Entry<T> entry : entries) {
+                    result = result == null ? entry.box : result.union(entry.box);
+                }
+            } else {
+                for (Node<T> child : children) {
+                    result = result == null ? child.box : result.union(child.box);
+                }
+            }
+
+            box = result;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = new Node<>(true);
+        size = 0;
+    }
+
+    public void insert(BoundingBox box, T value) {
+        insert(new Entry<>(box, value));
+        size++;
+    }
+
+    public boolean remove(BoundingBox box, T value) {
+        Node<T> leaf = findLeaf(root, box, value);
+
+        if (leaf == null) return false;
+
+        leaf.entries.removeIf(entry -> entry.box.equals(box) && entry.value.equals(value));
+        condenseTree(leaf);
+        size--;
+
+        return true;
+    }
+
+    public List<T> searchContaining(double latitude, double longitude) {
+        return searchContaining(latitude, longitude, Integer.MAX_VALUE);
+    }
+
+    //  At most limit values, the search stops as soon as it found them
+    public List<T> searchContaining(double latitude, double longitude, int limit) {
+        return search(nodeBox -> nodeBox.contains(latitude, longitude),
+                entry -> entry.box.contains(latitude, longitude), limit);
+    }
+
+    public List<T> searchIntersecting(BoundingBox area) {
+        return searchIntersecting(area, Integer.MAX_VALUE);
+    }
+
+    public List<T> searchIntersecting(BoundingBox area, int limit) {
+        return search(nodeBox -> nodeBox.intersects(area), entry -> entry.box.intersects(area), limit);
+    }
+
+    public List<T> searchWithin(BoundingBox area) {
+        return searchWithin(area, Integer.MAX_VALUE);
+    }
+
+    public List<T> searchWithin(BoundingBox area, int limit) {
+        return search(nodeBox -> nodeBox.intersects(area), entry -> area.contains(entry.box), limit);
+    }
+
+    //  Best-first traversal: nodes and entries are visited in order of their distance to the point,
+    //  so only the part of the tree closer than the k-th accepted entry is ever expanded
+    public List<Entry<T>> nearest(double latitude, double longitude, int k, Predicate<T> filter) {
+        List<Entry<T>> result = new ArrayList<>();
+
+        if (root.box == null || k <= 0) return result;
+
+        PriorityQueue<Candidate<T>> queue = new PriorityQueue<>(Comparator.comparingDouble((Candidate<T> candidate) -> candidate.distance));
+        queue.add(new Candidate<>(root.box.distanceTo(latitude, longitude), root, null));
+
+        while (!queue.isEmpty() && result.size() < k) {
+            Candidate<T> candidate = queue.poll();
+
+            if (candidate.entry != null) {
+                result.add(candidate.entry);
+            } else if (candidate.node.leaf) {
+                for (Entry<T> entry : candidate.node.entries) {
+                    if (filter.test(entry.value)) {
+                        queue.add(new Candidate<>(entry.box.distanceTo(latitude, longitude), null, entry));
+                    }
+                }
+            } else {
+                for (Node<T> child : candidate.node.children) {
+                    queue.add(new Candidate<>(child.box.distanceTo(latitude, longitude), child, null));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static final class Candidate<T> {
+        private final double distance;
+        private final Node<T> node;
+        private final Entry<T> entry;
+
+        Candidate(double distance, Node<T> node, Entry<T> entry) {
+            this.distance = distance;
+            this.node = node;
+            this.entry = entry;
+        }
+    }
+
+    //  Bulk loads the tree with Sort-Tile-Recursive packing, replacing its current content
+    public void load(List<Entry<T>> entries) {
+        clear();
+
+        if (entries.isEmpty()) return;
+
+        List<Node<T>> nodes = new ArrayList<>();
+
+        for (List<Entry<T>> group : tile(new ArrayList<>(entries), entry -> entry.box)) {
+            Node<T> leaf = new Node<>(true);
+            leaf.entries.addAll(group);
+            leaf.recalculateBox();
+            nodes.add(leaf);
+        }
+
+        while (nodes.size() > 1) {
+            List<Node<T>> parents = new ArrayList<>();
+
+            for (List<Node<T>> group : tile(nodes, node -> node.box)) {
+                Node<T> parent = new Node<>(false);
+                group.forEach(parent::addChild);
+                parent.recalculateBox();
+                parents.add(parent);
+            }
+
+            nodes = parents;
+        }
+
+        root = nodes.get(0);
+        root.parent = null;
+        size = entries.size();
+    }
+
+    public static <T> Entry<T> entry(BoundingBox box, T value) {
+        return new Entry<>(box, value);
+    }
+
+    private List<T> search(Predicate<BoundingBox> nodeFilter, Predicate<Entry<T>> entryFilter, int limit) {
+        List<T> result = new ArrayList<>();
+
+        if (root.box == null || limit <= 0) return result;
+
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+
+            if (!nodeFilter.test(node.box)) continue;
+
+            if (node.leaf) {
+                for (Entry<T> entry : node.entries) {
+                    if (!entryFilter.test(entry)) continue;
+
+                    result.add(entry.value);
+                    if (result.size() >= limit) return result;
+                }
+            } else {
+                node.children.forEach(stack::push);
+            }
+        }
+
+        return result;
+    }
+
+    private void insert(Entry<T> entry) {
+        Node<T> leaf = chooseLeaf(entry.box);
+        leaf.entries.add(entry);
+        adjustTree(leaf);
+    }
+
+    private Node<T> chooseLeaf(BoundingBox box) {
+        Node<T> node = root;
+
+        while (!node.leaf) {
+            Node<T> best = null;
+            double bestEnlargement = Double.MAX_VALUE;
+
+            for (Node<T> child : node.children) {
+                double enlargement = child.box.enlargement(box);
+
+                if (best == null || enlargement < bestEnlargement
+                        || (enlargement == bestEnlargement && child.box.area() < best.box.area())) {
+                    best = child;
+                    bestEnlargement = enlargement;
+                }
+            }
+
+            node = best;
+        }
+
+        return node;
+    }
+
+    private void adjustTree(Node<T> node) {
+        while (node != null) {
+            Node<T> sibling = node.count() > MAX_ENTRIES ? split(node) : null;
+            node.recalculateBox();
+
+            if (node == root) {
+                if (sibling != null) {
+                    Node<T> newRoot = new Node<>(false);
+                    newRoot.addChild(node);
+                    newRoot.addChild(sibling);
+                    newRoot.recalculateBox();
+                    root = newRoot;
+                }
+                return;
+            }
+
+            if (sibling != null) {
+                node.parent.addChild(sibling);
+            }
+
+            node = node.parent;
+        }
+    }
+
+    //  Moves part of the node content to a new sibling node, which is returned
+    private Node<T> split(Node<T> node) {
+        Node<T> sibling = new Node<>(node.leaf);
+
+        if (node.leaf) {
+            List<List<Entry<T>>> groups = quadraticSplit(new ArrayList<>(node.entries), entry -> entry.box);
+            node.entries.clear();
+            node.entries.addAll(groups.get(0));
+            sibling.entries.addAll(groups.get(1));
+        } else {
+            List<List<Node<T>>> groups = quadraticSplit(new ArrayList<>(node.children), child -> child.box);
+            node.children.clear();
+            groups.get(0).forEach(node::addChild);
+            groups.get(1).forEach(sibling::addChild);
+        }
+
+        sibling.recalculateBox();
+        return sibling;
+    }
+
+    private static <X> List<List<X>> quadraticSplit(List<X> items, Function<X, BoundingBox> boxOf) {
+        int seedA = 0;
+        int seedB = 1;
+        double worstWaste = -Double.MAX_VALUE;
+
+        for (int i = 0; i < items.size(); i++) {
+            for (int j = i + 1; j < items.size(); j++) {
+                BoundingBox a = boxOf.apply(items.get(i));
+                BoundingBox b = boxOf.apply(items.get(j));
+                double waste = a.union(b).area() - a.area() - b.area();
+
+                if (waste > worstWaste) {
+                    worstWaste = waste;
+                    seedA = i;
+                    seedB = j;
+                }
+            }
+        }
+
+        List<X> groupA = new ArrayList<>();
+        List<X> groupB = new ArrayList<>();
+        groupA.add(items.get(seedA));
+        groupB.add(items.get(seedB));
+        BoundingBox boxA = boxOf.apply(items.get(seedA));
+        BoundingBox boxB = boxOf.apply(items.get(seedB));
+
+        List<X> remaining = new ArrayList<>(items);
+        remaining.remove(seedB);
+        remaining.remove(seedA);
+
+        while (!remaining.isEmpty()) {
+            if (groupA.size() + remaining.size() == MIN_ENTRIES) {
+                groupA.addAll(remaining);
+                break;
+            }
+
+            if (groupB.size() + remaining.size() == MIN_ENTRIES) {
+                groupB.addAll(remaining);
+                break;
+            }
+
+            int next = 0;
+            double maxPreference = -1;
+
+            for (int i = 0; i < remaining.size(); i++) {
+                BoundingBox box = boxOf.apply(remaining.get(i));
+                double preference = Math.abs(boxA.enlargement(box) - boxB.enlargement(box));
+
+                if (preference > maxPreference) {
+                    maxPreference = preference;
+                    next = i;
+                }
+            }
+
+            X item = remaining.remove(next);
+            BoundingBox box = boxOf.apply(item);
+            double enlargementA = boxA.enlargement(box);
+            double enlargementB = boxB.enlargement(box);
+
+            boolean toA = enlargementA < enlargementB
+                    || (enlargementA == enlargementB && (boxA.area() < boxB.area()
+                    || (boxA.area() == boxB.area() && groupA.size() <= groupB.size())));
+
+            if (toA) {
+                groupA.add(item);
+                boxA = boxA.union(box);
+            } else {
+                groupB.add(item);
+                boxB = boxB.union(box);
+            }
+        }
+
+        List<List<X>> groups = new ArrayList<>();
+        groups.add(groupA);
+        groups.add(groupB);
+        return groups;
+    }
+
+    private Node<T> findLeaf(Node<T> node, BoundingBox box, T value) {
+        if (node.box == null || !node.box.contains(box)) return null;
+
+        if (node.leaf) {
+            for (Entry<T> entry : node.entries) {
+                if (entry.box.equals(box) && entry.value.equals(value)) return node;
+            }
+            return null;
+        }
+
+        for (Node<T> child : node.children) {
+            Node<T> leaf = findLeaf(child, box, value);
+            if (leaf != null) return leaf;
+        }
+
+        return null;
+    }
+
+    private void condenseTree(Node<T> leaf) {
+        List<Entry<T>> orphans = new ArrayList<>();
+        Node<T> node = leaf;
+
+        while (node != root) {
+            Node<T> parent = node.parent;
+
+            if (node.count() < MIN_ENTRIES) {
+                parent.children.remove(node);
+                collectEntries(node, orphans);
+            } else {
+                node.recalculateBox();
+            }
+
+            node = parent;
+        }
+
+        root.recalculateBox();
+
+        while (!root.leaf && root.children.size() == 1) {
+            root = root.children.get(0);
+            root.parent = null;
+        }
+
+        if (!root.leaf && root.children.isEmpty()) {
+            root = new Node<>(true);
+        }
+
+        orphans.forEach(this::insert);
+    }
+
+    private static <T> void collectEntries(Node<T> node, List<Entry<T>> result) {
+        if (node.leaf) {
+            result.addAll(node.entries);
+        } else {
+            node.children.forEach(child -> collectEntries(child, result));
+        }
+    }
+
+    //  Sort-Tile-Recursive grouping: slices by latitude center, then packs each slice by longitude center
+    private static <X> List<List<X>> tile(List<X> items, Function<X, BoundingBox> boxOf) {
+        int nodeCount = (int) Math.ceil(items.size() / (double) MAX_ENTRIES);
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = sliceCount * MAX_ENTRIES;
+
+        items.sort(Comparator.comparingDouble(item -> boxOf.apply(item).centerLatitude()));
+
+        List<List<X>> groups = new ArrayList<>();
+
+        for (int sliceStart = 0; sliceStart < items.size(); sliceStart += sliceSize) {
+            List<X> slice = new ArrayList<>(items.subList(sliceStart, Math.min(sliceStart + sliceSize, items.size())));
+            slice.sort(Comparator.comparingDouble(item -> boxOf.apply(item).centerLongitude()));
+
+            for (int groupStart = 0; groupStart < slice.size(); groupStart += MAX_ENTRIES) {
+                groups.add(new ArrayList<>(slice.subList(groupStart, Math.min(groupStart + MAX_ENTRIES, slice.size()))));
+            }
+        }
+
+        return groups;
+    }
+}
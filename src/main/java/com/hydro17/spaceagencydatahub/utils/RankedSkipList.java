@@ -0,0 +1,181 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//  Ids ranked by score, the highest score first and the lower id first on equal scores.
+//  It is a skip list whose links also store how many entries they skip (their span), so the entry at
+//  a given rank is found in O(log n) and a range of limit entries from it is read in O(log n + limit).
+//  An id is expected to be in the list at most once, with the score it was inserted with.
+//  It is not thread safe.
+public class RankedSkipList {
+
+    private static final int MAX_LEVEL = 32;
+    private static final double LEVEL_PROBABILITY = 0.25;
+
+    private final Node head = new Node(0, 0, MAX_LEVEL);
+    private final Random random;
+    private int level = 1;
+    private int size;
+
+    public RankedSkipList() {
+        this(new Random());
+    }
+
+    RankedSkipList(Random random) {
+        this.random = random;
+    }
+
+    public void insert(long id, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node node = head;
+
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+
+            while (node.next[i] != null && node.next[i].isBefore(id, score)) {
+                rank[i] += node.span[i];
+                node = node.next[i];
+            }
+
+            update[i] = node;
+        }
+
+        int nodeLevel = randomLevel();
+
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                update[i].span[i] = size;
+            }
+
+            level = nodeLevel;
+        }
+
+        Node inserted = new Node(id, score, nodeLevel);
+
+        for (int i = 0; i < nodeLevel; i++) {
+            inserted.next[i] = update[i].next[i];
+            update[i].next[i] = inserted;
+
+            inserted.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+
+//      links above the new node now skip one entry more
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+
+        size++;
+    }
+
+    //  Returns false if there is no such entry
+    public boolean remove(long id, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node node = head;
+
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && node.next[i].isBefore(id, score)) {
+                node = node.next[i];
+            }
+
+            update[i] = node;
+        }
+
+        Node removed = node.next[0];
+
+        if (removed == null || removed.id != id || removed.score != score) return false;
+
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == removed) {
+                update[i].span[i] += removed.span[i] - 1;
+                update[i].next[i] = removed.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+
+        size--;
+
+        return true;
+    }
+
+    //  Ids from the rank offset (0 is the highest score), at most limit of them
+    public List<Long> range(int offset, int limit) {
+        List<Long> ids = new ArrayList<>();
+
+        if (offset >= size || limit <= 0) return ids;
+
+//      the head has rank 0, the entry at offset has rank offset + 1
+        Node node = head;
+        int traversed = 0;
+
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && traversed + node.span[i] <= offset + 1) {
+                traversed += node.span[i];
+                node = node.next[i];
+            }
+
+            if (traversed == offset + 1) break;
+        }
+
+        while (node != null && ids.size() < limit) {
+            ids.add(node.id);
+            node = node.next[0];
+        }
+
+        return ids;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+
+        level = 1;
+        size = 0;
+    }
+
+    private int randomLevel() {
+        int nodeLevel = 1;
+
+        while (nodeLevel < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+            nodeLevel++;
+        }
+
+        return nodeLevel;
+    }
+
+    private static class Node {
+
+        private final long id;
+        private final long score;
+        private final Node[] next;
+        private final int[] span;
+
+        Node(long id, long score, int level) {
+            this.id = id;
+            this.score = score;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+
+        //  Whether this node is ranked before the entry
+        boolean isBefore(long id, long score) {
+            return this.score > score || (this.score == score && this.id < id);
+        }
+    }
+}
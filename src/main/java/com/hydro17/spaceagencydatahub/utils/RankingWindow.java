@@ -0,0 +1,45 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import java.time.Duration;
+
+//  Time windows of the most ordered products, the window is split into buckets of bucketDuration
+public enum RankingWindow {
+    LAST_HOUR("1h", 60, Duration.ofMinutes(1)),
+    LAST_DAY("24h", 96, Duration.ofMinutes(15)),
+    LAST_WEEK("7d", 168, Duration.ofHours(1));
+
+    private final String parameter;
+    private final int bucketCount;
+    private final Duration bucketDuration;
+
+    RankingWindow(String parameter, int bucketCount, Duration bucketDuration) {
+        this.parameter = parameter;
+        this.bucketCount = bucketCount;
+        this.bucketDuration = bucketDuration;
+    }
+
+    public String getParameter() {
+        return parameter;
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    public Duration getBucketDuration() {
+        return bucketDuration;
+    }
+
+    public Duration getDuration() {
+        return bucketDuration.multipliedBy(bucketCount);
+    }
+
+    //  Throws IllegalArgumentException if there is no such window
+    public static RankingWindow ofParameter(String parameter) {
+        for (RankingWindow window : values()) {
+            if (window.parameter.equals(parameter)) return window;
+        }
+
+        throw new IllegalArgumentException("No ranking window " + parameter);
+    }
+}
@@ -0,0 +1,157 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//  Hierarchical Z-order (Morton) cell keys over the latitude/longitude plane.
+//
+//  A cell on a given level is encoded as its interleaved coordinate bits followed by a single marker bit,
+//  left aligned to the deepest level. Every descendant of a cell then has a key in one contiguous range
+//  around the key of the cell, so "all footprints inside cell C" is a single BETWEEN on an indexed column.
+//  A footprint is keyed by the smallest cell that encloses its whole bounding box.
+//
+//  Coordinates outside the latitude/longitude domain are clamped to its border. Clamping is monotonic, so
+//  the keys stay a correct pre-filter; the exact coordinate check has to follow anyway.
+public final class SpatialCellKey {
+
+    public static final int MAX_LEVEL = 16;
+
+    private static final double MIN_LATITUDE = -90;
+    private static final double MAX_LATITUDE = 90;
+    private static final double MIN_LONGITUDE = -180;
+    private static final double MAX_LONGITUDE = 180;
+    private static final int GRID_SIZE = 1 << MAX_LEVEL;
+
+    private SpatialCellKey() {
+    }
+
+    public static long ofBox(double startLatitude, double startLongitude, double endLatitude, double endLongitude) {
+        int x0 = latitudeToGrid(Math.min(startLatitude, endLatitude));
+        int y0 = longitudeToGrid(Math.min(startLongitude, endLongitude));
+        int x1 = latitudeToGrid(Math.max(startLatitude, endLatitude));
+        int y1 = longitudeToGrid(Math.max(startLongitude, endLongitude));
+
+        return cellKey(x0, y0, enclosingLevel(x0, y0, x1, y1));
+    }
+
+    //  Keys of all cells containing the point, one per level. A footprint contains the point
+    //  only if its key is one of them.
+    public static List<Long> ofPointAncestors(double latitude, double longitude) {
+        int x = latitudeToGrid(latitude);
+        int y = longitudeToGrid(longitude);
+
+        List<Long> keys = new ArrayList<>();
+
+        for (int level = 0; level <= MAX_LEVEL; level++) {
+            keys.add(cellKey(x, y, level));
+        }
+
+        return keys;
+    }
+
+    //  Key predicates for footprints related to the area: an exact list of keys of cells enclosing
+    //  the area (empty for WITHIN) and one key range covering every cell inside the enclosing cell
+    public static KeyRanges ofArea(BoundingBox area, SpatialRelation relation) {
+        int x0 = latitudeToGrid(area.getMinLatitude());
+        int y0 = longitudeToGrid(area.getMinLongitude());
+        int x1 = latitudeToGrid(area.getMaxLatitude());
+        int y1 = longitudeToGrid(area.getMaxLongitude());
+
+        int level = enclosingLevel(x0, y0, x1, y1);
+        long enclosingKey = cellKey(x0, y0, level);
+        long lowestBit = 1L << (2 * (MAX_LEVEL - level));
+
+        List<Long> ancestorKeys = new ArrayList<>();
+
+        if (relation != SpatialRelation.WITHIN) {
+            for (int ancestorLevel = 0; ancestorLevel < level; ancestorLevel++) {
+                ancestorKeys.add(cellKey(x0, y0, ancestorLevel));
+            }
+        }
+
+        return new KeyRanges(ancestorKeys, enclosingKey - lowestBit + 1, enclosingKey + lowestBit - 1);
+    }
+
+    public static final class KeyRanges {
+        private final List<Long> exactKeys;
+        private final long rangeStart;
+        private final long rangeEnd;
+
+        KeyRanges(List<Long> exactKeys, long rangeStart, long rangeEnd) {
+            this.exactKeys = exactKeys;
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+        }
+
+        public List<Long> getExactKeys() {
+            return exactKeys;
+        }
+
+        public long getRangeStart() {
+            return rangeStart;
+        }
+
+        public long getRangeEnd() {
+            return rangeEnd;
+        }
+    }
+
+    //  Column of the cell containing the latitude on a grid with 2^level cells per side
+    public static int latitudeToGrid(double latitude, int level) {
+        return latitudeToGrid(latitude) >>> (MAX_LEVEL - level);
+    }
+
+    //  Row of the cell containing the longitude on a grid with 2^level cells per side
+    public static int longitudeToGrid(double longitude, int level) {
+        return longitudeToGrid(longitude) >>> (MAX_LEVEL - level);
+    }
+
+    public static BoundingBox cellBounds(int x, int y, int level) {
+        double latitudeSize = (MAX_LATITUDE - MIN_LATITUDE) / (1 << level);
+        double longitudeSize = (MAX_LONGITUDE - MIN_LONGITUDE) / (1 << level);
+
+        return new BoundingBox(MIN_LATITUDE + x * latitudeSize, MIN_LONGITUDE + y * longitudeSize,
+                MIN_LATITUDE + (x + 1) * latitudeSize, MIN_LONGITUDE + (y + 1) * longitudeSize);
+    }
+
+    static long cellKey(int x, int y, int level) {
+        int shift = MAX_LEVEL - level;
+        long morton = interleave(x >>> shift, y >>> shift);
+
+        return ((morton << 1) | 1) << (2 * shift);
+    }
+
+    private static int enclosingLevel(int x0, int y0, int x1, int y1) {
+        int differingBits = Math.max(bitLength(x0 ^ x1), bitLength(y0 ^ y1));
+        return MAX_LEVEL - differingBits;
+    }
+
+    private static int bitLength(int value) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(value);
+    }
+
+    private static long interleave(int x, int y) {
+        long result = 0;
+
+        for (int bit = MAX_LEVEL - 1; bit >= 0; bit--) {
+            result = (result << 2) | (((x >>> bit) & 1L) << 1) | ((y >>> bit) & 1L);
+        }
+
+        return result;
+    }
+
+    private static int latitudeToGrid(double latitude) {
+        return toGrid(latitude, MIN_LATITUDE, MAX_LATITUDE);
+    }
+
+    private static int longitudeToGrid(double longitude) {
+        return toGrid(longitude, MIN_LONGITUDE, MAX_LONGITUDE);
+    }
+
+    private static int toGrid(double value, double min, double max) {
+        double clamped = Math.max(min, Math.min(max, value));
+        int cell = (int) ((clamped - min) / (max - min) * GRID_SIZE);
+
+        return Math.min(cell, GRID_SIZE - 1);
+    }
+}
@@ -0,0 +1,6 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+//  How a product footprint has to relate to a searched area
+public enum SpatialRelation {
+    INTERSECTS, WITHIN
+}
@@ -0,0 +1,121 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//  Ids ranked by their counts within a sliding time window.
+//  The window is a ring buffer of bucketCount buckets of bucketDuration each, a bucket holds the counts added
+//  during its time. When time moves past a bucket, its counts are subtracted from the window totals and
+//  the bucket is reused, so rolling over costs the ids of the expired bucket and never rescans the history.
+//  The window totals are kept ranked in a RankedSkipList. The window covers the current bucket and
+//  the bucketCount - 1 before it, so it is between (bucketCount - 1) and bucketCount bucket durations long.
+//  Times are in milliseconds, it is not thread safe.
+public class WindowedRanking {
+
+    private static final long NO_BUCKET = Long.MIN_VALUE;
+
+    private final int bucketCount;
+    private final long bucketDuration;
+    private final List<Map<Long, Long>> buckets;
+    private final long[] bucketNumbers;
+
+    private final RankedSkipList ranking = new RankedSkipList();
+    private final Map<Long, Long> totalsById = new HashMap<>();
+    private long currentBucketNumber = NO_BUCKET;
+
+    public WindowedRanking(int bucketCount, long bucketDuration) {
+        this.bucketCount = bucketCount;
+        this.bucketDuration = bucketDuration;
+        this.buckets = new ArrayList<>(bucketCount);
+        this.bucketNumbers = new long[bucketCount];
+
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new HashMap<>());
+            bucketNumbers[i] = NO_BUCKET;
+        }
+    }
+
+    //  Adds the increment, which may be negative, to the count of the id at the time.
+    //  Times outside of the window ending at now are ignored.
+    public void add(long id, long time, long increment, long now) {
+        long bucketNumber = Math.floorDiv(time, bucketDuration);
+
+        advanceTo(Math.floorDiv(now, bucketDuration));
+
+        if (bucketNumber <= currentBucketNumber - bucketCount || bucketNumber > currentBucketNumber) return;
+
+        int slot = (int) Math.floorMod(bucketNumber, (long) bucketCount);
+        bucketNumbers[slot] = bucketNumber;
+
+        Map<Long, Long> bucket = buckets.get(slot);
+        long count = bucket.getOrDefault(id, 0L) + increment;
+
+        if (count == 0) bucket.remove(id);
+        else bucket.put(id, count);
+
+        addToTotal(id, increment);
+    }
+
+    //  Ids with the highest counts in the window ending at now, from the rank offset, at most limit of them
+    public List<Long> range(long now, int offset, int limit) {
+        advanceTo(Math.floorDiv(now, bucketDuration));
+
+        return ranking.range(offset, limit);
+    }
+
+    public int size() {
+        return ranking.size();
+    }
+
+    public void clear() {
+        buckets.forEach(Map::clear);
+        Arrays.fill(bucketNumbers, NO_BUCKET);
+        ranking.clear();
+        totalsById.clear();
+        currentBucketNumber = NO_BUCKET;
+    }
+
+    //  Expires the buckets that are no longer in the window when it ends in the bucket
+    private void advanceTo(long bucketNumber) {
+        if (bucketNumber <= currentBucketNumber) return;
+
+        if (currentBucketNumber != NO_BUCKET) {
+            long firstExpired = currentBucketNumber - bucketCount + 1;
+            long lastExpired = Math.min(bucketNumber - bucketCount, currentBucketNumber);
+
+            for (long expired = firstExpired; expired <= lastExpired; expired++) {
+                expire(expired);
+            }
+        }
+
+        currentBucketNumber = bucketNumber;
+    }
+
+    private void expire(long bucketNumber) {
+        int slot = (int) Math.floorMod(bucketNumber, (long) bucketCount);
+
+        if (bucketNumbers[slot] != bucketNumber) return;
+
+        buckets.get(slot).forEach((id, count) -> addToTotal(id, -count));
+        buckets.get(slot).clear();
+        bucketNumbers[slot] = NO_BUCKET;
+    }
+
+    private void addToTotal(long id, long increment) {
+        Long total = totalsById.get(id);
+        long newTotal = (total == null ? 0 : total) + increment;
+
+        if (total != null) ranking.remove(id, total);
+
+        if (newTotal <= 0) {
+            totalsById.remove(id);
+            return;
+        }
+
+        ranking.insert(id, newTotal);
+        totalsById.put(id, newTotal);
+    }
+}
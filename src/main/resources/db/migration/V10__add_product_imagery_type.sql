@@ -0,0 +1,10 @@
+-- Copy of the imagery type of the product mission. An imagery type covers several missions, so with only
+-- idx_product_mission_acquisition_date H2 sorted all their products for every /find page filtered by it.
+-- Pages filtered by imagery type are read from this index in their order, starting at the cursor.
+alter table product add column imagery_type integer;
+
+update product set imagery_type = (select imagery_type from mission where mission.id = product.mission_id);
+
+alter table product alter column imagery_type set not null;
+
+create index idx_product_imagery_type_acquisition_date_id on product (imagery_type, acquisition_date, id);
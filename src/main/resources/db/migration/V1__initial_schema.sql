@@ -0,0 +1,50 @@
+-- Schema as it was generated by Hibernate before the migrations were introduced
+
+create table mission (
+    id bigint generated by default as identity,
+    finish_date timestamp not null,
+    imagery_type integer not null,
+    name varchar(255) not null,
+    start_date timestamp not null,
+    primary key (id)
+);
+
+create table product_footprint (
+    id bigint generated by default as identity,
+    cell_key bigint not null,
+    end_coordinate_latitude double not null,
+    end_coordinate_longitude double not null,
+    start_coordinate_latitude double not null,
+    start_coordinate_longitude double not null,
+    primary key (id)
+);
+
+create table product (
+    id bigint generated by default as identity,
+    acquisition_date timestamp not null,
+    price decimal(19,2) not null,
+    url varchar(1024) not null,
+    footprint_id bigint not null,
+    mission_id bigint not null,
+    primary key (id)
+);
+
+create table product_order (
+    id bigint generated by default as identity,
+    placed_on timestamp not null,
+    primary key (id)
+);
+
+create table order_item (
+    id bigint generated by default as identity,
+    product_id bigint,
+    product_order_id bigint,
+    primary key (id)
+);
+
+alter table mission add constraint uk_mission_name unique (name);
+create index idx_product_footprint_cell_key on product_footprint (cell_key);
+alter table product add constraint fk_product_footprint foreign key (footprint_id) references product_footprint;
+alter table product add constraint fk_product_mission foreign key (mission_id) references mission;
+alter table order_item add constraint fk_order_item_product foreign key (product_id) references product;
+alter table order_item add constraint fk_order_item_product_order foreign key (product_order_id) references product_order;
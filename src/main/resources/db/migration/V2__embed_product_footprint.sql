@@ -0,0 +1,26 @@
+-- The footprint becomes part of the product row, existing footprints are copied before their table is dropped
+
+alter table product add column start_coordinate_latitude double;
+alter table product add column start_coordinate_longitude double;
+alter table product add column end_coordinate_latitude double;
+alter table product add column end_coordinate_longitude double;
+alter table product add column cell_key bigint;
+
+update product p set
+    start_coordinate_latitude = (select f.start_coordinate_latitude from product_footprint f where f.id = p.footprint_id),
+    start_coordinate_longitude = (select f.start_coordinate_longitude from product_footprint f where f.id = p.footprint_id),
+    end_coordinate_latitude = (select f.end_coordinate_latitude from product_footprint f where f.id = p.footprint_id),
+    end_coordinate_longitude = (select f.end_coordinate_longitude from product_footprint f where f.id = p.footprint_id),
+    cell_key = (select f.cell_key from product_footprint f where f.id = p.footprint_id);
+
+alter table product alter column start_coordinate_latitude set not null;
+alter table product alter column start_coordinate_longitude set not null;
+alter table product alter column end_coordinate_latitude set not null;
+alter table product alter column end_coordinate_longitude set not null;
+alter table product alter column cell_key set not null;
+
+alter table product drop constraint fk_product_footprint;
+alter table product drop column footprint_id;
+drop table product_footprint;
+
+create index idx_product_cell_key on product (cell_key);
@@ -0,0 +1,22 @@
+-- Indexes for the filter shapes of /api/products/find and for the order queries.
+-- The leading column of each composite index is the equality filter, the second one the range or sort.
+
+-- missionName / imageryType joined to product with an acquisitionDate range.
+-- A footprint point is left to idx_product_cell_key alone: (mission_id, cell_key) made H2 pick the mission
+-- prefix over the much more selective cell key list.
+create index idx_product_mission_acquisition_date on product (mission_id, acquisition_date);
+
+-- acquisitionDate range without a mission filter
+create index idx_product_acquisition_date on product (acquisition_date);
+
+-- imageryType filter resolves the missions first
+create index idx_mission_imagery_type on mission (imagery_type);
+
+-- most ordered products and "is the product ordered" lookups
+create index idx_order_item_product on order_item (product_id);
+
+-- order items of the orders in the history
+create index idx_order_item_product_order on order_item (product_order_id);
+
+-- order history sorted by placedOn
+create index idx_product_order_placed_on on product_order (placed_on);
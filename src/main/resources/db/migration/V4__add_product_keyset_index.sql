@@ -0,0 +1,4 @@
+-- /api/products/find pages are sorted by (acquisition_date, id), the id makes the sort key unique,
+-- so the keyset condition of the next page is a range scan of this index
+drop index idx_product_acquisition_date;
+create index idx_product_acquisition_date_id on product (acquisition_date, id);
@@ -0,0 +1,5 @@
+-- Order item ids come from a sequence instead of the identity column, so Hibernate can batch their inserts.
+-- Hibernate takes 50 ids per call (pooled-lo optimizer), the sequence restarts after the existing ids.
+
+create sequence order_item_seq start with 1 increment by 50;
+alter sequence order_item_seq restart with (select coalesce(max(id), 0) + 1 from order_item);
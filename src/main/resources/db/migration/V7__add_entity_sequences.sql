@@ -0,0 +1,18 @@
+-- Mission, product and product order ids come from sequences instead of the identity columns, as the order
+-- item ids do since V6, so Hibernate can batch their inserts. Hibernate takes 50 ids per call (pooled-lo
+-- optimizer), the sequences restart after the existing ids. The columns default to the sequences, so rows
+-- inserted with plain SQL take a whole block of ids and never collide with the ids Hibernate hands out.
+
+create sequence mission_seq start with 1 increment by 50;
+alter sequence mission_seq restart with (select coalesce(max(id), 0) + 1 from mission);
+alter table mission alter column id set default next value for mission_seq;
+
+create sequence product_seq start with 1 increment by 50;
+alter sequence product_seq restart with (select coalesce(max(id), 0) + 1 from product);
+alter table product alter column id set default next value for product_seq;
+
+create sequence product_order_seq start with 1 increment by 50;
+alter sequence product_order_seq restart with (select coalesce(max(id), 0) + 1 from product_order);
+alter table product_order alter column id set default next value for product_order_seq;
+
+alter table order_item alter column id set default next value for order_item_seq;
@@ -0,0 +1,14 @@
+-- Responses of orders placed with an Idempotency-Key header, so a retried order is answered with the response
+-- of the first one instead of being placed again, also after a restart. The key is prefixed with the user name.
+-- Rows older than the retention time are deleted by a scheduled job.
+
+create table order_idempotency_key (
+    idempotency_key varchar(320) not null,
+    request_hash varchar(64) not null,
+    response_status integer not null,
+    response_body clob not null,
+    created_on timestamp not null,
+    primary key (idempotency_key)
+);
+
+create index idx_order_idempotency_key_created_on on order_idempotency_key (created_on);
@@ -0,0 +1,6 @@
+-- The order history is paged by (placed_on, id), newest first. H2 reads the pages from this index in its order,
+-- starting at the cursor, instead of sorting every order. It also serves the placed_on ranges of the
+-- windowed rankings, so it replaces idx_product_order_placed_on.
+
+create index idx_product_order_placed_on_id on product_order (placed_on desc, id desc);
+drop index idx_product_order_placed_on;
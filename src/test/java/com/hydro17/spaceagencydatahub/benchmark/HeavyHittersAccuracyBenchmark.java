@@ -0,0 +1,317 @@
+package com.hydro17.spaceagencydatahub.benchmark;
+
+import com.hydro17.spaceagencydatahub.services.ProductLeaderboardService;
+import com.hydro17.spaceagencydatahub.utils.CountMinSketch;
+import com.hydro17.spaceagencydatahub.utils.HeavyHitters;
+import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import com.hydro17.spaceagencydatahub.utils.SpatialCellKey;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+//  Accuracy of the approximate most ordered products (/api/products/most-ordered/approximate) against
+//  the exact aggregation of the order items, on order items whose products follow Zipf distributions.
+//  The sketches are fed with the order items in the order they are inserted, as ProductHeavyHittersListener does.
+//  It is not part of the regular build, run it with: mvn -Pbenchmark test [-Dbenchmark.order-items=1000000]
+//  The reports are written to target/benchmark/heavy-hitters-report.md and heavy-hitters-cost-report.md
+@SpringBootTest
+@AutoConfigureTestDatabase
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class HeavyHittersAccuracyBenchmark {
+
+    private static final int PRODUCTS = Integer.getInteger("benchmark.products", 100_000);
+    private static final int ORDER_ITEMS = Integer.getInteger("benchmark.order-items", 1_000_000);
+    private static final int ITEMS_PER_ORDER = 2;
+    private static final int BATCH_SIZE = 10_000;
+    private static final double[] ZIPF_EXPONENTS = {0.8, 1.0, 1.2};
+    private static final double[][] ERROR_BOUNDS = {{0.001, 0.001}, {0.0001, 0.001}};
+    private static final double[] DEFAULT_ERROR_BOUNDS = {0.0001, 0.001};
+    private static final int CAPACITY = 1000;
+    private static final int[] TOP_SIZES = {10, 100, 1000};
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private List<Long> insertedProductIds;
+
+    @BeforeAll
+    void generateProducts() {
+        jdbcTemplate.update("insert into mission (name, imagery_type, start_date, finish_date) values (?, ?, ?, ?)",
+                "benchmark-mission", ImageryType.PANCHROMATIC.ordinal(),
+                Timestamp.valueOf(LocalDateTime.of(2018, 1, 1, 0, 0)), Timestamp.valueOf(LocalDateTime.of(2020, 1, 1, 0, 0)));
+        long missionId = jdbcTemplate.queryForObject(
+                "select id from mission where name = 'benchmark-mission'", Long.class);
+
+        List<Object[]> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(new Object[]{Timestamp.valueOf(LocalDateTime.of(2019, 1, 1, 0, 0)), "10.50",
+                    "http://benchmark/" + i, missionId, 0, 0, 1, 1, SpatialCellKey.ofBox(0, 0, 1, 1),
+                    ImageryType.PANCHROMATIC.ordinal()});
+
+            if (products.size() == BATCH_SIZE) {
+                insertProducts(products);
+                products.clear();
+            }
+        }
+        insertProducts(products);
+
+//      the ids are read back, since V7 every row inserted with plain SQL takes a block of sequence values
+        insertedProductIds = jdbcTemplate.queryForList("select id from product where mission_id = ? order by id",
+                Long.class, missionId);
+    }
+
+    private void insertProducts(List<Object[]> products) {
+        jdbcTemplate.batchUpdate("insert into product (acquisition_date, price, url, mission_id, " +
+                "start_coordinate_latitude, start_coordinate_longitude, end_coordinate_latitude, end_coordinate_longitude, " +
+                "cell_key, imagery_type) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", products);
+    }
+
+    @Test
+    void measureAccuracyAgainstExactAggregation() throws IOException {
+        List<String> rows = new ArrayList<>();
+
+        for (double exponent : ZIPF_EXPONENTS) {
+            long[] productIds = generateOrderItems(exponent, new Random(17));
+
+            List<HeavyHitters> sketches = new ArrayList<>();
+            for (double[] errorBounds : ERROR_BOUNDS) {
+                sketches.add(new HeavyHitters(new CountMinSketch(errorBounds[0], errorBounds[1]), CAPACITY));
+            }
+
+            for (long productId : productIds) {
+                sketches.forEach(heavyHitters -> heavyHitters.add(productId, 1));
+            }
+
+            long start = System.nanoTime();
+            List<long[]> exactTop = jdbcTemplate.query("select product_id, count(*) from order_item " +
+                            "group by product_id order by count(*) desc, product_id limit " + CAPACITY,
+                    (resultSet, rowNumber) -> new long[]{resultSet.getLong(1), resultSet.getLong(2)});
+            long exactMillis = (System.nanoTime() - start) / 1_000_000;
+
+            Map<Long, Long> trueCounts = new HashMap<>();
+            for (long productId : productIds) {
+                trueCounts.merge(productId, 1L, Long::sum);
+            }
+
+            for (HeavyHitters heavyHitters : sketches) {
+                for (int topSize : TOP_SIZES) {
+                    rows.add(compare(exponent, heavyHitters, topSize, exactTop, trueCounts, exactMillis));
+                }
+            }
+        }
+
+        writeReport(rows);
+    }
+
+    //  Cost of keeping the most ordered products up to date in the exact mode (ProductLeaderboardService) and in
+    //  the approximate mode (heavy hitters of the default error bounds), fed with the same order items one by one.
+    //  Memory is the heap retained by the structure after a garbage collection, time the mean of a second feed.
+    @Test
+    void measureFeedCostAgainstLeaderboard() throws IOException {
+        List<String> rows = new ArrayList<>();
+
+        for (double exponent : ZIPF_EXPONENTS) {
+            long[] productIds = drawProductIds(exponent, new Random(17));
+
+            long usedBefore = usedMemory();
+            ProductLeaderboardService leaderboard = feedLeaderboard(productIds);
+            long leaderboardBytes = usedMemory() - usedBefore;
+            int orderedProducts = leaderboard.size();
+            leaderboard.load(Collections.emptyList());
+            long start = System.nanoTime();
+            feedLeaderboard(productIds);
+            double leaderboardNanos = (System.nanoTime() - start) / (double) productIds.length;
+
+            usedBefore = usedMemory();
+            HeavyHitters heavyHitters = feedHeavyHitters(productIds);
+            long heavyHittersBytes = usedMemory() - usedBefore;
+            start = System.nanoTime();
+            feedHeavyHitters(productIds);
+            double heavyHittersNanos = (System.nanoTime() - start) / (double) productIds.length;
+
+            rows.add(String.format("| %.1f | %d | %.1f | %.0f | %.1f | %.0f |", exponent, orderedProducts,
+                    leaderboardBytes / 1_048_576.0, leaderboardNanos, heavyHittersBytes / 1_048_576.0,
+                    heavyHittersNanos));
+            heavyHitters.clear();
+        }
+
+        StringBuilder report = new StringBuilder()
+                .append("# Heavy hitters feed cost benchmark\n\n")
+                .append(String.format("%d order items of %d products drawn from Zipf distributions, heavy hitters with " +
+                        "epsilon %s, delta %s and capacity %d, memory in MB, time per order item in ns.%n%n",
+                        ORDER_ITEMS, PRODUCTS,
+                        BigDecimal.valueOf(DEFAULT_ERROR_BOUNDS[0]).stripTrailingZeros().toPlainString(),
+                        BigDecimal.valueOf(DEFAULT_ERROR_BOUNDS[1]).stripTrailingZeros().toPlainString(), CAPACITY))
+                .append("| zipf exponent | ordered products | leaderboard MB | leaderboard ns | " +
+                        "heavy hitters MB | heavy hitters ns |\n")
+                .append("|---:|---:|---:|---:|---:|---:|\n");
+
+        rows.forEach(row -> report.append(row).append('\n'));
+
+        writeReport(report.toString(), "heavy-hitters-cost-report.md");
+    }
+
+    private ProductLeaderboardService feedLeaderboard(long[] productIds) {
+        ProductLeaderboardService leaderboard = new ProductLeaderboardService(false);
+
+        for (long productId : productIds) {
+            leaderboard.increment(productId, 1L, 1);
+        }
+
+        return leaderboard;
+    }
+
+    private HeavyHitters feedHeavyHitters(long[] productIds) {
+        HeavyHitters heavyHitters = new HeavyHitters(
+                new CountMinSketch(DEFAULT_ERROR_BOUNDS[0], DEFAULT_ERROR_BOUNDS[1]), CAPACITY);
+
+        for (long productId : productIds) {
+            heavyHitters.add(productId, 1);
+        }
+
+        return heavyHitters;
+    }
+
+    private long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //  Order items of products drawn from a Zipf distribution with the exponent, inserted into order_item
+    private long[] generateOrderItems(double exponent, Random random) {
+        jdbcTemplate.execute("delete from order_item");
+        jdbcTemplate.execute("delete from product_order");
+
+        long[] productIds = drawProductIds(exponent, random);
+
+        List<Object[]> orders = new ArrayList<>();
+        for (int i = 0; i < ORDER_ITEMS / ITEMS_PER_ORDER; i++) {
+            orders.add(new Object[]{Timestamp.valueOf(LocalDateTime.of(2019, 6, 1, 0, 0))});
+
+            if (orders.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("insert into product_order (placed_on) values (?)", orders);
+                orders.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into product_order (placed_on) values (?)", orders);
+
+        List<Long> orderIds = jdbcTemplate.queryForList("select id from product_order order by id", Long.class);
+
+        List<Object[]> orderItems = new ArrayList<>();
+        for (int i = 0; i < ORDER_ITEMS; i++) {
+            orderItems.add(new Object[]{productIds[i], orderIds.get(i / ITEMS_PER_ORDER)});
+
+            if (orderItems.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("insert into order_item (product_id, product_order_id) values (?, ?)", orderItems);
+                orderItems.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into order_item (product_id, product_order_id) values (?, ?)", orderItems);
+
+        return productIds;
+    }
+
+    //  Product ids of order items drawn from a Zipf distribution with the exponent, the product of rank r is
+    //  drawn with a probability proportional to 1 / r^exponent and the ranks are shuffled over the products
+    private long[] drawProductIds(double exponent, Random random) {
+        double[] cumulativeWeights = new double[PRODUCTS];
+        double total = 0;
+        for (int rank = 0; rank < PRODUCTS; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulativeWeights[rank] = total;
+        }
+
+        List<Long> productIdsByRank = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            productIdsByRank.add(insertedProductIds.get(i));
+        }
+        Collections.shuffle(productIdsByRank, random);
+
+        long[] productIds = new long[ORDER_ITEMS];
+        for (int i = 0; i < ORDER_ITEMS; i++) {
+            int rank = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * total);
+            productIds[i] = productIdsByRank.get(Math.min(rank < 0 ? -rank - 1 : rank, PRODUCTS - 1));
+        }
+
+        return productIds;
+    }
+
+    //  A product of the approximate top is correct if its true count reaches the count of the last product of
+    //  the exact top, so products tied with it are not counted as misses
+    private String compare(double exponent, HeavyHitters heavyHitters, int topSize, List<long[]> exactTop,
+                           Map<Long, Long> trueCounts, long exactMillis) {
+        long start = System.nanoTime();
+        List<long[]> approximateTop = heavyHitters.getTop(topSize);
+        double approximateMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        long lastExactCount = exactTop.get(Math.min(topSize, exactTop.size()) - 1)[1];
+        int correct = 0;
+        long maxOverestimate = 0;
+        double relativeOverestimates = 0;
+
+        for (long[] entry : approximateTop) {
+            long trueCount = trueCounts.getOrDefault(entry[0], 0L);
+
+            if (trueCount >= lastExactCount) correct++;
+            maxOverestimate = Math.max(maxOverestimate, entry[1] - trueCount);
+            relativeOverestimates += (entry[1] - trueCount) / (double) Math.max(trueCount, 1);
+        }
+
+        CountMinSketch sketch = heavyHitters.getSketch();
+
+        return String.format("| %.1f | %s | %s | %d | %.3f | %d | %d | %.4f%% | %d | %d | %.2f |",
+                exponent, BigDecimal.valueOf(sketch.getEpsilon()).stripTrailingZeros().toPlainString(),
+                BigDecimal.valueOf(sketch.getDelta()).stripTrailingZeros().toPlainString(), topSize,
+                correct / (double) Math.min(topSize, exactTop.size()), maxOverestimate, sketch.getMaxOverestimate(),
+                100 * relativeOverestimates / approximateTop.size(), exactTop.get(0)[1], exactMillis,
+                approximateMillis);
+    }
+
+    private void writeReport(List<String> rows) throws IOException {
+        StringBuilder report = new StringBuilder()
+                .append("# Heavy hitters accuracy benchmark\n\n")
+                .append(String.format("%d order items of %d products drawn from Zipf distributions, capacity %d, " +
+                        "H2 in memory, exact top from GROUP BY over order_item, latency in ms.%n%n",
+                        ORDER_ITEMS, PRODUCTS, CAPACITY))
+                .append("| zipf exponent | epsilon | delta | top | precision | max overestimate | bound | " +
+                        "mean relative overestimate | top true count | exact ms | approximate ms |\n")
+                .append("|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|\n");
+
+        rows.forEach(row -> report.append(row).append('\n'));
+
+        writeReport(report.toString(), "heavy-hitters-report.md");
+    }
+
+    private void writeReport(String report, String fileName) throws IOException {
+        Path reportPath = Paths.get("target", "benchmark", fileName);
+        Files.createDirectories(reportPath.getParent());
+        Files.write(reportPath, report.getBytes(StandardCharsets.UTF_8));
+
+        System.out.println(report);
+    }
+}
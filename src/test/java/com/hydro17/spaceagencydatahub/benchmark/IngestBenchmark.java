@@ -0,0 +1,170 @@
+package com.hydro17.spaceagencydatahub.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductFootprint;
+import com.hydro17.spaceagencydatahub.models.ProductOrderDTO;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  Throughput of product and order ingest through the JPA write path, with all entity listeners.
+//  Products are saved with saveAll, PRODUCTS_PER_TRANSACTION per transaction, and one per transaction as
+//  POST /api/products does, orders are placed through POST /api/orders.
+//  The database is H2 in memory behind its TCP server, so every statement or batch pays a network round trip
+//  as with a database server.
+//  It is not part of the regular build, run it with: mvn -Pbenchmark test -Dtest=IngestBenchmark
+//  The report is written to target/benchmark/ingest-report.md
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:tcp://localhost:" + IngestBenchmark.H2_PORT + "/mem:ingest")
+@AutoConfigureMockMvc
+class IngestBenchmark {
+
+    static final int H2_PORT = 9137;
+
+    private static final int PRODUCTS = Integer.getInteger("benchmark.products", 100_000);
+    private static final int PRODUCTS_PER_TRANSACTION = 1000;
+    private static final int SINGLE_PRODUCTS = 5_000;
+    private static final int LARGE_ORDERS = 100;
+    private static final int LARGE_ORDER_ITEMS = 2_000;
+    private static final int SMALL_ORDERS = 5_000;
+    private static final int SMALL_ORDER_ITEMS = 2;
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private final Random random = new Random(17);
+
+//  Started before the application context, which connects to it
+    static {
+        try {
+            Server.createTcpServer("-tcpPort", String.valueOf(H2_PORT), "-tcpAllowOthers", "-ifNotExists").start();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void measureIngestThroughput() throws Exception {
+        Mission mission = new Mission();
+        mission.setName("benchmark-mission");
+        mission.setImageryType(ImageryType.MULTISPECTRAL);
+        mission.setStartDate(LocalDateTime.of(2018, 1, 1, 0, 0));
+        mission.setFinishDate(LocalDateTime.of(2020, 1, 1, 0, 0));
+        missionRepository.save(mission);
+
+        Map<String, double[]> results = new LinkedHashMap<>();
+        List<Long> productIds = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < PRODUCTS; i += PRODUCTS_PER_TRANSACTION) {
+            List<Product> products = new ArrayList<>();
+            for (int j = 0; j < PRODUCTS_PER_TRANSACTION; j++) {
+                products.add(newProduct(mission));
+            }
+
+            productRepository.saveAll(products).forEach(product -> productIds.add(product.getId()));
+        }
+        results.put(String.format("products, %d per transaction", PRODUCTS_PER_TRANSACTION),
+                new double[]{PRODUCTS, System.nanoTime() - start});
+
+        start = System.nanoTime();
+        for (int i = 0; i < SINGLE_PRODUCTS; i++) {
+            productRepository.save(newProduct(mission));
+        }
+        results.put("products, 1 per transaction", new double[]{SINGLE_PRODUCTS, System.nanoTime() - start});
+
+        start = System.nanoTime();
+        placeOrders(productIds, LARGE_ORDERS, LARGE_ORDER_ITEMS);
+        results.put(String.format("order items, orders of %d", LARGE_ORDER_ITEMS),
+                new double[]{LARGE_ORDERS * LARGE_ORDER_ITEMS, System.nanoTime() - start});
+
+        start = System.nanoTime();
+        placeOrders(productIds, SMALL_ORDERS, SMALL_ORDER_ITEMS);
+        results.put(String.format("order items, orders of %d", SMALL_ORDER_ITEMS),
+                new double[]{SMALL_ORDERS * SMALL_ORDER_ITEMS, System.nanoTime() - start});
+
+        writeReport(results);
+    }
+
+    private Product newProduct(Mission mission) {
+        double latitude = random.nextDouble() * 170 - 85;
+        double longitude = random.nextDouble() * 350 - 175;
+
+        Product product = new Product();
+        product.setAcquisitionDate(LocalDateTime.of(2019, 1, 1, 0, 0).plusMinutes(random.nextInt(365 * 24 * 60)));
+        product.setFootprint(new ProductFootprint(latitude, longitude, latitude + random.nextDouble() * 5,
+                longitude + random.nextDouble() * 5));
+        product.setPrice(new BigDecimal("10.50"));
+        product.setUrl("http://benchmark/" + random.nextInt());
+        product.setMission(mission);
+
+        return product;
+    }
+
+    private void placeOrders(List<Long> productIds, int orders, int itemsPerOrder) throws Exception {
+        for (int i = 0; i < orders; i++) {
+            ProductOrderDTO productOrderDTO = new ProductOrderDTO();
+            productOrderDTO.setProductIds(random.ints(itemsPerOrder, 0, productIds.size())
+                    .mapToObj(productIds::get)
+                    .collect(Collectors.toList()));
+
+            mockMvc.perform(post("/api/orders")
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(productOrderDTO))
+                    .with(user("customer").roles("CUSTOMER")))
+                    .andExpect(status().isCreated());
+        }
+    }
+
+    private void writeReport(Map<String, double[]> results) throws IOException {
+        StringBuilder report = new StringBuilder()
+                .append("# Ingest benchmark\n\n")
+                .append("H2 in memory over TCP, rows per second through the JPA write path.\n\n")
+                .append("| scenario | rows | seconds | rows per second |\n")
+                .append("|---|---:|---:|---:|\n");
+
+        results.forEach((scenario, result) -> report.append(String.format("| %s | %d | %.1f | %.0f |%n",
+                scenario, (long) result[0], result[1] / 1e9, result[0] / (result[1] / 1e9))));
+
+        Path reportPath = Paths.get("target", "benchmark", "ingest-report.md");
+        Files.createDirectories(reportPath.getParent());
+        Files.write(reportPath, report.toString().getBytes(StandardCharsets.UTF_8));
+
+        System.out.println(report);
+    }
+}
@@ -0,0 +1,185 @@
+package com.hydro17.spaceagencydatahub.benchmark;
+
+import com.hydro17.spaceagencydatahub.models.ProductOrder;
+import com.hydro17.spaceagencydatahub.services.ProductOrderService;
+import com.hydro17.spaceagencydatahub.utils.CsvWriter;
+import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+//  Heap retained while the order history is exported as CSV, measured after a full GC every tenth of the orders,
+//  compared with loading the whole history with the fetch join /api/orders/history used before it was paged.
+//  It is not part of the regular build, run it with: mvn -Pbenchmark test -Dtest=OrderExportBenchmark
+//  [-Dbenchmark.orders=1000000]
+//  The report is written to target/benchmark/order-export-report.md
+@SpringBootTest(properties = "spaceagencydatahub.spatial-index.enabled=false")
+@AutoConfigureTestDatabase
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OrderExportBenchmark {
+
+    private static final int ORDERS = Integer.getInteger("benchmark.orders", 1_000_000);
+    private static final int ITEMS_PER_ORDER = 2;
+    private static final int PRODUCTS = 10_000;
+    private static final int BATCH_SIZE = 10_000;
+    private static final int CHECKPOINTS = 10;
+    private static final LocalDateTime FIRST_PLACED_ON = LocalDateTime.of(2018, 1, 1, 0, 0);
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ProductOrderService productOrderService;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeAll
+    void generateData() {
+        Random random = new Random(17);
+
+        jdbcTemplate.update("insert into mission (name, imagery_type, start_date, finish_date) values (?, ?, ?, ?)",
+                "benchmark-mission", ImageryType.PANCHROMATIC.ordinal(), Timestamp.valueOf(FIRST_PLACED_ON),
+                Timestamp.valueOf(FIRST_PLACED_ON.plusDays(730)));
+        long missionId = jdbcTemplate.queryForObject("select id from mission where name = 'benchmark-mission'", Long.class);
+
+        List<Object[]> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(new Object[]{Timestamp.valueOf(FIRST_PLACED_ON), (1 + random.nextInt(10_000)) / 100.0,
+                    "http://benchmark/" + i, missionId, 10, 10, 20, 20, 0L, ImageryType.PANCHROMATIC.ordinal()});
+        }
+        jdbcTemplate.batchUpdate("insert into product (acquisition_date, price, url, mission_id, " +
+                "start_coordinate_latitude, start_coordinate_longitude, end_coordinate_latitude, end_coordinate_longitude, " +
+                "cell_key, imagery_type) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", products);
+
+//      a row inserted with plain SQL takes a block of sequence values, so the product ids are read back and
+//      the orders get explicit ids after the ones placed at startup
+        List<Long> productIds = jdbcTemplate.queryForList("select id from product", Long.class);
+        long lastProductOrderId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from product_order", Long.class);
+
+        for (int first = 0; first < ORDERS; first += BATCH_SIZE) {
+            List<Object[]> orders = new ArrayList<>();
+            List<Object[]> orderItems = new ArrayList<>();
+
+            for (int i = first; i < Math.min(first + BATCH_SIZE, ORDERS); i++) {
+                long productOrderId = lastProductOrderId + i + 1;
+                orders.add(new Object[]{productOrderId, Timestamp.valueOf(FIRST_PLACED_ON.plusMinutes(i))});
+
+                for (int j = 0; j < ITEMS_PER_ORDER; j++) {
+                    orderItems.add(new Object[]{productIds.get(random.nextInt(productIds.size())), productOrderId});
+                }
+            }
+
+            jdbcTemplate.batchUpdate("insert into product_order (id, placed_on) values (?, ?)", orders);
+            jdbcTemplate.batchUpdate("insert into order_item (product_id, product_order_id) values (?, ?)", orderItems);
+        }
+    }
+
+    @Test
+    void measureRetainedHeap() throws IOException {
+        long baseline = retainedHeap();
+
+        long[] exportCheckpoints = new long[CHECKPOINTS];
+        long[] exportedOrders = new long[1];
+        CountingOutputStream counter = new CountingOutputStream();
+        long start = System.nanoTime();
+
+        try (CsvWriter writer = new CsvWriter(new GZIPOutputStream(counter, 64 * 1024))) {
+            productOrderService.forEachExportedProductOrder(null, null, productOrder -> {
+                productOrder.getItems().forEach(item -> writer.write(productOrder.getId(), productOrder.getPlacedOn(),
+                        item.getProductId(), item.getPrice()));
+
+                if (++exportedOrders[0] % (ORDERS / CHECKPOINTS) == 0) {
+                    exportCheckpoints[(int) (exportedOrders[0] / (ORDERS / CHECKPOINTS)) - 1] = retainedHeap() - baseline;
+                }
+            });
+        }
+
+        long exportMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long fetchJoinRetainedHeap;
+        long fetchJoinMillis;
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+
+        try {
+            start = System.nanoTime();
+            List<ProductOrder> productOrders = entityManager.createQuery("SELECT DISTINCT po FROM ProductOrder po " +
+                    "LEFT JOIN FETCH po.orderItems ORDER BY po.placedOn DESC", ProductOrder.class).getResultList();
+            fetchJoinMillis = (System.nanoTime() - start) / 1_000_000;
+            fetchJoinRetainedHeap = retainedHeap() - baseline;
+
+            if (productOrders.size() < ORDERS) throw new IllegalStateException("Not every order was loaded");
+        } finally {
+            entityManager.close();
+        }
+
+        writeReport(exportedOrders[0], exportCheckpoints, exportMillis, counter.count, fetchJoinRetainedHeap, fetchJoinMillis);
+    }
+
+    //  Used heap in MB after a full collection
+    private long retainedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024);
+    }
+
+    private void writeReport(long exportedOrders, long[] exportCheckpoints, long exportMillis, long exportedBytes,
+                             long fetchJoinRetainedHeap, long fetchJoinMillis) throws IOException {
+        StringBuilder report = new StringBuilder()
+                .append("# Order export benchmark\n\n")
+                .append(String.format("%d orders with %d items each, H2 in memory, heap retained above the baseline " +
+                        "after a full GC, in MB.%n%n", ORDERS, ITEMS_PER_ORDER))
+                .append("| orders read | export as gzipped CSV |\n")
+                .append("|---:|---:|\n");
+
+        for (int i = 0; i < CHECKPOINTS; i++) {
+            report.append(String.format("| %d | %d |%n", (i + 1) * (ORDERS / CHECKPOINTS), exportCheckpoints[i]));
+        }
+
+        report.append(String.format("%nExport: %d orders, %d order items in %d ms (%d rows/s), %d KB gzipped.%n",
+                exportedOrders, exportedOrders * ITEMS_PER_ORDER, exportMillis,
+                exportedOrders * ITEMS_PER_ORDER * 1000 / Math.max(exportMillis, 1), exportedBytes / 1024))
+                .append(String.format("Fetch join of every order with its items: %d MB retained, %d ms.%n",
+                        fetchJoinRetainedHeap, fetchJoinMillis));
+
+        Path reportPath = Paths.get("target", "benchmark", "order-export-report.md");
+        Files.createDirectories(reportPath.getParent());
+        Files.write(reportPath, report.toString().getBytes(StandardCharsets.UTF_8));
+
+        System.out.println(report);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.hydro17.spaceagencydatahub.benchmark;
+
+import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import com.hydro17.spaceagencydatahub.utils.ProductCursor;
+import com.hydro17.spaceagencydatahub.utils.SpatialCellKey;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  Latency of /api/products/find, /api/products/most-ordered and /api/orders/history on a generated data set,
+//  first without and then with the query indexes added by the migrations from V3 on.
+//  It is not part of the regular build, run it with: mvn -Pbenchmark test [-Dbenchmark.products=1000000]
+//  The report is written to target/benchmark/query-index-report.md
+@SpringBootTest(properties = "spaceagencydatahub.spatial-index.enabled=false")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryIndexBenchmark {
+
+    private static final int PRODUCTS = Integer.getInteger("benchmark.products", 1_000_000);
+    private static final int MISSIONS = 20;
+    private static final int ORDERS = 10_000;
+    private static final int ITEMS_PER_ORDER = 2;
+    private static final int BATCH_SIZE = 10_000;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int ITERATIONS = 7;
+    private static final LocalDateTime FIRST_ACQUISITION_DATE = LocalDateTime.of(2018, 1, 1, 0, 0);
+    private static final int ACQUISITION_DAYS = 730;
+
+    private static final List<String> INDEX_MIGRATIONS = Arrays.asList(
+            "db/migration/V3__add_query_indexes.sql",
+            "db/migration/V4__add_product_keyset_index.sql",
+            "db/migration/V5__add_product_order_count.sql",
+            "db/migration/V9__add_product_order_history_index.sql",
+            "db/migration/V10__add_product_imagery_type.sql");
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void generateData() {
+        Random random = new Random(17);
+
+        List<Object[]> missions = new ArrayList<>();
+        for (int i = 0; i < MISSIONS; i++) {
+            missions.add(new Object[]{"benchmark-mission-" + i, imageryTypeOf(i),
+                    Timestamp.valueOf(FIRST_ACQUISITION_DATE), Timestamp.valueOf(FIRST_ACQUISITION_DATE.plusDays(ACQUISITION_DAYS))});
+        }
+        jdbcTemplate.batchUpdate("insert into mission (name, imagery_type, start_date, finish_date) values (?, ?, ?, ?)",
+                missions);
+
+//      the ids are read back, since V7 every row inserted with plain SQL takes a block of sequence values
+        List<Long> missionIds = jdbcTemplate.queryForList(
+                "select id from mission where name like 'benchmark-mission-%' order by id", Long.class);
+
+        List<Object[]> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            double latitude = random.nextDouble() * 170 - 85;
+            double longitude = random.nextDouble() * 350 - 175;
+            double endLatitude = latitude + random.nextDouble() * 5;
+            double endLongitude = longitude + random.nextDouble() * 5;
+
+            int mission = random.nextInt(MISSIONS);
+
+            products.add(new Object[]{
+                    Timestamp.valueOf(FIRST_ACQUISITION_DATE.plusMinutes(random.nextInt(ACQUISITION_DAYS * 24 * 60))),
+                    "10.50", "http://benchmark/" + i, missionIds.get(mission),
+                    latitude, longitude, endLatitude, endLongitude,
+                    SpatialCellKey.ofBox(latitude, longitude, endLatitude, endLongitude), imageryTypeOf(mission)});
+
+            if (products.size() == BATCH_SIZE) {
+                insertProducts(products);
+                products.clear();
+            }
+        }
+        insertProducts(products);
+
+        List<Long> productIds = jdbcTemplate.queryForList("select id from product", Long.class);
+
+        List<Object[]> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            orders.add(new Object[]{Timestamp.valueOf(FIRST_ACQUISITION_DATE.plusMinutes(random.nextInt(ACQUISITION_DAYS * 24 * 60)))});
+        }
+        jdbcTemplate.batchUpdate("insert into product_order (placed_on) values (?)", orders);
+
+        List<Long> orderIds = jdbcTemplate.queryForList("select id from product_order", Long.class);
+
+        List<Object[]> orderItems = new ArrayList<>();
+        for (int i = 0; i < ORDERS * ITEMS_PER_ORDER; i++) {
+            orderItems.add(new Object[]{productIds.get(random.nextInt(productIds.size())),
+                    orderIds.get(i / ITEMS_PER_ORDER)});
+        }
+        jdbcTemplate.batchUpdate("insert into order_item (product_id, product_order_id) values (?, ?)", orderItems);
+        jdbcTemplate.update("update product set order_count = (select count(*) from order_item " +
+                "where order_item.product_id = product.id) where id in (select product_id from order_item)");
+    }
+
+    private static int imageryTypeOf(int mission) {
+        return ImageryType.values()[mission % ImageryType.values().length].ordinal();
+    }
+
+    private void insertProducts(List<Object[]> products) {
+        jdbcTemplate.batchUpdate("insert into product (acquisition_date, price, url, mission_id, " +
+                "start_coordinate_latitude, start_coordinate_longitude, end_coordinate_latitude, end_coordinate_longitude, " +
+                "cell_key, imagery_type) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", products);
+    }
+
+    @Test
+    void measureWithoutAndWithIndexes() throws Exception {
+        List<String> createIndexStatements = readCreateIndexStatements();
+
+        createIndexStatements.forEach(statement ->
+                jdbcTemplate.execute("drop index " + statement.split("\\s+")[2]));
+        Map<String, long[]> withoutIndexes = measureAll();
+
+        createIndexStatements.forEach(jdbcTemplate::execute);
+        Map<String, long[]> withIndexes = measureAll();
+
+        writeReport(withoutIndexes, withIndexes);
+    }
+
+    private Map<String, RequestBuilder> scenarios() {
+        LocalDateTime weekStart = FIRST_ACQUISITION_DATE.plusDays(300);
+
+        Map<String, RequestBuilder> scenarios = new LinkedHashMap<>();
+        scenarios.put("/find missionName + one week", get("/api/products/find")
+                .param("missionName", "benchmark-mission-3")
+                .param("afterDate", weekStart.toString())
+                .param("beforeDate", weekStart.plusDays(7).toString())
+                .with(user("customer").roles("CUSTOMER")));
+        scenarios.put("/find imageryType + one day", get("/api/products/find")
+                .param("imageryType", ImageryType.MULTISPECTRAL.name())
+                .param("afterDate", weekStart.toString())
+                .param("beforeDate", weekStart.plusDays(1).toString())
+                .with(user("customer").roles("CUSTOMER")));
+        scenarios.put("/find missionName + point", get("/api/products/find")
+                .param("missionName", "benchmark-mission-3")
+                .param("latitude", "12.5")
+                .param("longitude", "45.5")
+                .with(user("customer").roles("CUSTOMER")));
+        scenarios.put("/find imageryType, first page of 100", get("/api/products/find")
+                .param("imageryType", ImageryType.MULTISPECTRAL.name())
+                .param("limit", "100")
+                .with(user("customer").roles("CUSTOMER")));
+        scenarios.put("/find imageryType, page of 100 after 600 days", get("/api/products/find")
+                .param("imageryType", ImageryType.MULTISPECTRAL.name())
+                .param("limit", "100")
+                .param("cursor", new ProductCursor(FIRST_ACQUISITION_DATE.plusDays(600), 0).encode())
+                .with(user("customer").roles("CUSTOMER")));
+        scenarios.put("/most-ordered", get("/api/products/most-ordered")
+                .with(user("manager").roles("CONTENT_MANAGER")));
+        scenarios.put("/orders/history", get("/api/orders/history")
+                .with(user("customer").roles("CUSTOMER")));
+        return scenarios;
+    }
+
+    //  Median and 95th percentile in milliseconds per scenario
+    private Map<String, long[]> measureAll() throws Exception {
+        Map<String, long[]> results = new LinkedHashMap<>();
+
+        for (Map.Entry<String, RequestBuilder> scenario : scenarios().entrySet()) {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                mockMvc.perform(scenario.getValue()).andExpect(status().isOk());
+            }
+
+            long[] latencies = new long[ITERATIONS];
+            for (int i = 0; i < ITERATIONS; i++) {
+                long start = System.nanoTime();
+                mockMvc.perform(scenario.getValue()).andExpect(status().isOk());
+                latencies[i] = (System.nanoTime() - start) / 1_000_000;
+            }
+
+            Arrays.sort(latencies);
+            results.put(scenario.getKey(), new long[]{latencies[ITERATIONS / 2],
+                    latencies[(int) Math.ceil(ITERATIONS * 0.95) - 1]});
+        }
+
+        return results;
+    }
+
+    //  Statements creating the indexes that exist after all index migrations
+    private List<String> readCreateIndexStatements() throws IOException {
+        Map<String, String> statementsByIndexName = new LinkedHashMap<>();
+
+        for (String migrationPath : INDEX_MIGRATIONS) {
+            String migration = new String(Files.readAllBytes(
+                    new ClassPathResource(migrationPath).getFile().toPath()), StandardCharsets.UTF_8);
+
+            for (String line : migration.split("\n")) {
+                String statement = line.replace(";", "").trim();
+
+                if (statement.startsWith("create index")) {
+                    statementsByIndexName.put(statement.split("\\s+")[2], statement);
+                } else if (statement.startsWith("drop index")) {
+                    statementsByIndexName.remove(statement.split("\\s+")[2]);
+                }
+            }
+        }
+
+        return new ArrayList<>(statementsByIndexName.values());
+    }
+
+    private void writeReport(Map<String, long[]> withoutIndexes, Map<String, long[]> withIndexes) throws IOException {
+        StringBuilder report = new StringBuilder()
+                .append("# Query index benchmark\n\n")
+                .append(String.format("%d products, %d missions, %d orders with %d items each, H2 in memory, ",
+                        PRODUCTS, MISSIONS, ORDERS, ITEMS_PER_ORDER))
+                .append(String.format("%d warmup and %d measured requests per scenario, latency in ms.%n%n",
+                        WARMUP_ITERATIONS, ITERATIONS))
+                .append("| scenario | median before | p95 before | median after | p95 after |\n")
+                .append("|---|---:|---:|---:|---:|\n");
+
+        withIndexes.forEach((scenario, after) -> {
+            long[] before = withoutIndexes.get(scenario);
+            report.append(String.format("| %s | %d | %d | %d | %d |%n", scenario, before[0], before[1], after[0], after[1]));
+        });
+
+        Path reportPath = Paths.get("target", "benchmark", "query-index-report.md");
+        Files.createDirectories(reportPath.getParent());
+        Files.write(reportPath, report.toString().getBytes(StandardCharsets.UTF_8));
+
+        System.out.println(report);
+    }
+}
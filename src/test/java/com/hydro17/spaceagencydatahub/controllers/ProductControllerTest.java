@@ -4,12 +4,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hydro17.spaceagencydatahub.exceptions.ErrorResponse;
 import com.hydro17.spaceagencydatahub.models.*;
 import com.hydro17.spaceagencydatahub.services.MissionService;
-import com.hydro17.spaceagencydatahub.services.OrderItemService;
 import com.hydro17.spaceagencydatahub.services.ProductOrderService;
 import com.hydro17.spaceagencydatahub.services.ProductService;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
 import com.hydro17.spaceagencydatahub.utils.ImageryType;
-import lombok.AllArgsConstructor;
-import lombok.Getter;
+import com.hydro17.spaceagencydatahub.utils.NdjsonWriter;
+import com.hydro17.spaceagencydatahub.utils.ProductCursor;
+import com.hydro17.spaceagencydatahub.utils.RankingWindow;
+import com.hydro17.spaceagencydatahub.utils.SpatialRelation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,12 +24,16 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -38,13 +44,6 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WithMockUser(roles = "CONTENT_MANAGER")
 class ProductControllerTest {
 
-    @Getter
-    @AllArgsConstructor
-    private static class ProductAndOrderCount implements IProductAndOrderCount {
-        private Product product;
-        private Long orderCount;
-    }
-
     @Autowired
     private MockMvc mockMvc;
 
@@ -54,9 +53,6 @@ class ProductControllerTest {
     @MockBean
     private ProductService productService;
 
-    @MockBean
-    private OrderItemService orderItemService;
-
     @MockBean
     private ProductOrderService productOrderService;
 
@@ -68,11 +64,8 @@ class ProductControllerTest {
     @MockBean
     private MissionService missionService;
 
-    private List<Product> emptyListOfProducts;
-    private List<Product> nonEmptyListOfProducts;
+    private List<ProductDTO> emptyListOfProducts;
     private List<ProductDTO> nonEmptyListOfProductDTOs;
-    private List<IProductAndOrderCount> emptyListOfProductAndOrderCounts;
-    private List<IProductAndOrderCount> notEmptyListOfProductAndOrderCounts;
 
     private Product product1;
     private ProductDTO productDTO;
@@ -104,9 +97,6 @@ class ProductControllerTest {
 
         emptyListOfProducts = new ArrayList<>();
 
-        nonEmptyListOfProducts = new ArrayList<>();
-        nonEmptyListOfProducts.add(product1);
-
         //TODO ? productDTO -> requestProductDTO
         productDTO = new ProductDTO();
         productDTO.setMissionName(product1.getMission().getName());
@@ -126,11 +116,6 @@ class ProductControllerTest {
 
         nonEmptyListOfProductDTOs = new ArrayList<>();
         nonEmptyListOfProductDTOs.add(productDTOWithIdNotEqualZero);
-
-        emptyListOfProductAndOrderCounts = new ArrayList<>();
-
-        notEmptyListOfProductAndOrderCounts = new ArrayList<>();
-        notEmptyListOfProductAndOrderCounts.add(new ProductAndOrderCount(product1, 1L));
     }
 
     //  ----------------------------------------------------------------------------------------------
@@ -138,7 +123,7 @@ class ProductControllerTest {
     @Test
     void getAllProducts_whenValidInput_thenReturns200AndNonEmptyListOfProducts() throws Exception {
 
-        when(productService.getAllProducts()).thenReturn(nonEmptyListOfProducts);
+        when(productService.getAllProducts()).thenReturn(nonEmptyListOfProductDTOs);
         //TODO change conversionService to mocked version
 //        when(conversionService.convert(any(Product.class), same(ProductDTO.class))).thenReturn(productDTOWithIdNotEqualZero);
 //        when(conversionService.convert(any(), eq(ProductDTO.class))).thenReturn(productDTOWithIdNotEqualZero);
@@ -170,6 +155,29 @@ class ProductControllerTest {
         assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
     }
 
+    @Test
+    void streamAllProducts_whenAcceptNdjson_thenReturns200AndOneProductDTOPerLine() throws Exception {
+
+        doAnswer(invocation -> {
+            Consumer<ProductDTO> action = invocation.getArgument(0);
+            action.accept(productDTOWithIdNotEqualZero);
+            action.accept(productDTOWithIdNotEqualZero);
+            return null;
+        }).when(productService).forEachProduct(any());
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products")
+                .accept(NdjsonWriter.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String expectedLine = objectMapper.writeValueAsString(productDTOWithIdNotEqualZero);
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(mvcResult.getResponse().getContentType()).isEqualTo(NdjsonWriter.MEDIA_TYPE);
+        assertThat(actualResponseBody).isEqualTo(expectedLine + "\n" + expectedLine + "\n");
+        verify(productService, never()).getAllProducts();
+    }
+
     @WithMockUser(roles = "CUSTOMER")
     @Test
     void getAllProducts_whenValidInputAndUserWithWrongRole_thenReturns403() throws Exception {
@@ -181,7 +189,7 @@ class ProductControllerTest {
     @Test
     void getProductById_whenValidInput_thenReturns200AndProduct() throws Exception {
 
-        when(productService.getProductById(any(Long.class))).thenReturn(Optional.ofNullable(product1));
+        when(productService.getProductDTOById(any(Long.class))).thenReturn(Optional.ofNullable(productDTOWithIdNotEqualZero));
 
         MvcResult mvcResult = mockMvc.perform(get("/api/products/{id}", 1L)
                 .contentType("application/json"))
@@ -198,7 +206,7 @@ class ProductControllerTest {
     void getProductById_whenIdOfNonExistingProduct_thenReturns404AndErrorResponse() throws Exception {
 
         long productId = 1L;
-        when(productService.getProductById(anyLong())).thenReturn(Optional.empty());
+        when(productService.getProductDTOById(anyLong())).thenReturn(Optional.empty());
 
         MvcResult mvcResult = mockMvc.perform(get("/api/products/{id}", productId)
                 .contentType("application/json"))
@@ -229,8 +237,8 @@ class ProductControllerTest {
         ImageryType imageryType = ImageryType.HYPERSPECTRAL;
 
         when(productService.getFilteredProducts(nullable(String.class), nullable(LocalDateTime.class), nullable(LocalDateTime.class),
-                nullable(Double.class), nullable(Double.class), nullable(ImageryType.class))).thenReturn(nonEmptyListOfProducts);
-        when(productService.removeUrlOfUnorderedProducts(nonEmptyListOfProducts)).thenReturn(nonEmptyListOfProducts);
+                nullable(Double.class), nullable(Double.class), nullable(BoundingBox.class), nullable(SpatialRelation.class),
+                nullable(ImageryType.class))).thenReturn(nonEmptyListOfProductDTOs);
 
         MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
                 .contentType("application/json")
@@ -244,7 +252,7 @@ class ProductControllerTest {
                 .andReturn();
 
         verify(productService, times(1)).getFilteredProducts(eq(missionName), eq(beforeDate),
-                eq(afterDate), eq(latitude), eq(longitude), eq(imageryType));
+                eq(afterDate), eq(latitude), eq(longitude), isNull(), eq(SpatialRelation.INTERSECTS), eq(imageryType));
 
         String expectedResponseBody = objectMapper.writeValueAsString(nonEmptyListOfProductDTOs);
         String actualResponseBody = mvcResult.getResponse().getContentAsString();
@@ -264,8 +272,8 @@ class ProductControllerTest {
         ImageryType imageryType = ImageryType.HYPERSPECTRAL;
 
         when(productService.getFilteredProducts(nullable(String.class), nullable(LocalDateTime.class), nullable(LocalDateTime.class),
-                nullable(Double.class), nullable(Double.class), nullable(ImageryType.class))).thenReturn(nonEmptyListOfProducts);
-        when(productService.removeUrlOfUnorderedProducts(nonEmptyListOfProducts)).thenReturn(nonEmptyListOfProducts);
+                nullable(Double.class), nullable(Double.class), nullable(BoundingBox.class), nullable(SpatialRelation.class),
+                nullable(ImageryType.class))).thenReturn(nonEmptyListOfProductDTOs);
 
         MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
                 .contentType("application/json")
@@ -279,7 +287,7 @@ class ProductControllerTest {
                 .andReturn();
 
         verify(productService, times(1)).getFilteredProducts(eq(missionName), eq(beforeDate),
-                eq(afterDate), eq(latitude), eq(longitude), eq(imageryType));
+                eq(afterDate), eq(latitude), eq(longitude), isNull(), eq(SpatialRelation.INTERSECTS), eq(imageryType));
 
         String expectedResponseBody = objectMapper.writeValueAsString(nonEmptyListOfProductDTOs);
         String actualResponseBody = mvcResult.getResponse().getContentAsString();
@@ -287,6 +295,89 @@ class ProductControllerTest {
         assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
     }
 
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void findProduct_whenLimitAndCursor_returns200AndPageWithNextCursorHeader() throws Exception {
+
+        ProductCursor cursor = new ProductCursor(LocalDateTime.of(2020, 1, 1, 12, 0), 7L);
+        ProductCursor nextCursor = new ProductCursor(product1.getAcquisitionDate(), product1.getId());
+
+        when(productService.getFilteredProductsPage(nullable(String.class), nullable(LocalDateTime.class),
+                nullable(LocalDateTime.class), nullable(Double.class), nullable(Double.class), nullable(BoundingBox.class),
+                nullable(SpatialRelation.class), nullable(ImageryType.class), anyInt(), nullable(ProductCursor.class)))
+                .thenReturn(new ProductPage(nonEmptyListOfProductDTOs, nextCursor));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("imageryType", "hyperspectral")
+                .param("limit", "1")
+                .param("cursor", cursor.encode()))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        verify(productService, times(1)).getFilteredProductsPage(isNull(), isNull(), isNull(), isNull(), isNull(),
+                isNull(), eq(SpatialRelation.INTERSECTS), eq(ImageryType.HYPERSPECTRAL), eq(1), eq(cursor));
+        verify(productService, never()).getFilteredProducts(any(), any(), any(), any(), any(), any(), any(), any());
+
+        assertThat(mvcResult.getResponse().getHeader(ProductController.NEXT_CURSOR_HEADER)).isEqualTo(nextCursor.encode());
+        assertThat(mvcResult.getResponse().getContentAsString())
+                .isEqualTo(objectMapper.writeValueAsString(nonEmptyListOfProductDTOs));
+    }
+
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void findProduct_whenLastPage_returns200WithoutNextCursorHeader() throws Exception {
+
+        when(productService.getFilteredProductsPage(nullable(String.class), nullable(LocalDateTime.class),
+                nullable(LocalDateTime.class), nullable(Double.class), nullable(Double.class), nullable(BoundingBox.class),
+                nullable(SpatialRelation.class), nullable(ImageryType.class), anyInt(), nullable(ProductCursor.class)))
+                .thenReturn(new ProductPage(nonEmptyListOfProductDTOs, null));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        verify(productService, times(1)).getFilteredProductsPage(isNull(), isNull(), isNull(), isNull(), isNull(),
+                isNull(), eq(SpatialRelation.INTERSECTS), isNull(), eq(10), isNull());
+        assertThat(mvcResult.getResponse().getHeader(ProductController.NEXT_CURSOR_HEADER)).isNull();
+    }
+
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void findProduct_whenLimitTooHigh_returns400AndErrorResponse() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("limit", "1001"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setStatus(HttpStatus.BAD_REQUEST.value());
+        errorResponse.setMessage("Parameter limit has to be between 1 and 1000");
+
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo(objectMapper.writeValueAsString(errorResponse));
+    }
+
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void findProduct_whenInvalidCursor_returns400AndErrorResponse() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("cursor", "abc"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setStatus(HttpStatus.BAD_REQUEST.value());
+        errorResponse.setMessage("Cursor abc is not valid");
+
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo(objectMapper.writeValueAsString(errorResponse));
+    }
+
     @WithMockUser(roles = "CUSTOMER")
     @Test
     void findProduct_whenInvalidImageryType_returns400AndErrorResponse() throws Exception {
@@ -320,6 +411,194 @@ class ProductControllerTest {
         assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
     }
 
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void findProduct_whenValidArea_returns200AndPassesAreaToService() throws Exception {
+
+        when(productService.getFilteredProducts(nullable(String.class), nullable(LocalDateTime.class), nullable(LocalDateTime.class),
+                nullable(Double.class), nullable(Double.class), nullable(BoundingBox.class), nullable(SpatialRelation.class),
+                nullable(ImageryType.class))).thenReturn(nonEmptyListOfProductDTOs);
+
+        mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("minLatitude", "10.0")
+                .param("minLongitude", "20.0")
+                .param("maxLatitude", "30.0")
+                .param("maxLongitude", "40.0")
+                .param("areaRelation", "within"))
+                .andExpect(status().isOk());
+
+        verify(productService, times(1)).getFilteredProducts(isNull(), isNull(), isNull(), isNull(), isNull(),
+                eq(new BoundingBox(10.0, 20.0, 30.0, 40.0)), eq(SpatialRelation.WITHIN), isNull());
+    }
+
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void findProduct_whenIncompleteArea_returns400AndErrorResponse() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("minLatitude", "10.0")
+                .param("minLongitude", "20.0")
+                .param("maxLatitude", "30.0"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setStatus(HttpStatus.BAD_REQUEST.value());
+        errorResponse.setMessage("Area search requires minLatitude, minLongitude, maxLatitude and maxLongitude");
+
+        String expectedResponseBody = objectMapper.writeValueAsString(errorResponse);
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
+    }
+
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void streamFoundProducts_whenAcceptNdjson_returns200AndOneProductDTOPerLine() throws Exception {
+
+        doAnswer(invocation -> {
+            Consumer<ProductDTO> action = invocation.getArgument(8);
+            action.accept(productDTOWithIdNotEqualZero);
+            return null;
+        }).when(productService).forEachFilteredProduct(eq("mission1"), any(), any(), any(), any(), any(), any(),
+                eq(ImageryType.HYPERSPECTRAL), any());
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .param("missionName", "mission1")
+                .param("imageryType", "hyperspectral")
+                .accept(NdjsonWriter.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String expectedResponseBody = objectMapper.writeValueAsString(productDTOWithIdNotEqualZero) + "\n";
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
+        verify(productService, never()).getFilteredProducts(any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void streamFoundProducts_whenInvalidImageryType_returns400AndErrorResponse() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .param("imageryType", "radar")
+                .accept(NdjsonWriter.MEDIA_TYPE, "application/json"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse actualOutput = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                ErrorResponse.class);
+
+        assertThat(actualOutput.getMessage()).isEqualTo("Imagery type radar does not exist");
+        verify(productService, never()).forEachFilteredProduct(any(), any(), any(), any(), any(), any(), any(),
+                any(), any());
+    }
+
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void getNearestProducts_whenValidInput_returns200AndProductsWithDistance() throws Exception {
+
+        when(productService.getNearestProducts(anyDouble(), anyDouble(), anyInt(), nullable(String.class),
+                nullable(ImageryType.class))).thenReturn(nonEmptyListOfProductDTOs);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/nearest")
+                .contentType("application/json")
+                .param("latitude", "100.15")
+                .param("longitude", "60.7")
+                .param("k", "3"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        verify(productService, times(1)).getNearestProducts(eq(100.15), eq(60.7), eq(3), isNull(), isNull());
+
+        NearestProductDTO[] actualOutput = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                NearestProductDTO[].class);
+
+        assertThat(actualOutput).hasSize(1);
+        assertThat(actualOutput[0].getProduct().getId()).isEqualTo(product1.getId());
+        assertThat(actualOutput[0].getDistance()).isCloseTo(10.0, offset(1e-9));
+    }
+
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void getNearestProducts_whenKIsZero_returns400AndErrorResponse() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/nearest")
+                .contentType("application/json")
+                .param("latitude", "100.15")
+                .param("longitude", "60.7")
+                .param("k", "0"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setStatus(HttpStatus.BAD_REQUEST.value());
+        errorResponse.setMessage("Parameter k has to be between 1 and 1000");
+
+        String expectedResponseBody = objectMapper.writeValueAsString(errorResponse);
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
+    }
+
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void getProductDensity_whenValidInput_returns200AndListOfDensityCellDTOs() throws Exception {
+        BoundingBox cell = new BoundingBox(0, 0, 90, 180);
+
+        when(productService.getDensity(any(BoundingBox.class), anyInt(), any(), any(), any()))
+                .thenReturn(Arrays.asList(new DensityCellDTO(cell, 5)));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/density")
+                .contentType("application/json")
+                .param("minLatitude", "-90")
+                .param("minLongitude", "-180")
+                .param("maxLatitude", "90")
+                .param("maxLongitude", "180")
+                .param("level", "1")
+                .param("imageryType", "hyperspectral")
+                .param("fromDate", "2020-01-01"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        verify(productService, times(1)).getDensity(eq(new BoundingBox(-90, -180, 90, 180)), eq(1),
+                eq(ImageryType.HYPERSPECTRAL), eq(LocalDate.of(2020, 1, 1)), isNull());
+
+        DensityCellDTO[] actualOutput = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                DensityCellDTO[].class);
+
+        assertThat(actualOutput).hasSize(1);
+        assertThat(actualOutput[0]).isEqualToComparingFieldByField(new DensityCellDTO(cell, 5));
+    }
+
+    @WithMockUser(roles = "CUSTOMER")
+    @Test
+    void getProductDensity_whenLevelTooHigh_returns400AndErrorResponse() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/density")
+                .contentType("application/json")
+                .param("minLatitude", "-90")
+                .param("minLongitude", "-180")
+                .param("maxLatitude", "90")
+                .param("maxLongitude", "180")
+                .param("level", "9"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setStatus(HttpStatus.BAD_REQUEST.value());
+        errorResponse.setMessage("Parameter level has to be between 0 and 8");
+
+        String expectedResponseBody = objectMapper.writeValueAsString(errorResponse);
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
+        verify(productService, never()).getDensity(any(), anyInt(), any(), any(), any());
+    }
+
     @Test
     void findProduct_whenValidInputAndInvalidRole_returns403() throws Exception {
 
@@ -346,10 +625,7 @@ class ProductControllerTest {
     @Test
     void getMostOrderedProductsDesc_whenValidInput_returns200AndNotEmptyListOfProductDTOs() throws Exception {
 
-        when(orderItemService.getAllProductAndOrderCountGroupedByProductIdOrderedByOrderCountDesc())
-                .thenReturn(notEmptyListOfProductAndOrderCounts);
-        when(orderItemService.convertAllProductAndOrderCountToProduct(notEmptyListOfProductAndOrderCounts))
-                .thenReturn(nonEmptyListOfProducts);
+        when(productService.getMostOrderedProductsDesc()).thenReturn(nonEmptyListOfProductDTOs);
 
         MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
                 .contentType("application/json"))
@@ -366,10 +642,7 @@ class ProductControllerTest {
     @Test
     void getMostOrderedProductsDesc_whenValidInput_returns200AndEmptyListOfProducts() throws Exception {
 
-        when(orderItemService.getAllProductAndOrderCountGroupedByProductIdOrderedByOrderCountDesc())
-                .thenReturn(emptyListOfProductAndOrderCounts);
-        when(orderItemService.convertAllProductAndOrderCountToProduct(emptyListOfProductAndOrderCounts))
-                .thenReturn(emptyListOfProducts);
+        when(productService.getMostOrderedProductsDesc()).thenReturn(emptyListOfProducts);
 
         MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
                 .contentType("application/json"))
@@ -382,6 +655,213 @@ class ProductControllerTest {
         assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
     }
 
+    @Test
+    void getMostOrderedProductsDesc_whenLimitAndOffset_returns200AndPageOfProductDTOs() throws Exception {
+
+        when(productService.getMostOrderedProductsDesc(10, 5)).thenReturn(nonEmptyListOfProductDTOs);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
+                .param("limit", "5")
+                .param("offset", "10"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(mvcResult.getResponse().getContentAsString())
+                .isEqualTo(objectMapper.writeValueAsString(nonEmptyListOfProductDTOs));
+        verify(productService, never()).getMostOrderedProductsDesc();
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenWindow_returns200AndPageOfProductDTOsOfWindow() throws Exception {
+
+        when(productService.getMostOrderedProductsDesc(RankingWindow.LAST_HOUR, 0, 100))
+                .thenReturn(nonEmptyListOfProductDTOs);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
+                .param("window", "1h"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(mvcResult.getResponse().getContentAsString())
+                .isEqualTo(objectMapper.writeValueAsString(nonEmptyListOfProductDTOs));
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenInvalidWindow_returns400AndErrorResponse() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
+                .param("window", "2h"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                ErrorResponse.class);
+
+        assertThat(errorResponse.getMessage()).isEqualTo("Window 2h does not exist, it has to be 1h, 24h or 7d");
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenMissionNameAndImageryType_returns200AndPageOfProductDTOsOfMissions() throws Exception {
+
+        when(productService.getMostOrderedProductsDesc("mission1", ImageryType.HYPERSPECTRAL, 0, 100))
+                .thenReturn(nonEmptyListOfProductDTOs);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
+                .param("missionName", "mission1")
+                .param("imageryType", "hyperspectral"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(mvcResult.getResponse().getContentAsString())
+                .isEqualTo(objectMapper.writeValueAsString(nonEmptyListOfProductDTOs));
+        verify(productService, never()).getMostOrderedProductsDesc();
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenMissionNameAndWindow_returns400AndErrorResponse() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
+                .param("missionName", "mission1")
+                .param("window", "1h"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                ErrorResponse.class);
+
+        assertThat(errorResponse.getMessage())
+                .isEqualTo("Parameter window can't be combined with missionName or imageryType");
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenNegativeOffset_returns400() throws Exception {
+
+        mockMvc.perform(get("/api/products/most-ordered")
+                .param("limit", "5")
+                .param("offset", "-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getApproximateMostOrderedProductsDesc_whenValidLimit_returns200AndEstimatedProducts() throws Exception {
+
+        ApproximateMostOrderedDTO approximateMostOrdered = new ApproximateMostOrderedDTO(0.001, 0.01, 2_000, 2,
+                Arrays.asList(new EstimatedProductDTO(nonEmptyListOfProductDTOs.get(0), 7)));
+
+        when(productService.isMostOrderedApproximate()).thenReturn(true);
+        when(productService.getApproximateMostOrderedCapacity()).thenReturn(1000);
+        when(productService.getApproximateMostOrderedProductsDesc(10)).thenReturn(approximateMostOrdered);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered/approximate")
+                .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(mvcResult.getResponse().getContentAsString())
+                .isEqualTo(objectMapper.writeValueAsString(approximateMostOrdered));
+    }
+
+    @Test
+    void getApproximateMostOrderedProductsDesc_whenLimitAboveCapacity_returns400AndErrorResponse() throws Exception {
+
+        when(productService.isMostOrderedApproximate()).thenReturn(true);
+        when(productService.getApproximateMostOrderedCapacity()).thenReturn(1000);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered/approximate")
+                .param("limit", "1001"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                ErrorResponse.class);
+
+        assertThat(errorResponse.getMessage()).isEqualTo("Parameter limit has to be between 1 and 1000");
+        verify(productService, never()).getApproximateMostOrderedProductsDesc(anyInt());
+    }
+
+    @Test
+    void getApproximateMostOrderedProductsDesc_whenExactMode_returns400AndErrorResponse() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered/approximate")
+                .param("limit", "10"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                ErrorResponse.class);
+
+        assertThat(errorResponse.getMessage())
+                .isEqualTo("Approximate most ordered products need spaceagencydatahub.most-ordered.approximate=true");
+        verify(productService, never()).getApproximateMostOrderedProductsDesc(anyInt());
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenApproximateModeAndPageWithinCapacity_returns200AndPageOfProductDTOs()
+            throws Exception {
+
+        when(productService.isMostOrderedApproximate()).thenReturn(true);
+        when(productService.getApproximateMostOrderedCapacity()).thenReturn(1000);
+        when(productService.getMostOrderedProductsDesc(990, 10)).thenReturn(nonEmptyListOfProductDTOs);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
+                .param("limit", "10")
+                .param("offset", "990"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(mvcResult.getResponse().getContentAsString())
+                .isEqualTo(objectMapper.writeValueAsString(nonEmptyListOfProductDTOs));
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenApproximateModeAndPageAboveCapacity_returns400AndErrorResponse()
+            throws Exception {
+
+        when(productService.isMostOrderedApproximate()).thenReturn(true);
+        when(productService.getApproximateMostOrderedCapacity()).thenReturn(1000);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
+                .param("limit", "10")
+                .param("offset", "991"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                ErrorResponse.class);
+
+        assertThat(errorResponse.getMessage()).isEqualTo("Parameters offset and limit have to add up to at most 1000");
+        verify(productService, never()).getMostOrderedProductsDesc(anyInt(), anyInt());
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenApproximateModeAndMissionName_returns400AndErrorResponse() throws Exception {
+
+        when(productService.isMostOrderedApproximate()).thenReturn(true);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
+                .param("missionName", "mission1"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                ErrorResponse.class);
+
+        assertThat(errorResponse.getMessage())
+                .isEqualTo("Parameters missionName and imageryType need the exact most ordered products");
+    }
+
+    @Test
+    void repairOrderCounts_whenValidInput_returns200AndNumberOfRepairedProducts() throws Exception {
+
+        when(productService.repairOrderCounts()).thenReturn(2);
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/products/order-counts/repair"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("2");
+    }
+
     //  ----------------------------------------------------------------------------------------------
 
     @Test
@@ -3,30 +3,48 @@ package com.hydro17.spaceagencydatahub.controllers;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hydro17.spaceagencydatahub.exceptions.ErrorResponse;
 import com.hydro17.spaceagencydatahub.models.*;
+import com.hydro17.spaceagencydatahub.exceptions.ProductOrderNotFoundException;
+import com.hydro17.spaceagencydatahub.exceptions.ProductOrderQueueFullException;
 import com.hydro17.spaceagencydatahub.services.MissionService;
+import com.hydro17.spaceagencydatahub.services.OrderIdempotencyService;
+import com.hydro17.spaceagencydatahub.services.ProductOrderIngestionService;
 import com.hydro17.spaceagencydatahub.services.ProductOrderService;
 import com.hydro17.spaceagencydatahub.services.ProductService;
+import com.hydro17.spaceagencydatahub.utils.CsvWriter;
 import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import com.hydro17.spaceagencydatahub.utils.OrderIngestionState;
+import com.hydro17.spaceagencydatahub.utils.ProductOrderCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.StreamUtils;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = ProductOrderController.class)
@@ -42,6 +60,12 @@ class ProductOrderControllerTest {
     @MockBean
     ProductOrderService productOrderService;
 
+    @MockBean
+    ProductOrderIngestionService productOrderIngestionService;
+
+    @MockBean
+    OrderIdempotencyService orderIdempotencyService;
+
     // Added due to CommandLineRunner in the class SpaceAgencyDataHubApplication
     @MockBean
     private MissionService missionService;
@@ -50,8 +74,6 @@ class ProductOrderControllerTest {
     @MockBean
     private ProductService productService;
 
-    private List<ProductOrder> nonEmptyProductOrderList;
-
     private ProductOrder productOrder;
     private ProductOrderDTO nonEmptyProductOrderDTO;
 
@@ -81,29 +103,59 @@ class ProductOrderControllerTest {
         productOrder.setPlacedOn(LocalDateTime.now());
         productOrder.addProduct(product);
 
-        nonEmptyProductOrderList = new ArrayList<>();
-        nonEmptyProductOrderList.add(productOrder);
-
         nonEmptyProductOrderDTO = new ProductOrderDTO();
         nonEmptyProductOrderDTO.setProductIds(Arrays.asList(1L));
     }
 
     @Test
-    void getAllProductOrdersOrderedByPlacedOnDesc_whenValidInput_thenReturns200AndNonEmptyProductOrderList() throws Exception {
+    void getProductOrderHistory_whenValidInput_thenReturns200AndPageWithNextCursor() throws Exception {
 
-        when(productOrderService.getAllProductOrdersOrderedByPlacedOnDesc()).thenReturn(nonEmptyProductOrderList);
+        ProductOrderHistoryDTO productOrderHistoryDTO = new ProductOrderHistoryDTO(7L, LocalDateTime.of(2020, 3, 1, 12, 0));
+        productOrderHistoryDTO.getProductIds().add(1L);
+        ProductOrderCursor nextCursor = new ProductOrderCursor(productOrderHistoryDTO.getPlacedOn(), 7L);
+
+        when(productOrderService.getProductOrderHistoryPage(LocalDateTime.of(2020, 1, 1, 0, 0), null, 1, null))
+                .thenReturn(new ProductOrderHistoryPage(Arrays.asList(productOrderHistoryDTO), nextCursor));
 
         MvcResult mvcResult = mockMvc.perform(get("/api/orders/history")
+                .param("from", "2020-01-01T00:00:00")
+                .param("limit", "1")
                 .contentType("application/json"))
                 .andExpect(status().isOk())
+                .andExpect(header().string(ProductOrderController.NEXT_CURSOR_HEADER, nextCursor.encode()))
                 .andReturn();
 
-        String expectedResponsBody = objectMapper.writeValueAsString(nonEmptyProductOrderList);
+        String expectedResponsBody = objectMapper.writeValueAsString(Arrays.asList(productOrderHistoryDTO));
         String actualResponseBody = mvcResult.getResponse().getContentAsString();
 
         assertThat(actualResponseBody).isEqualTo(expectedResponsBody);
     }
 
+    @Test
+    void getProductOrderHistory_whenFromNotBeforeTo_thenReturns400() throws Exception {
+
+        mockMvc.perform(get("/api/orders/history")
+                .param("from", "2020-01-02T00:00:00")
+                .param("to", "2020-01-01T00:00:00"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getProductOrderHistory_whenInvalidCursor_thenReturns400() throws Exception {
+
+        mockMvc.perform(get("/api/orders/history")
+                .param("cursor", "not a cursor!"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getProductOrderHistory_whenLimitTooLarge_thenReturns400() throws Exception {
+
+        mockMvc.perform(get("/api/orders/history")
+                .param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void addOrder_whenValidInput_thenReturns201AndProductOrder() throws Exception {
 
@@ -150,4 +202,174 @@ class ProductOrderControllerTest {
                 .content(objectMapper.writeValueAsString(nonEmptyProductOrderDTO)))
                 .andExpect(status().isForbidden());
     }
-}
\ No newline at end of file
+
+    @Test
+    void addOrder_whenAsyncIngestion_thenReturns202AndQueuedStatus() throws Exception {
+
+        OrderIngestionStatusDTO status = new OrderIngestionStatusDTO(7L, OrderIngestionState.QUEUED, null);
+
+        when(productOrderIngestionService.isEnabled()).thenReturn(true);
+        when(productOrderService.convertProductOrderDTOToProductOrder(any(ProductOrderDTO.class))).thenReturn(productOrder);
+        when(productOrderIngestionService.enqueue(productOrder)).thenReturn(status);
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(nonEmptyProductOrderDTO)))
+                .andExpect(status().isAccepted())
+                .andReturn();
+
+        String expectedResponseBody = objectMapper.writeValueAsString(status);
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
+    }
+
+    @Test
+    void addOrder_whenAsyncIngestionQueueFull_thenReturns429() throws Exception {
+
+        when(productOrderIngestionService.isEnabled()).thenReturn(true);
+        when(productOrderService.convertProductOrderDTOToProductOrder(any(ProductOrderDTO.class))).thenReturn(productOrder);
+        when(productOrderIngestionService.enqueue(productOrder))
+                .thenThrow(new ProductOrderQueueFullException("Too many orders are waiting to be placed, try again later"));
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(nonEmptyProductOrderDTO)))
+                .andExpect(status().isTooManyRequests())
+                .andReturn();
+
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        errorResponse.setMessage("Too many orders are waiting to be placed, try again later");
+
+        String expectedResponseBody = objectMapper.writeValueAsString(errorResponse);
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
+    }
+
+    @Test
+    void getOrderStatus_whenExistingOrder_thenReturns200AndStatus() throws Exception {
+
+        OrderIngestionStatusDTO status = new OrderIngestionStatusDTO(7L, OrderIngestionState.PLACED, null);
+
+        when(productOrderIngestionService.getStatus(7L)).thenReturn(status);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/orders/7/status"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String expectedResponseBody = objectMapper.writeValueAsString(status);
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
+    }
+
+    @Test
+    void getOrderStatus_whenUnknownOrder_thenReturns404() throws Exception {
+
+        when(productOrderIngestionService.getStatus(8L))
+                .thenThrow(new ProductOrderNotFoundException("There is no order with id: 8"));
+
+        mockMvc.perform(get("/api/orders/8/status"))
+                .andExpect(status().isNotFound());
+    }
+
+    @WithMockUser(username = "customer", roles = "CUSTOMER")
+    @Test
+    void addOrder_whenIdempotencyKey_thenReturnsResponseOfOrderIdempotencyService() throws Exception {
+
+        doReturn(ResponseEntity.status(HttpStatus.CREATED)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(OrderIdempotencyService.REPLAYED_HEADER, "true")
+                .body("{\"id\":7}"))
+                .when(orderIdempotencyService).placeOrderOnce(eq("customer"), eq("key-1"), eq(Arrays.asList(1L)), any());
+
+        mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .header("Idempotency-Key", "key-1")
+                .content(objectMapper.writeValueAsString(nonEmptyProductOrderDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(OrderIdempotencyService.REPLAYED_HEADER, "true"))
+                .andExpect(content().json("{\"id\":7}"));
+    }
+
+    @Test
+    void addOrder_whenTooLongIdempotencyKey_thenReturns400() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .header("Idempotency-Key", String.join("", Collections.nCopies(256, "k")))
+                .content(objectMapper.writeValueAsString(nonEmptyProductOrderDTO)))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setStatus(HttpStatus.BAD_REQUEST.value());
+        errorResponse.setMessage("Idempotency-Key has to have from 1 to 255 characters");
+
+        String expectedResponseBody = objectMapper.writeValueAsString(errorResponse);
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
+    }
+
+    @Test
+    void exportProductOrders_whenCsv_thenReturns200AndOneLinePerOrderItem() throws Exception {
+
+        ProductOrderExportDTO productOrderExportDTO = new ProductOrderExportDTO(7L, LocalDateTime.of(2020, 3, 1, 12, 0));
+        productOrderExportDTO.getItems().add(new OrderItemExportDTO(1L, new BigDecimal("10.50")));
+        productOrderExportDTO.getItems().add(new OrderItemExportDTO(2L, new BigDecimal("3.00")));
+
+        doAnswer(invocation -> {
+            invocation.<Consumer<ProductOrderExportDTO>>getArgument(2).accept(productOrderExportDTO);
+            return null;
+        }).when(productOrderService).forEachExportedProductOrder(eq(null), eq(null), any());
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/orders/export"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"orders.csv\""))
+                .andReturn();
+
+        assertThat(mvcResult.getResponse().getContentType()).isEqualTo(CsvWriter.MEDIA_TYPE);
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("order_id,placed_on,product_id,price\r\n" +
+                "7,2020-03-01T12:00,1,10.50\r\n" +
+                "7,2020-03-01T12:00,2,3.00\r\n");
+    }
+
+    @Test
+    void exportProductOrders_whenGzippedNdjson_thenReturns200AndCompressedOrderPerLine() throws Exception {
+
+        ProductOrderExportDTO productOrderExportDTO = new ProductOrderExportDTO(7L, LocalDateTime.of(2020, 3, 1, 12, 0));
+        productOrderExportDTO.getItems().add(new OrderItemExportDTO(1L, new BigDecimal("10.50")));
+
+        doAnswer(invocation -> {
+            invocation.<Consumer<ProductOrderExportDTO>>getArgument(2).accept(productOrderExportDTO);
+            return null;
+        }).when(productOrderService).forEachExportedProductOrder(eq(null), eq(null), any());
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/orders/export")
+                .param("format", "ndjson")
+                .param("gzip", "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"orders.ndjson.gz\""))
+                .andReturn();
+
+        byte[] uncompressed;
+        try (GZIPInputStream inputStream = new GZIPInputStream(
+                new ByteArrayInputStream(mvcResult.getResponse().getContentAsByteArray()))) {
+            uncompressed = StreamUtils.copyToByteArray(inputStream);
+        }
+
+        assertThat(new String(uncompressed, StandardCharsets.UTF_8))
+                .isEqualTo(objectMapper.writeValueAsString(productOrderExportDTO) + "\n");
+    }
+
+    @Test
+    void exportProductOrders_whenUnknownFormat_thenReturns400() throws Exception {
+
+        mockMvc.perform(get("/api/orders/export")
+                .param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,54 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductFootprint;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.utils.ImageryType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+//  The mission and products the integration tests start from
+final class IntegrationTestData {
+
+    private IntegrationTestData() {
+    }
+
+//  Orders reference products and products reference missions, so they are deleted in this order
+    static void deleteAll(ProductOrderRepository productOrderRepository, ProductRepository productRepository,
+                          MissionRepository missionRepository) {
+        productOrderRepository.deleteAll();
+        productRepository.deleteAll();
+        missionRepository.deleteAll();
+    }
+
+//  A hyperspectral mission named "mission" that is in progress
+    static Mission saveMission(MissionRepository missionRepository) {
+        Mission mission = new Mission();
+        mission.setName("mission");
+        mission.setImageryType(ImageryType.HYPERSPECTRAL);
+        mission.setStartDate(LocalDateTime.now().minusHours(1L));
+        mission.setFinishDate(LocalDateTime.now().plusHours(1L));
+
+        return missionRepository.save(mission);
+    }
+
+//  A product of the mission acquired now, priced 10.50, with a footprint from (10, 10) to (20, 20)
+    static Product newProduct(Mission mission, String url) {
+        return newProduct(mission, url, new ProductFootprint(10, 10, 20, 20));
+    }
+
+    static Product newProduct(Mission mission, String url, ProductFootprint footprint) {
+        Product product = new Product();
+        product.setAcquisitionDate(LocalDateTime.now());
+        product.setFootprint(footprint);
+        product.setPrice(new BigDecimal("10.50"));
+        product.setUrl(url);
+        product.setMission(mission);
+
+        return product;
+    }
+}
@@ -6,6 +6,7 @@ import com.hydro17.spaceagencydatahub.models.*;
 import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
 import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
 import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.services.OrderedProductIndexService;
 import com.hydro17.spaceagencydatahub.utils.ImageryType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -45,6 +46,9 @@ public class ProductOrder_IntegrationTest {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    OrderedProductIndexService orderedProductIndexService;
+
     @Autowired
     MockMvc mockMvc;
 
@@ -92,7 +96,7 @@ public class ProductOrder_IntegrationTest {
     }
 
     @Test
-    void getAllProductOrdersOrderedByPlacedOnDesc_whenValidInput_thenReturns200AndNonEmptyProductOrderList() throws Exception {
+    void getProductOrderHistory_whenValidInput_thenReturns200AndNonEmptyProductOrderList() throws Exception {
 
         missionRepository.save(mission);
         productRepository.save(product);
@@ -110,7 +114,7 @@ public class ProductOrder_IntegrationTest {
     }
 
     @Test
-    void getAllProductOrdersOrderedByPlacedOnDesc_whenValidInput_thenReturns200AndEmptyProductOrderList() throws Exception {
+    void getProductOrderHistory_whenValidInput_thenReturns200AndEmptyProductOrderList() throws Exception {
 
         MvcResult mvcResult = mockMvc.perform(get("/api/orders/history")
                 .contentType("application/json"))
@@ -140,6 +144,37 @@ public class ProductOrder_IntegrationTest {
                 .andReturn();
     }
 
+    @Test
+    void addOrder_whenValidInput_thenProductIsInOrderedProductIndex() throws Exception {
+
+        missionRepository.save(mission);
+        long savedProductId = productRepository.save(product).getId();
+        long cardinality = orderedProductIndexService.getCardinality();
+
+        ProductOrderDTO nonEmptyProductOrderDTO = new ProductOrderDTO();
+        nonEmptyProductOrderDTO.setProductIds(Arrays.asList(savedProductId));
+
+        assertThat(orderedProductIndexService.isOrdered(savedProductId)).isFalse();
+
+        mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(nonEmptyProductOrderDTO)))
+                .andExpect(status().isCreated());
+
+        assertThat(orderedProductIndexService.isOrdered(savedProductId)).isTrue();
+        assertThat(orderedProductIndexService.getCardinality()).isEqualTo(cardinality + 1);
+    }
+
+    @Test
+    @WithMockUser(roles = "CONTENT_MANAGER")
+    void orderedProductBitmapMetrics_whenRequestedByContentManager_thenReturns200() throws Exception {
+
+        mockMvc.perform(get("/actuator/metrics/product.ordered.bitmap.cardinality"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/metrics/product.ordered.bitmap.size"))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void addOrder_whenEmptyProductOrderDTO_thenReturns400() throws Exception {
 
@@ -0,0 +1,231 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.OrderIdempotencyKey;
+import com.hydro17.spaceagencydatahub.models.OrderIngestionStatusDTO;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductOrder;
+import com.hydro17.spaceagencydatahub.models.ProductOrderDTO;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.OrderIdempotencyKeyRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.services.OrderIdempotencyService;
+import com.hydro17.spaceagencydatahub.services.ProductOrderService;
+import com.hydro17.spaceagencydatahub.utils.OrderIngestionState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.saveMission;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  An order sent with an Idempotency-Key is answered with 202 when it is queued, the key must not replay
+//  that response once the order failed to be saved, the retry places the order again.
+//  The order is queued only once its response is stored, an order whose response can't be stored because another
+//  instance stored one for the key meanwhile is not placed.
+@SpringBootTest(properties = "spaceagencydatahub.order-ingestion.async=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class ProductOrder_asyncIdempotency_IntegrationTest {
+
+    private static final long PLACEMENT_TIMEOUT_MS = 10_000;
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    OrderIdempotencyKeyRepository orderIdempotencyKeyRepository;
+
+    @Autowired
+    OrderIdempotencyService orderIdempotencyService;
+
+    @SpyBean
+    ProductOrderService productOrderService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        orderIdempotencyKeyRepository.deleteAll();
+        orderIdempotencyService.clearCache();
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+
+        Mission mission = saveMission(missionRepository);
+
+        product = newProduct(mission, "http://com");
+        productRepository.save(product);
+    }
+
+    @Test
+    void addOrder_whenQueuedOrderFailedAndSentAgainWithSameKey_thenPlacesOrderAgain() throws Exception {
+
+        doThrow(new IllegalStateException("write failed")).when(productOrderService).saveProductOrders(anyList());
+        doThrow(new IllegalStateException("write failed")).when(productOrderService).saveProductOrder(any());
+
+        OrderIngestionStatusDTO failed = readStatus(mockMvc.perform(order("key-1"))
+                .andExpect(status().isAccepted())
+                .andReturn());
+
+        assertThat(waitWhileQueued(failed.getOrderId())).isEqualTo(OrderIngestionState.FAILED);
+
+        doCallRealMethod().when(productOrderService).saveProductOrders(anyList());
+        doCallRealMethod().when(productOrderService).saveProductOrder(any());
+
+        MvcResult retry = mockMvc.perform(order("key-1"))
+                .andExpect(status().isAccepted())
+                .andReturn();
+        OrderIngestionStatusDTO placedAgain = readStatus(retry);
+
+        assertThat(retry.getResponse().getHeader(OrderIdempotencyService.REPLAYED_HEADER)).isNull();
+        assertThat(placedAgain.getOrderId()).isNotEqualTo(failed.getOrderId());
+        assertThat(waitWhileQueued(placedAgain.getOrderId())).isEqualTo(OrderIngestionState.PLACED);
+
+        MvcResult replay = mockMvc.perform(order("key-1"))
+                .andExpect(status().isAccepted())
+                .andReturn();
+        OrderIngestionStatusDTO replayed = readStatus(replay);
+
+        assertThat(replay.getResponse().getHeader(OrderIdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(replayed.getOrderId()).isEqualTo(placedAgain.getOrderId());
+        assertThat(replayed.getState()).isEqualTo(OrderIngestionState.PLACED);
+        assertThat(productOrderRepository.count()).isEqualTo(1);
+        assertThat(orderIdempotencyKeyRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void addOrder_whenQueuedOrderSentAgainWithSameKey_thenReplaysItsCurrentStatusAndPlacesOneOrder() throws Exception {
+
+        OrderIngestionStatusDTO queued = readStatus(mockMvc.perform(order("key-1"))
+                .andExpect(status().isAccepted())
+                .andReturn());
+
+        assertThat(waitWhileQueued(queued.getOrderId())).isEqualTo(OrderIngestionState.PLACED);
+
+        MvcResult retry = mockMvc.perform(order("key-1"))
+                .andExpect(status().isAccepted())
+                .andReturn();
+        OrderIngestionStatusDTO replayed = readStatus(retry);
+
+        assertThat(retry.getResponse().getHeader(OrderIdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(replayed.getOrderId()).isEqualTo(queued.getOrderId());
+        assertThat(replayed.getState()).isEqualTo(OrderIngestionState.PLACED);
+        assertThat(productOrderRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void addOrder_whenOtherInstanceStoresSameKeyMeanwhile_thenReplaysItsResponseAndPlacesNoOrder() throws Exception {
+
+        OrderIngestionStatusDTO placedByOther = readStatus(mockMvc.perform(order("key-0"))
+                .andExpect(status().isAccepted())
+                .andReturn());
+        assertThat(waitWhileQueued(placedByOther.getOrderId())).isEqualTo(OrderIngestionState.PLACED);
+        String requestHash = orderIdempotencyKeyRepository.findById("customer:key-0").get().getRequestHash();
+
+//      the other instance commits its response while this one places the order, storing this one's fails
+        doAnswer(invocation -> {
+            storeInNewTransaction(new OrderIdempotencyKey("customer:key-1", requestHash,
+                    HttpStatus.ACCEPTED.value(), objectMapper.writeValueAsString(placedByOther), LocalDateTime.now()));
+            return invocation.callRealMethod();
+        }).when(productOrderService).convertProductOrderDTOToProductOrder(any());
+
+        MvcResult replay = mockMvc.perform(order("key-1"))
+                .andExpect(status().isAccepted())
+                .andReturn();
+
+        doCallRealMethod().when(productOrderService).convertProductOrderDTOToProductOrder(any());
+
+        assertThat(replay.getResponse().getHeader(OrderIdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(readStatus(replay).getOrderId()).isEqualTo(placedByOther.getOrderId());
+
+//      the queue is saved in order, the rolled back order would be saved before this one
+        OrderIngestionStatusDTO next = readStatus(mockMvc.perform(order("key-2"))
+                .andExpect(status().isAccepted())
+                .andReturn());
+        assertThat(waitWhileQueued(next.getOrderId())).isEqualTo(OrderIngestionState.PLACED);
+
+        assertThat(productOrderRepository.findAll()).extracting(ProductOrder::getId)
+                .containsExactlyInAnyOrder(placedByOther.getOrderId(), next.getOrderId());
+    }
+
+    private OrderIngestionState waitWhileQueued(long orderId) throws Exception {
+        long deadline = System.currentTimeMillis() + PLACEMENT_TIMEOUT_MS;
+        OrderIngestionState state;
+
+        do {
+            Thread.sleep(50);
+
+            state = readStatus(mockMvc.perform(get("/api/orders/{id}/status", orderId)
+                    .with(user("customer").roles("CUSTOMER")))
+                    .andExpect(status().isOk())
+                    .andReturn()).getState();
+        } while (state == OrderIngestionState.QUEUED && System.currentTimeMillis() < deadline);
+
+        return state;
+    }
+
+    private void storeInNewTransaction(OrderIdempotencyKey stored) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.execute(status -> {
+            orderIdempotencyKeyRepository.insert(stored);
+            return null;
+        });
+    }
+
+    private OrderIngestionStatusDTO readStatus(MvcResult mvcResult) throws Exception {
+        return objectMapper.readValue(mvcResult.getResponse().getContentAsString(), OrderIngestionStatusDTO.class);
+    }
+
+    private RequestBuilder order(String idempotencyKey) throws Exception {
+        ProductOrderDTO productOrderDTO = new ProductOrderDTO();
+        productOrderDTO.setProductIds(Arrays.asList(product.getId()));
+
+        return post("/api/orders")
+                .with(user("customer").roles("CUSTOMER"))
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(productOrderDTO));
+    }
+}
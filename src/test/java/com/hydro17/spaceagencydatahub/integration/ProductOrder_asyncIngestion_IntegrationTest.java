@@ -0,0 +1,124 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.OrderIngestionStatusDTO;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductOrderDTO;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.utils.OrderIngestionState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Arrays;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.saveMission;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  The writer keeps a group open for the whole latency budget unless it fills up, and a queued order counts
+//  against the queue capacity until its group is closed, so a second order sent at once finds the queue full
+@SpringBootTest(properties = {
+        "spaceagencydatahub.order-ingestion.async=true",
+        "spaceagencydatahub.order-ingestion.queue-capacity=1",
+        "spaceagencydatahub.order-ingestion.max-group-size=2",
+        "spaceagencydatahub.order-ingestion.latency-budget-ms=1000"})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@WithMockUser(roles = "CUSTOMER")
+public class ProductOrder_asyncIngestion_IntegrationTest {
+
+    private static final long PLACEMENT_TIMEOUT_MS = 10_000;
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private ProductOrderDTO productOrderDTO;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+
+        Mission mission = saveMission(missionRepository);
+
+        Product product = newProduct(mission, "http://com");
+        productRepository.save(product);
+
+        productOrderDTO = new ProductOrderDTO();
+        productOrderDTO.setProductIds(Arrays.asList(product.getId()));
+    }
+
+    @Test
+    void addOrder_whenAsyncIngestion_thenReturns202AndOrderIsPlacedWithTheReturnedId() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(productOrderDTO)))
+                .andExpect(status().isAccepted())
+                .andReturn();
+
+        OrderIngestionStatusDTO queued = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                OrderIngestionStatusDTO.class);
+
+        assertThat(queued.getState()).isEqualTo(OrderIngestionState.QUEUED);
+
+        mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(productOrderDTO)))
+                .andExpect(status().isTooManyRequests());
+
+        assertThat(waitUntilPlaced(queued.getOrderId())).isEqualTo(OrderIngestionState.PLACED);
+        assertThat(productOrderRepository.findById(queued.getOrderId())).isPresent();
+        assertThat(productOrderRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void getOrderStatus_whenUnknownOrder_thenReturns404() throws Exception {
+
+        mockMvc.perform(get("/api/orders/{id}/status", Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+    }
+
+    private OrderIngestionState waitUntilPlaced(long orderId) throws Exception {
+        long deadline = System.currentTimeMillis() + PLACEMENT_TIMEOUT_MS;
+        OrderIngestionState state;
+
+        do {
+            Thread.sleep(50);
+
+            MvcResult mvcResult = mockMvc.perform(get("/api/orders/{id}/status", orderId))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            state = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                    OrderIngestionStatusDTO.class).getState();
+        } while (state == OrderIngestionState.QUEUED && System.currentTimeMillis() < deadline);
+
+        return state;
+    }
+}
@@ -0,0 +1,130 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.OrderItemExportDTO;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductOrder;
+import com.hydro17.spaceagencydatahub.models.ProductOrderExportDTO;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.saveMission;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@WithMockUser(roles = "CUSTOMER")
+public class ProductOrder_export_IntegrationTest {
+
+    private static final LocalDateTime FIRST_PLACED_ON = LocalDateTime.of(2020, 3, 1, 12, 0);
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Product first;
+    private Product second;
+    private List<ProductOrder> productOrders;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+
+        Mission mission = saveMission(missionRepository);
+
+        first = productRepository.save(newProduct(mission, "http://com/1"));
+        second = newProduct(mission, "http://com/2");
+        second.setPrice(new BigDecimal("3.00"));
+        productRepository.save(second);
+
+        productOrders = new ArrayList<>();
+
+        for (int hours = 0; hours < 3; hours++) {
+            ProductOrder productOrder = new ProductOrder();
+            productOrder.setPlacedOn(FIRST_PLACED_ON.plusHours(hours));
+            productOrder.addProduct(first);
+            if (hours == 1) productOrder.addProduct(second);
+            productOrders.add(productOrderRepository.save(productOrder));
+        }
+    }
+
+    @Test
+    void exportProductOrders_whenCsvFromTo_thenReturnsOrderItemsOfOrdersPlacedFromInclusiveToExclusive() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/orders/export")
+                .param("from", FIRST_PLACED_ON.plusHours(1L).toString())
+                .param("to", FIRST_PLACED_ON.plusHours(2L).toString()))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        long productOrderId = productOrders.get(1).getId();
+
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("order_id,placed_on,product_id,price\r\n" +
+                productOrderId + ",2020-03-01T13:00," + first.getId() + ",10.50\r\n" +
+                productOrderId + ",2020-03-01T13:00," + second.getId() + ",3.00\r\n");
+    }
+
+    @Test
+    void exportProductOrders_whenGzippedNdjson_thenReturnsEveryOrderWithItsItemsInOrderOfIds() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/orders/export")
+                .param("format", "ndjson")
+                .param("gzip", "true"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String ndjson;
+        try (GZIPInputStream inputStream = new GZIPInputStream(
+                new ByteArrayInputStream(mvcResult.getResponse().getContentAsByteArray()))) {
+            ndjson = new String(StreamUtils.copyToByteArray(inputStream), StandardCharsets.UTF_8);
+        }
+
+        List<ProductOrderExportDTO> exportedProductOrders = new ArrayList<>();
+        for (String line : ndjson.split("\n")) {
+            exportedProductOrders.add(objectMapper.readValue(line, ProductOrderExportDTO.class));
+        }
+
+        assertThat(exportedProductOrders).extracting(ProductOrderExportDTO::getId)
+                .containsExactly(productOrders.get(0).getId(), productOrders.get(1).getId(), productOrders.get(2).getId());
+        assertThat(exportedProductOrders.get(1).getItems()).extracting(OrderItemExportDTO::getProductId)
+                .containsExactly(first.getId(), second.getId());
+        assertThat(exportedProductOrders.get(1).getItems()).extracting(OrderItemExportDTO::getPrice)
+                .containsExactly(new BigDecimal("10.50"), new BigDecimal("3.00"));
+    }
+}
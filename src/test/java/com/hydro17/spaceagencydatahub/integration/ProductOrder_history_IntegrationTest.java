@@ -0,0 +1,147 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.controllers.ProductOrderController;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductOrder;
+import com.hydro17.spaceagencydatahub.models.ProductOrderHistoryDTO;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.saveMission;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  The order history is read page by page with one statement for the orders and one for their product ids
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@WithMockUser(roles = "CUSTOMER")
+public class ProductOrder_history_IntegrationTest {
+
+    private static final LocalDateTime FIRST_PLACED_ON = LocalDateTime.of(2020, 3, 1, 12, 0);
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Statistics statistics;
+
+    //  Newest first, orders placed at the same time by descending id
+    private List<ProductOrder> productOrders;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+
+        Mission mission = saveMission(missionRepository);
+
+        Product first = productRepository.save(newProduct(mission, "http://com/1"));
+        Product second = productRepository.save(newProduct(mission, "http://com/2"));
+
+        productOrders = new ArrayList<>();
+
+//      the last two orders are placed at the same time as the third one
+        for (int hours : new int[]{0, 1, 2, 2, 2}) {
+            ProductOrder productOrder = new ProductOrder();
+            productOrder.setPlacedOn(FIRST_PLACED_ON.plusHours(hours));
+            productOrder.addProduct(first);
+            productOrder.addProduct(hours % 2 == 0 ? second : first);
+            productOrders.add(productOrderRepository.save(productOrder));
+        }
+
+        productOrders.sort(Comparator.comparing(ProductOrder::getPlacedOn).thenComparing(ProductOrder::getId).reversed());
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getProductOrderHistory_whenReadPageByPage_thenReturnsEveryOrderOnceNewestFirstWithTwoStatementsPerPage()
+            throws Exception {
+
+        List<ProductOrderHistoryDTO> readProductOrders = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+
+        do {
+            MockHttpServletRequestBuilder request = get("/api/orders/history").param("limit", "2");
+            if (cursor != null) request.param("cursor", cursor);
+
+            statistics.clear();
+
+            MvcResult mvcResult = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+            readProductOrders.addAll(Arrays.asList(objectMapper.readValue(
+                    mvcResult.getResponse().getContentAsString(), ProductOrderHistoryDTO[].class)));
+            cursor = mvcResult.getResponse().getHeader(ProductOrderController.NEXT_CURSOR_HEADER);
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(readProductOrders).extracting(ProductOrderHistoryDTO::getId)
+                .containsExactlyElementsOf(productOrders.stream().map(ProductOrder::getId).collect(Collectors.toList()));
+        assertThat(readProductOrders).extracting(ProductOrderHistoryDTO::getProductIds)
+                .containsExactlyElementsOf(productOrders.stream().map(ProductOrder::getProductIds).collect(Collectors.toList()));
+    }
+
+    @Test
+    void getProductOrderHistory_whenFromAndTo_thenReturnsOrdersPlacedFromInclusiveToExclusive() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/orders/history")
+                .param("from", FIRST_PLACED_ON.plusHours(1L).toString())
+                .param("to", FIRST_PLACED_ON.plusHours(2L).toString()))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        ProductOrderHistoryDTO[] readProductOrders = objectMapper.readValue(
+                mvcResult.getResponse().getContentAsString(), ProductOrderHistoryDTO[].class);
+
+        assertThat(readProductOrders).extracting(ProductOrderHistoryDTO::getPlacedOn)
+                .containsExactly(FIRST_PLACED_ON.plusHours(1L));
+        assertThat(mvcResult.getResponse().getHeader(ProductOrderController.NEXT_CURSOR_HEADER)).isNull();
+    }
+}
@@ -0,0 +1,210 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductOrderDTO;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.OrderIdempotencyKeyRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.services.OrderIdempotencyService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.saveMission;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class ProductOrder_idempotency_IntegrationTest {
+
+    private static final int CONCURRENT_REQUESTS = 8;
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    OrderIdempotencyKeyRepository orderIdempotencyKeyRepository;
+
+    @Autowired
+    OrderIdempotencyService orderIdempotencyService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Product product;
+    private Product otherProduct;
+
+    @BeforeEach
+    void setUp() {
+        orderIdempotencyKeyRepository.deleteAll();
+        orderIdempotencyService.clearCache();
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+
+        Mission mission = saveMission(missionRepository);
+
+        product = productRepository.save(newProduct(mission, "http://com/1"));
+        otherProduct = productRepository.save(newProduct(mission, "http://com/2"));
+    }
+
+    @Test
+    void addOrder_whenSentAgainWithSameKey_thenReturnsFirstResponseAndPlacesOneOrder() throws Exception {
+
+        MvcResult first = mockMvc.perform(order("customer", "key-1", product))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        MvcResult retry = mockMvc.perform(order("customer", "key-1", product))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        assertThat(retry.getResponse().getHeader(OrderIdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(retry.getResponse().getContentAsString()).isEqualTo(first.getResponse().getContentAsString());
+        assertThat(productOrderRepository.count()).isEqualTo(1);
+        assertThat(productRepository.findById(product.getId()).get().getOrderCount()).isEqualTo(1);
+    }
+
+    @Test
+    void addOrder_whenCacheIsCleared_thenReplaysStoredResponse() throws Exception {
+
+        MvcResult first = mockMvc.perform(order("customer", "key-1", product))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        orderIdempotencyService.clearCache();
+
+        MvcResult retry = mockMvc.perform(order("customer", "key-1", product))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        assertThat(retry.getResponse().getContentAsString()).isEqualTo(first.getResponse().getContentAsString());
+        assertThat(productOrderRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void addOrder_whenSameKeyWithOtherProducts_thenReturns422() throws Exception {
+
+        mockMvc.perform(order("customer", "key-1", product))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(order("customer", "key-1", otherProduct))
+                .andExpect(status().isUnprocessableEntity());
+
+        assertThat(productOrderRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void addOrder_whenSameKeyOfOtherUsers_thenPlacesOrderForEach() throws Exception {
+
+        mockMvc.perform(order("customer", "key-1", product))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(order("other-customer", "key-1", product))
+                .andExpect(status().isCreated());
+
+        assertThat(productOrderRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void addOrder_whenKeyExpired_thenPlacesOrderAgain() throws Exception {
+
+        mockMvc.perform(order("customer", "key-1", product))
+                .andExpect(status().isCreated());
+
+        jdbcTemplate.update("update order_idempotency_key set created_on = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(2)));
+        orderIdempotencyService.clearCache();
+
+        mockMvc.perform(order("customer", "key-1", product))
+                .andExpect(status().isCreated());
+
+        assertThat(productOrderRepository.count()).isEqualTo(2);
+        assertThat(orderIdempotencyKeyRepository.count()).isEqualTo(1);
+        assertThat(orderIdempotencyService.purgeExpired()).isZero();
+    }
+
+    @Test
+    void addOrder_whenConcurrentDuplicates_thenPlacesOneOrderAndAllGetItsResponse() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> responses = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                Callable<String> request = () -> {
+                    start.await();
+                    return mockMvc.perform(order("customer", "key-1", product))
+                            .andExpect(status().isCreated())
+                            .andReturn().getResponse().getContentAsString();
+                };
+                responses.add(executor.submit(request));
+            }
+
+            start.countDown();
+
+            Set<String> distinctResponses = new HashSet<>();
+            for (Future<String> response : responses) {
+                distinctResponses.add(response.get());
+            }
+
+            assertThat(distinctResponses).hasSize(1);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(productOrderRepository.count()).isEqualTo(1);
+        assertThat(productRepository.findById(product.getId()).get().getOrderCount()).isEqualTo(1);
+    }
+
+    private RequestBuilder order(String userName, String idempotencyKey, Product orderedProduct) throws Exception {
+        ProductOrderDTO productOrderDTO = new ProductOrderDTO();
+        productOrderDTO.setProductIds(Arrays.asList(orderedProduct.getId()));
+
+        return post("/api/orders")
+                .with(user(userName).roles("CUSTOMER"))
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(productOrderDTO));
+    }
+}
@@ -0,0 +1,106 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductOrder;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.saveMission;
+import static org.assertj.core.api.Assertions.assertThat;
+
+//  An order is rendered with the product ids of its order items without loading the products
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase
+public class ProductOrder_productIds_IntegrationTest {
+
+    private static final int ORDER_ITEMS = 1000;
+    private static final int PRODUCTS = 10;
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Statistics statistics;
+
+    private ProductOrder productOrder;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+
+        Mission mission = saveMission(missionRepository);
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = newProduct(mission, "http://com/" + i);
+            products.add(productRepository.save(product));
+        }
+
+        productOrder = new ProductOrder();
+        productOrder.setPlacedOn(LocalDateTime.now());
+        for (int i = 0; i < ORDER_ITEMS; i++) {
+            productOrder.addProduct(products.get(i % PRODUCTS));
+        }
+        productOrder = productOrderRepository.save(productOrder);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getProductIds_whenOrderWithThousandItemsIsReadAndRendered_thenTwoStatementsAndNoProductIsLoaded()
+            throws Exception {
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        JsonNode renderedProductOrder;
+
+        try {
+            ProductOrder readProductOrder = entityManager.find(ProductOrder.class, productOrder.getId());
+            renderedProductOrder = objectMapper.readTree(objectMapper.writeValueAsString(readProductOrder));
+        } finally {
+            entityManager.close();
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityStatistics(Product.class.getName()).getLoadCount()).isZero();
+        assertThat(statistics.getEntityStatistics(Product.class.getName()).getFetchCount()).isZero();
+
+        List<Long> renderedProductIds = StreamSupport.stream(renderedProductOrder.get("productIds").spliterator(), false)
+                .map(JsonNode::asLong)
+                .collect(Collectors.toList());
+
+        assertThat(renderedProductIds).hasSize(ORDER_ITEMS).containsExactlyInAnyOrderElementsOf(productOrder.getProductIds());
+    }
+}
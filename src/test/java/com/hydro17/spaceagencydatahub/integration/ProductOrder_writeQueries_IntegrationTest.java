@@ -0,0 +1,127 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.exceptions.ErrorResponse;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductOrderDTO;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.OrderItemRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.saveMission;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  An order is placed with a number of statements that does not grow with the number of its products
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@WithMockUser(roles = "CUSTOMER")
+public class ProductOrder_writeQueries_IntegrationTest {
+
+    private static final int PRODUCTS = 120;
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    OrderItemRepository orderItemRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Statistics statistics;
+    private List<Long> productIds;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+
+        Mission mission = saveMission(missionRepository);
+
+        List<Product> products = new ArrayList<>();
+
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = newProduct(mission, "http://com/" + i);
+            products.add(product);
+        }
+
+        productIds = productRepository.saveAll(products).stream().map(Product::getId).collect(Collectors.toList());
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void addOrder_whenManyProducts_thenReadsProductsInOneQueryAndBatchesOrderItemInserts() throws Exception {
+
+        ProductOrderDTO productOrderDTO = new ProductOrderDTO();
+        productOrderDTO.setProductIds(productIds);
+
+        mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(productOrderDTO)))
+                .andExpect(status().isCreated());
+
+//      products, order, order item insert reused by the batches, order count update and at most
+//      3 sequence calls of 50 ids each, fewer when ids reserved by earlier orders are left
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(7);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(PRODUCTS + 1);
+        assertThat(orderItemRepository.count()).isEqualTo(PRODUCTS);
+    }
+
+    @Test
+    void addOrder_whenSeveralProductsDoNotExist_thenReturns404AndReportsAllMissingIds() throws Exception {
+
+        long missingId = productIds.get(PRODUCTS - 1) + 1;
+        ProductOrderDTO productOrderDTO = new ProductOrderDTO();
+        productOrderDTO.setProductIds(Arrays.asList(productIds.get(0), missingId, missingId + 1, missingId));
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/orders")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(productOrderDTO)))
+                .andExpect(status().isNotFound())
+                .andReturn();
+
+        ErrorResponse errorResponse = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                ErrorResponse.class);
+
+        assertThat(errorResponse.getMessage())
+                .isEqualTo("There are no products with ids: " + missingId + ", " + (missingId + 1));
+        assertThat(productOrderRepository.count()).isZero();
+    }
+}
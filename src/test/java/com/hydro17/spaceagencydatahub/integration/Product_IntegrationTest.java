@@ -6,6 +6,7 @@ import com.hydro17.spaceagencydatahub.models.*;
 import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
 import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
 import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.services.ProductOrderService;
 import com.hydro17.spaceagencydatahub.utils.ImageryType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,9 +15,11 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -24,6 +27,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -45,12 +49,18 @@ public class Product_IntegrationTest {
     @Autowired
     MissionRepository missionRepository;
 
+    @Autowired
+    ProductOrderService productOrderService;
+
     @Autowired
     MockMvc mockMvc;
 
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
     private List<Product> emptyListOfProducts;
     private List<Product> nonEmptyListOfProducts;
     private List<ProductDTO> nonEmptyListOfProductDTOs;
@@ -151,6 +161,26 @@ public class Product_IntegrationTest {
         assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
     }
 
+    @Test
+    void streamAllProducts_whenAcceptNdjson_thenReturns200AndOneProductDTOPerLine() throws Exception {
+
+        missionRepository.save(mission);
+        productRepository.save(product);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products")
+                .accept("application/x-ndjson"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        ProductDTO expectedOutput = nonEmptyListOfProductDTOs.get(0);
+        String[] actualLines = mvcResult.getResponse().getContentAsString().split("\n");
+        ProductDTO actualOutput = objectMapper.readValue(actualLines[0], ProductDTO.class);
+
+        assertThat(mvcResult.getResponse().getContentType()).isEqualTo("application/x-ndjson");
+        assertThat(actualLines).hasSize(1);
+        assertThat(actualOutput).isEqualToIgnoringGivenFields(expectedOutput, "id", "footprint");
+    }
+
     @WithMockUser(roles = "CUSTOMER")
     @Test
     void getAllProducts_whenValidInputAndUserWithWrongRole_thenReturns403() throws Exception {
@@ -205,6 +235,34 @@ public class Product_IntegrationTest {
 
     //  ----------------------------------------------------------------------------------------------
 
+    @Test
+    void repairOrderCounts_whenOrderItemsInsertedOutsideOfApi_thenReloadsEveryRanking() throws Exception {
+
+        missionRepository.save(mission);
+        Product orderedProduct = productRepository.save(product);
+        Product productOrderedOutsideOfApi = productRepository.save(copyOf(product));
+        ProductOrder savedProductOrder = productOrderService.saveProductOrder(orderOf(orderedProduct));
+
+        for (int i = 0; i < 2; i++) {
+            jdbcTemplate.update("insert into order_item (product_id, product_order_id) values (?, ?)",
+                    productOrderedOutsideOfApi.getId(), savedProductOrder.getId());
+        }
+
+        mockMvc.perform(post("/api/products/order-counts/repair"))
+                .andExpect(status().isOk());
+
+        List<Long> expectedProductIds = Arrays.asList(productOrderedOutsideOfApi.getId(), orderedProduct.getId());
+
+        assertThat(getMostOrderedProductIds(get("/api/products/most-ordered").param("limit", "10")))
+                .isEqualTo(expectedProductIds);
+        assertThat(getMostOrderedProductIds(get("/api/products/most-ordered").param("limit", "10")
+                .param("missionName", mission.getName())))
+                .isEqualTo(expectedProductIds);
+        assertThat(getMostOrderedProductIds(get("/api/products/most-ordered").param("limit", "10")
+                .param("window", "1h")))
+                .isEqualTo(expectedProductIds);
+    }
+
     //getProductsGroupedByProductIdOrderedByOrderCountDesc
     @Test
     void getMostOrderedProductsDesc_whenValidInput_returns200AndNotEmptyListOfProductDTOs() throws Exception {
@@ -213,7 +271,7 @@ public class Product_IntegrationTest {
         missionRepository.save(mission);
         // product must be added to DB before adding to DB product order containing this product
         productRepository.save(product);
-        productOrderRepository.save(productOrder);
+        productOrderService.saveProductOrder(productOrder);
 
         MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
                 .contentType("application/json"))
@@ -228,6 +286,137 @@ public class Product_IntegrationTest {
         assertThat(actualOutput.getFootprint()).isEqualToIgnoringGivenFields(expectedOutput.getFootprint(), "id");
     }
 
+    @Test
+    void getMostOrderedProductsDesc_whenSeveralOrders_returns200AndProductsByOrderCountDesc() throws Exception {
+
+        missionRepository.save(mission);
+        Product oncePlacedProduct = productRepository.save(product);
+        Product twicePlacedProduct = productRepository.save(copyOf(product));
+
+        productOrderService.saveProductOrder(orderOf(oncePlacedProduct, twicePlacedProduct));
+        productOrderService.saveProductOrder(orderOf(twicePlacedProduct));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<ProductDTO> actualOutput = Arrays.asList(objectMapper.readValue(
+                mvcResult.getResponse().getContentAsString(), ProductDTO[].class));
+
+        assertThat(actualOutput).extracting(ProductDTO::getId)
+                .containsExactly(twicePlacedProduct.getId(), oncePlacedProduct.getId());
+        assertThat(productRepository.findById(twicePlacedProduct.getId()).get().getOrderCount()).isEqualTo(2);
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenLimitAndOffset_returns200AndPageOfLeaderboard() throws Exception {
+
+        missionRepository.save(mission);
+        Product oncePlacedProduct = productRepository.save(product);
+        Product twicePlacedProduct = productRepository.save(copyOf(product));
+        Product thricePlacedProduct = productRepository.save(copyOf(product));
+
+        productOrderService.saveProductOrder(orderOf(oncePlacedProduct, twicePlacedProduct, thricePlacedProduct));
+        productOrderService.saveProductOrder(orderOf(twicePlacedProduct, thricePlacedProduct));
+        productOrderService.saveProductOrder(orderOf(thricePlacedProduct));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
+                .param("limit", "2")
+                .param("offset", "1"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<ProductDTO> actualOutput = Arrays.asList(objectMapper.readValue(
+                mvcResult.getResponse().getContentAsString(), ProductDTO[].class));
+
+        assertThat(actualOutput).extracting(ProductDTO::getId)
+                .containsExactly(twicePlacedProduct.getId(), oncePlacedProduct.getId());
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenWindow_returns200AndProductsOrderedWithinWindow() throws Exception {
+
+        missionRepository.save(mission);
+        Product recentlyOrderedProduct = productRepository.save(product);
+        Product earlierOrderedProduct = productRepository.save(copyOf(product));
+
+        ProductOrder earlierOrder = orderOf(earlierOrderedProduct, earlierOrderedProduct);
+        earlierOrder.setPlacedOn(LocalDateTime.now().minusHours(3));
+        productOrderService.saveProductOrder(earlierOrder);
+        productOrderService.saveProductOrder(orderOf(recentlyOrderedProduct));
+
+        MvcResult lastHour = mockMvc.perform(get("/api/products/most-ordered").param("window", "1h"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MvcResult lastDay = mockMvc.perform(get("/api/products/most-ordered").param("window", "24h"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(objectMapper.readValue(lastHour.getResponse().getContentAsString(), ProductDTO[].class))
+                .extracting(ProductDTO::getId).containsExactly(recentlyOrderedProduct.getId());
+        assertThat(objectMapper.readValue(lastDay.getResponse().getContentAsString(), ProductDTO[].class))
+                .extracting(ProductDTO::getId)
+                .containsExactly(earlierOrderedProduct.getId(), recentlyOrderedProduct.getId());
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenMissionNameOrImageryType_returns200AndProductsOfMatchingMissions() throws Exception {
+
+        Mission otherMission = new Mission();
+        otherMission.setName("mission2");
+        otherMission.setImageryType(ImageryType.PANCHROMATIC);
+        otherMission.setStartDate(mission.getStartDate());
+        otherMission.setFinishDate(mission.getFinishDate());
+
+        missionRepository.save(mission);
+        missionRepository.save(otherMission);
+        Product oncePlacedProduct = productRepository.save(product);
+        Product twicePlacedProduct = productRepository.save(copyOf(product));
+        Product otherMissionProduct = copyOf(product);
+        otherMissionProduct.setMission(otherMission);
+        otherMissionProduct = productRepository.save(otherMissionProduct);
+
+        productOrderService.saveProductOrder(orderOf(oncePlacedProduct, twicePlacedProduct, otherMissionProduct));
+        productOrderService.saveProductOrder(orderOf(twicePlacedProduct, otherMissionProduct, otherMissionProduct));
+
+        MvcResult byMissionName = mockMvc.perform(get("/api/products/most-ordered")
+                .param("missionName", "mission1"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MvcResult byImageryType = mockMvc.perform(get("/api/products/most-ordered")
+                .param("imageryType", "panchromatic"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MvcResult byMissionNameAndOtherImageryType = mockMvc.perform(get("/api/products/most-ordered")
+                .param("missionName", "mission1")
+                .param("imageryType", "panchromatic"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(objectMapper.readValue(byMissionName.getResponse().getContentAsString(), ProductDTO[].class))
+                .extracting(ProductDTO::getId)
+                .containsExactly(twicePlacedProduct.getId(), oncePlacedProduct.getId());
+        assertThat(objectMapper.readValue(byImageryType.getResponse().getContentAsString(), ProductDTO[].class))
+                .extracting(ProductDTO::getId).containsExactly(otherMissionProduct.getId());
+        assertThat(objectMapper.readValue(byMissionNameAndOtherImageryType.getResponse().getContentAsString(),
+                ProductDTO[].class)).isEmpty();
+    }
+
+    @Test
+    void repairOrderCounts_whenOrderSavedWithoutCounting_returns200AndRepairsOrderCount() throws Exception {
+
+        missionRepository.save(mission);
+        productRepository.save(product);
+        productOrderRepository.save(productOrder);
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/products/order-counts/repair"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("1");
+        assertThat(productRepository.findById(product.getId()).get().getOrderCount()).isEqualTo(1);
+    }
+
     //getProductsGroupedByProductIdOrderedByOrderCountDesc
     @Test
     void getMostOrderedProductsDesc_whenValidInput_returns200AndEmptyListOfProducts() throws Exception {
@@ -259,9 +448,7 @@ public class Product_IntegrationTest {
         String actualResponseBody =  mvcResult.getResponse().getContentAsString();
         Product responseAsProduct = objectMapper.readValue(actualResponseBody, Product.class);
 
-        productDTO.getFootprint().setId(responseAsProduct.getFootprint().getId());
-
-        assertThat(responseAsProduct).isEqualToIgnoringGivenFields(productDTO, "id", "mission");
+        assertThat(responseAsProduct).isEqualToIgnoringGivenFields(productDTO, "id", "mission", "orderCount", "imageryType");
         assertThat(productDTO.getId()).isZero();
         assertThat(responseAsProduct.getId()).isNotZero();
     }
@@ -367,4 +554,33 @@ public class Product_IntegrationTest {
 
         assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
     }
+
+    private Product copyOf(Product product) {
+        Product copy = new Product();
+        copy.setAcquisitionDate(product.getAcquisitionDate());
+        copy.setFootprint(product.getFootprint());
+        copy.setPrice(product.getPrice());
+        copy.setUrl(product.getUrl());
+        copy.setMission(product.getMission());
+
+        return copy;
+    }
+
+    private List<Long> getMostOrderedProductIds(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn();
+
+        return Arrays.stream(objectMapper.readValue(mvcResult.getResponse().getContentAsString(), ProductDTO[].class))
+                .map(ProductDTO::getId)
+                .collect(Collectors.toList());
+    }
+
+    private ProductOrder orderOf(Product... products) {
+        ProductOrder productOrder = new ProductOrder();
+        productOrder.setPlacedOn(LocalDateTime.now());
+        Arrays.stream(products).forEach(productOrder::addProduct);
+
+        return productOrder;
+    }
 }
@@ -0,0 +1,132 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.models.ApproximateMostOrderedDTO;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductDTO;
+import com.hydro17.spaceagencydatahub.models.ProductOrder;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.services.ProductLeaderboardService;
+import com.hydro17.spaceagencydatahub.services.ProductOrderService;
+import com.hydro17.spaceagencydatahub.services.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.saveMission;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  In the approximate mode the most ordered products are ranked by the heavy hitters alone,
+//  the exact leaderboard is neither loaded nor fed
+@SpringBootTest(properties = "spaceagencydatahub.most-ordered.approximate=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@WithMockUser(roles = "CONTENT_MANAGER")
+public class Product_approximateMostOrdered_IntegrationTest {
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    ProductOrderService productOrderService;
+
+    @Autowired
+    ProductService productService;
+
+    @Autowired
+    ProductLeaderboardService productLeaderboardService;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Product oncePlacedProduct;
+    private Product thricePlacedProduct;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+        productService.loadProductRankings();
+
+        Mission mission = saveMission(missionRepository);
+
+        oncePlacedProduct = productRepository.save(newProduct(mission, "http://com/1"));
+        thricePlacedProduct = productRepository.save(newProduct(mission, "http://com/2"));
+
+        productOrderService.saveProductOrder(orderOf(oncePlacedProduct, thricePlacedProduct));
+        productOrderService.saveProductOrder(orderOf(thricePlacedProduct, thricePlacedProduct));
+    }
+
+    @Test
+    void getApproximateMostOrderedProductsDesc_whenSeveralOrders_returns200AndProductsByEstimateDesc() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered/approximate")
+                .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        ApproximateMostOrderedDTO actualOutput = objectMapper.readValue(
+                mvcResult.getResponse().getContentAsString(), ApproximateMostOrderedDTO.class);
+
+        assertThat(actualOutput.getProducts()).extracting(estimated -> estimated.getProduct().getId())
+                .containsExactly(thricePlacedProduct.getId(), oncePlacedProduct.getId());
+        assertThat(actualOutput.getProducts().get(0).getEstimatedOrderCount())
+                .isBetween(3L, 3L + actualOutput.getMaxOverestimate());
+        assertThat(actualOutput.getTotalOrderItems()).isEqualTo(4);
+        assertThat(actualOutput.getEpsilon()).isPositive();
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenPage_returns200AndProductsByEstimateDescWithoutLeaderboard() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/most-ordered")
+                .param("limit", "1")
+                .param("offset", "1"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(objectMapper.readValue(mvcResult.getResponse().getContentAsString(), ProductDTO[].class))
+                .extracting(ProductDTO::getId).containsExactly(oncePlacedProduct.getId());
+        assertThat(productLeaderboardService.size()).isZero();
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenMissionName_returns400() throws Exception {
+
+        mockMvc.perform(get("/api/products/most-ordered")
+                .param("missionName", "mission"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private ProductOrder orderOf(Product... products) {
+        ProductOrder productOrder = new ProductOrder();
+        productOrder.setPlacedOn(LocalDateTime.now());
+        Arrays.stream(products).forEach(productOrder::addProduct);
+
+        return productOrder;
+    }
+}
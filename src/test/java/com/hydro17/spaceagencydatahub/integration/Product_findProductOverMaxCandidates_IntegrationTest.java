@@ -0,0 +1,143 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.controllers.ProductController;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductDTO;
+import com.hydro17.spaceagencydatahub.models.ProductFootprint;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.services.ProductSpatialIndexService;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import com.hydro17.spaceagencydatahub.utils.SpatialRelation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.saveMission;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  A point or an area matching more products than max-candidates is searched by the database,
+//  the results are the same as with the candidate ids of the spatial index
+@SpringBootTest(properties = "spaceagencydatahub.spatial-index.max-candidates=3")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@WithMockUser(roles = "CUSTOMER")
+public class Product_findProductOverMaxCandidates_IntegrationTest {
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    ProductSpatialIndexService productSpatialIndexService;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    //  Footprints in the area from (0, 0) to (50, 50), all of them contain the point (15, 15)
+    private List<Long> productIdsInArea;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+
+        Mission mission = saveMission(missionRepository);
+
+        productIdsInArea = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Product product = newProduct(mission, "http://com", new ProductFootprint(10 + i, 10 + i, 20 + i, 20 + i));
+            productIdsInArea.add(productRepository.save(product).getId());
+        }
+
+        productRepository.save(newProduct(mission, "http://com", new ProductFootprint(100, 100, 110, 110)));
+    }
+
+    @Test
+    void findProduct_whenAreaMatchesMoreProductsThanMaxCandidates_returns200AndEveryProductInArea() throws Exception {
+
+        assertThat(productSpatialIndexService.findProductIdsInArea(new BoundingBox(0, 0, 50, 50),
+                SpatialRelation.WITHIN)).isNull();
+
+        List<ProductDTO> actualOutput = find(get("/api/products/find")
+                .param("minLatitude", "0.0")
+                .param("minLongitude", "0.0")
+                .param("maxLatitude", "50.0")
+                .param("maxLongitude", "50.0")
+                .param("areaRelation", "within"));
+
+        assertThat(actualOutput).extracting(ProductDTO::getId).containsExactlyInAnyOrderElementsOf(productIdsInArea);
+    }
+
+    @Test
+    void findProduct_whenPointIsInMoreFootprintsThanMaxCandidates_returns200AndEveryProductContainingIt()
+            throws Exception {
+
+        List<ProductDTO> actualOutput = find(get("/api/products/find")
+                .param("latitude", "15.0")
+                .param("longitude", "15.0"));
+
+        assertThat(actualOutput).extracting(ProductDTO::getId).containsExactlyInAnyOrderElementsOf(productIdsInArea);
+    }
+
+    @Test
+    void findProduct_whenAreaMatchesMoreProductsThanMaxCandidatesAndReadPageByPage_returnsEveryProductOnce()
+            throws Exception {
+
+        List<ProductDTO> readProducts = new ArrayList<>();
+        String cursor = null;
+
+        do {
+            MockHttpServletRequestBuilder request = get("/api/products/find")
+                    .param("minLatitude", "0.0")
+                    .param("minLongitude", "0.0")
+                    .param("maxLatitude", "50.0")
+                    .param("maxLongitude", "50.0")
+                    .param("limit", "2");
+            if (cursor != null) request.param("cursor", cursor);
+
+            MvcResult mvcResult = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            readProducts.addAll(Arrays.asList(objectMapper.readValue(
+                    mvcResult.getResponse().getContentAsString(), ProductDTO[].class)));
+            cursor = mvcResult.getResponse().getHeader(ProductController.NEXT_CURSOR_HEADER);
+        } while (cursor != null);
+
+        assertThat(readProducts).extracting(ProductDTO::getId).containsExactlyInAnyOrderElementsOf(productIdsInArea);
+    }
+
+    private List<ProductDTO> find(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn();
+
+        return Arrays.asList(objectMapper.readValue(mvcResult.getResponse().getContentAsString(), ProductDTO[].class));
+    }
+}
@@ -0,0 +1,268 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.NearestProductDTO;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductDTO;
+import com.hydro17.spaceagencydatahub.models.ProductFootprint;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spaceagencydatahub.spatial-index.enabled=false")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@WithMockUser(roles="CUSTOMER")
+public class Product_findProductWithoutSpatialIndex_IntegrationTest {
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private ProductDTO productDTOWithIdNotEqualZero;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+
+        Mission mission = new Mission();
+        mission.setName("mission1");
+        mission.setImageryType(ImageryType.HYPERSPECTRAL);
+        mission.setStartDate(LocalDateTime.now().minusHours(1L));
+        mission.setFinishDate(LocalDateTime.now().plusHours(1L));
+
+        ProductFootprint footprint = new ProductFootprint();
+        footprint.setStartCoordinateLatitude(100.15);
+        footprint.setEndCoordinateLatitude(200.99);
+        footprint.setStartCoordinateLongitude(10.5);
+        footprint.setEndCoordinateLongitude(50.7);
+
+        Product product = new Product();
+        product.setAcquisitionDate(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+        product.setFootprint(footprint);
+        product.setPrice(new BigDecimal("10.50"));
+        product.setUrl("http://com");
+        product.setMission(mission);
+        mission.addProduct(product);
+
+        productDTOWithIdNotEqualZero = new ProductDTO();
+        productDTOWithIdNotEqualZero.setId(product.getId());
+        productDTOWithIdNotEqualZero.setMissionName(product.getMission().getName());
+        productDTOWithIdNotEqualZero.setAcquisitionDate(product.getAcquisitionDate());
+        productDTOWithIdNotEqualZero.setFootprint(product.getFootprint());
+        productDTOWithIdNotEqualZero.setPrice(product.getPrice());
+        productDTOWithIdNotEqualZero.setUrl(product.getUrl());
+
+        missionRepository.save(mission);
+        productRepository.save(product);
+
+//      Because product is not ordered, method findProduct will return URL as null
+        product.setUrl(null);
+        productDTOWithIdNotEqualZero.setUrl(null);
+    }
+
+    @Test
+    void findProduct_whenValidLatitudeAndLongitude_returns200AndFilteredListOfProductDTOs() throws Exception {
+
+        Double latitude = 150.3;
+        Double longitude = 40.7;
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("latitude", String.valueOf(latitude))
+                .param("longitude", String.valueOf(longitude)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        ProductDTO expectedOutput = productDTOWithIdNotEqualZero;
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+        ProductDTO actualOutput = Arrays.asList(objectMapper.readValue(actualResponseBody, ProductDTO[].class)).get(0);
+
+        assertThat(actualOutput).isEqualToIgnoringGivenFields(expectedOutput, "id", "footprint");
+        assertThat(actualOutput.getFootprint()).isEqualToIgnoringGivenFields(expectedOutput.getFootprint(), "id");
+    }
+
+    @Test
+    void findProduct_whenInvalidLatitudeOrLongitude_returns200AndEmptyListOfProductDTOs() throws Exception {
+
+        Double latitude = 150.3;
+        Double longitude = 200.7;
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("latitude", String.valueOf(latitude))
+                .param("longitude", String.valueOf(longitude)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String expectedResponseBody = objectMapper.writeValueAsString(new ArrayList<ProductDTO>());
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
+    }
+
+    @Test
+    void findProduct_whenValidAllParams_returns200AndFilteredListOfProducts() throws Exception {
+
+        String missionName = "mission1";
+        LocalDateTime afterDate = LocalDateTime.now().minusHours(1L);
+        LocalDateTime beforeDate = LocalDateTime.now().plusHours(1L);
+        Double latitude = 150.3;
+        Double longitude = 40.7;
+        ImageryType imageryType = ImageryType.HYPERSPECTRAL;
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("missionName", missionName)
+                .param("afterDate", String.valueOf(afterDate))
+                .param("beforeDate", String.valueOf(beforeDate))
+                .param("latitude", String.valueOf(latitude))
+                .param("longitude", String.valueOf(longitude))
+                .param("imageryType", String.valueOf(imageryType)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        ProductDTO expectedOutput = productDTOWithIdNotEqualZero;
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+        ProductDTO actualOutput = Arrays.asList(objectMapper.readValue(actualResponseBody, ProductDTO[].class)).get(0);
+
+        assertThat(actualOutput).isEqualToIgnoringGivenFields(expectedOutput, "id", "footprint");
+        assertThat(actualOutput.getFootprint()).isEqualToIgnoringGivenFields(expectedOutput.getFootprint(), "id");
+    }
+
+    @Test
+    void findProduct_whenAreaIntersectsFootprint_returns200AndFilteredListOfProductDTOs() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("minLatitude", "190.0")
+                .param("minLongitude", "40.0")
+                .param("maxLatitude", "250.0")
+                .param("maxLongitude", "80.0"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        ProductDTO expectedOutput = productDTOWithIdNotEqualZero;
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+        ProductDTO actualOutput = Arrays.asList(objectMapper.readValue(actualResponseBody, ProductDTO[].class)).get(0);
+
+        assertThat(actualOutput).isEqualToIgnoringGivenFields(expectedOutput, "id", "footprint");
+        assertThat(actualOutput.getFootprint()).isEqualToIgnoringGivenFields(expectedOutput.getFootprint(), "id");
+    }
+
+    @Test
+    void findProduct_whenFootprintIsNotWithinArea_returns200AndEmptyListOfProductDTOs() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("minLatitude", "190.0")
+                .param("minLongitude", "40.0")
+                .param("maxLatitude", "250.0")
+                .param("maxLongitude", "80.0")
+                .param("areaRelation", "within"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String expectedResponseBody = objectMapper.writeValueAsString(new ArrayList<ProductDTO>());
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
+    }
+
+    @Test
+    void findProduct_whenFootprintIsWithinArea_returns200AndFilteredListOfProductDTOs() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("minLatitude", "100.0")
+                .param("minLongitude", "10.0")
+                .param("maxLatitude", "201.0")
+                .param("maxLongitude", "51.0")
+                .param("areaRelation", "within"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        ProductDTO expectedOutput = productDTOWithIdNotEqualZero;
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+        ProductDTO actualOutput = Arrays.asList(objectMapper.readValue(actualResponseBody, ProductDTO[].class)).get(0);
+
+        assertThat(actualOutput).isEqualToIgnoringGivenFields(expectedOutput, "id", "footprint");
+    }
+
+    @Test
+    void getNearestProducts_whenPointOutsideEveryFootprint_returns200AndNearestProductWithDistance() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/nearest")
+                .contentType("application/json")
+                .param("latitude", "100.15")
+                .param("longitude", "60.7")
+                .param("k", "5"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+        NearestProductDTO[] actualOutput = objectMapper.readValue(actualResponseBody, NearestProductDTO[].class);
+
+        assertThat(actualOutput).hasSize(1);
+        assertThat(actualOutput[0].getProduct()).isEqualToIgnoringGivenFields(productDTOWithIdNotEqualZero, "id", "footprint");
+        assertThat(actualOutput[0].getDistance()).isCloseTo(10.0, offset(1e-9));
+    }
+
+    @Test
+    void getNearestProducts_whenProductsAroundPointAreSparse_returns200AndNearestProductsByDistance() throws Exception {
+
+        Mission mission = missionRepository.findAll().get(0);
+        productRepository.save(newProduct(mission, "http://com", new ProductFootprint(99, 60, 101, 61)));
+        productRepository.save(newProduct(mission, "http://com", new ProductFootprint(180, 60, 181, 61)));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/nearest")
+                .contentType("application/json")
+                .param("latitude", "100.15")
+                .param("longitude", "60.7")
+                .param("k", "3"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        NearestProductDTO[] actualOutput = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                NearestProductDTO[].class);
+
+        assertThat(actualOutput).extracting(NearestProductDTO::getDistance)
+                .containsExactly(0.0, 10.0, 79.85);
+    }
+}
@@ -2,13 +2,17 @@ package com.hydro17.spaceagencydatahub.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hydro17.spaceagencydatahub.exceptions.ErrorResponse;
+import com.hydro17.spaceagencydatahub.models.DensityCellDTO;
 import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.NearestProductDTO;
 import com.hydro17.spaceagencydatahub.models.Product;
 import com.hydro17.spaceagencydatahub.models.ProductDTO;
 import com.hydro17.spaceagencydatahub.models.ProductFootprint;
 import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
 import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductQueryTemplates;
 import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.services.MissionService;
 import com.hydro17.spaceagencydatahub.utils.ImageryType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -29,6 +33,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -47,6 +52,12 @@ public class Product_findProduct_IntegrationTest {
     @Autowired
     ProductOrderRepository productOrderRepository;
 
+    @Autowired
+    ProductQueryTemplates productQueryTemplates;
+
+    @Autowired
+    MissionService missionService;
+
     @Autowired
     MockMvc mockMvc;
 
@@ -293,6 +304,41 @@ public class Product_findProduct_IntegrationTest {
         assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
     }
 
+    @Test
+    void findProduct_whenImageryTypeOfMissionChanged_returns200AndProductsByNewImageryType() throws Exception {
+
+        Mission changedMission = new Mission();
+        changedMission.setId(missionRepository.findByName("mission1").get().getId());
+        changedMission.setName("mission1");
+        changedMission.setImageryType(ImageryType.PANCHROMATIC);
+        changedMission.setStartDate(LocalDateTime.now().minusHours(1L));
+        changedMission.setFinishDate(LocalDateTime.now().plusHours(1L));
+        missionService.updateMission(changedMission);
+
+        MvcResult unsortedMvcResult = mockMvc.perform(get("/api/products/find")
+                .param("imageryType", ImageryType.PANCHROMATIC.name()))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        MvcResult pageMvcResult = mockMvc.perform(get("/api/products/find")
+                .param("imageryType", ImageryType.PANCHROMATIC.name())
+                .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(objectMapper.readValue(unsortedMvcResult.getResponse().getContentAsString(), ProductDTO[].class))
+                .hasSize(1);
+        assertThat(objectMapper.readValue(pageMvcResult.getResponse().getContentAsString(), ProductDTO[].class))
+                .hasSize(1);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .param("imageryType", ImageryType.HYPERSPECTRAL.name()))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(objectMapper.readValue(mvcResult.getResponse().getContentAsString(), ProductDTO[].class)).isEmpty();
+    }
+
     @Test
     void findProduct_whenInvalidImageryType_returns400AndErrorResponse() throws Exception {
 
@@ -342,4 +388,235 @@ public class Product_findProduct_IntegrationTest {
         assertThat(actualOutput).isEqualToIgnoringGivenFields(expectedOutput, "id", "footprint");
         assertThat(actualOutput.getFootprint()).isEqualToIgnoringGivenFields(expectedOutput.getFootprint(), "id");
     }
+
+    @Test
+    void findProduct_whenAreaIntersectsFootprint_returns200AndFilteredListOfProductDTOs() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("minLatitude", "190.0")
+                .param("minLongitude", "40.0")
+                .param("maxLatitude", "250.0")
+                .param("maxLongitude", "80.0"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        ProductDTO expectedOutput = productDTOWithIdNotEqualZero;
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+        ProductDTO actualOutput = Arrays.asList(objectMapper.readValue(actualResponseBody, ProductDTO[].class)).get(0);
+
+        assertThat(actualOutput).isEqualToIgnoringGivenFields(expectedOutput, "id", "footprint");
+        assertThat(actualOutput.getFootprint()).isEqualToIgnoringGivenFields(expectedOutput.getFootprint(), "id");
+    }
+
+    @Test
+    void findProduct_whenFootprintIsNotWithinArea_returns200AndEmptyListOfProductDTOs() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("minLatitude", "190.0")
+                .param("minLongitude", "40.0")
+                .param("maxLatitude", "250.0")
+                .param("maxLongitude", "80.0")
+                .param("areaRelation", "within"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String expectedResponseBody = objectMapper.writeValueAsString(new ArrayList<ProductDTO>());
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+
+        assertThat(actualResponseBody).isEqualTo(expectedResponseBody);
+    }
+
+    @Test
+    void findProduct_whenFootprintIsWithinArea_returns200AndFilteredListOfProductDTOs() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("minLatitude", "100.0")
+                .param("minLongitude", "10.0")
+                .param("maxLatitude", "201.0")
+                .param("maxLongitude", "51.0")
+                .param("areaRelation", "within"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        ProductDTO expectedOutput = productDTOWithIdNotEqualZero;
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+        ProductDTO actualOutput = Arrays.asList(objectMapper.readValue(actualResponseBody, ProductDTO[].class)).get(0);
+
+        assertThat(actualOutput).isEqualToIgnoringGivenFields(expectedOutput, "id", "footprint");
+    }
+
+    @Test
+    void getNearestProducts_whenPointOutsideEveryFootprint_returns200AndNearestProductWithDistance() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/nearest")
+                .contentType("application/json")
+                .param("latitude", "100.15")
+                .param("longitude", "60.7")
+                .param("k", "5"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String actualResponseBody = mvcResult.getResponse().getContentAsString();
+        NearestProductDTO[] actualOutput = objectMapper.readValue(actualResponseBody, NearestProductDTO[].class);
+
+        assertThat(actualOutput).hasSize(1);
+        assertThat(actualOutput[0].getProduct()).isEqualToIgnoringGivenFields(productDTOWithIdNotEqualZero, "id", "footprint");
+        assertThat(actualOutput[0].getDistance()).isCloseTo(10.0, offset(1e-9));
+    }
+
+    @Test
+    void getProductDensity_whenWholeGlobe_returns200AndCellOfProductFootprintCenter() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/density")
+                .contentType("application/json")
+                .param("minLatitude", "-90")
+                .param("minLongitude", "-180")
+                .param("maxLatitude", "90")
+                .param("maxLongitude", "180")
+                .param("level", "1"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        DensityCellDTO[] actualOutput = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                DensityCellDTO[].class);
+
+        assertThat(actualOutput).hasSize(1);
+        assertThat(actualOutput[0].getMinLatitude()).isEqualTo(0);
+        assertThat(actualOutput[0].getMinLongitude()).isEqualTo(0);
+        assertThat(actualOutput[0].getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getProductDensity_whenOtherImageryType_returns200AndEmptyList() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/density")
+                .contentType("application/json")
+                .param("minLatitude", "-90")
+                .param("minLongitude", "-180")
+                .param("maxLatitude", "90")
+                .param("maxLongitude", "180")
+                .param("imageryType", "panchromatic"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(objectMapper.readValue(mvcResult.getResponse().getContentAsString(), DensityCellDTO[].class))
+                .isEmpty();
+    }
+
+    @Test
+    void findProduct_whenSameFiltersWithOtherValues_thenReusesQueryTemplate() throws Exception {
+
+        mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("missionName", "mission1")
+                .param("afterDate", "2020-01-01T00:00:00"))
+                .andExpect(status().isOk());
+
+        long misses = productQueryTemplates.getMisses();
+        long hits = productQueryTemplates.getHits();
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .contentType("application/json")
+                .param("missionName", "mission2")
+                .param("afterDate", "2021-01-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(objectMapper.readValue(mvcResult.getResponse().getContentAsString(), ProductDTO[].class)).isEmpty();
+        assertThat(productQueryTemplates.getMisses()).isEqualTo(misses);
+        assertThat(productQueryTemplates.getHits()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    void findProduct_whenPagedWithLimit_returnsEveryProductOnceInOrderOfAcquisitionDate() throws Exception {
+
+        Mission mission = missionRepository.findByName("mission1").get();
+        for (int i = 1; i <= 4; i++) {
+            ProductFootprint footprint = new ProductFootprint();
+            footprint.setStartCoordinateLatitude(1);
+            footprint.setEndCoordinateLatitude(2);
+            footprint.setStartCoordinateLongitude(1);
+            footprint.setEndCoordinateLongitude(2);
+
+            Product product = new Product();
+            product.setAcquisitionDate(mission.getStartDate().plusMinutes(i % 2));
+            product.setFootprint(footprint);
+            product.setPrice(new BigDecimal("1.00"));
+            product.setUrl("http://com/" + i);
+            product.setMission(mission);
+            productRepository.save(product);
+        }
+
+        List<ProductDTO> pagedProducts = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+
+        do {
+            MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                    .contentType("application/json")
+                    .param("missionName", "mission1")
+                    .param("limit", "2")
+                    .param("cursor", cursor))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            pagedProducts.addAll(Arrays.asList(objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                    ProductDTO[].class)));
+            cursor = mvcResult.getResponse().getHeader("X-Next-Cursor");
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(pagedProducts).hasSize(5);
+        assertThat(pagedProducts).extracting(ProductDTO::getId).doesNotHaveDuplicates();
+        assertThat(pagedProducts).extracting(ProductDTO::getAcquisitionDate).isSorted();
+    }
+
+    @Test
+    void streamFoundProducts_whenAcceptNdjson_returns200AndOneFilteredProductDTOPerLine() throws Exception {
+
+        Mission otherMission = new Mission();
+        otherMission.setName("mission2");
+        otherMission.setImageryType(ImageryType.PANCHROMATIC);
+        otherMission.setStartDate(LocalDateTime.now().minusHours(1L));
+        otherMission.setFinishDate(LocalDateTime.now().plusHours(1L));
+        missionRepository.save(otherMission);
+
+        Mission mission = missionRepository.findByName("mission1").get();
+        for (Mission productMission : Arrays.asList(mission, otherMission, mission)) {
+            ProductFootprint footprint = new ProductFootprint();
+            footprint.setStartCoordinateLatitude(1);
+            footprint.setEndCoordinateLatitude(2);
+            footprint.setStartCoordinateLongitude(1);
+            footprint.setEndCoordinateLongitude(2);
+
+            Product product = new Product();
+            product.setAcquisitionDate(productMission.getStartDate());
+            product.setFootprint(footprint);
+            product.setPrice(new BigDecimal("1.00"));
+            product.setUrl("http://com/" + productMission.getName());
+            product.setMission(productMission);
+            productRepository.save(product);
+        }
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find")
+                .param("missionName", "mission1")
+                .accept("application/x-ndjson"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<ProductDTO> actualOutput = new ArrayList<>();
+        for (String line : mvcResult.getResponse().getContentAsString().split("\n")) {
+            actualOutput.add(objectMapper.readValue(line, ProductDTO.class));
+        }
+
+        assertThat(mvcResult.getResponse().getContentType()).isEqualTo("application/x-ndjson");
+        assertThat(actualOutput).hasSize(3);
+        assertThat(actualOutput).extracting(ProductDTO::getMissionName).containsOnly("mission1");
+//      none of the products is ordered
+        assertThat(actualOutput).extracting(ProductDTO::getUrl).containsOnlyNulls();
+    }
 }
@@ -0,0 +1,167 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.models.ProductDTO;
+import com.hydro17.spaceagencydatahub.models.ProductOrder;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.services.ProductOrderService;
+import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//  Products of several missions are read for display with a single SQL statement and without loading entities
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@WithMockUser(roles = {"CONTENT_MANAGER", "CUSTOMER"})
+public class Product_readQueries_IntegrationTest {
+
+    private static final int MISSIONS = 3;
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    ProductOrderService productOrderService;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Statistics statistics;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+
+        products = new ArrayList<>();
+
+        for (int i = 0; i < MISSIONS; i++) {
+            Mission mission = new Mission();
+            mission.setName("mission" + i);
+            mission.setImageryType(ImageryType.HYPERSPECTRAL);
+            mission.setStartDate(LocalDateTime.now().minusHours(1L));
+            mission.setFinishDate(LocalDateTime.now().plusHours(1L));
+            missionRepository.save(mission);
+
+            Product product = newProduct(mission, "http://com/" + i);
+            products.add(productRepository.save(product));
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getAllProducts_whenProductsOfSeveralMissions_thenUsesOneStatementAndLoadsNoEntities() throws Exception {
+
+        mockMvc.perform(get("/api/products")).andExpect(status().isOk());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void getProductById_whenValidInput_thenUsesOneStatementAndLoadsNoEntities() throws Exception {
+
+        mockMvc.perform(get("/api/products/{id}", products.get(0).getId())).andExpect(status().isOk());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+//  The products beyond one per mission are added to the first mission, every third product is ordered
+    @ParameterizedTest
+    @ValueSource(ints = {MISSIONS, 500})
+    void findProduct_whenSomeProductsOrdered_thenUsesOneStatementWhateverTheNumberOfResults(int productCount)
+            throws Exception {
+
+        for (int i = MISSIONS; i < productCount; i++) {
+            products.add(productRepository.save(newProduct(products.get(0).getMission(), "http://com/" + i)));
+        }
+
+        ProductOrder productOrder = new ProductOrder();
+        productOrder.setPlacedOn(LocalDateTime.now());
+        Map<Long, String> urlsOfOrderedProducts = new HashMap<>();
+
+        for (int i = 1; i < productCount; i += 3) {
+            productOrder.addProduct(products.get(i));
+            urlsOfOrderedProducts.put(products.get(i).getId(), products.get(i).getUrl());
+        }
+
+        productOrderRepository.save(productOrder);
+        statistics.clear();
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/products/find").param("imageryType", "hyperspectral"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<ProductDTO> actualOutput = Arrays.asList(objectMapper.readValue(
+                mvcResult.getResponse().getContentAsString(), ProductDTO[].class));
+
+        assertThat(actualOutput).hasSize(productCount);
+        assertThat(actualOutput).filteredOn(productDTO -> urlsOfOrderedProducts.containsKey(productDTO.getId()))
+                .extracting(ProductDTO::getUrl).containsExactlyInAnyOrderElementsOf(urlsOfOrderedProducts.values());
+        assertThat(actualOutput).filteredOn(productDTO -> !urlsOfOrderedProducts.containsKey(productDTO.getId()))
+                .extracting(ProductDTO::getUrl).containsOnlyNulls();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenProductsOfSeveralMissions_thenUsesOneStatementAndLoadsNoEntities()
+            throws Exception {
+
+        ProductOrder productOrder = new ProductOrder();
+        productOrder.setPlacedOn(LocalDateTime.now());
+        products.forEach(productOrder::addProduct);
+        productOrderService.saveProductOrder(productOrder);
+        statistics.clear();
+
+        mockMvc.perform(get("/api/products/most-ordered")).andExpect(status().isOk());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+}
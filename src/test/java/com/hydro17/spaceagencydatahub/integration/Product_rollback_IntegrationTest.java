@@ -0,0 +1,139 @@
+package com.hydro17.spaceagencydatahub.integration;
+
+import com.hydro17.spaceagencydatahub.models.DensityCellDTO;
+import com.hydro17.spaceagencydatahub.models.Mission;
+import com.hydro17.spaceagencydatahub.models.Product;
+import com.hydro17.spaceagencydatahub.repositories.MissionRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
+import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.services.ProductDensityGridService;
+import com.hydro17.spaceagencydatahub.services.ProductSpatialIndexService;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.deleteAll;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.newProduct;
+import static com.hydro17.spaceagencydatahub.integration.IntegrationTestData.saveMission;
+import static org.assertj.core.api.Assertions.assertThat;
+
+//  The in-memory structures kept by the product listeners change only when a product write is committed
+@SpringBootTest
+@AutoConfigureTestDatabase
+public class Product_rollback_IntegrationTest {
+
+    @Autowired
+    MissionRepository missionRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductOrderRepository productOrderRepository;
+
+    @Autowired
+    ProductSpatialIndexService productSpatialIndexService;
+
+    @Autowired
+    ProductDensityGridService productDensityGridService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Mission mission;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll(productOrderRepository, productRepository, missionRepository);
+
+        mission = saveMission(missionRepository);
+
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void saveProduct_whenTransactionIsRolledBack_thenProductIsNotInSpatialIndex() {
+
+        Long productId = transactionTemplate.execute(status -> {
+            Product product = productRepository.saveAndFlush(newProduct(mission, "http://com"));
+            status.setRollbackOnly();
+            return product.getId();
+        });
+
+        assertThat(productRepository.existsById(productId)).isFalse();
+        assertThat(productSpatialIndexService.findProductIdsContaining(15, 15)).doesNotContain(productId);
+    }
+
+    @Test
+    void saveProduct_whenTransactionIsCommitted_thenProductIsInSpatialIndex() {
+
+        Product product = productRepository.save(newProduct(mission, "http://com"));
+
+        assertThat(productSpatialIndexService.findProductIdsContaining(15, 15)).contains(product.getId());
+    }
+
+    @Test
+    void deleteProduct_whenTransactionIsRolledBack_thenProductStaysInSpatialIndex() {
+
+        Product product = productRepository.save(newProduct(mission, "http://com"));
+
+        transactionTemplate.execute(status -> {
+            productRepository.deleteById(product.getId());
+            productRepository.flush();
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(productRepository.existsById(product.getId())).isTrue();
+        assertThat(productSpatialIndexService.findProductIdsContaining(15, 15)).contains(product.getId());
+    }
+
+    @Test
+    void saveProduct_whenTransactionIsRolledBack_thenDensityDoesNotChange() {
+
+        productRepository.save(newProduct(mission, "http://com"));
+
+        transactionTemplate.execute(status -> {
+            productRepository.saveAndFlush(newProduct(mission, "http://com"));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(countProductsInDensityGrid()).isEqualTo(1);
+    }
+
+    @Test
+    void deleteProduct_whenTransactionIsRolledBack_thenDensityDoesNotChange() {
+
+        Product product = productRepository.save(newProduct(mission, "http://com"));
+
+        transactionTemplate.execute(status -> {
+            productRepository.deleteById(product.getId());
+            productRepository.flush();
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(countProductsInDensityGrid()).isEqualTo(1);
+
+        productRepository.deleteById(product.getId());
+
+        assertThat(countProductsInDensityGrid()).isZero();
+    }
+
+    private long countProductsInDensityGrid() {
+        return productDensityGridService.getDensity(new BoundingBox(-90, -180, 90, 180), 0,
+                Collections.singleton(mission.getId()), null, null).stream()
+                .mapToLong(DensityCellDTO::getCount)
+                .sum();
+    }
+}
@@ -0,0 +1,86 @@
+package com.hydro17.spaceagencydatahub.repositories;
+
+import com.hydro17.spaceagencydatahub.models.ProductFilter;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import com.hydro17.spaceagencydatahub.utils.SpatialRelation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductQueryTemplatesTest {
+
+    private ProductQueryTemplates productQueryTemplates;
+
+    @BeforeEach
+    void setUp() {
+        productQueryTemplates = new ProductQueryTemplates();
+    }
+
+    @Test
+    void getTemplate_whenSameShapeWithOtherValues_thenReturnsCachedTemplateAndCountsHit() {
+        ProductFilter filter = new ProductFilter();
+        filter.setMissionName("mission1");
+        filter.setAfterDate(LocalDateTime.of(2020, 1, 1, 0, 0));
+
+        ProductFilter otherFilter = new ProductFilter();
+        otherFilter.setMissionName("mission2");
+        otherFilter.setAfterDate(LocalDateTime.of(2021, 1, 1, 0, 0));
+
+        String template = productQueryTemplates.getTemplate(ProductQueryTemplates.shapeOf(filter));
+        String otherTemplate = productQueryTemplates.getTemplate(ProductQueryTemplates.shapeOf(otherFilter));
+
+        assertThat(otherTemplate).isSameAs(template);
+        assertThat(productQueryTemplates.getMisses()).isEqualTo(1);
+        assertThat(productQueryTemplates.getHits()).isEqualTo(1);
+        assertThat(productQueryTemplates.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shapeOf_whenDatesInOtherOrder_thenReturnsOtherShape() {
+        ProductFilter filter = new ProductFilter();
+        filter.setBeforeDate(LocalDateTime.of(2020, 1, 1, 0, 0));
+        filter.setAfterDate(LocalDateTime.of(2021, 1, 1, 0, 0));
+
+        ProductFilter filterBetweenDates = new ProductFilter();
+        filterBetweenDates.setBeforeDate(LocalDateTime.of(2021, 1, 1, 0, 0));
+        filterBetweenDates.setAfterDate(LocalDateTime.of(2020, 1, 1, 0, 0));
+
+        String template = productQueryTemplates.getTemplate(ProductQueryTemplates.shapeOf(filter));
+        String templateBetweenDates = productQueryTemplates.getTemplate(ProductQueryTemplates.shapeOf(filterBetweenDates));
+
+        assertThat(template).contains("p.acquisitionDate < :beforeDate OR p.acquisitionDate > :afterDate");
+        assertThat(templateBetweenDates).contains("p.acquisitionDate < :beforeDate AND p.acquisitionDate > :afterDate");
+    }
+
+    @Test
+    void getTemplate_whenAllFilters_thenContainsEveryCondition() {
+        ProductFilter filter = new ProductFilter();
+        filter.setMissionName("mission1");
+        filter.setImageryType(ImageryType.HYPERSPECTRAL);
+        filter.setLatitude(10.0);
+        filter.setLongitude(20.0);
+        filter.setArea(new BoundingBox(0, 0, 30, 30));
+        filter.setAreaRelation(SpatialRelation.WITHIN);
+        filter.setProductIds(Arrays.asList(1L, 2L));
+
+        String template = productQueryTemplates.getTemplate(ProductQueryTemplates.shapeOf(filter));
+
+        assertThat(template).startsWith(ProductQueryTemplates.PRODUCT_DTO_SELECT + " FROM Product p JOIN p.mission m WHERE ")
+                .contains("m.name = :missionName", "p.imageryType = :imageryType", "p.footprint.cellKey IN :pointCellKeys",
+                        "p.footprint.cellKey BETWEEN :areaRangeStart AND :areaRangeEnd",
+                        "p.footprint.endCoordinateLatitude <= :maxLatitude", "p.id IN :productIds")
+                .doesNotContain(":beforeDate", ":afterDate", ":areaEnclosingKeys");
+    }
+
+    @Test
+    void getTemplate_whenNoFilters_thenReturnsQueryWithoutConditions() {
+        String template = productQueryTemplates.getTemplate(ProductQueryTemplates.shapeOf(new ProductFilter()));
+
+        assertThat(template).isEqualTo(ProductQueryTemplates.PRODUCT_DTO_SELECT + " FROM Product p JOIN p.mission m");
+    }
+}
@@ -200,6 +200,23 @@ class MissionServiceTest {
         assertThat(actualOutput).isEqualToComparingFieldByField(changedMission);
     }
 
+    @Test
+    void updateMission_whenImageryTypeChanged_thenUpdatesImageryTypeOfProducts() {
+        Mission changedMission = new Mission();
+        changedMission.setId(mission.getId());
+        changedMission.setName(mission.getName());
+        changedMission.setStartDate(mission.getStartDate());
+        changedMission.setFinishDate(mission.getFinishDate());
+        changedMission.setImageryType(mission.getImageryType() == ImageryType.PANCHROMATIC
+                ? ImageryType.HYPERSPECTRAL : ImageryType.PANCHROMATIC);
+
+        when(missionRepository.findById(anyLong())).thenReturn(Optional.ofNullable(mission));
+
+        missionService.updateMission(changedMission);
+
+        verify(missionRepository).updateImageryTypeOfProducts(mission.getId(), changedMission.getImageryType());
+    }
+
     // -------------------------------------------------------------------------------
 
     @Test
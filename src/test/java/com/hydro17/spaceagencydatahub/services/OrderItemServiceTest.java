@@ -0,0 +1,35 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.repositories.OrderItemRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//  A plain application context, it is refreshed like the one of the application, but it is never ready,
+//  so only what is loaded before the web server is started is tested
+class OrderItemServiceTest {
+
+    @Test
+    void refresh_whenContextIsRefreshed_thenOrderedProductIndexIsLoadedBeforeApplicationIsReady() {
+        OrderItemRepository orderItemRepository = mock(OrderItemRepository.class);
+        when(orderItemRepository.findAllOrderedProductIds()).thenReturn(Arrays.asList(1L, 2L));
+        OrderedProductIndexService orderedProductIndexService = new OrderedProductIndexService();
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(OrderItemRepository.class, () -> orderItemRepository);
+            context.registerBean(OrderedProductIndexService.class, () -> orderedProductIndexService);
+            context.registerBean(ProductWindowRankingService.class);
+            context.registerBean(OrderItemService.class);
+            context.refresh();
+
+            assertThat(orderedProductIndexService.isOrdered(1L)).isTrue();
+            assertThat(orderedProductIndexService.isOrdered(2L)).isTrue();
+            assertThat(orderedProductIndexService.isOrdered(3L)).isFalse();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.models.DensityCellDTO;
+import com.hydro17.spaceagencydatahub.models.IProductFootprintBox;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//  The footprints passed to load are read after startLoading, the products added or removed in between
+//  may be in them or not
+class ProductDensityGridServiceTest {
+
+    private static final BoundingBox WORLD = new BoundingBox(-90, -180, 90, 180);
+    private static final LocalDateTime ACQUISITION_DATE = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    private ProductDensityGridService productDensityGridService;
+
+    @BeforeEach
+    void setUp() {
+        productDensityGridService = new ProductDensityGridService();
+        productDensityGridService.load(Arrays.asList(footprintBox(1L), footprintBox(2L)));
+    }
+
+    @Test
+    void load_whenProductAddedWhileLoadingIsMissingFromFootprints_thenCountsIt() {
+        productDensityGridService.startLoading();
+        List<IProductFootprintBox> footprintBoxes = Arrays.asList(footprintBox(1L), footprintBox(2L));
+        productDensityGridService.add(3L, new BoundingBox(0, 0, 1, 1), 1L, ACQUISITION_DATE);
+
+        productDensityGridService.load(footprintBoxes);
+
+        assertThat(countAll()).isEqualTo(3);
+    }
+
+    @Test
+    void load_whenProductAddedWhileLoadingIsInFootprints_thenCountsItOnce() {
+        productDensityGridService.startLoading();
+        productDensityGridService.add(3L, new BoundingBox(0, 0, 1, 1), 1L, ACQUISITION_DATE);
+        List<IProductFootprintBox> footprintBoxes = Arrays.asList(footprintBox(1L), footprintBox(2L), footprintBox(3L));
+
+        productDensityGridService.load(footprintBoxes);
+
+        assertThat(countAll()).isEqualTo(3);
+    }
+
+    @Test
+    void load_whenProductRemovedWhileLoadingIsInFootprints_thenDoesNotCountIt() {
+        productDensityGridService.startLoading();
+        List<IProductFootprintBox> footprintBoxes = Arrays.asList(footprintBox(1L), footprintBox(2L));
+        productDensityGridService.remove(2L, new BoundingBox(0, 0, 1, 1), 1L, ACQUISITION_DATE);
+
+        productDensityGridService.load(footprintBoxes);
+
+        assertThat(countAll()).isEqualTo(1);
+    }
+
+    private long countAll() {
+        return productDensityGridService.getDensity(WORLD, 0, null, null, null).stream()
+                .mapToLong(DensityCellDTO::getCount)
+                .sum();
+    }
+
+    //  A footprint of 1 x 1 degree with its south-west corner at (0, 0), of mission 1
+    private IProductFootprintBox footprintBox(long productId) {
+        IProductFootprintBox footprintBox = mock(IProductFootprintBox.class);
+        when(footprintBox.getProductId()).thenReturn(productId);
+        when(footprintBox.getMissionId()).thenReturn(1L);
+        when(footprintBox.getAcquisitionDate()).thenReturn(ACQUISITION_DATE);
+        when(footprintBox.getStartCoordinateLatitude()).thenReturn(0.0);
+        when(footprintBox.getStartCoordinateLongitude()).thenReturn(0.0);
+        when(footprintBox.getEndCoordinateLatitude()).thenReturn(1.0);
+        when(footprintBox.getEndCoordinateLongitude()).thenReturn(1.0);
+
+        return footprintBox;
+    }
+}
@@ -0,0 +1,63 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = ProductLeaderboardService.class)
+class ProductLeaderboardServiceTest {
+
+    @Autowired
+    private ProductLeaderboardService productLeaderboardService;
+
+    @BeforeEach
+    void setUp() {
+        productLeaderboardService.load(Collections.emptyList());
+
+//      mission 1: product 1 ordered 5 times, product 2 twice; mission 2: product 3 ordered 4 times, product 4 once
+        productLeaderboardService.increment(1L, 1L, 5);
+        productLeaderboardService.increment(2L, 1L, 2);
+        productLeaderboardService.increment(3L, 2L, 4);
+        productLeaderboardService.increment(4L, 2L, 1);
+    }
+
+    @Test
+    void getProductIds_whenOneMission_thenReturnsPageOfMissionRanking() {
+        assertThat(productLeaderboardService.getProductIds(new HashSet<>(Arrays.asList(2L)), 0, 10))
+                .containsExactly(3L, 4L);
+        assertThat(productLeaderboardService.getProductIds(new HashSet<>(Arrays.asList(1L)), 1, 10))
+                .containsExactly(2L);
+    }
+
+    @Test
+    void getProductIds_whenSeveralMissions_thenMergesTheirRankings() {
+        assertThat(productLeaderboardService.getProductIds(new HashSet<>(Arrays.asList(1L, 2L)), 0, 10))
+                .containsExactly(1L, 3L, 2L, 4L);
+        assertThat(productLeaderboardService.getProductIds(new HashSet<>(Arrays.asList(1L, 2L)), 1, 2))
+                .containsExactly(3L, 2L);
+    }
+
+    @Test
+    void getProductIds_whenMissionWithoutOrders_thenReturnsEmptyList() {
+        assertThat(productLeaderboardService.getProductIds(new HashSet<>(Arrays.asList(3L)), 0, 10)).isEmpty();
+    }
+
+    @Test
+    void increment_whenOrderCountDropsToZero_thenProductLeavesMissionRanking() {
+        productLeaderboardService.increment(4L, 2L, -1);
+        productLeaderboardService.increment(2L, 1L, 4);
+
+        assertThat(productLeaderboardService.getProductIds(new HashSet<>(Arrays.asList(2L)), 0, 10))
+                .containsExactly(3L);
+        assertThat(productLeaderboardService.getProductIds(new HashSet<>(Arrays.asList(1L)), 0, 10))
+                .containsExactly(2L, 1L);
+        assertThat(productLeaderboardService.getProductIds(0, 10)).containsExactly(2L, 1L, 3L);
+    }
+}
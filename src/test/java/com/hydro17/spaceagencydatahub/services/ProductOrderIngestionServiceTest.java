@@ -0,0 +1,112 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.exceptions.ProductOrderNotFoundException;
+import com.hydro17.spaceagencydatahub.models.ProductOrder;
+import com.hydro17.spaceagencydatahub.utils.OrderIngestionState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = ProductOrderIngestionService.class, properties = {
+        "spaceagencydatahub.order-ingestion.async=true",
+        "spaceagencydatahub.order-ingestion.max-group-size=1",
+        "spaceagencydatahub.order-ingestion.latency-budget-ms=0",
+        "spaceagencydatahub.order-ingestion.failed-status-capacity=2"})
+class ProductOrderIngestionServiceTest {
+
+    private static final long FAILURE_TIMEOUT_MS = 10_000;
+
+    @Autowired
+    ProductOrderIngestionService productOrderIngestionService;
+
+    @MockBean
+    ProductOrderService productOrderService;
+
+    @BeforeEach
+    void setUp() {
+        when(productOrderService.reserveProductOrderIdBlock()).thenReturn(1L);
+        when(productOrderService.saveProductOrders(anyList())).thenThrow(new IllegalStateException("not saved"));
+        when(productOrderService.saveProductOrder(any())).thenThrow(new IllegalStateException("not saved"));
+    }
+
+    @Test
+    void getStatus_whenMoreFailedOrdersThanFailedStatusCapacity_thenOldestFailureIsForgotten() throws Exception {
+        long firstOrderId = productOrderIngestionService.enqueue(orderOf()).getOrderId();
+        waitUntilFailed(productOrderIngestionService, firstOrderId);
+        long secondOrderId = productOrderIngestionService.enqueue(orderOf()).getOrderId();
+        waitUntilFailed(productOrderIngestionService, secondOrderId);
+        long thirdOrderId = productOrderIngestionService.enqueue(orderOf()).getOrderId();
+        waitUntilFailed(productOrderIngestionService, thirdOrderId);
+
+        assertThatThrownBy(() -> productOrderIngestionService.getStatus(firstOrderId))
+                .isInstanceOf(ProductOrderNotFoundException.class);
+        assertThat(productOrderIngestionService.getStatus(secondOrderId).getState())
+                .isEqualTo(OrderIngestionState.FAILED);
+        assertThat(productOrderIngestionService.getStatus(thirdOrderId).getState())
+                .isEqualTo(OrderIngestionState.FAILED);
+        assertThat(productOrderIngestionService.getFailedStatusCount()).isEqualTo(2);
+    }
+
+    @Test
+    void getStatus_whenFailedStatusTtlIsOver_thenFailedOrderIsUnknown() throws Exception {
+        ProductOrderIngestionService expiringIngestionService = new ProductOrderIngestionService(
+                productOrderService, true, 10, 1, 0, 10, 0);
+        expiringIngestionService.startWriter();
+
+        try {
+            long orderId = expiringIngestionService.enqueue(orderOf()).getOrderId();
+
+            long deadline = System.currentTimeMillis() + FAILURE_TIMEOUT_MS;
+            while (expiringIngestionService.getFailedStatusCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(10);
+
+            assertThatThrownBy(() -> expiringIngestionService.getStatus(orderId))
+                    .isInstanceOf(ProductOrderNotFoundException.class);
+            assertThat(expiringIngestionService.getFailedStatusCount()).isZero();
+        } finally {
+            expiringIngestionService.stopWriter();
+        }
+    }
+
+    @Test
+    void enqueue_whenSavingThrowsError_thenOrderFailsAndWriterGoesOn() throws Exception {
+        doThrow(new AssertionError("not saved")).when(productOrderService).saveProductOrders(anyList());
+
+        long firstOrderId = productOrderIngestionService.enqueue(orderOf()).getOrderId();
+        waitUntilFailed(productOrderIngestionService, firstOrderId);
+        long secondOrderId = productOrderIngestionService.enqueue(orderOf()).getOrderId();
+
+        waitUntilFailed(productOrderIngestionService, secondOrderId);
+    }
+
+    private void waitUntilFailed(ProductOrderIngestionService ingestionService, long orderId) throws Exception {
+        long deadline = System.currentTimeMillis() + FAILURE_TIMEOUT_MS;
+
+        while (ingestionService.getStatus(orderId).getState() == OrderIngestionState.QUEUED
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(ingestionService.getStatus(orderId).getState()).isEqualTo(OrderIngestionState.FAILED);
+    }
+
+    private ProductOrder orderOf() {
+        ProductOrder productOrder = new ProductOrder();
+        productOrder.setPlacedOn(LocalDateTime.now());
+
+        return productOrder;
+    }
+}
@@ -1,8 +1,11 @@
 package com.hydro17.spaceagencydatahub.services;
 
+import com.hydro17.spaceagencydatahub.exceptions.ProductNotFoundException;
 import com.hydro17.spaceagencydatahub.models.*;
+import com.hydro17.spaceagencydatahub.repositories.OrderItemRepository;
 import com.hydro17.spaceagencydatahub.repositories.ProductOrderRepository;
 import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import com.hydro17.spaceagencydatahub.utils.ProductOrderCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,10 +16,16 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest(classes = ProductOrderService.class)
@@ -28,10 +37,15 @@ class ProductOrderServiceTest {
     @MockBean
     ProductOrderRepository productOrderRepository;
 
+    @MockBean
+    OrderItemRepository orderItemRepository;
+
+    @MockBean
+    OrderedProductIndexService orderedProductIndexService;
+
     @MockBean
     ProductService productService;
 
-    private List<ProductOrder> nonEmptyProductOrderList;
     private List<ProductOrder> emptyProductOrderList;
 
     private ProductOrder nonEmptyProductOrder;
@@ -67,9 +81,6 @@ class ProductOrderServiceTest {
         nonEmptyProductOrder.setPlacedOn(LocalDateTime.now());
         nonEmptyProductOrder.addProduct(product);
 
-        nonEmptyProductOrderList = new ArrayList<>();
-        nonEmptyProductOrderList.add(nonEmptyProductOrder);
-
         emptyProductOrderList = new ArrayList<>();
 
         nonEmptyProductOrderDTO = new ProductOrderDTO();
@@ -77,12 +88,62 @@ class ProductOrderServiceTest {
     }
 
     @Test
-    void getAllProductOrdersOrderedByPlacedOnDesc_whenValidInput_thenReturnsNonEmptyProductOrderList() {
-        when(productOrderRepository.findAllOrdersOrderedByPlacedOnDesc()).thenReturn(nonEmptyProductOrderList);
+    void getProductOrderHistoryPage_whenMoreOrdersThanLimit_thenReturnsPageWithProductIdsAndNextCursor() {
+        LocalDateTime placedOn = LocalDateTime.of(2020, 3, 1, 12, 0);
+        ProductOrderCursor after = new ProductOrderCursor(placedOn.plusHours(1L), 9L);
+
+        when(productOrderRepository.findHistoryPage(null, null, after, 3)).thenReturn(new ArrayList<>(Arrays.asList(
+                new ProductOrderHistoryDTO(8L, placedOn), new ProductOrderHistoryDTO(7L, placedOn),
+                new ProductOrderHistoryDTO(6L, placedOn.minusHours(1L)))));
+        when(orderItemRepository.findAllOrderItemProductsByProductOrderIdIn(new HashSet<>(Arrays.asList(8L, 7L))))
+                .thenReturn(Arrays.asList(orderItemProduct(8L, 1L), orderItemProduct(7L, 2L), orderItemProduct(8L, 3L)));
+
+        ProductOrderHistoryPage page = productOrderService.getProductOrderHistoryPage(null, null, 2, after);
+
+        assertThat(page.getProductOrders()).extracting(ProductOrderHistoryDTO::getId).containsExactly(8L, 7L);
+        assertThat(page.getProductOrders()).extracting(ProductOrderHistoryDTO::getProductIds)
+                .containsExactly(Arrays.asList(1L, 3L), Arrays.asList(2L));
+        assertThat(page.getNextCursor()).isEqualTo(new ProductOrderCursor(placedOn, 7L));
+    }
+
+    @Test
+    void forEachExportedProductOrder_whenOrderItemsOfSeveralOrders_thenPassesEachOrderOnceWithItsItems() {
+        LocalDateTime placedOn = LocalDateTime.of(2020, 3, 1, 12, 0);
+
+        when(productOrderRepository.streamAllOrderItemsForExport(null, placedOn)).thenReturn(Stream.of(
+                new OrderItemExportRow(1L, placedOn.minusHours(2L), 5L, new BigDecimal("10.50")),
+                new OrderItemExportRow(1L, placedOn.minusHours(2L), 6L, new BigDecimal("2.00")),
+                new OrderItemExportRow(2L, placedOn.minusHours(1L), 5L, new BigDecimal("10.50"))));
+
+        List<ProductOrderExportDTO> exportedProductOrders = new ArrayList<>();
+        productOrderService.forEachExportedProductOrder(null, placedOn, exportedProductOrders::add);
+
+        assertThat(exportedProductOrders).extracting(ProductOrderExportDTO::getId).containsExactly(1L, 2L);
+        assertThat(exportedProductOrders.get(0).getItems()).extracting(OrderItemExportDTO::getProductId)
+                .containsExactly(5L, 6L);
+        assertThat(exportedProductOrders.get(1).getItems()).extracting(OrderItemExportDTO::getPrice)
+                .containsExactly(new BigDecimal("10.50"));
+    }
+
+    @Test
+    void forEachExportedProductOrder_whenNoOrderItems_thenDoesNotCallAction() {
+        when(productOrderRepository.streamAllOrderItemsForExport(null, null)).thenReturn(Stream.empty());
+
+        List<ProductOrderExportDTO> exportedProductOrders = new ArrayList<>();
+        productOrderService.forEachExportedProductOrder(null, null, exportedProductOrders::add);
+
+        assertThat(exportedProductOrders).isEmpty();
+    }
+
+    @Test
+    void getProductOrderHistoryPage_whenNoOrders_thenReturnsEmptyLastPageWithoutReadingOrderItems() {
+        when(productOrderRepository.findHistoryPage(null, null, null, 3)).thenReturn(new ArrayList<>());
 
-        List<ProductOrder> actualOutput = productOrderService.getAllProductOrdersOrderedByPlacedOnDesc();
+        ProductOrderHistoryPage page = productOrderService.getProductOrderHistoryPage(null, null, 2, null);
 
-        assertThat(actualOutput).isEqualTo(nonEmptyProductOrderList);
+        assertThat(page.getProductOrders()).isEmpty();
+        assertThat(page.getNextCursor()).isNull();
+        verify(orderItemRepository, never()).findAllOrderItemProductsByProductOrderIdIn(anyCollection());
     }
 
     @Test
@@ -92,11 +153,12 @@ class ProductOrderServiceTest {
         ProductOrder actualOutput = productOrderService.saveProductOrder(nonEmptyProductOrder);
 
         assertThat(actualOutput).isEqualTo(nonEmptyProductOrder);
+        verify(productService).incrementOrderCounts(nonEmptyProductOrder.getProductIds());
     }
 
     @Test
     void isOrderedProductById_whenProductIsOrdered_thenReturnsTrue() {
-        when(productOrderRepository.findAllProductOrdersContainingProductWithGivenId(anyLong())).thenReturn(nonEmptyProductOrderList);
+        when(orderedProductIndexService.isOrdered(anyLong())).thenReturn(true);
 
         boolean actualOutput = productOrderService.isOrderedProductById(1L);
 
@@ -105,7 +167,7 @@ class ProductOrderServiceTest {
 
     @Test
     void isOrderedProductById_whenProductIsNotOrdered_thenReturnsFalse() {
-        when(productOrderRepository.findAllProductOrdersContainingProductWithGivenId(anyLong())).thenReturn(emptyProductOrderList);
+        when(orderedProductIndexService.isOrdered(anyLong())).thenReturn(false);
 
         boolean actualOutput = productOrderService.isOrderedProductById(1L);
 
@@ -114,10 +176,46 @@ class ProductOrderServiceTest {
 
     @Test
     void convertProductOrderDTOToProductOrder_whenValidInput_thenReturnsProductOrder() {
-        when(productService.getProductById(anyLong())).thenReturn(java.util.Optional.ofNullable(product));
+        nonEmptyProductOrderDTO.setProductIds(Arrays.asList(1L, 1L));
+        when(productService.getProductsByIds(anyCollection())).thenReturn(Arrays.asList(product));
 
         ProductOrder actualOutput = productOrderService.convertProductOrderDTOToProductOrder(nonEmptyProductOrderDTO);
 
-        assertThat(actualOutput.getOrderItems().get(0).getProduct()).isEqualTo(product);
+        assertThat(actualOutput.getOrderItems()).extracting(OrderItem::getProduct).containsExactly(product, product);
+        verify(productService).getProductsByIds(new HashSet<>(Arrays.asList(1L)));
+        verify(productService, never()).getProductById(anyLong());
+    }
+
+    @Test
+    void convertProductOrderDTOToProductOrder_whenProductsDoNotExist_thenThrowsExceptionWithAllMissingIds() {
+        when(productService.getProductsByIds(anyCollection())).thenReturn(Arrays.asList(product));
+
+        assertThatThrownBy(() -> productOrderService.convertProductOrderDTOToProductOrder(nonEmptyProductOrderDTO))
+                .isInstanceOf(ProductNotFoundException.class)
+                .hasMessage("There are no products with ids: 2, 3");
+    }
+
+    @Test
+    void convertProductOrderDTOToProductOrder_whenOneProductDoesNotExist_thenThrowsExceptionWithItsId() {
+        nonEmptyProductOrderDTO.setProductIds(Arrays.asList(1L, 2L));
+        when(productService.getProductsByIds(anyCollection())).thenReturn(Arrays.asList(product));
+
+        assertThatThrownBy(() -> productOrderService.convertProductOrderDTOToProductOrder(nonEmptyProductOrderDTO))
+                .isInstanceOf(ProductNotFoundException.class)
+                .hasMessage("There is no product with id: 2");
+    }
+
+    private IOrderItemProduct orderItemProduct(long productOrderId, long productId) {
+        return new IOrderItemProduct() {
+            @Override
+            public Long getProductOrderId() {
+                return productOrderId;
+            }
+
+            @Override
+            public Long getProductId() {
+                return productId;
+            }
+        };
     }
-}
\ No newline at end of file
+}
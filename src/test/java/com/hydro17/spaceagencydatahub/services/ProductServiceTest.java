@@ -1,23 +1,39 @@
 package com.hydro17.spaceagencydatahub.services;
 
+import com.hydro17.spaceagencydatahub.models.ApproximateMostOrderedDTO;
+import com.hydro17.spaceagencydatahub.models.DensityCellDTO;
+import com.hydro17.spaceagencydatahub.models.EstimatedProductDTO;
+import com.hydro17.spaceagencydatahub.models.IProductFootprintBox;
+import com.hydro17.spaceagencydatahub.models.IProductOrderCount;
 import com.hydro17.spaceagencydatahub.models.Mission;
 import com.hydro17.spaceagencydatahub.models.Product;
 import com.hydro17.spaceagencydatahub.models.ProductDTO;
+import com.hydro17.spaceagencydatahub.models.ProductFilter;
 import com.hydro17.spaceagencydatahub.models.ProductFootprint;
+import com.hydro17.spaceagencydatahub.models.ProductPage;
 import com.hydro17.spaceagencydatahub.repositories.ProductRepository;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
 import com.hydro17.spaceagencydatahub.utils.ImageryType;
+import com.hydro17.spaceagencydatahub.utils.ProductCursor;
+import com.hydro17.spaceagencydatahub.utils.RankingWindow;
+import com.hydro17.spaceagencydatahub.utils.SpatialRelation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
@@ -36,10 +52,28 @@ class ProductServiceTest {
     private MissionService missionService;
 
     @MockBean
-    private ProductOrderService productOrderService;
+    private ProductSpatialIndexService productSpatialIndexService;
 
-    private List<Product> nonEmptyListOfProducts;
-    private List<Product> emptyListOfProducts;
+    @MockBean
+    private ProductDensityGridService productDensityGridService;
+
+    @MockBean
+    private OrderedProductIndexService orderedProductIndexService;
+
+    @MockBean
+    private ProductLeaderboardService productLeaderboardService;
+
+    @MockBean
+    private ProductWindowRankingService productWindowRankingService;
+
+    @MockBean
+    private ProductHeavyHittersService productHeavyHittersService;
+
+    @MockBean
+    private OrderItemService orderItemService;
+
+    private List<ProductDTO> nonEmptyListOfProductDTOs;
+    private List<ProductDTO> emptyListOfProductDTOs;
 
     Product product;
     Mission mission;
@@ -47,7 +81,7 @@ class ProductServiceTest {
 
     @BeforeEach
     void setUp() {
-        emptyListOfProducts = new ArrayList<>();
+        emptyListOfProductDTOs = new ArrayList<>();
 
         mission = new Mission();
         mission.setId(1L);
@@ -71,35 +105,39 @@ class ProductServiceTest {
         product.setMission(mission);
         mission.addProduct(product);
 
-        nonEmptyListOfProducts = new ArrayList<>();
-        nonEmptyListOfProducts.add(product);
-
         productDTO = new ProductDTO();
+        productDTO.setId(1L);
         productDTO.setMissionName("mission1");
         productDTO.setAcquisitionDate(LocalDateTime.now());
         productDTO.setPrice(new BigDecimal("10.7"));
         productDTO.setUrl("http://com");
         productDTO.setFootprint(footprint);
+
+        nonEmptyListOfProductDTOs = new ArrayList<>();
+        nonEmptyListOfProductDTOs.add(productDTO);
+
+        when(productSpatialIndexService.isEnabled()).thenReturn(true);
     }
 
     // -------------------------------------------------------------------------------
 
     @Test
     void getAllProducts_whenValidInput_thenReturnsNonEmptyListOfProducts() {
-        when(productRepository.findAll()).thenReturn(nonEmptyListOfProducts);
+        when(productRepository.findAllProductDTOs()).thenReturn(nonEmptyListOfProductDTOs);
 
-        List<Product> actualOutput = productService.getAllProducts();
+        List<ProductDTO> actualOutput = productService.getAllProducts();
 
-        assertThat(actualOutput).isEqualTo(nonEmptyListOfProducts);
+        assertThat(actualOutput).isEqualTo(nonEmptyListOfProductDTOs);
+        verify(productRepository, never()).findAll();
     }
 
     @Test
     void getAllProducts_whenValidInput_thenReturnsEmptyListOfProducts() {
-        when(productRepository.findAll()).thenReturn(emptyListOfProducts);
+        when(productRepository.findAllProductDTOs()).thenReturn(emptyListOfProductDTOs);
 
-        List<Product> actualOutput = productService.getAllProducts();
+        List<ProductDTO> actualOutput = productService.getAllProducts();
 
-        assertThat(actualOutput).isEqualTo(emptyListOfProducts);
+        assertThat(actualOutput).isEqualTo(emptyListOfProductDTOs);
     }
 
     @Test
@@ -120,14 +158,252 @@ class ProductServiceTest {
         assertThat(actualOutput).isEqualTo(Optional.empty());
     }
 
+    @Test
+    void getProductDTOById_whenValidInput_thenReturnsOptionalProductDTO() {
+        when(productRepository.findProductDTOById(1L)).thenReturn(Optional.of(productDTO));
+
+        Optional<ProductDTO> actualOutput = productService.getProductDTOById(1L);
+
+        assertThat(actualOutput).contains(productDTO);
+        verify(productRepository, never()).findById(anyLong());
+    }
+
     @Test
     void getFilteredProducts_whenValidInput_thenReturnsNonEmptyListofPorducts() {
-        when(productRepository.findAll(any(Specification.class))).thenReturn(nonEmptyListOfProducts);
+        when(productSpatialIndexService.findProductIdsContaining(anyDouble(), anyDouble())).thenReturn(Arrays.asList(1L));
+        when(productRepository.findAllByFilter(any(ProductFilter.class))).thenReturn(nonEmptyListOfProductDTOs);
 
-        List<Product> actualOutput = productService.getFilteredProducts("mission1", LocalDateTime.now(),
+        List<ProductDTO> actualOutput = productService.getFilteredProducts("mission1", LocalDateTime.now(),
                 LocalDateTime.now().plusHours(1),100.2, 50.7, ImageryType.HYPERSPECTRAL);
 
-        assertThat(actualOutput).isEqualTo(nonEmptyListOfProducts);
+        assertThat(actualOutput).isEqualTo(nonEmptyListOfProductDTOs);
+    }
+
+    @Test
+    void getFilteredProducts_whenSpatialIndexEnabled_thenFiltersByCandidateIdsInsteadOfCoordinates() {
+        when(productSpatialIndexService.findProductIdsContaining(anyDouble(), anyDouble())).thenReturn(Arrays.asList(1L));
+
+        productService.getFilteredProducts("mission1", null, null, 100.2, 50.7, null);
+
+        ArgumentCaptor<ProductFilter> filter = ArgumentCaptor.forClass(ProductFilter.class);
+        verify(productRepository).findAllByFilter(filter.capture());
+
+        assertThat(filter.getValue().getMissionName()).isEqualTo("mission1");
+        assertThat(filter.getValue().getProductIds()).containsExactly(1L);
+        assertThat(filter.getValue().getLatitude()).isNull();
+        assertThat(filter.getValue().getLongitude()).isNull();
+    }
+
+    @Test
+    void getFilteredProducts_whenAreaMatchesMoreThanMaxCandidates_thenFiltersByAreaInsteadOfCandidateIds() {
+        BoundingBox area = new BoundingBox(0, 0, 80, 170);
+        when(productSpatialIndexService.findProductIdsInArea(any(BoundingBox.class), any())).thenReturn(null);
+
+        productService.getFilteredProducts("mission1", null, null, null, null, area, SpatialRelation.WITHIN, null);
+
+        ArgumentCaptor<ProductFilter> filter = ArgumentCaptor.forClass(ProductFilter.class);
+        verify(productRepository).findAllByFilter(filter.capture());
+
+        assertThat(filter.getValue().getProductIds()).isNull();
+        assertThat(filter.getValue().getArea()).isEqualTo(area);
+        assertThat(filter.getValue().getAreaRelation()).isEqualTo(SpatialRelation.WITHIN);
+    }
+
+    @Test
+    void getFilteredProducts_whenOnlyAreaMatchesMoreThanMaxCandidates_thenFiltersByPointCandidateIdsAndArea() {
+        BoundingBox area = new BoundingBox(0, 0, 80, 170);
+        when(productSpatialIndexService.findProductIdsContaining(anyDouble(), anyDouble())).thenReturn(Arrays.asList(1L));
+        when(productSpatialIndexService.findProductIdsInArea(any(BoundingBox.class), any())).thenReturn(null);
+
+        productService.getFilteredProducts(null, null, null, 10.0, 10.0, area, null, null);
+
+        ArgumentCaptor<ProductFilter> filter = ArgumentCaptor.forClass(ProductFilter.class);
+        verify(productRepository).findAllByFilter(filter.capture());
+
+        assertThat(filter.getValue().getProductIds()).containsExactly(1L);
+        assertThat(filter.getValue().getLatitude()).isNull();
+        assertThat(filter.getValue().getArea()).isEqualTo(area);
+        assertThat(filter.getValue().getAreaRelation()).isEqualTo(SpatialRelation.INTERSECTS);
+    }
+
+    @Test
+    void getFilteredProducts_whenProductIsNotOrdered_thenRemovesUrlWithoutQueryingOrders() {
+        when(productRepository.findAllByFilter(any())).thenReturn(nonEmptyListOfProductDTOs);
+        when(orderedProductIndexService.isOrdered(1L)).thenReturn(false);
+
+        List<ProductDTO> actualOutput = productService.getFilteredProducts("mission1", null, null, null, null, null);
+
+        assertThat(actualOutput.get(0).getUrl()).isNull();
+        verify(orderedProductIndexService).isOrdered(1L);
+    }
+
+    @Test
+    void getFilteredProducts_whenNoFootprintContainsPoint_thenReturnsEmptyListWithoutQueryingRepository() {
+        when(productSpatialIndexService.findProductIdsContaining(anyDouble(), anyDouble())).thenReturn(new ArrayList<>());
+
+        List<ProductDTO> actualOutput = productService.getFilteredProducts("mission1", null, null,
+                100.2, 50.7, ImageryType.HYPERSPECTRAL);
+
+        assertThat(actualOutput).isEmpty();
+        verify(productRepository, never()).findAllByFilter(any(ProductFilter.class));
+    }
+
+    @Test
+    void getFilteredProducts_whenNoCoordinates_thenDoesNotUseSpatialIndex() {
+        when(productRepository.findAllByFilter(any(ProductFilter.class))).thenReturn(nonEmptyListOfProductDTOs);
+
+        List<ProductDTO> actualOutput = productService.getFilteredProducts("mission1", null, null,
+                null, null, ImageryType.HYPERSPECTRAL);
+
+        assertThat(actualOutput).isEqualTo(nonEmptyListOfProductDTOs);
+        verify(productSpatialIndexService, never()).findProductIdsContaining(anyDouble(), anyDouble());
+    }
+
+    @Test
+    void getFilteredProducts_whenSpatialIndexDisabled_thenQueriesRepositoryWithoutSpatialIndex() {
+        when(productSpatialIndexService.isEnabled()).thenReturn(false);
+        when(productRepository.findAllByFilter(any(ProductFilter.class))).thenReturn(nonEmptyListOfProductDTOs);
+
+        List<ProductDTO> actualOutput = productService.getFilteredProducts("mission1", null, null,
+                100.2, 50.7, ImageryType.HYPERSPECTRAL);
+
+        assertThat(actualOutput).isEqualTo(nonEmptyListOfProductDTOs);
+        verify(productSpatialIndexService, never()).findProductIdsContaining(anyDouble(), anyDouble());
+    }
+
+    @Test
+    void getFilteredProductsPage_whenMoreProductsThanLimit_thenReturnsLimitProductsAndCursorOfLastOne() {
+        ProductDTO productDTO2 = new ProductDTO();
+        productDTO2.setId(2L);
+        productDTO2.setAcquisitionDate(LocalDateTime.of(2020, 1, 2, 0, 0));
+        ProductCursor cursor = new ProductCursor(LocalDateTime.of(2020, 1, 1, 0, 0), 5L);
+
+        when(productRepository.findAllByFilter(any(ProductFilter.class))).thenReturn(Arrays.asList(productDTO2, productDTO));
+
+        ProductPage actualOutput = productService.getFilteredProductsPage(null, null, null, null, null, null, null,
+                null, 1, cursor);
+
+        ArgumentCaptor<ProductFilter> filter = ArgumentCaptor.forClass(ProductFilter.class);
+        verify(productRepository).findAllByFilter(filter.capture());
+
+        assertThat(filter.getValue().getLimit()).isEqualTo(2);
+        assertThat(filter.getValue().getAfter()).isEqualTo(cursor);
+        assertThat(actualOutput.getProducts()).containsExactly(productDTO2);
+        assertThat(actualOutput.getNextCursor()).isEqualTo(new ProductCursor(productDTO2.getAcquisitionDate(), 2L));
+    }
+
+    @Test
+    void getFilteredProductsPage_whenNotMoreProductsThanLimit_thenReturnsNoCursor() {
+        when(productRepository.findAllByFilter(any(ProductFilter.class))).thenReturn(nonEmptyListOfProductDTOs);
+
+        ProductPage actualOutput = productService.getFilteredProductsPage(null, null, null, null, null, null, null,
+                null, 1, null);
+
+        assertThat(actualOutput.getProducts()).isEqualTo(nonEmptyListOfProductDTOs);
+        assertThat(actualOutput.getNextCursor()).isNull();
+    }
+
+    @Test
+    void forEachFilteredProduct_whenValidInput_thenPassesStreamedProductsToActionAndClosesStream() {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(productRepository.streamAllByFilter(any(ProductFilter.class)))
+                .thenReturn(nonEmptyListOfProductDTOs.stream().onClose(() -> closed.set(true)));
+
+        List<ProductDTO> actualOutput = new ArrayList<>();
+        productService.forEachFilteredProduct("mission1", null, null, null, null, null, null,
+                ImageryType.HYPERSPECTRAL, actualOutput::add);
+
+        assertThat(actualOutput).isEqualTo(nonEmptyListOfProductDTOs);
+        assertThat(closed).isTrue();
+        verify(productRepository, never()).findAllByFilter(any(ProductFilter.class));
+    }
+
+    @Test
+    void forEachFilteredProduct_whenNoFootprintContainsPoint_thenDoesNotQueryRepository() {
+        when(productSpatialIndexService.findProductIdsContaining(anyDouble(), anyDouble())).thenReturn(new ArrayList<>());
+
+        List<ProductDTO> actualOutput = new ArrayList<>();
+        productService.forEachFilteredProduct("mission1", null, null, 100.2, 50.7, null, null,
+                ImageryType.HYPERSPECTRAL, actualOutput::add);
+
+        assertThat(actualOutput).isEmpty();
+        verify(productRepository, never()).streamAllByFilter(any(ProductFilter.class));
+    }
+
+    @Test
+    void getNearestProducts_whenRoundFindsNoMoreProducts_thenSearchesLargestSquareAtOnce() {
+        when(productSpatialIndexService.isEnabled()).thenReturn(false);
+        List<Double> halfSidesOfRounds = new ArrayList<>();
+        when(productRepository.findAllByFilter(any(ProductFilter.class))).thenAnswer(invocation -> {
+            ProductFilter filter = invocation.getArgument(0);
+            halfSidesOfRounds.add(filter.getArea().getMaxLatitude() - 150.0);
+            assertThat(filter.getLimit()).isEqualTo(2);
+            assertThat(filter.getNearestLatitude()).isEqualTo(150.0);
+            return nonEmptyListOfProductDTOs;
+        });
+
+        List<ProductDTO> actualOutput = productService.getNearestProducts(150.0, 30.0, 2, null, null);
+
+        assertThat(halfSidesOfRounds).containsExactly(1.0, 4.0, 1024.0);
+        assertThat(actualOutput).isEqualTo(nonEmptyListOfProductDTOs);
+    }
+
+    @Test
+    void getNearestProducts_whenSpatialIndexEnabled_thenReturnsProductsInOrderOfIndex() {
+        ProductDTO productDTO2 = new ProductDTO();
+        productDTO2.setId(2L);
+
+        when(productSpatialIndexService.findNearestProductIds(anyDouble(), anyDouble(), anyInt(), isNull()))
+                .thenReturn(Arrays.asList(2L, 1L));
+        when(productRepository.findAllByFilter(any(ProductFilter.class))).thenReturn(Arrays.asList(productDTO, productDTO2));
+
+        List<ProductDTO> actualOutput = productService.getNearestProducts(10.0, 20.0, 2, null, null);
+
+        assertThat(actualOutput).containsExactly(productDTO2, productDTO);
+    }
+
+    @Test
+    void getNearestProducts_whenMissionNameGiven_thenPassesMissionIdsToIndex() {
+        when(missionService.getAllMissions()).thenReturn(Arrays.asList(mission));
+        when(productSpatialIndexService.findNearestProductIds(anyDouble(), anyDouble(), anyInt(), anySet()))
+                .thenReturn(Arrays.asList(1L));
+        when(productRepository.findAllByFilter(any(ProductFilter.class))).thenReturn(Arrays.asList(productDTO));
+
+        List<ProductDTO> actualOutput = productService.getNearestProducts(10.0, 20.0, 1, "mission1", null);
+
+        assertThat(actualOutput).containsExactly(productDTO);
+        verify(productSpatialIndexService).findNearestProductIds(10.0, 20.0, 1,
+                new HashSet<>(Arrays.asList(1L)));
+    }
+
+    // -------------------------------------------------------------------------------
+
+    @Test
+    void getDensity_whenImageryTypeGiven_thenPassesMissionIdsOfImageryTypeToDensityGrid() {
+        BoundingBox area = new BoundingBox(-90, -180, 90, 180);
+        LocalDate fromDate = LocalDate.of(2020, 1, 1);
+        LocalDate toDate = LocalDate.of(2020, 12, 31);
+        List<DensityCellDTO> cells = Arrays.asList(new DensityCellDTO(area, 3));
+
+        when(missionService.getAllMissions()).thenReturn(Arrays.asList(mission));
+        when(productDensityGridService.getDensity(any(BoundingBox.class), anyInt(), anySet(), any(), any()))
+                .thenReturn(cells);
+
+        List<DensityCellDTO> actualOutput = productService.getDensity(area, 2, ImageryType.HYPERSPECTRAL,
+                fromDate, toDate);
+
+        assertThat(actualOutput).isEqualTo(cells);
+        verify(productDensityGridService).getDensity(area, 2, new HashSet<>(Arrays.asList(1L)), fromDate, toDate);
+    }
+
+    @Test
+    void getDensity_whenNoImageryType_thenDoesNotFilterMissions() {
+        BoundingBox area = new BoundingBox(-90, -180, 90, 180);
+
+        productService.getDensity(area, 2, null, null, null);
+
+        verify(productDensityGridService).getDensity(area, 2, null, null, null);
+        verify(missionService, never()).getAllMissions();
     }
 
     // -------------------------------------------------------------------------------
@@ -171,22 +447,202 @@ class ProductServiceTest {
         assertThat(actualOutput).isFalse();
     }
 
+    @Test
+    void getMostOrderedProductsDesc_whenPageOfLeaderboard_thenReturnsProductsInLeaderboardOrder() {
+        ProductDTO secondProductDTO = new ProductDTO();
+        secondProductDTO.setId(2L);
+
+        when(productLeaderboardService.getProductIds(5, 2)).thenReturn(Arrays.asList(2L, 1L));
+        when(productRepository.findAllByFilter(any())).thenReturn(Arrays.asList(productDTO, secondProductDTO));
+
+        List<ProductDTO> actualOutput = productService.getMostOrderedProductsDesc(5, 2);
+
+        assertThat(actualOutput).extracting(ProductDTO::getId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenPageAfterLastProduct_thenReturnsEmptyListWithoutQueryingRepository() {
+        when(productLeaderboardService.getProductIds(5, 2)).thenReturn(new ArrayList<>());
+
+        List<ProductDTO> actualOutput = productService.getMostOrderedProductsDesc(5, 2);
+
+        assertThat(actualOutput).isEmpty();
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenApproximate_thenReturnsPageOfHeavyHittersWithoutLeaderboard() {
+        ProductDTO secondProductDTO = new ProductDTO();
+        secondProductDTO.setId(2L);
+
+        when(productHeavyHittersService.isEnabled()).thenReturn(true);
+        when(productHeavyHittersService.getTop(3)).thenReturn(Arrays.asList(new long[]{3L, 9L}, new long[]{2L, 7L},
+                new long[]{1L, 3L}));
+        when(productRepository.findAllByFilter(any())).thenReturn(Arrays.asList(productDTO, secondProductDTO));
+
+        List<ProductDTO> actualOutput = productService.getMostOrderedProductsDesc(1, 2);
+
+        assertThat(actualOutput).extracting(ProductDTO::getId).containsExactly(2L, 1L);
+        verifyNoInteractions(productLeaderboardService);
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenWindow_thenReturnsProductsInWindowRankingOrder() {
+        ProductDTO secondProductDTO = new ProductDTO();
+        secondProductDTO.setId(2L);
+
+        when(productWindowRankingService.getProductIds(RankingWindow.LAST_DAY, 0, 10)).thenReturn(Arrays.asList(2L, 1L));
+        when(productRepository.findAllByFilter(any())).thenReturn(Arrays.asList(productDTO, secondProductDTO));
+
+        List<ProductDTO> actualOutput = productService.getMostOrderedProductsDesc(RankingWindow.LAST_DAY, 0, 10);
+
+        assertThat(actualOutput).extracting(ProductDTO::getId).containsExactly(2L, 1L);
+        verifyNoInteractions(productLeaderboardService);
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenImageryType_thenReturnsProductsRankedWithinMissionsOfImageryType() {
+        Mission otherMission = new Mission();
+        otherMission.setId(2L);
+        otherMission.setName("mission2");
+        otherMission.setImageryType(ImageryType.PANCHROMATIC);
+
+        ProductDTO secondProductDTO = new ProductDTO();
+        secondProductDTO.setId(2L);
+
+        when(missionService.getAllMissions()).thenReturn(Arrays.asList(mission, otherMission));
+        when(productLeaderboardService.getProductIds(new HashSet<>(Arrays.asList(1L)), 0, 10))
+                .thenReturn(Arrays.asList(2L, 1L));
+        when(productRepository.findAllByFilter(any())).thenReturn(Arrays.asList(productDTO, secondProductDTO));
+
+        List<ProductDTO> actualOutput = productService.getMostOrderedProductsDesc(null, ImageryType.HYPERSPECTRAL, 0, 10);
+
+        assertThat(actualOutput).extracting(ProductDTO::getId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void getMostOrderedProductsDesc_whenNoMissionMatches_thenReturnsEmptyListWithoutQueryingRepository() {
+        when(missionService.getAllMissions()).thenReturn(Arrays.asList(mission));
+
+        List<ProductDTO> actualOutput = productService.getMostOrderedProductsDesc("mission2", null, 0, 10);
+
+        assertThat(actualOutput).isEmpty();
+        verifyNoInteractions(productRepository, productLeaderboardService);
+    }
+
+    @Test
+    void getApproximateMostOrderedProductsDesc_thenReturnsProductsByEstimateDescWithErrorBounds() {
+        ProductDTO secondProductDTO = new ProductDTO();
+        secondProductDTO.setId(2L);
+
+        when(productHeavyHittersService.getTop(10)).thenReturn(Arrays.asList(new long[]{2L, 7L}, new long[]{1L, 3L}));
+        when(productHeavyHittersService.getEpsilon()).thenReturn(0.001);
+        when(productHeavyHittersService.getDelta()).thenReturn(0.01);
+        when(productHeavyHittersService.getTotalCount()).thenReturn(2_000L);
+        when(productHeavyHittersService.getMaxOverestimate()).thenReturn(2L);
+        when(productRepository.findAllByFilter(any())).thenReturn(Arrays.asList(productDTO, secondProductDTO));
+
+        ApproximateMostOrderedDTO actualOutput = productService.getApproximateMostOrderedProductsDesc(10);
+
+        assertThat(actualOutput.getProducts()).extracting(product -> product.getProduct().getId())
+                .containsExactly(2L, 1L);
+        assertThat(actualOutput.getProducts()).extracting(EstimatedProductDTO::getEstimatedOrderCount)
+                .containsExactly(7L, 3L);
+        assertThat(actualOutput.getEpsilon()).isEqualTo(0.001);
+        assertThat(actualOutput.getDelta()).isEqualTo(0.01);
+        assertThat(actualOutput.getTotalOrderItems()).isEqualTo(2_000L);
+        assertThat(actualOutput.getMaxOverestimate()).isEqualTo(2L);
+        verifyNoInteractions(productLeaderboardService);
+    }
+
+    @Test
+    void incrementOrderCounts_whenProductRepeatedInOrder_thenIncrementsItByNumberOfOccurrences() {
+        productService.incrementOrderCounts(Arrays.asList(1L, 2L, 1L, 3L));
+
+        verify(productRepository).incrementOrderCounts(argThat(ids -> new HashSet<>(ids).equals(new HashSet<>(Arrays.asList(2L, 3L)))), eq(1L));
+        verify(productRepository).incrementOrderCounts(argThat(ids -> new HashSet<>(ids).equals(new HashSet<>(Arrays.asList(1L)))), eq(2L));
+        verifyNoMoreInteractions(productRepository);
+    }
+
+    @Test
+    void repairOrderCounts_whenCountsAreWrong_thenIncrementsCountsAndLeaderboardByTheirErrors() {
+        List<IProductOrderCount> orderCountErrors = Arrays.asList(
+                orderCount(1L, 2L), orderCount(2L, -1L), orderCount(3L, 2L));
+        when(productRepository.findAllOrderCountErrors()).thenReturn(orderCountErrors);
+
+        int actualOutput = productService.repairOrderCounts();
+
+        assertThat(actualOutput).isEqualTo(3);
+        verify(productRepository).incrementOrderCounts(argThat(ids -> new HashSet<>(ids).equals(new HashSet<>(Arrays.asList(1L, 3L)))), eq(2L));
+        verify(productRepository).incrementOrderCounts(Arrays.asList(2L), -1L);
+        verify(productLeaderboardService).increment(1L, 1L, 2L);
+        verify(productLeaderboardService).increment(2L, 1L, -1L);
+        verify(productLeaderboardService).increment(3L, 1L, 2L);
+        verify(productLeaderboardService, never()).load(anyList());
+        verify(orderItemService).loadProductWindowRankings();
+    }
+
     @Test
     void removeUrlOfUnorderedProducts_whenProductOrdered_thenDoNotRemoveUrl() {
-        when(productOrderService.isOrderedProductById(anyLong())).thenReturn(true);
+        when(orderedProductIndexService.isOrdered(anyLong())).thenReturn(true);
 
-        List<Product> actualOutput = productService.removeUrlOfUnorderedProducts(nonEmptyListOfProducts);
+        List<ProductDTO> actualOutput = productService.removeUrlOfUnorderedProducts(nonEmptyListOfProductDTOs);
 
         assertThat(actualOutput.get(0).getUrl()).isNotNull();
     }
 
     @Test
     void removeUrlOfUnorderedProducts_whenProductIsNotOrdered_thenRemoveUrl() {
-        when(productOrderService.isOrderedProductById(anyLong())).thenReturn(false);
+        when(orderedProductIndexService.isOrdered(anyLong())).thenReturn(false);
 
-        List<Product> actualOutput = productService.removeUrlOfUnorderedProducts(nonEmptyListOfProducts);
+        List<ProductDTO> actualOutput = productService.removeUrlOfUnorderedProducts(nonEmptyListOfProductDTOs);
 
-        assertThat(actualOutput).isEqualTo(nonEmptyListOfProducts);
+        assertThat(actualOutput).isEqualTo(nonEmptyListOfProductDTOs);
         assertThat(actualOutput.get(0).getUrl()).isNull();
     }
-}
\ No newline at end of file
+
+//  A plain application context, it is refreshed like the one of the application, but it is never ready
+    @Test
+    void refresh_whenContextIsRefreshed_thenSpatialIndexesAreLoadedBeforeApplicationIsReady() {
+        IProductFootprintBox footprintBox = mock(IProductFootprintBox.class);
+        when(footprintBox.getProductId()).thenReturn(1L);
+        when(footprintBox.getMissionId()).thenReturn(1L);
+        when(footprintBox.getAcquisitionDate()).thenReturn(LocalDateTime.now());
+        when(footprintBox.getStartCoordinateLatitude()).thenReturn(10.0);
+        when(footprintBox.getStartCoordinateLongitude()).thenReturn(10.0);
+        when(footprintBox.getEndCoordinateLatitude()).thenReturn(20.0);
+        when(footprintBox.getEndCoordinateLongitude()).thenReturn(20.0);
+
+        ProductRepository startupProductRepository = mock(ProductRepository.class);
+        when(startupProductRepository.findAllProductFootprintBoxes()).thenReturn(Arrays.asList(footprintBox));
+        ProductSpatialIndexService startupSpatialIndexService = new ProductSpatialIndexService(true, 1000);
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(ProductRepository.class, () -> startupProductRepository);
+            context.registerBean(MissionService.class, () -> mock(MissionService.class));
+            context.registerBean(ProductSpatialIndexService.class, () -> startupSpatialIndexService);
+            context.registerBean(ProductDensityGridService.class);
+            context.registerBean(OrderedProductIndexService.class, () -> mock(OrderedProductIndexService.class));
+            context.registerBean(ProductLeaderboardService.class, () -> mock(ProductLeaderboardService.class));
+            context.registerBean(ProductWindowRankingService.class, () -> mock(ProductWindowRankingService.class));
+            context.registerBean(ProductHeavyHittersService.class, () -> mock(ProductHeavyHittersService.class));
+            context.registerBean(OrderItemService.class, () -> mock(OrderItemService.class));
+            context.registerBean(ProductService.class);
+            context.refresh();
+
+            assertThat(startupSpatialIndexService.findProductIdsContaining(15, 15)).containsExactly(1L);
+            assertThat(context.getBean(ProductDensityGridService.class)
+                    .getDensity(new BoundingBox(-90, -180, 90, 180), 0, null, null, null))
+                    .extracting(DensityCellDTO::getCount).containsExactly(1L);
+        }
+    }
+
+    private IProductOrderCount orderCount(long productId, long orderCount) {
+        IProductOrderCount productOrderCount = mock(IProductOrderCount.class);
+        when(productOrderCount.getProductId()).thenReturn(productId);
+        when(productOrderCount.getOrderCount()).thenReturn(orderCount);
+        when(productOrderCount.getMissionId()).thenReturn(1L);
+
+        return productOrderCount;
+    }
+}
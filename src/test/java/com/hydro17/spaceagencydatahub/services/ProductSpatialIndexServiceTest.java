@@ -0,0 +1,87 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.models.IProductFootprintBox;
+import com.hydro17.spaceagencydatahub.utils.BoundingBox;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//  The footprints passed to load are read after startLoading, the products written in between may be
+//  missing from them or be there with their old footprints
+class ProductSpatialIndexServiceTest {
+
+    private ProductSpatialIndexService productSpatialIndexService;
+
+    @BeforeEach
+    void setUp() {
+        productSpatialIndexService = new ProductSpatialIndexService(true, 1000);
+        productSpatialIndexService.load(Arrays.asList(footprintBox(1L, 0, 0), footprintBox(2L, 0, 0)));
+    }
+
+    @Test
+    void load_whenProductSavedWhileLoading_thenKeepsIt() {
+        productSpatialIndexService.startLoading();
+        List<IProductFootprintBox> footprintBoxes = Arrays.asList(footprintBox(1L, 0, 0), footprintBox(2L, 0, 0));
+        productSpatialIndexService.put(3L, 1L, new BoundingBox(0, 0, 1, 1));
+
+        productSpatialIndexService.load(footprintBoxes);
+
+        assertThat(productSpatialIndexService.findProductIdsContaining(0.5, 0.5)).containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    @Test
+    void load_whenProductRemovedWhileLoading_thenDoesNotBringItBack() {
+        productSpatialIndexService.startLoading();
+        List<IProductFootprintBox> footprintBoxes = Arrays.asList(footprintBox(1L, 0, 0), footprintBox(2L, 0, 0));
+        productSpatialIndexService.remove(2L);
+
+        productSpatialIndexService.load(footprintBoxes);
+
+        assertThat(productSpatialIndexService.findProductIdsContaining(0.5, 0.5)).containsExactly(1L);
+        assertThat(productSpatialIndexService.size()).isEqualTo(1);
+    }
+
+    @Test
+    void load_whenProductMovedWhileLoading_thenKeepsItsNewFootprint() {
+        productSpatialIndexService.startLoading();
+        List<IProductFootprintBox> footprintBoxes = Arrays.asList(footprintBox(1L, 0, 0), footprintBox(2L, 0, 0));
+        productSpatialIndexService.put(2L, 1L, new BoundingBox(10, 10, 11, 11));
+
+        productSpatialIndexService.load(footprintBoxes);
+
+        assertThat(productSpatialIndexService.findProductIdsContaining(0.5, 0.5)).containsExactly(1L);
+        assertThat(productSpatialIndexService.findProductIdsContaining(10.5, 10.5)).containsExactly(2L);
+    }
+
+    @Test
+    void load_whenNextLoadWithoutStartLoading_thenForgetsProductsWrittenBeforeIt() {
+        productSpatialIndexService.startLoading();
+        productSpatialIndexService.load(Arrays.asList(footprintBox(1L, 0, 0), footprintBox(2L, 0, 0)));
+        productSpatialIndexService.put(3L, 1L, new BoundingBox(0, 0, 1, 1));
+
+        productSpatialIndexService.load(Arrays.asList(footprintBox(1L, 0, 0)));
+
+        assertThat(productSpatialIndexService.findProductIdsContaining(0.5, 0.5)).containsExactly(1L);
+    }
+
+    //  A footprint of 1 x 1 degree with its south-west corner at the point, of mission 1
+    private IProductFootprintBox footprintBox(long productId, double latitude, double longitude) {
+        IProductFootprintBox footprintBox = mock(IProductFootprintBox.class);
+        when(footprintBox.getProductId()).thenReturn(productId);
+        when(footprintBox.getMissionId()).thenReturn(1L);
+        when(footprintBox.getAcquisitionDate()).thenReturn(LocalDateTime.now());
+        when(footprintBox.getStartCoordinateLatitude()).thenReturn(latitude);
+        when(footprintBox.getStartCoordinateLongitude()).thenReturn(longitude);
+        when(footprintBox.getEndCoordinateLatitude()).thenReturn(latitude + 1);
+        when(footprintBox.getEndCoordinateLongitude()).thenReturn(longitude + 1);
+
+        return footprintBox;
+    }
+}
@@ -0,0 +1,77 @@
+package com.hydro17.spaceagencydatahub.services;
+
+import com.hydro17.spaceagencydatahub.models.IOrderItemPlacement;
+import com.hydro17.spaceagencydatahub.utils.RankingWindow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//  The order items passed to load are read after startLoading, the order items saved or deleted in between
+//  may be in them or not
+class ProductWindowRankingServiceTest {
+
+    private ProductWindowRankingService productWindowRankingService;
+    private LocalDateTime placedOn;
+
+    @BeforeEach
+    void setUp() {
+        productWindowRankingService = new ProductWindowRankingService();
+        placedOn = LocalDateTime.now().minusMinutes(1);
+
+//      product 1 ordered twice, product 2 once
+        productWindowRankingService.load(Arrays.asList(placement(1L, 1L), placement(2L, 1L), placement(3L, 2L)));
+    }
+
+    @Test
+    void load_whenOrderItemSavedWhileLoadingIsMissingFromOrderItems_thenCountsIt() {
+        productWindowRankingService.startLoading();
+        List<IOrderItemPlacement> placements = Arrays.asList(placement(1L, 1L), placement(2L, 1L), placement(3L, 2L));
+        productWindowRankingService.add(4L, 2L, placedOn, 1);
+        productWindowRankingService.add(5L, 2L, placedOn, 1);
+
+        productWindowRankingService.load(placements);
+
+        assertThat(productWindowRankingService.getProductIds(RankingWindow.LAST_HOUR, 0, 10)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void load_whenOrderItemSavedWhileLoadingIsInOrderItems_thenCountsItOnce() {
+        productWindowRankingService.startLoading();
+        productWindowRankingService.add(4L, 2L, placedOn, 1);
+        List<IOrderItemPlacement> placements = Arrays.asList(placement(1L, 1L), placement(2L, 1L), placement(3L, 2L),
+                placement(4L, 2L));
+        productWindowRankingService.add(5L, 2L, placedOn, 1);
+
+        productWindowRankingService.load(placements);
+
+        assertThat(productWindowRankingService.getProductIds(RankingWindow.LAST_HOUR, 0, 10)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void load_whenOrderItemDeletedWhileLoadingIsInOrderItems_thenDoesNotCountIt() {
+        productWindowRankingService.startLoading();
+        List<IOrderItemPlacement> placements = Arrays.asList(placement(1L, 1L), placement(2L, 1L), placement(3L, 2L));
+        productWindowRankingService.add(1L, 1L, placedOn, -1);
+        productWindowRankingService.add(2L, 1L, placedOn, -1);
+
+        productWindowRankingService.load(placements);
+
+        assertThat(productWindowRankingService.getProductIds(RankingWindow.LAST_HOUR, 0, 10)).containsExactly(2L);
+    }
+
+    private IOrderItemPlacement placement(long orderItemId, long productId) {
+        IOrderItemPlacement placement = mock(IOrderItemPlacement.class);
+        when(placement.getOrderItemId()).thenReturn(orderItemId);
+        when(placement.getProductId()).thenReturn(productId);
+        when(placement.getPlacedOn()).thenReturn(placedOn);
+
+        return placement;
+    }
+}
@@ -0,0 +1,80 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimate_whenCountsAdded_thenNeverBelowTrueCountAndWithinErrorBound() {
+        CountMinSketch sketch = new CountMinSketch(0.01, 0.01, new Random(17));
+        Map<Long, Long> trueCounts = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            long id = random.nextInt(5_000) + 1;
+            sketch.add(id, 1);
+            trueCounts.merge(id, 1L, Long::sum);
+        }
+
+        int exceedingBound = 0;
+
+        for (Map.Entry<Long, Long> trueCount : trueCounts.entrySet()) {
+            long estimate = sketch.estimate(trueCount.getKey());
+
+            assertThat(estimate).isGreaterThanOrEqualTo(trueCount.getValue());
+            if (estimate - trueCount.getValue() > sketch.getMaxOverestimate()) exceedingBound++;
+        }
+
+//      the bound holds for each id with probability 1 - delta
+        assertThat(exceedingBound).isLessThanOrEqualTo((int) (trueCounts.size() * 0.01) + 1);
+        assertThat(sketch.getTotalCount()).isEqualTo(100_000);
+        assertThat(sketch.getMaxOverestimate()).isEqualTo(1_000);
+    }
+
+    @Test
+    void add_whenCountAdded_thenReturnsNewEstimate() {
+        CountMinSketch sketch = new CountMinSketch(0.001, 0.01);
+
+        assertThat(sketch.add(7L, 3)).isEqualTo(3);
+        assertThat(sketch.add(7L, 2)).isEqualTo(5);
+        assertThat(sketch.estimate(8L)).isZero();
+    }
+
+    @Test
+    void getSizeInBytes_thenDependsOnErrorBoundsOnly() {
+        CountMinSketch sketch = new CountMinSketch(0.001, 0.01);
+
+//      ceil(e / 0.001) = 2719 counters in each of ceil(ln(100)) = 5 rows
+        assertThat(sketch.getSizeInBytes()).isEqualTo(8L * 2719 * 5);
+
+        for (long id = 0; id < 10_000; id++) {
+            sketch.add(id, 1);
+        }
+
+        assertThat(sketch.getSizeInBytes()).isEqualTo(8L * 2719 * 5);
+    }
+
+    @Test
+    void clear_thenEstimatesAndTotalAreZero() {
+        CountMinSketch sketch = new CountMinSketch(0.001, 0.01);
+        sketch.add(1L, 10);
+
+        sketch.clear();
+
+        assertThat(sketch.estimate(1L)).isZero();
+        assertThat(sketch.getTotalCount()).isZero();
+    }
+
+    @Test
+    void constructor_whenEpsilonOutOfRange_thenThrowsIllegalArgumentException() {
+        assertThatThrownBy(() -> new CountMinSketch(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CountMinSketch(0.01, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
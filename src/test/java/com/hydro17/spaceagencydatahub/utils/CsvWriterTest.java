@@ -0,0 +1,38 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvWriterTest {
+
+    @Test
+    void write_whenPlainValues_thenWritesThemSeparatedByCommas() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (CsvWriter writer = new CsvWriter(outputStream)) {
+            writer.write("order_id", "price");
+            writer.write(1L, new BigDecimal("10.50"));
+        }
+
+        assertThat(new String(outputStream.toByteArray(), StandardCharsets.UTF_8))
+                .isEqualTo("order_id,price\r\n1,10.50\r\n");
+    }
+
+    @Test
+    void write_whenValuesWithSeparatorsQuotesOrNull_thenQuotesThemAndWritesNullAsEmptyField() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (CsvWriter writer = new CsvWriter(outputStream)) {
+            writer.write("a,b", "say \"hi\"", null, "line\nbreak");
+        }
+
+        assertThat(new String(outputStream.toByteArray(), StandardCharsets.UTF_8))
+                .isEqualTo("\"a,b\",\"say \"\"hi\"\"\",,\"line\nbreak\"\r\n");
+    }
+}
@@ -0,0 +1,81 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DensityGridTest {
+
+    private static final BoundingBox GLOBE = new BoundingBox(-90, -180, 90, 180);
+
+    private DensityGrid densityGrid;
+
+    @BeforeEach
+    void setUp() {
+        densityGrid = new DensityGrid();
+    }
+
+    @Test
+    void count_whenRandomPoints_thenReturnsSameCountsAsBruteForce() {
+        Random random = new Random(17);
+        double[][] points = new double[3000][];
+
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[]{random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180,
+                    random.nextInt(3), random.nextInt(100)};
+            densityGrid.add(points[i][0], points[i][1], (long) points[i][2], (long) points[i][3], 1);
+        }
+
+        BoundingBox area = new BoundingBox(-30, -60, 45, 120);
+        int level = 3;
+
+        Map<Integer, Long> expectedCounts = new HashMap<>();
+
+        for (double[] point : points) {
+            int x = SpatialCellKey.latitudeToGrid(point[0], DensityGrid.BASE_LEVEL);
+            int y = SpatialCellKey.longitudeToGrid(point[1], DensityGrid.BASE_LEVEL);
+            BoundingBox baseCell = SpatialCellKey.cellBounds(x, y, DensityGrid.BASE_LEVEL);
+
+            if (point[2] == 2 || point[3] < 10 || point[3] > 80 || !baseCell.intersects(area)) continue;
+
+            int cell = (SpatialCellKey.latitudeToGrid(point[0], level) << level)
+                    | SpatialCellKey.longitudeToGrid(point[1], level);
+            expectedCounts.merge(cell, 1L, Long::sum);
+        }
+
+        assertThat(densityGrid.count(area, level, new HashSet<>(Arrays.asList(0L, 1L)), 10L, 80L))
+                .isEqualTo(expectedCounts);
+    }
+
+    @Test
+    void count_whenPointsRemoved_thenCellsAreEmpty() {
+        densityGrid.add(10, 20, 1, 100, 1);
+        densityGrid.add(10, 20, 1, 100, 1);
+        densityGrid.add(10, 20, 1, 100, -2);
+
+        assertThat(densityGrid.count(GLOBE, DensityGrid.BASE_LEVEL, null, null, null)).isEmpty();
+    }
+
+    @Test
+    void count_whenLevelZero_thenReturnsOneCellWithAllPoints() {
+        densityGrid.add(10, 20, 1, 100, 1);
+        densityGrid.add(-80, -170, 2, 200, 1);
+
+        assertThat(densityGrid.count(GLOBE, 0, null, null, null)).isEqualTo(Collections.singletonMap(0, 2L));
+    }
+
+    @Test
+    void count_whenFromDayAfterToDay_thenReturnsEmptyMap() {
+        densityGrid.add(10, 20, 1, 100, 1);
+
+        assertThat(densityGrid.count(GLOBE, 4, null, 101L, 99L)).isEmpty();
+    }
+}
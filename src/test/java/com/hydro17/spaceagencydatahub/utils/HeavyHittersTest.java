@@ -0,0 +1,85 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeavyHittersTest {
+
+    @Test
+    void getTop_whenCountsAdded_thenReturnsIdsByEstimateDesc() {
+        HeavyHitters heavyHitters = new HeavyHitters(new CountMinSketch(0.001, 0.001, new Random(17)), 10);
+
+        heavyHitters.add(1L, 1);
+        heavyHitters.add(2L, 5);
+        heavyHitters.add(3L, 3);
+        heavyHitters.add(1L, 1);
+
+        List<long[]> top = heavyHitters.getTop(2);
+
+        assertThat(top).hasSize(2);
+        assertThat(top.get(0)).containsExactly(2L, 5L);
+        assertThat(top.get(1)).containsExactly(3L, 3L);
+    }
+
+    @Test
+    void getTop_whenEqualEstimates_thenLowerIdFirst() {
+        HeavyHitters heavyHitters = new HeavyHitters(new CountMinSketch(0.001, 0.001, new Random(17)), 10);
+
+        heavyHitters.add(5L, 2);
+        heavyHitters.add(3L, 2);
+        heavyHitters.add(4L, 2);
+
+        assertThat(ids(heavyHitters.getTop(10))).containsExactly(3L, 4L, 5L);
+    }
+
+    @Test
+    void add_whenCapacityReached_thenKeepsIdsWithHighestEstimates() {
+        HeavyHitters heavyHitters = new HeavyHitters(new CountMinSketch(0.001, 0.001, new Random(17)), 2);
+
+        heavyHitters.add(1L, 1);
+        heavyHitters.add(2L, 2);
+        heavyHitters.add(3L, 3);
+        heavyHitters.add(4L, 1);
+
+        assertThat(ids(heavyHitters.getTop(10))).containsExactly(3L, 2L);
+
+//      an evicted id comes back once its estimate overtakes the weakest one
+        heavyHitters.add(1L, 3);
+
+        assertThat(ids(heavyHitters.getTop(10))).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void getTop_whenSkewedCounts_thenFindsTheMostFrequentIds() {
+        HeavyHitters heavyHitters = new HeavyHitters(new CountMinSketch(0.001, 0.001, new Random(17)), 20);
+        Random random = new Random(42);
+
+//      ids 1 to 10 get 100 counts each, among 20 000 noise counts spread over 10 000 other ids
+        for (int i = 0; i < 20_000; i++) {
+            heavyHitters.add(100 + random.nextInt(10_000), 1);
+            if (i % 20 == 0) heavyHitters.add(1 + (i / 20) % 10, 1);
+        }
+
+        assertThat(ids(heavyHitters.getTop(10))).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+    }
+
+    @Test
+    void clear_thenTopIsEmpty() {
+        HeavyHitters heavyHitters = new HeavyHitters(new CountMinSketch(0.001, 0.001), 10);
+        heavyHitters.add(1L, 1);
+
+        heavyHitters.clear();
+
+        assertThat(heavyHitters.getTop(10)).isEmpty();
+        assertThat(heavyHitters.getSketch().getTotalCount()).isZero();
+    }
+
+    private List<Long> ids(List<long[]> entries) {
+        return entries.stream().map(entry -> entry[0]).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,32 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductCursorTest {
+
+    @Test
+    void decode_whenEncodedCursor_thenReturnsEqualCursor() {
+        ProductCursor cursor = new ProductCursor(LocalDateTime.of(2020, 2, 29, 13, 45, 10, 123456789), 42L);
+
+        assertThat(ProductCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void decode_whenNotBase64_thenThrowsIllegalArgumentException() {
+        assertThatThrownBy(() -> ProductCursor.decode("not a cursor!")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void decode_whenInvalidPosition_thenThrowsIllegalArgumentException() {
+        String cursor = Base64.getUrlEncoder().encodeToString("1:x:3".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> ProductCursor.decode(cursor)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,113 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductIdBitmapTest {
+
+    private ProductIdBitmap bitmap;
+
+    @BeforeEach
+    void setUp() {
+        bitmap = new ProductIdBitmap();
+    }
+
+    @Test
+    void contains_whenIdsAdded_thenContainsOnlyThem() {
+        bitmap.add(1L);
+        bitmap.add(70_000L);
+        bitmap.add(5_000_000_000L);
+
+        assertThat(bitmap.contains(1L)).isTrue();
+        assertThat(bitmap.contains(70_000L)).isTrue();
+        assertThat(bitmap.contains(5_000_000_000L)).isTrue();
+        assertThat(bitmap.contains(2L)).isFalse();
+        assertThat(bitmap.contains(1L + (1L << ProductIdBitmap.CHUNK_BITS))).isFalse();
+        assertThat(bitmap.getCardinality()).isEqualTo(3);
+    }
+
+    @Test
+    void add_whenIdAlreadyAdded_thenReturnsFalseAndKeepsCardinality() {
+        assertThat(bitmap.add(17L)).isTrue();
+        assertThat(bitmap.add(17L)).isFalse();
+
+        assertThat(bitmap.getCardinality()).isEqualTo(1);
+    }
+
+    @Test
+    void remove_whenIdAdded_thenDoesNotContainIt() {
+        bitmap.add(17L);
+        bitmap.add(18L);
+
+        assertThat(bitmap.remove(17L)).isTrue();
+        assertThat(bitmap.remove(17L)).isFalse();
+
+        assertThat(bitmap.contains(17L)).isFalse();
+        assertThat(bitmap.contains(18L)).isTrue();
+        assertThat(bitmap.getCardinality()).isEqualTo(1);
+    }
+
+    @Test
+    void add_whenChunkBecomesDense_thenContainsSameIdsAsHashSet() {
+        Random random = new Random(17);
+        Set<Long> expectedIds = new HashSet<>();
+
+        for (int i = 0; i < 3 * ProductIdBitmap.MAX_ARRAY_CONTAINER_SIZE; i++) {
+            long id = random.nextInt(2 << ProductIdBitmap.CHUNK_BITS);
+            expectedIds.add(id);
+            bitmap.add(id);
+        }
+
+        for (long id = 0; id < 2 << ProductIdBitmap.CHUNK_BITS; id++) {
+            assertThat(bitmap.contains(id)).isEqualTo(expectedIds.contains(id));
+        }
+        assertThat(bitmap.getCardinality()).isEqualTo(expectedIds.size());
+    }
+
+    @Test
+    void remove_whenDenseChunkBecomesSparse_thenContainsSameIdsAsHashSet() {
+        Set<Long> expectedIds = new HashSet<>();
+
+        for (long id = 0; id < ProductIdBitmap.MAX_ARRAY_CONTAINER_SIZE + 100; id++) {
+            expectedIds.add(id * 3);
+            bitmap.add(id * 3);
+        }
+
+        for (long id = 0; id < 200; id++) {
+            expectedIds.remove(id * 3);
+            bitmap.remove(id * 3);
+        }
+
+        for (long id = 0; id < 3 * (ProductIdBitmap.MAX_ARRAY_CONTAINER_SIZE + 100); id++) {
+            assertThat(bitmap.contains(id)).isEqualTo(expectedIds.contains(id));
+        }
+        assertThat(bitmap.getCardinality()).isEqualTo(expectedIds.size());
+    }
+
+    @Test
+    void getSizeInBytes_whenIdsAreSparse_thenIsFarBelowOneBitPerPossibleId() {
+        for (long id = 0; id < 1000; id++) {
+            bitmap.add(id * 1000);
+        }
+
+        assertThat(bitmap.getSizeInBytes()).isLessThan(1000L * 1000 / 8 / 10);
+    }
+
+    @Test
+    void clear_whenIdsAdded_thenIsEmpty() {
+        bitmap.add(1L);
+        bitmap.add(100_000L);
+
+        bitmap.clear();
+
+        assertThat(bitmap.contains(1L)).isFalse();
+        assertThat(bitmap.getCardinality()).isZero();
+        assertThat(bitmap.getSizeInBytes()).isZero();
+    }
+}
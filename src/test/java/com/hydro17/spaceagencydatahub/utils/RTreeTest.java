@@ -0,0 +1,156 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RTreeTest {
+
+    private Map<Long, BoundingBox> boxes;
+    private Random random;
+
+    @BeforeEach
+    void setUp() {
+        random = new Random(17);
+        boxes = new HashMap<>();
+
+        for (long id = 0; id < 2000; id++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            boxes.put(id, new BoundingBox(latitude, longitude,
+                    latitude + random.nextDouble() * 10, longitude + random.nextDouble() * 10));
+        }
+    }
+
+    private List<Long> bruteForceContaining(double latitude, double longitude) {
+        return boxes.entrySet().stream()
+                .filter(entry -> entry.getValue().contains(latitude, longitude))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void searchContaining_whenInsertedOneByOne_thenReturnsSameIdsAsBruteForce() {
+        RTree<Long> rTree = new RTree<>();
+        boxes.forEach((id, box) -> rTree.insert(box, id));
+
+        for (int i = 0; i < 200; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+
+            assertThat(rTree.searchContaining(latitude, longitude))
+                    .containsExactlyInAnyOrderElementsOf(bruteForceContaining(latitude, longitude));
+        }
+        assertThat(rTree.size()).isEqualTo(boxes.size());
+    }
+
+    @Test
+    void searchContaining_whenBulkLoaded_thenReturnsSameIdsAsBruteForce() {
+        RTree<Long> rTree = new RTree<>();
+        List<RTree.Entry<Long>> entries = new ArrayList<>();
+        boxes.forEach((id, box) -> entries.add(RTree.entry(box, id)));
+
+        rTree.load(entries);
+
+        for (int i = 0; i < 200; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+
+            assertThat(rTree.searchContaining(latitude, longitude))
+                    .containsExactlyInAnyOrderElementsOf(bruteForceContaining(latitude, longitude));
+        }
+        assertThat(rTree.size()).isEqualTo(boxes.size());
+    }
+
+    @Test
+    void searchIntersecting_whenLimitGiven_thenReturnsAtMostLimitOfMatchingIds() {
+        RTree<Long> rTree = new RTree<>();
+        boxes.forEach((id, box) -> rTree.insert(box, id));
+        BoundingBox area = new BoundingBox(-45, -90, 45, 90);
+
+        List<Long> allIds = rTree.searchIntersecting(area);
+        List<Long> limitedIds = rTree.searchIntersecting(area, 10);
+
+        assertThat(allIds).hasSizeGreaterThan(10);
+        assertThat(limitedIds).hasSize(10).isSubsetOf(allIds);
+        assertThat(rTree.searchWithin(area, 5)).hasSize(5).isSubsetOf(rTree.searchWithin(area));
+    }
+
+    @Test
+    void remove_whenHalfOfEntriesRemoved_thenRemovedEntriesAreNotFound() {
+        RTree<Long> rTree = new RTree<>();
+        boxes.forEach((id, box) -> rTree.insert(box, id));
+
+        for (long id = 0; id < 2000; id += 2) {
+            assertThat(rTree.remove(boxes.remove(id), id)).isTrue();
+        }
+
+        for (int i = 0; i < 200; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+
+            assertThat(rTree.searchContaining(latitude, longitude))
+                    .containsExactlyInAnyOrderElementsOf(bruteForceContaining(latitude, longitude));
+        }
+        assertThat(rTree.size()).isEqualTo(boxes.size());
+    }
+
+    @Test
+    void remove_whenEntryDoesNotExist_thenReturnsFalse() {
+        RTree<Long> rTree = new RTree<>();
+        rTree.insert(new BoundingBox(0, 0, 1, 1), 1L);
+
+        assertThat(rTree.remove(new BoundingBox(0, 0, 1, 1), 2L)).isFalse();
+        assertThat(rTree.size()).isEqualTo(1);
+    }
+
+    @Test
+    void nearest_whenKGiven_thenReturnsEntriesInOrderOfBruteForceDistance() {
+        RTree<Long> rTree = new RTree<>();
+        boxes.forEach((id, box) -> rTree.insert(box, id));
+
+        for (int i = 0; i < 50; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+
+            List<Double> expectedDistances = boxes.values().stream()
+                    .map(box -> box.distanceTo(latitude, longitude))
+                    .sorted()
+                    .limit(10)
+                    .collect(Collectors.toList());
+
+            List<Double> actualDistances = rTree.nearest(latitude, longitude, 10, id -> true).stream()
+                    .map(entry -> entry.getBox().distanceTo(latitude, longitude))
+                    .collect(Collectors.toList());
+
+            assertThat(actualDistances).isEqualTo(expectedDistances);
+        }
+    }
+
+    @Test
+    void nearest_whenFilterGiven_thenReturnsOnlyAcceptedEntries() {
+        RTree<Long> rTree = new RTree<>();
+        boxes.forEach((id, box) -> rTree.insert(box, id));
+
+        List<Double> expectedDistances = boxes.entrySet().stream()
+                .filter(entry -> entry.getKey() % 7 == 0)
+                .map(entry -> entry.getValue().distanceTo(30, 60))
+                .sorted()
+                .limit(5)
+                .collect(Collectors.toList());
+
+        List<RTree.Entry<Long>> actualEntries = rTree.nearest(30, 60, 5, id -> id % 7 == 0);
+
+        assertThat(actualEntries).allMatch(entry -> entry.getValue() % 7 == 0);
+        assertThat(actualEntries.stream().map(entry -> entry.getBox().distanceTo(30, 60)).collect(Collectors.toList()))
+                .isEqualTo(expectedDistances);
+    }
+}
@@ -0,0 +1,88 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RankedSkipListTest {
+
+    private RankedSkipList rankedSkipList;
+
+    @BeforeEach
+    void setUp() {
+        rankedSkipList = new RankedSkipList(new Random(17));
+    }
+
+    @Test
+    void range_whenEntriesInserted_thenReturnsIdsByScoreDescAndIdAsc() {
+        rankedSkipList.insert(3L, 5L);
+        rankedSkipList.insert(1L, 2L);
+        rankedSkipList.insert(2L, 5L);
+        rankedSkipList.insert(4L, 7L);
+
+        assertThat(rankedSkipList.range(0, 10)).containsExactly(4L, 2L, 3L, 1L);
+        assertThat(rankedSkipList.range(1, 2)).containsExactly(2L, 3L);
+        assertThat(rankedSkipList.range(3, 2)).containsExactly(1L);
+        assertThat(rankedSkipList.range(4, 2)).isEmpty();
+        assertThat(rankedSkipList.size()).isEqualTo(4);
+    }
+
+    @Test
+    void remove_whenEntryWithOtherScore_thenReturnsFalseAndKeepsIt() {
+        rankedSkipList.insert(1L, 2L);
+
+        assertThat(rankedSkipList.remove(1L, 3L)).isFalse();
+        assertThat(rankedSkipList.remove(2L, 2L)).isFalse();
+
+        assertThat(rankedSkipList.range(0, 10)).containsExactly(1L);
+    }
+
+    @Test
+    void range_whenRandomIncrements_thenReturnsSameRangesAsSortedList() {
+        Random random = new Random(17);
+        Map<Long, Long> scoresById = new HashMap<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            long id = random.nextInt(2000);
+            Long score = scoresById.get(id);
+
+            if (score != null) assertThat(rankedSkipList.remove(id, score)).isTrue();
+
+            long newScore = (score == null ? 0 : score) + 1 + random.nextInt(3);
+            rankedSkipList.insert(id, newScore);
+            scoresById.put(id, newScore);
+        }
+
+        List<Long> expectedIds = scoresById.keySet().stream()
+                .sorted(Comparator.comparing((Long id) -> -scoresById.get(id)).thenComparing(id -> id))
+                .collect(Collectors.toList());
+
+        assertThat(rankedSkipList.size()).isEqualTo(expectedIds.size());
+
+        for (int offset = 0; offset <= expectedIds.size(); offset += 37) {
+            assertThat(rankedSkipList.range(offset, 25)).isEqualTo(
+                    new ArrayList<>(expectedIds.subList(offset, Math.min(offset + 25, expectedIds.size()))));
+        }
+    }
+
+    @Test
+    void clear_whenEntriesInserted_thenIsEmpty() {
+        rankedSkipList.insert(1L, 2L);
+        rankedSkipList.insert(2L, 3L);
+
+        rankedSkipList.clear();
+        rankedSkipList.insert(3L, 1L);
+
+        assertThat(rankedSkipList.range(0, 10)).containsExactly(3L);
+        assertThat(rankedSkipList.size()).isEqualTo(1);
+    }
+}
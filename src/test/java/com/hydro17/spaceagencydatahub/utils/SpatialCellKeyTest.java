@@ -0,0 +1,75 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpatialCellKeyTest {
+
+    private final Random random = new Random(17);
+
+    private BoundingBox randomBox(double maxSize) {
+        double latitude = random.nextDouble() * 200 - 100;
+        double longitude = random.nextDouble() * 380 - 190;
+        return new BoundingBox(latitude, longitude,
+                latitude + random.nextDouble() * maxSize, longitude + random.nextDouble() * maxSize);
+    }
+
+    private long keyOf(BoundingBox box) {
+        return SpatialCellKey.ofBox(box.getMinLatitude(), box.getMinLongitude(),
+                box.getMaxLatitude(), box.getMaxLongitude());
+    }
+
+    private boolean matches(SpatialCellKey.KeyRanges keyRanges, long key) {
+        return keyRanges.getExactKeys().contains(key)
+                || (keyRanges.getRangeStart() <= key && key <= keyRanges.getRangeEnd());
+    }
+
+    @Test
+    void ofPointAncestors_whenBoxContainsPoint_thenContainsKeyOfBox() {
+        for (int i = 0; i < 20000; i++) {
+            BoundingBox box = randomBox(20);
+            double latitude = box.getMinLatitude() + random.nextDouble() * (box.getMaxLatitude() - box.getMinLatitude());
+            double longitude = box.getMinLongitude() + random.nextDouble() * (box.getMaxLongitude() - box.getMinLongitude());
+
+            assertThat(SpatialCellKey.ofPointAncestors(latitude, longitude)).contains(keyOf(box));
+        }
+    }
+
+    @Test
+    void ofArea_whenBoxIntersectsArea_thenKeyOfBoxMatches() {
+        for (int i = 0; i < 20000; i++) {
+            BoundingBox box = randomBox(20);
+            BoundingBox area = randomBox(60);
+
+            if (box.intersects(area)) {
+                assertThat(matches(SpatialCellKey.ofArea(area, SpatialRelation.INTERSECTS), keyOf(box))).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void ofArea_whenBoxWithinArea_thenKeyOfBoxIsInRange() {
+        for (int i = 0; i < 20000; i++) {
+            BoundingBox area = randomBox(60);
+            BoundingBox box = randomBox(5);
+
+            if (area.contains(box)) {
+                SpatialCellKey.KeyRanges keyRanges = SpatialCellKey.ofArea(area, SpatialRelation.WITHIN);
+
+                assertThat(keyRanges.getExactKeys()).isEmpty();
+                assertThat(matches(keyRanges, keyOf(box))).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void ofArea_whenAreaIsSmall_thenRangeExcludesDistantBoxes() {
+        BoundingBox area = new BoundingBox(10.0, 10.0, 10.5, 10.5);
+        BoundingBox distantBox = new BoundingBox(-50.0, -50.0, -49.5, -49.5);
+
+        assertThat(matches(SpatialCellKey.ofArea(area, SpatialRelation.INTERSECTS), keyOf(distantBox))).isFalse();
+    }
+}
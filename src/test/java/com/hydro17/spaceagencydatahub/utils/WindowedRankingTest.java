@@ -0,0 +1,110 @@
+package com.hydro17.spaceagencydatahub.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WindowedRankingTest {
+
+    private static final int BUCKETS = 10;
+    private static final long BUCKET_DURATION = 1000;
+
+    private WindowedRanking windowedRanking;
+
+    @BeforeEach
+    void setUp() {
+        windowedRanking = new WindowedRanking(BUCKETS, BUCKET_DURATION);
+    }
+
+    @Test
+    void range_whenCountsAdded_thenReturnsIdsByWindowCountDesc() {
+        windowedRanking.add(1L, 1_000, 1, 4_000);
+        windowedRanking.add(2L, 2_000, 1, 4_000);
+        windowedRanking.add(2L, 3_000, 1, 4_000);
+        windowedRanking.add(3L, 3_500, 3, 4_000);
+
+        assertThat(windowedRanking.range(4_000, 0, 10)).containsExactly(3L, 2L, 1L);
+        assertThat(windowedRanking.range(4_000, 1, 1)).containsExactly(2L);
+    }
+
+    @Test
+    void range_whenBucketsExpire_thenOnlyCountsWithinWindowRemain() {
+        windowedRanking.add(1L, 1_000, 5, 1_000);
+        windowedRanking.add(2L, 5_000, 1, 5_000);
+        windowedRanking.add(1L, 6_000, 1, 6_000);
+
+//      the window ending at 10 999 covers the buckets from 1 000 on
+        assertThat(windowedRanking.range(10_999, 0, 10)).containsExactly(1L, 2L);
+
+//      the window ending at 11 000 no longer covers the bucket of 1 000
+        assertThat(windowedRanking.range(11_000, 0, 10)).containsExactly(1L, 2L);
+        windowedRanking.add(2L, 11_000, 1, 11_000);
+        assertThat(windowedRanking.range(11_000, 0, 10)).containsExactly(2L, 1L);
+
+        assertThat(windowedRanking.range(100_000, 0, 10)).isEmpty();
+        assertThat(windowedRanking.size()).isZero();
+    }
+
+    @Test
+    void add_whenTimeBeforeWindow_thenIsIgnored() {
+        windowedRanking.add(1L, 20_000, 1, 20_000);
+        windowedRanking.add(2L, 5_000, 1, 20_000);
+
+        assertThat(windowedRanking.range(20_000, 0, 10)).containsExactly(1L);
+    }
+
+    @Test
+    void add_whenTimeAfterNow_thenIsIgnoredAndDoesNotMoveWindow() {
+        windowedRanking.add(1L, 60_000, 1, 20_000);
+        windowedRanking.add(2L, 19_000, 1, 20_000);
+
+        assertThat(windowedRanking.range(20_000, 0, 10)).containsExactly(2L);
+    }
+
+    @Test
+    void add_whenNegativeIncrement_thenUncountsId() {
+        windowedRanking.add(1L, 1_000, 1, 1_000);
+        windowedRanking.add(2L, 1_000, 2, 1_000);
+        windowedRanking.add(2L, 1_000, -2, 1_000);
+
+        assertThat(windowedRanking.range(1_000, 0, 10)).containsExactly(1L);
+    }
+
+    @Test
+    void range_whenRandomAdds_thenReturnsSameRankingAsRecount() {
+        Random random = new Random(17);
+        List<long[]> adds = new ArrayList<>();
+        long now = 0;
+
+        for (int i = 0; i < 5000; i++) {
+            now += random.nextInt(50);
+            long[] add = {random.nextInt(100), now - random.nextInt(3000)};
+            adds.add(add);
+            windowedRanking.add(add[0], add[1], 1, now);
+
+            if (i % 250 == 0) {
+                long windowStart = (Math.floorDiv(now, BUCKET_DURATION) - BUCKETS + 1) * BUCKET_DURATION;
+                Map<Long, Long> expectedCounts = new HashMap<>();
+
+                adds.stream()
+                        .filter(counted -> counted[1] >= windowStart)
+                        .forEach(counted -> expectedCounts.merge(counted[0], 1L, Long::sum));
+
+                List<Long> expectedIds = expectedCounts.keySet().stream()
+                        .sorted(Comparator.comparing((Long id) -> -expectedCounts.get(id)).thenComparing(id -> id))
+                        .collect(Collectors.toList());
+
+                assertThat(windowedRanking.range(now, 0, 1000)).isEqualTo(expectedIds);
+            }
+        }
+    }
+}